@@ -1,21 +1,33 @@
 package com.safetynet.alerts;
 
+import com.safetynet.alerts.repository.DataFileWatcher;
 import com.safetynet.alerts.repository.DataLoader;
+import com.safetynet.alerts.repository.DataStore;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for SafetyNet Alerts.
  * Handles the initialization and loading of application data at startup.
  */
 @SpringBootApplication
+@EnableScheduling
 public class SafetyNetAlertsApp implements CommandLineRunner {
 
     private static final Logger logger = LogManager.getLogger(SafetyNetAlertsApp.class);
 
+    private final DataStore dataStore;
+    private final DataFileWatcher dataFileWatcher;
+
+    public SafetyNetAlertsApp(DataStore dataStore, DataFileWatcher dataFileWatcher) {
+        this.dataStore = dataStore;
+        this.dataFileWatcher = dataFileWatcher;
+    }
+
     /**
      * Main entry point for the Spring Boot application.
      *
@@ -29,7 +41,8 @@ public class SafetyNetAlertsApp implements CommandLineRunner {
 
     /**
      * Runs during the application startup.
-     * This method loads initial data from the JSON file into memory.
+     * This method loads initial data from the JSON file into the data store, then watches the
+     * file for changes if reloading is enabled.
      *
      * @param args Command-line arguments.
      * @throws Exception If an error occurs while loading the data.
@@ -39,11 +52,12 @@ public class SafetyNetAlertsApp implements CommandLineRunner {
         logger.info("Initializing data loading process...");
 
         try {
-            DataLoader.loadData();
+            DataLoader.loadData(dataStore);
             logger.info("Data loaded successfully.");
         } catch (Exception e) {
             logger.error("Error occurred during data loading:", e);
             throw e; // Re-throw to terminate the application if critical data loading fails
         }
+        dataFileWatcher.start();
     }
 }
@@ -145,4 +145,82 @@ public class FirestationController {
         logger.info("Successfully retrieved flood station data for stations: {}", stations);
         return ResponseEntity.status(HttpStatus.OK).body(result);
     }
+
+    /**
+     * Retrieves the residents covered by firestations or living at an address who have an allergy
+     * and/or take a medication, e.g. everyone covered by station 3 allergic to penicillin.
+     *
+     * @param stations   The firestation numbers, optional if an address is given.
+     * @param address    The address, optional if firestation numbers are given.
+     * @param allergy    The allergy searched, optional if a medication is given.
+     * @param medication The medication searched, optional if an allergy is given.
+     * @return A response with the matching residents, grouped by household.
+     */
+    @GetMapping("/medicalAlert")
+    public ResponseEntity<String> getMedicalAlert(@RequestParam(required = false) Set<Integer> stations,
+                                                  @RequestParam(required = false) String address,
+                                                  @RequestParam(required = false) String allergy,
+                                                  @RequestParam(required = false) String medication) {
+        logger.info("Received request to retrieve residents covered by stations {} or at address {} "
+            + "with allergy {} and medication {}", stations, address, allergy, medication);
+        if (((stations == null || stations.isEmpty()) && address == null) || (allergy == null && medication == null)) {
+            logger.error("Medical alert requested without coverage or medical terms");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body("Stations or an address, and an allergy or a medication, are required.");
+        }
+
+        List<FloodStationDTO> households = firestationService.getHouseholdsWithMedicalTerms(
+            stations != null ? stations : Set.of(), address, allergy, medication);
+
+        if (households.isEmpty()) {
+            logger.info("No residents found matching the medical alert");
+            return ResponseEntity.status(HttpStatus.OK).body("No residents found matching the specified criteria.");
+        }
+
+        String result = households.stream()
+            .map(FloodStationDTO::toString)
+            .collect(Collectors.joining("\n"));
+
+        logger.info("Successfully retrieved {} households matching the medical alert", households.size());
+        return ResponseEntity.status(HttpStatus.OK).body(result);
+    }
+
+    /**
+     * Retrieves the residents matching all the criteria given, e.g. the children of Culver covered
+     * by stations 1 or 2 who are allergic to peanuts.
+     *
+     * @param stations The firestation numbers covering the residents, optional.
+     * @param city     The city of the residents, optional.
+     * @param child    True for children only, false for adults only, optional.
+     * @param allergy  The allergy searched, optional.
+     * @return A response with the matching residents, grouped by household.
+     */
+    @GetMapping("/residents")
+    public ResponseEntity<String> getResidents(@RequestParam(required = false) Set<Integer> stations,
+                                               @RequestParam(required = false) String city,
+                                               @RequestParam(required = false) Boolean child,
+                                               @RequestParam(required = false) String allergy) {
+        logger.info("Received request to retrieve residents covered by stations {} in city {} with child {} "
+            + "and allergy {}", stations, city, child, allergy);
+        if ((stations == null || stations.isEmpty()) && city == null && child == null && allergy == null) {
+            logger.error("Residents requested without any criteria");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body("At least one of stations, city, child or allergy is required.");
+        }
+
+        List<FloodStationDTO> households = firestationService.getHouseholdsByCriteria(
+            stations != null ? stations : Set.of(), city, child, allergy);
+
+        if (households.isEmpty()) {
+            logger.info("No residents found matching the criteria");
+            return ResponseEntity.status(HttpStatus.OK).body("No residents found matching the specified criteria.");
+        }
+
+        String result = households.stream()
+            .map(FloodStationDTO::toString)
+            .collect(Collectors.joining("\n"));
+
+        logger.info("Successfully retrieved {} households matching the criteria", households.size());
+        return ResponseEntity.status(HttpStatus.OK).body(result);
+    }
 }
@@ -178,14 +178,13 @@ public class PersonController {
     @GetMapping("/communityEmail")
     public ResponseEntity<String> getCommunityEmailsByCity(@RequestParam String city) {
         logger.info("Received request for community emails in city: {}", city);
-        Set<String> emails = personService.getEmailsByCity(city);
+        String result = personService.getEmailPayloadByCity(city);
 
-        if (emails.isEmpty()) {
+        if (result.isEmpty()) {
             logger.info("No email addresses found for city: {}", city);
             return ResponseEntity.status(HttpStatus.OK).body("No email addresses found for the specified city.");
         }
 
-        String result = String.join("\n", emails);
         logger.info("Community email data retrieved for city {}: {}", city, result);
         return ResponseEntity.status(HttpStatus.OK).body(result);
     }
@@ -0,0 +1,46 @@
+package com.safetynet.alerts.controller;
+
+import com.safetynet.alerts.repository.DataStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Pins one version of the data for the whole handling of each read request.
+ * Endpoints such as /flood/stations query persons, firestations and medical records through
+ * several repository calls; pinning makes all of them read the same snapshot, so a write
+ * published in the meantime is either entirely visible to the response or not at all.
+ * Write requests are not pinned, so that they always apply to the latest data.
+ */
+@Component
+public class SnapshotPinningFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LogManager.getLogger(SnapshotPinningFilter.class);
+
+    private final DataStore dataStore;
+
+    public SnapshotPinningFilter(DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        try (DataStore.Pin ignored = dataStore.pin()) {
+            logger.debug("Serving {} from data version {}", request.getRequestURI(), dataStore.version());
+            filterChain.doFilter(request, response);
+        }
+    }
+}
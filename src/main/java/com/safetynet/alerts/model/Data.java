@@ -6,9 +6,9 @@ import java.util.List;
 
 @JsonPropertyOrder({ "persons", "firestations", "medicalrecords" })
 public class Data {
-    public static List<Person> persons;
-    public static List<Firestation> firestations;
-    public static List<MedicalRecord> medicalrecords;
+    private List<Person> persons;
+    private List<Firestation> firestations;
+    private List<MedicalRecord> medicalrecords;
 
     public Data() {}
 
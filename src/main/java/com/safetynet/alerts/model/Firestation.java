@@ -3,7 +3,7 @@ package com.safetynet.alerts.model;
 import java.util.UUID;
 
 public class Firestation {
-    private final UUID id = UUID.randomUUID();
+    private UUID id = UUID.randomUUID();
     private String address;
     private int station;
 
@@ -31,4 +31,14 @@ public class Firestation {
     public void setStation(int station) {
         this.station = station;
     }
+
+    public Firestation copy() {
+        Firestation copy = new Firestation(this.address, this.station);
+        copy.setId(this.id);
+        return copy;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
 }
@@ -1,13 +1,22 @@
 package com.safetynet.alerts.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.UUID;
 
 public class MedicalRecord {
+    public static final DateTimeFormatter BIRTHDATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    public static final int UNKNOWN_BIRTH_EPOCH_DAY = Integer.MIN_VALUE;
+
     private UUID id = UUID.randomUUID();
     private String firstName;
     private String lastName;
     private String birthdate;
+    private int birthEpochDay = UNKNOWN_BIRTH_EPOCH_DAY; // birthdate parsed once, in days since 1970-01-01
     private List<String> medications;
     private List<String> allergies;
 
@@ -18,7 +27,7 @@ public class MedicalRecord {
     ) {
         this.firstName = firstName;
         this.lastName = lastName;
-        this.birthdate = birthdate;
+        setBirthdate(birthdate);
         this.medications = medications;
         this.allergies = allergies;
     }
@@ -49,6 +58,24 @@ public class MedicalRecord {
 
     public void setBirthdate(String birthdate) {
         this.birthdate = birthdate;
+        this.birthEpochDay = parseBirthEpochDay(birthdate);
+    }
+
+    private static int parseBirthEpochDay(String birthdate) {
+        if (birthdate == null) {
+            return UNKNOWN_BIRTH_EPOCH_DAY;
+        }
+        try {
+            return (int) LocalDate.parse(birthdate, BIRTHDATE_FORMAT).toEpochDay();
+        } catch (DateTimeParseException e) {
+            // Kept as is, like a missing birthdate: a malformed date must not fail the whole record
+            return UNKNOWN_BIRTH_EPOCH_DAY;
+        }
+    }
+
+    @JsonIgnore
+    public int getBirthEpochDay() {
+        return birthEpochDay;
     }
 
     public List<String> getMedications() {
@@ -70,4 +97,10 @@ public class MedicalRecord {
     public void setId(UUID id) {
         this.id = id;
     }
+
+    public MedicalRecord copy() {
+        MedicalRecord copy = new MedicalRecord(this.firstName, this.lastName, this.birthdate, this.medications, this.allergies);
+        copy.setId(this.id);
+        return copy;
+    }
 }
@@ -92,7 +92,7 @@ public class Person {
         return copy;
     }
 
-    private void setId(UUID id) {
+    public void setId(UUID id) {
         this.id = id;
     }
 
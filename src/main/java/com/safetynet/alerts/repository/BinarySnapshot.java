@@ -0,0 +1,323 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary layout of a snapshot, much faster to load than pretty-printed JSON.
+ * Every distinct string is stored once in a dictionary at the start of the file, and records
+ * refer to strings by their index in it:
+ * <pre>
+ * int     magic, int format version
+ * long    sequence number of the last logged mutation the snapshot contains (-1 if unknown), since version 2
+ * int     string count, then for each string: int byte length, UTF-8 bytes
+ * int     person count, then for each person: long, long id, int first name, last name,
+ *         address, city, zip, phone, email
+ * int     firestation count, then for each firestation: long, long id, int address, int station
+ * int     medical record count, then for each record: long, long id, int first name, last name,
+ *         birthdate, then the medications and the allergies: int count, then int for each string
+ * long    CRC-32C checksum of all the preceding bytes
+ * </pre>
+ * A null string is stored as index -1, a null list as count -1. All values are big-endian.
+ */
+final class BinarySnapshot {
+
+    static final int MAGIC = 0x53_4E_41_50; // "SNAP"
+    static final int FORMAT_VERSION = 2;
+    static final int HEADER_LENGTH = Integer.BYTES * 2 + Long.BYTES;
+
+    private static final int NULL = -1;
+
+    private BinarySnapshot() {}
+
+    /**
+     * Writes a snapshot in the binary layout, without recording the last logged mutation it contains.
+     *
+     * @param snapshot The data to write.
+     * @param out      The stream to write to, left open.
+     * @throws IOException If an error occurs while writing.
+     */
+    static void write(DataSnapshot snapshot, OutputStream out) throws IOException {
+        write(snapshot, MutationLog.UNKNOWN_SEQUENCE, out);
+    }
+
+    /**
+     * Writes a snapshot in the binary layout.
+     *
+     * @param snapshot The data to write.
+     * @param sequence The sequence number of the last logged mutation the data contains.
+     * @param out      The stream to write to, left open.
+     * @throws IOException If an error occurs while writing.
+     */
+    static void write(DataSnapshot snapshot, long sequence, OutputStream out) throws IOException {
+        List<Person> persons = snapshot.persons().byId().all();
+        List<Firestation> firestations = snapshot.firestations().byId().all();
+        List<MedicalRecord> medicalRecords = snapshot.medicalRecords().byId().all();
+
+        SnapshotStrings dictionary = new SnapshotStrings();
+        for (Person person : persons) {
+            dictionary.add(person.getFirstName(), person.getLastName(), person.getAddress(), person.getCity(),
+                person.getZip(), person.getPhone(), person.getEmail());
+        }
+        for (Firestation firestation : firestations) {
+            dictionary.add(firestation.getAddress());
+        }
+        for (MedicalRecord medicalRecord : medicalRecords) {
+            dictionary.add(medicalRecord.getFirstName(), medicalRecord.getLastName(), medicalRecord.getBirthdate());
+            dictionary.addAll(medicalRecord.getMedications());
+            dictionary.addAll(medicalRecord.getAllergies());
+        }
+
+        CRC32C checksum = new CRC32C();
+        DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, checksum));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(sequence);
+
+        data.writeInt(dictionary.size());
+        for (String string : dictionary.strings()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        data.writeInt(persons.size());
+        for (Person person : persons) {
+            writeId(data, person.getId());
+            data.writeInt(dictionary.indexOf(person.getFirstName()));
+            data.writeInt(dictionary.indexOf(person.getLastName()));
+            data.writeInt(dictionary.indexOf(person.getAddress()));
+            data.writeInt(dictionary.indexOf(person.getCity()));
+            data.writeInt(dictionary.indexOf(person.getZip()));
+            data.writeInt(dictionary.indexOf(person.getPhone()));
+            data.writeInt(dictionary.indexOf(person.getEmail()));
+        }
+
+        data.writeInt(firestations.size());
+        for (Firestation firestation : firestations) {
+            writeId(data, firestation.getId());
+            data.writeInt(dictionary.indexOf(firestation.getAddress()));
+            data.writeInt(firestation.getStation());
+        }
+
+        data.writeInt(medicalRecords.size());
+        for (MedicalRecord medicalRecord : medicalRecords) {
+            writeId(data, medicalRecord.getId());
+            data.writeInt(dictionary.indexOf(medicalRecord.getFirstName()));
+            data.writeInt(dictionary.indexOf(medicalRecord.getLastName()));
+            data.writeInt(dictionary.indexOf(medicalRecord.getBirthdate()));
+            writeStrings(data, dictionary, medicalRecord.getMedications());
+            writeStrings(data, dictionary, medicalRecord.getAllergies());
+        }
+
+        data.flush();
+        // The checksum itself is not checksummed
+        new DataOutputStream(out).writeLong(checksum.getValue());
+    }
+
+    /**
+     * Reads the header of a snapshot in the binary layout.
+     *
+     * @param buffer The content of the snapshot file, positioned at its start; left after the header.
+     * @return The sequence number of the last logged mutation the snapshot contains, or
+     *         {@link MutationLog#UNKNOWN_SEQUENCE} if it does not record it.
+     * @throws IOException If the content is not a binary snapshot of a supported version.
+     */
+    static long readSequence(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < Integer.BYTES * 2 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary snapshot");
+        }
+        int version = buffer.getInt();
+        return switch (version) {
+            case 1 -> MutationLog.UNKNOWN_SEQUENCE;
+            case FORMAT_VERSION -> buffer.getLong();
+            default -> throw new IOException("Unsupported binary snapshot version: " + version);
+        };
+    }
+
+    /**
+     * Reads a snapshot in the binary layout, after verifying its checksum.
+     *
+     * The buffer may map the snapshot file: records are decoded straight from it, without
+     * copying the content of the file on heap first.
+     *
+     * @param buffer The content of the snapshot file.
+     * @return The data of the snapshot, not published yet.
+     * @throws IOException If the content is not a valid binary snapshot.
+     */
+    static DataSnapshot read(ByteBuffer buffer) throws IOException {
+        verifyChecksum(buffer);
+
+        readSequence(buffer);
+
+        StringTable dictionary = new StringTable(buffer);
+
+        int personCount = buffer.getInt();
+        List<Person> persons = new ArrayList<>(personCount);
+        for (int i = 0; i < personCount; i++) {
+            UUID id = readId(buffer);
+            Person person = new Person(dictionary.get(buffer.getInt()), dictionary.get(buffer.getInt()),
+                dictionary.get(buffer.getInt()), dictionary.get(buffer.getInt()), dictionary.get(buffer.getInt()),
+                dictionary.get(buffer.getInt()), dictionary.get(buffer.getInt()));
+            person.setId(id);
+            persons.add(person);
+        }
+
+        int firestationCount = buffer.getInt();
+        List<Firestation> firestations = new ArrayList<>(firestationCount);
+        for (int i = 0; i < firestationCount; i++) {
+            UUID id = readId(buffer);
+            Firestation firestation = new Firestation(dictionary.get(buffer.getInt()), buffer.getInt());
+            firestation.setId(id);
+            firestations.add(firestation);
+        }
+
+        int medicalRecordCount = buffer.getInt();
+        List<MedicalRecord> medicalRecords = new ArrayList<>(medicalRecordCount);
+        for (int i = 0; i < medicalRecordCount; i++) {
+            UUID id = readId(buffer);
+            MedicalRecord medicalRecord = new MedicalRecord(dictionary.get(buffer.getInt()),
+                dictionary.get(buffer.getInt()), dictionary.get(buffer.getInt()), strings(buffer, dictionary),
+                strings(buffer, dictionary));
+            medicalRecord.setId(id);
+            medicalRecords.add(medicalRecord);
+        }
+
+        return DataSnapshot.of(persons, firestations, medicalRecords);
+    }
+
+    private static void verifyChecksum(ByteBuffer buffer) throws IOException {
+        int contentLength = buffer.limit() - Long.BYTES;
+        if (contentLength < 0) {
+            throw new IOException("Binary snapshot truncated");
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.duplicate().limit(contentLength));
+        long expected = buffer.getLong(contentLength);
+        if (checksum.getValue() != expected) {
+            throw new IOException(String.format("Checksum mismatch in binary snapshot: expected %08x, found %08x",
+                expected, checksum.getValue()));
+        }
+        buffer.limit(contentLength);
+    }
+
+    private static void writeId(DataOutputStream data, UUID id) throws IOException {
+        data.writeLong(id.getMostSignificantBits());
+        data.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readId(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static void writeStrings(DataOutputStream data, SnapshotStrings dictionary, List<String> strings)
+        throws IOException {
+        if (strings == null) {
+            data.writeInt(NULL);
+            return;
+        }
+        data.writeInt(strings.size());
+        for (String string : strings) {
+            data.writeInt(dictionary.indexOf(string));
+        }
+    }
+
+    private static List<String> strings(ByteBuffer buffer, StringTable dictionary) {
+        int count = buffer.getInt();
+        if (count == NULL) {
+            return null;
+        }
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(dictionary.get(buffer.getInt()));
+        }
+        return strings;
+    }
+
+    /**
+     * Dictionary of a snapshot being read. Only the position of each string is read up front;
+     * a string is decoded straight from the buffer the first time a record refers to it, then
+     * shared by every record referring to it. When the buffer maps the snapshot file, the
+     * dictionary is therefore never copied on heap as a whole.
+     */
+    private static final class StringTable {
+
+        private final ByteBuffer buffer;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final String[] strings;
+
+        StringTable(ByteBuffer buffer) {
+            this.buffer = buffer;
+            int count = buffer.getInt();
+            offsets = new int[count];
+            lengths = new int[count];
+            strings = new String[count];
+            for (int i = 0; i < count; i++) {
+                lengths[i] = buffer.getInt();
+                offsets[i] = buffer.position();
+                buffer.position(offsets[i] + lengths[i]);
+            }
+        }
+
+        String get(int index) {
+            if (index == NULL) {
+                return null;
+            }
+            String string = strings[index];
+            if (string == null) {
+                string = StandardCharsets.UTF_8.decode(buffer.slice(offsets[index], lengths[index])).toString();
+                strings[index] = string;
+            }
+            return string;
+        }
+    }
+
+    /**
+     * Distinct strings of a snapshot, numbered in order of first appearance.
+     */
+    private static final class SnapshotStrings {
+
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+
+        void add(String... strings) {
+            for (String string : strings) {
+                if (string != null) {
+                    indexes.putIfAbsent(string, indexes.size());
+                }
+            }
+        }
+
+        void addAll(List<String> strings) {
+            if (strings != null) {
+                strings.forEach(this::add);
+            }
+        }
+
+        int indexOf(String string) {
+            return string != null ? indexes.get(string) : NULL;
+        }
+
+        int size() {
+            return indexes.size();
+        }
+
+        Iterable<String> strings() {
+            return indexes.keySet();
+        }
+    }
+}
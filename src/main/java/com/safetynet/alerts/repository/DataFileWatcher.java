@@ -0,0 +1,162 @@
+package com.safetynet.alerts.repository;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads data.json into the {@link DataStore} when it is changed by someone else, so that
+ * operators can refresh the data without restarting the service.
+ * The file is watched by a background thread, which waits for it to stay unchanged for a short
+ * while (editors often write a file in several steps), then parses it and applies it with
+ * {@link DataStore#reload(DataSnapshot)}: requests keep being served from the current data until
+ * the new one is published at once. The snapshots written by this application are recognized by
+ * the checksum of their content and ignored. A file whose content no longer matches its checksum
+ * file was edited by hand: it is reloaded anyway, and its checksum file is rewritten so that it is
+ * not rejected as corrupted at the next startup.
+ */
+@Component
+public class DataFileWatcher {
+
+    private static final Logger logger = LogManager.getLogger(DataFileWatcher.class);
+
+    private final DataStore dataStore;
+    private final boolean enabled;
+    private final long quietPeriodMillis;
+    private final Path file;
+
+    private WatchService watchService;
+    private Thread thread;
+
+    @Autowired
+    public DataFileWatcher(DataStore dataStore,
+                           @Value("${data.reload.enabled:false}") boolean enabled,
+                           @Value("${data.reload.quiet-period-ms:500}") long quietPeriodMillis) {
+        this(dataStore, enabled, quietPeriodMillis, Path.of(DataLoader.DATA_FILE));
+    }
+
+    DataFileWatcher(DataStore dataStore, boolean enabled, long quietPeriodMillis, Path file) {
+        this.dataStore = dataStore;
+        this.enabled = enabled;
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.file = file.toAbsolutePath();
+    }
+
+    /**
+     * Starts watching the data file, if reloading is enabled. Called once the data has been loaded.
+     *
+     * @throws IOException If the directory of the data file cannot be watched.
+     */
+    public synchronized void start() throws IOException {
+        if (!enabled || thread != null) {
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        // Snapshots are renamed over the file, so both creations and modifications are watched
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "data-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching {} for changes", file);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                boolean changed = drain(watchService.take());
+                while (changed) {
+                    WatchKey key = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        reload();
+                        changed = false;
+                    } else {
+                        drain(key);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.info("Stopped watching {}", file);
+        }
+    }
+
+    /**
+     * Consumes the events of a watch key.
+     *
+     * @return True if one of the events concerns the data file.
+     */
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Reads the data file and applies it to the store, unless it is the last snapshot written by
+     * this application. A file that cannot be read is ignored until it changes again.
+     */
+    void reload() {
+        try {
+            if (!Files.exists(file)) {
+                return;
+            }
+            long checksum = JsonFileUtil.checksumOf(file);
+            if (checksum == JsonFileUtil.lastWrittenChecksum()) {
+                logger.debug("Ignoring snapshot {} written by this application", file);
+                return;
+            }
+
+            Long recordedChecksum = JsonFileUtil.readChecksum(file);
+            boolean editedByHand = recordedChecksum != null && recordedChecksum != checksum;
+            if (editedByHand) {
+                logger.warn("Data file {} was edited by hand (checksum {} instead of {}), reloading it anyway",
+                    file, String.format("%08x", checksum), String.format("%08x", recordedChecksum));
+            } else {
+                logger.info("Data file {} changed, reloading it", file);
+            }
+            int applied = dataStore.reload(editedByHand ? DataLoader.readUnverifiedSnapshot(file)
+                : DataLoader.readSnapshot(file));
+            if (editedByHand) {
+                JsonFileUtil.adoptChecksum(file, checksum);
+            }
+            logger.info("Data file {} reloaded ({} changes applied)", file, applied);
+        } catch (IOException e) {
+            logger.error("Could not reload data file {}, keeping the current data", file, e);
+        }
+    }
+
+    /**
+     * Stops watching the data file.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Error while closing the watch service", e);
+        }
+    }
+}
@@ -1,17 +1,37 @@
 package com.safetynet.alerts.repository;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.safetynet.alerts.model.Data;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
-
-import static com.safetynet.alerts.repository.JsonFileUtil.saveData;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
 
 /**
- * Utility class for loading and saving application data from/to a JSON file.
+ * Utility class for loading application data from a snapshot file into the {@link DataStore}.
  */
 public class DataLoader {
 
@@ -19,30 +39,317 @@ public class DataLoader {
     private static final Logger logger = LogManager.getLogger(DataLoader.class);
 
     /**
-     * Loads data from the JSON file into memory and persists it.
+     * Loads the persisted data into the store, from the configured {@link StorageEngine}.
      *
-     * @throws IOException If an error occurs while reading the file.
+     * @param dataStore The store receiving the data.
+     * @throws IOException If the data cannot be read.
      */
-    public static void loadData() throws IOException {
-        logger.info("Starting data loading process from file: {}", DATA_FILE);
+    public static void loadData(DataStore dataStore) throws IOException {
+        dataStore.load();
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Loads the most recent snapshot and replays the mutation log on top of it.
+     * Snapshots of every {@link SnapshotFormat format} are considered, so that data.json can be
+     * imported into a store persisting binary snapshots; the most recent one is the one containing
+     * the most logged mutations, whatever the modification times of the files. A JSON file is read
+     * and its checksum verified in a single streaming pass. If every snapshot is missing or
+     * corrupted, the previous snapshot kept by {@link JsonFileUtil#saveData(DataSnapshot, SnapshotFormat, long)}
+     * is loaded instead, provided the mutation log still follows it: otherwise loading fails,
+     * rather than serving data with the mutations in between missing. A new snapshot is only
+     * written when logged mutations had to be replayed or skipped, or when the snapshot loaded is
+     * not in the configured format.
+     *
+     * @param configuredFormat The format in which snapshots are written.
+     * @param mutationLog      The log to replay, compacted into a new snapshot if needed.
+     * @return The data, not published yet.
+     * @throws IOException If no snapshot can be read, if an error occurs while reading the mutation log,
+     *                     or if the mutation log does not follow the snapshot loaded.
+     */
+    static DataSnapshot loadSnapshot(SnapshotFormat configuredFormat, MutationLog mutationLog) throws IOException {
+        logger.info("Starting data loading process ({} snapshots)", configuredFormat);
+        LoadedSnapshot loaded = readMostRecentSnapshot();
 
+        // Recover mutations logged since the last snapshot, before publishing the data
+        MutationLog.Replay replay;
         try {
+            replay = mutationLog.replay(loaded.data(), loaded.candidate().sequence());
+        } catch (IOException e) {
+            logger.error("Error while loading data: the mutation log cannot be replayed onto snapshot {}",
+                loaded.candidate().file(), e);
+            throw e;
+        }
+        if (replay.replayed() > 0 || replay.skipped() > 0 || loaded.candidate().format() != configuredFormat) {
+            mutationLog.compact(loaded.data(), configuredFormat);
+        }
+        logger.info("Data successfully loaded ({} logged mutations replayed)", replay.replayed());
+        return loaded.data();
+    }
+
+    /**
+     * Loads the most recent snapshot if there is any, with the logged mutations replayed on top of
+     * it, e.g. to import it into another storage engine. Importing is read-only: unlike
+     * {@link #loadSnapshot(SnapshotFormat, MutationLog)}, no snapshot is written and the mutation
+     * log is neither compacted nor rotated.
+     *
+     * @return The data, or empty data if there is no snapshot file.
+     * @throws IOException If no snapshot can be read, if an error occurs while reading the mutation log,
+     *                     or if the mutation log does not follow the snapshot loaded.
+     */
+    static DataSnapshot loadSnapshotIfAny() throws IOException {
+        if (candidates().isEmpty()) {
+            return DataSnapshot.empty();
+        }
+
+        logger.info("Importing the data of the most recent snapshot");
+        LoadedSnapshot loaded = readMostRecentSnapshot();
+        MutationLog.Replay replay = new MutationLog().replayLogs(loaded.data(), loaded.candidate().sequence());
+        logger.info("Snapshot {} imported ({} logged mutations replayed)", loaded.candidate().file(), replay.replayed());
+        return loaded.data();
+    }
+
+    /**
+     * Reads the most recent readable snapshot, falling back to the older ones if it is corrupted.
+     *
+     * @return The data of the snapshot, not published yet, and the file it was read from.
+     * @throws IOException If no snapshot can be read.
+     */
+    private static LoadedSnapshot readMostRecentSnapshot() throws IOException {
+        IOException failure = null;
+        for (SnapshotCandidate candidate : candidates()) {
+            try {
+                DataSnapshot data = readSnapshot(candidate.file(), candidate.format());
+                if (failure != null) {
+                    logger.warn("Loaded snapshot {} containing the mutations up to {} instead of the most recent one",
+                        candidate.file(), candidate.sequence());
+                }
+                return new LoadedSnapshot(data, candidate);
+            } catch (IOException e) {
+                logger.error("Snapshot {} is unreadable, falling back to the next one", candidate.file(), e);
+                failure = e;
+            }
+        }
+        if (failure == null) {
+            failure = new NoSuchFileException(DATA_FILE);
+        }
+        logger.error("Error while loading data: no readable snapshot", failure);
+        throw failure;
+    }
+
+    /**
+     * Lists the snapshot files to try loading, in order: the data files of every format, the one
+     * containing the most logged mutations first, then their backups. Snapshots that do not record
+     * their last mutation (e.g. a data.json provided by hand) come after the others, most recently
+     * written first.
+     *
+     * @return The existing snapshot files.
+     * @throws IOException If an error occurs while reading the modification time of a file.
+     */
+    private static List<SnapshotCandidate> candidates() throws IOException {
+        List<SnapshotCandidate> dataFiles = new ArrayList<>();
+        List<SnapshotCandidate> backupFiles = new ArrayList<>();
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            Path dataFile = Path.of(format.getFile());
+            if (Files.exists(dataFile)) {
+                dataFiles.add(candidate(dataFile, format));
+            }
+            Path backupFile = Path.of(format.getBackupFile());
+            if (Files.exists(backupFile)) {
+                backupFiles.add(candidate(backupFile, format));
+            }
+        }
+        Comparator<SnapshotCandidate> newestFirst = Comparator.comparingLong(SnapshotCandidate::sequence)
+            .thenComparing(SnapshotCandidate::lastModified).reversed();
+        dataFiles.sort(newestFirst);
+        backupFiles.sort(newestFirst);
+        dataFiles.addAll(backupFiles);
+        return dataFiles;
+    }
+
+    /**
+     * Reads a snapshot file of the given format, verifying its checksum.
+     *
+     * @param file   The snapshot file.
+     * @param format The format of the file.
+     * @return The data of the snapshot, not published yet.
+     * @throws IOException If the file cannot be read or decoded, or if its checksum does not match.
+     */
+    static DataSnapshot readSnapshot(Path file, SnapshotFormat format) throws IOException {
+        return switch (format) {
+            case JSON -> readSnapshot(file);
+            case BINARY -> readBinarySnapshot(file);
+        };
+    }
+
+    /**
+     * Reads a binary snapshot file through a memory mapping: records are decoded straight from the
+     * pages of the file, which are never copied on heap, and strings are only decoded once.
+     *
+     * @param file The snapshot file.
+     * @return The data of the snapshot, not published yet.
+     * @throws IOException If the file cannot be mapped or decoded, or if its checksum does not match.
+     */
+    private static DataSnapshot readBinarySnapshot(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Binary snapshot " + file + " is too large to be mapped: " + size + " bytes");
+            }
+            // The mapping stays valid after the channel is closed, until the buffer is garbage collected
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            DataSnapshot loaded = BinarySnapshot.read(content);
+            logLoadThroughput(loaded, size, System.nanoTime() - start);
+            return loaded;
+        }
+    }
+
+    /**
+     * Reads a JSON snapshot file, verifying its checksum if it has a checksum file.
+     *
+     * @param file The snapshot file.
+     * @return The data of the snapshot, not published yet.
+     * @throws IOException If the file cannot be read or parsed, or if its checksum does not match.
+     */
+    static DataSnapshot readSnapshot(Path file) throws IOException {
+        Long expectedChecksum = JsonFileUtil.readChecksum(file);
+        if (expectedChecksum == null) {
+            logger.warn("No checksum file for file: {}, its content cannot be verified", file);
+        }
+        return readJsonSnapshot(file, expectedChecksum);
+    }
+
+    /**
+     * Reads a JSON snapshot file without verifying its checksum, e.g. once it is known to have
+     * been edited by hand.
+     *
+     * @param file The snapshot file.
+     * @return The data of the snapshot, not published yet.
+     * @throws IOException If the file cannot be read or parsed.
+     */
+    static DataSnapshot readUnverifiedSnapshot(Path file) throws IOException {
+        return readJsonSnapshot(file, null);
+    }
+
+    private static DataSnapshot readJsonSnapshot(Path file, Long expectedChecksum) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Person> persons = new ArrayList<>();
+        List<Firestation> firestations = new ArrayList<>();
+        List<MedicalRecord> medicalrecords = new ArrayList<>();
+        long start = System.nanoTime();
+
+        long fileSize = Files.size(file);
+
+        CRC32C checksum = new CRC32C();
+        try (InputStream content = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), checksum);
+             JsonParser parser = mapper.getFactory().createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object at the root of " + file);
+            }
+
             // Load data into memory
-            Data.persons = mapper.readValue(new File(DATA_FILE), Data.class).getPersons();
-            Data.firestations = mapper.readValue(new File(DATA_FILE), Data.class).getFirestations();
-            Data.medicalrecords = mapper.readValue(new File(DATA_FILE), Data.class).getMedicalrecords();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.currentName();
+                parser.nextToken();
+                switch (section) {
+                    case "persons" -> readSection(parser, mapper.readerFor(Person.class), persons);
+                    case "firestations" -> readSection(parser, mapper.readerFor(Firestation.class), firestations);
+                    case "medicalrecords" -> readSection(parser, mapper.readerFor(MedicalRecord.class), medicalrecords);
+                    default -> {
+                        logger.warn("Skipping unknown section '{}' in file: {}", section, file);
+                        parser.skipChildren();
+                    }
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                throw new JsonParseException(parser, "Unexpected end of file " + file);
+            }
 
-            logger.debug("Data loaded into memory: \nPersons: {}\nFirestations: {}\nMedicalRecords: {}",
-                Data.persons, Data.firestations, Data.medicalrecords);
+            // The parser may stop before the end of the file: the rest must be checksummed too
+            content.transferTo(OutputStream.nullOutputStream());
+        }
 
-            // Save data to ensure consistency
-            saveData();
-            logger.info("Data successfully loaded and saved from file: {}", DATA_FILE);
-        } catch (IOException e) {
-            logger.error("Error while loading data from file: {}", DATA_FILE, e);
-            throw e;
+        if (expectedChecksum != null && checksum.getValue() != expectedChecksum) {
+            throw new IOException(String.format("Checksum mismatch in file %s: expected %08x, found %08x",
+                file, expectedChecksum, checksum.getValue()));
         }
+
+        DataSnapshot loaded = DataSnapshot.of(persons, firestations, medicalrecords);
+        logLoadThroughput(loaded, fileSize, System.nanoTime() - start);
+        logger.debug("Data loaded into memory: \nPersons: {}\nFirestations: {}\nMedicalRecords: {}",
+            persons, firestations, medicalrecords);
+        return loaded;
     }
+
+    /**
+     * Reads the elements of a JSON array one at a time into the given list.
+     *
+     * @param parser The parser, positioned on the start of the array.
+     * @param reader The reader for the type of element.
+     * @param target The list receiving the elements.
+     * @param <T>    The type of element.
+     * @throws IOException If an error occurs while reading the array.
+     */
+    private static <T> void readSection(JsonParser parser, ObjectReader reader, List<T> target) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array for section '" + parser.currentName() + "'");
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            target.add(reader.readValue(parser));
+        }
+    }
+
+    private static void logLoadThroughput(DataSnapshot loaded, long bytes, long elapsedNanos) {
+        int persons = loaded.persons().byId().size();
+        int firestations = loaded.firestations().byId().size();
+        int medicalRecords = loaded.medicalRecords().byId().size();
+        int records = persons + firestations + medicalRecords;
+        double seconds = Math.max(elapsedNanos, 1) / 1_000_000_000.0;
+        logger.info("Loaded {} persons, {} firestations and {} medical records ({} bytes) in {} ms: {} records/s, {} MB/s",
+            persons, firestations, medicalRecords, bytes,
+            String.format("%.1f", seconds * 1000),
+            String.format("%.0f", records / seconds),
+            String.format("%.2f", bytes / seconds / (1024 * 1024)));
+    }
+
+    private static SnapshotCandidate candidate(Path file, SnapshotFormat format) throws IOException {
+        return new SnapshotCandidate(file, format, readSequence(file, format), Files.getLastModifiedTime(file));
+    }
+
+    /**
+     * Reads the sequence number of the last logged mutation a snapshot file contains, without
+     * reading the whole file.
+     *
+     * @param file   The snapshot file.
+     * @param format The format of the file.
+     * @return The sequence number, or {@link MutationLog#UNKNOWN_SEQUENCE} if the snapshot does not
+     *         record it, or if it cannot be read.
+     */
+    static long readSequence(Path file, SnapshotFormat format) {
+        try {
+            return switch (format) {
+                case JSON -> JsonFileUtil.readSequence(file);
+                case BINARY -> {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        ByteBuffer header = ByteBuffer.allocate(BinarySnapshot.HEADER_LENGTH);
+                        int read = 0;
+                        while (header.hasRemaining() && read >= 0) {
+                            read = channel.read(header);
+                        }
+                        yield BinarySnapshot.readSequence(header.flip());
+                    }
+                }
+            };
+        } catch (IOException | BufferUnderflowException e) {
+            logger.warn("Cannot read the last mutation contained in snapshot {}", file, e);
+            return MutationLog.UNKNOWN_SEQUENCE;
+        }
+    }
+
+    private record SnapshotCandidate(Path file, SnapshotFormat format, long sequence, FileTime lastModified) {}
+
+    private record LoadedSnapshot(DataSnapshot data, SnapshotCandidate candidate) {}
 }
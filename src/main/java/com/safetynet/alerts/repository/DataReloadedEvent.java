@@ -0,0 +1,11 @@
+package com.safetynet.alerts.repository;
+
+/**
+ * Application event published when the data of the {@link DataStore} was replaced as a whole
+ * (e.g. by {@link DataLoader#loadData(DataStore)}) rather than through single mutations.
+ * Anything derived from that data should be rebuilt.
+ *
+ * @param entityType The type of entity that was reloaded.
+ */
+public record DataReloadedEvent(Mutation.EntityType entityType) {
+}
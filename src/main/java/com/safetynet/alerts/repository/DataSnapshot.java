@@ -0,0 +1,83 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+
+import java.util.List;
+
+/**
+ * The persons, firestations and medical records held in memory at one point in time.
+ * A snapshot is never modified once published by the {@link DataStore}; every write publishes
+ * a new snapshot with the next version, sharing the tables it did not touch, and the dictionary
+ * of the strings of its entities, which only grows.
+ *
+ * @param version        The version of the data, incremented by each published change.
+ * @param persons        The persons.
+ * @param firestations   The firestations.
+ * @param medicalRecords The medical records.
+ * @param dictionary     The dictionary the tables canonicalize the strings of their entities with.
+ */
+record DataSnapshot(long version, PersonTable persons, FirestationTable firestations, MedicalRecordTable medicalRecords,
+                    StringDictionary dictionary) {
+
+    /**
+     * Builds a snapshot holding the given entities, indexed, with a new dictionary of their strings.
+     *
+     * @param persons        The persons.
+     * @param firestations   The firestations.
+     * @param medicalRecords The medical records.
+     * @return The new snapshot.
+     */
+    static DataSnapshot of(List<Person> persons, List<Firestation> firestations, List<MedicalRecord> medicalRecords) {
+        StringDictionary dictionary = new StringDictionary();
+        return new DataSnapshot(0, new PersonTable(persons, dictionary), new FirestationTable(firestations, dictionary),
+            new MedicalRecordTable(medicalRecords, dictionary), dictionary);
+    }
+
+    static DataSnapshot empty() {
+        return of(List.of(), List.of(), List.of());
+    }
+
+    /**
+     * Builds the snapshot following this one with new persons.
+     *
+     * @param persons The new persons.
+     * @return The new snapshot, with the next version.
+     */
+    DataSnapshot withPersons(PersonTable persons) {
+        return new DataSnapshot(version + 1, persons, firestations, medicalRecords, dictionary);
+    }
+
+    /**
+     * Builds the snapshot following this one with new firestations.
+     *
+     * @param firestations The new firestations.
+     * @return The new snapshot, with the next version.
+     */
+    DataSnapshot withFirestations(FirestationTable firestations) {
+        return new DataSnapshot(version + 1, persons, firestations, medicalRecords, dictionary);
+    }
+
+    /**
+     * Builds the snapshot following this one with new medical records.
+     *
+     * @param medicalRecords The new medical records.
+     * @return The new snapshot, with the next version.
+     */
+    DataSnapshot withMedicalRecords(MedicalRecordTable medicalRecords) {
+        return new DataSnapshot(version + 1, persons, firestations, medicalRecords, dictionary);
+    }
+
+    /**
+     * Builds a snapshot holding the same data, whose tables canonicalize the strings of the entities
+     * stored from now on with another dictionary.
+     *
+     * @param dictionary The new dictionary, holding the strings of the entities of this snapshot.
+     * @return The new snapshot, with the same version since its data is the same.
+     */
+    DataSnapshot withDictionary(StringDictionary dictionary) {
+        return new DataSnapshot(version, persons.withDictionary(dictionary), firestations.withDictionary(dictionary),
+            medicalRecords.withDictionary(dictionary), dictionary);
+    }
+}
@@ -0,0 +1,326 @@
+package com.safetynet.alerts.repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-memory store of the persons, firestations and medical records, shared by the repositories.
+ * Readers get the current {@link DataSnapshot} without locking: a published snapshot is never
+ * modified. Writers are serialized; each write modifies a copy of the table it touches, logs
+ * the mutation, then publishes a new snapshot and the mutation event, so the log, the visible
+ * data and the events all follow the same order. The write is acknowledged once the
+ * {@link StorageEngine} considers the mutation durable, which is waited for outside the
+ * write lock so that concurrent writes can share a sync to disk.
+ * <p>
+ * A thread can {@link #pin() pin} the current snapshot, so that all the repository calls it
+ * makes until the pin is closed read the same version of the data, even if writes are
+ * published in the meantime. The views kept up to date by the mutation events are built from
+ * the {@link #pinLatest() latest} snapshot instead.
+ */
+@Component
+public class DataStore {
+
+    private static final Logger logger = LogManager.getLogger(DataStore.class);
+
+    private static final long NOTHING_COMMITTED = -1;
+
+    /**
+     * Minimum number of values in the string dictionary of the data before it is compacted.
+     */
+    private static final int MIN_DICTIONARY_SIZE_BEFORE_COMPACTION = 1024;
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final StorageEngine storage;
+    private final boolean columnarPersons;
+    private final ThreadLocal<DataSnapshot> pinnedSnapshot = new ThreadLocal<>();
+    private volatile DataSnapshot snapshot = DataSnapshot.empty();
+    private int dictionarySizeAfterCompaction;
+
+    @Autowired
+    public DataStore(ApplicationEventPublisher eventPublisher, StorageEngine storage,
+                     @Value("${data.persons.columnar:false}") boolean columnarPersons) {
+        this.eventPublisher = eventPublisher;
+        this.storage = storage;
+        this.columnarPersons = columnarPersons;
+    }
+
+    /**
+     * Creates a store syncing each mutation to the given log before acknowledging its write.
+     *
+     * @param eventPublisher The publisher of the mutation and reload events.
+     * @param mutationLog    The log the mutations are appended to.
+     */
+    public DataStore(ApplicationEventPublisher eventPublisher, MutationLog mutationLog) {
+        this(eventPublisher, MutationPersister.synchronous(mutationLog), false);
+    }
+
+    /**
+     * A snapshot pinned to the current thread, released when closed.
+     */
+    public interface Pin extends AutoCloseable {
+
+        /**
+         * Retrieves the version of the pinned snapshot.
+         *
+         * @return The version read by the thread while the pin is open.
+         */
+        long version();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Retrieves the snapshot read by the current thread: the pinned one if any, the latest otherwise.
+     *
+     * @return The snapshot, which is never modified.
+     */
+    DataSnapshot snapshot() {
+        DataSnapshot pinned = pinnedSnapshot.get();
+        return pinned != null ? pinned : snapshot;
+    }
+
+    /**
+     * Retrieves the version of the data read by the current thread.
+     *
+     * @return The version of the pinned snapshot if any, of the latest one otherwise.
+     */
+    public long version() {
+        return snapshot().version();
+    }
+
+    /**
+     * Pins the latest snapshot to the current thread until the returned pin is closed.
+     * If a snapshot is already pinned, it stays pinned and closing the returned pin has no effect,
+     * so that nested reads share the version of the outermost one.
+     *
+     * @return The pin, to close once the reads are done.
+     */
+    public Pin pin() {
+        DataSnapshot pinned = pinnedSnapshot.get();
+        if (pinned != null) {
+            return new SnapshotPin(pinned.version(), () -> {});
+        }
+
+        DataSnapshot latest = snapshot;
+        pinnedSnapshot.set(latest);
+        logger.debug("Pinned data version {}", latest.version());
+        return new SnapshotPin(latest.version(), pinnedSnapshot::remove);
+    }
+
+    /**
+     * Pins the latest snapshot to the current thread until the returned pin is closed, even if a
+     * snapshot is already pinned; closing the returned pin pins the previous snapshot back.
+     * Used by the views built on the first request: built from the snapshot pinned by the request,
+     * they would miss the mutations published since, whose events they did not apply yet.
+     *
+     * @return The pin, to close once the reads are done.
+     */
+    public Pin pinLatest() {
+        DataSnapshot previous = pinnedSnapshot.get();
+        DataSnapshot latest = snapshot;
+        pinnedSnapshot.set(latest);
+        return new SnapshotPin(latest.version(),
+            previous != null ? () -> pinnedSnapshot.set(previous) : pinnedSnapshot::remove);
+    }
+
+    private record SnapshotPin(long version, Runnable release) implements Pin {
+
+        @Override
+        public void close() {
+            release.run();
+        }
+    }
+
+    /**
+     * Replaces the whole data with the data persisted by the storage engine.
+     *
+     * @throws IOException If the data cannot be read.
+     */
+    public void load() throws IOException {
+        load(storage.load());
+    }
+
+    /**
+     * Replaces the whole data, e.g. once it has been loaded from the data file.
+     * The persons are moved off-heap if the store is configured to keep them in columns.
+     *
+     * @param loaded The new data, which must not be modified afterwards.
+     */
+    synchronized void load(DataSnapshot loaded) {
+        PersonTable persons = columnarPersons ? loaded.persons().inColumns() : loaded.persons();
+        snapshot = new DataSnapshot(snapshot.version() + 1, persons, loaded.firestations(), loaded.medicalRecords(),
+            loaded.dictionary());
+        logger.info("Data store loaded with {} persons, {} firestations and {} medical records (version {})",
+            loaded.persons().byId().size(), loaded.firestations().byId().size(), loaded.medicalRecords().byId().size(),
+            snapshot.version());
+        // The dictionary of the data loaded only holds its values
+        dictionarySizeAfterCompaction = loaded.dictionary().size();
+        for (Mutation.EntityType entityType : Mutation.EntityType.values()) {
+            eventPublisher.publishEvent(new DataReloadedEvent(entityType));
+        }
+    }
+
+    /**
+     * Applies a change to a copy of the persons and commits it.
+     *
+     * @param change The change, returning the mutation it applied or null if it changed nothing.
+     * @return True if a mutation was committed, false otherwise.
+     * @throws IOException If an error occurs while logging the mutation; the change is then discarded
+     *                     unless it was already published when syncing it to disk failed.
+     */
+    boolean writePersons(Function<PersonTable, Mutation> change) throws IOException {
+        long sequence;
+        synchronized (this) {
+            PersonTable persons = snapshot.persons().copy();
+            sequence = commit(change.apply(persons), () -> snapshot.withPersons(persons));
+        }
+        return awaitDurable(sequence);
+    }
+
+    /**
+     * Applies a change to a copy of the firestations and commits it.
+     *
+     * @param change The change, returning the mutation it applied or null if it changed nothing.
+     * @return True if a mutation was committed, false otherwise.
+     * @throws IOException If an error occurs while logging the mutation; the change is then discarded
+     *                     unless it was already published when syncing it to disk failed.
+     */
+    boolean writeFirestations(Function<FirestationTable, Mutation> change) throws IOException {
+        long sequence;
+        synchronized (this) {
+            FirestationTable firestations = snapshot.firestations().copy();
+            sequence = commit(change.apply(firestations), () -> snapshot.withFirestations(firestations));
+        }
+        return awaitDurable(sequence);
+    }
+
+    /**
+     * Applies a change to a copy of the medical records and commits it.
+     *
+     * @param change The change, returning the mutation it applied or null if it changed nothing.
+     * @return True if a mutation was committed, false otherwise.
+     * @throws IOException If an error occurs while logging the mutation; the change is then discarded
+     *                     unless it was already published when syncing it to disk failed.
+     */
+    boolean writeMedicalRecords(Function<MedicalRecordTable, Mutation> change) throws IOException {
+        long sequence;
+        synchronized (this) {
+            MedicalRecordTable medicalRecords = snapshot.medicalRecords().copy();
+            sequence = commit(change.apply(medicalRecords), () -> snapshot.withMedicalRecords(medicalRecords));
+        }
+        return awaitDurable(sequence);
+    }
+
+    /**
+     * Applies data read from a file to the store, as the mutations turning the current data into it.
+     * All the mutations are published in a single snapshot, so readers see either the previous
+     * data or the reloaded one; listeners receive each mutation, as for any other write, instead of
+     * rebuilding everything. Unlike {@link #load(DataSnapshot)}, the entities that did not change
+     * keep their ID and are not copied.
+     * <p>
+     * The mutations are logged like any other write, and a compaction is requested so that they
+     * are soon merged into a new snapshot: they only apply to the IDs of the live data, which the
+     * file read may not contain.
+     *
+     * @param incoming The data read from the file, not published. Its entities may be given the ID
+     *                 of the live entity they match.
+     * @return The number of mutations applied.
+     * @throws IOException If an error occurs while logging the mutations; the reload is then discarded,
+     *                     although the mutations logged before the error are replayed at startup.
+     */
+    int reload(DataSnapshot incoming) throws IOException {
+        List<Mutation> mutations;
+        long sequence = NOTHING_COMMITTED;
+        synchronized (this) {
+            mutations = SnapshotDiff.diff(snapshot, incoming);
+            if (!mutations.isEmpty()) {
+                // Only the tables touched by the mutations are copied; the others are shared
+                PersonTable persons = touches(mutations, Mutation.EntityType.PERSON)
+                    ? snapshot.persons().copy() : snapshot.persons();
+                FirestationTable firestations = touches(mutations, Mutation.EntityType.FIRESTATION)
+                    ? snapshot.firestations().copy() : snapshot.firestations();
+                MedicalRecordTable medicalRecords = touches(mutations, Mutation.EntityType.MEDICAL_RECORD)
+                    ? snapshot.medicalRecords().copy() : snapshot.medicalRecords();
+                DataSnapshot next = new DataSnapshot(snapshot.version() + 1, persons, firestations, medicalRecords,
+                    snapshot.dictionary());
+                for (Mutation mutation : mutations) {
+                    MutationLog.apply(next, mutation);
+                }
+
+                // Logged before visible, as for a single mutation
+                for (Mutation mutation : mutations) {
+                    sequence = storage.log(mutation);
+                }
+                snapshot = next;
+                mutations.forEach(eventPublisher::publishEvent);
+                logger.info("Reloaded {} mutations as version {}", mutations.size(), snapshot.version());
+                compactDictionaryIfDue();
+
+                storage.requestCompaction();
+                storage.compactIfDue(snapshot);
+            }
+        }
+        awaitDurable(sequence);
+        return mutations.size();
+    }
+
+    private static boolean touches(List<Mutation> mutations, Mutation.EntityType entityType) {
+        return mutations.stream().anyMatch(mutation -> mutation.getEntityType() == entityType);
+    }
+
+    /**
+     * Logs a mutation, then publishes the snapshot containing it and the mutation event.
+     * Starts compacting the mutation log into a new data file when it is due.
+     *
+     * @return The sequence number of the logged mutation, or {@link #NOTHING_COMMITTED}.
+     */
+    private long commit(Mutation mutation, Supplier<DataSnapshot> next) throws IOException {
+        if (mutation == null) {
+            return NOTHING_COMMITTED;
+        }
+
+        // Logged before visible: a mutation that could not be logged is never published
+        long sequence = storage.log(mutation);
+        snapshot = next.get();
+        eventPublisher.publishEvent(mutation);
+        logger.debug("Committed {} {} {} as version {}", mutation.getOperation(), mutation.getEntityType(),
+            mutation.getId(), snapshot.version());
+
+        compactDictionaryIfDue();
+        storage.compactIfDue(snapshot);
+        return sequence;
+    }
+
+    /**
+     * Compacts the string dictionary of the data once it holds twice as many values as after the last
+     * compaction, e.g. the addresses and names of entities since deleted or modified: the data is
+     * published again, unchanged, with a dictionary holding only its values.
+     */
+    private void compactDictionaryIfDue() {
+        int size = snapshot.dictionary().size();
+        if (size >= Math.max(MIN_DICTIONARY_SIZE_BEFORE_COMPACTION, 2 * dictionarySizeAfterCompaction)) {
+            StringDictionary compacted = StringDictionary.compacted(snapshot);
+            snapshot = snapshot.withDictionary(compacted);
+            dictionarySizeAfterCompaction = compacted.size();
+            logger.debug("Compacted string dictionary from {} to {} values", size, dictionarySizeAfterCompaction);
+        }
+    }
+
+    private boolean awaitDurable(long sequence) throws IOException {
+        if (sequence == NOTHING_COMMITTED) {
+            return false;
+        }
+        storage.awaitDurable(sequence);
+        return true;
+    }
+}
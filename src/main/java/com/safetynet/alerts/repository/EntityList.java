@@ -0,0 +1,70 @@
+package com.safetynet.alerts.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Entities of a table, retrieved and modified by UUID.
+ * Implementations are not thread-safe: the {@link DataStore} only modifies copies that have not
+ * been published yet.
+ *
+ * @param <T> The type of entity stored.
+ */
+interface EntityList<T> {
+
+    /**
+     * Retrieves an entity by its ID.
+     *
+     * @param id The UUID of the entity.
+     * @return The entity if found, null otherwise.
+     */
+    T get(UUID id);
+
+    /**
+     * Retrieves every entity.
+     *
+     * @return An unmodifiable list of the entities.
+     */
+    List<T> all();
+
+    /**
+     * Retrieves the number of entities.
+     *
+     * @return The number of entities.
+     */
+    int size();
+
+    /**
+     * Adds an entity.
+     *
+     * @param entity The entity to add.
+     */
+    void add(T entity);
+
+    /**
+     * Replaces the entity having the same ID as the given one, or adds it if there is none.
+     *
+     * @param entity The entity to store.
+     */
+    default void put(T entity) {
+        if (replace(entity) == null) {
+            add(entity);
+        }
+    }
+
+    /**
+     * Replaces the entity having the same ID as the given one.
+     *
+     * @param entity The new version of the entity.
+     * @return The replaced entity, or null if no entity has this ID.
+     */
+    T replace(T entity);
+
+    /**
+     * Removes an entity by its ID.
+     *
+     * @param id The UUID of the entity to remove.
+     * @return The removed entity, or null if no entity has this ID.
+     */
+    T remove(UUID id);
+}
@@ -1,19 +1,23 @@
 package com.safetynet.alerts.repository;
 
 import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
-import static com.safetynet.alerts.model.Data.firestations;
-import static com.safetynet.alerts.repository.JsonFileUtil.saveData;
-
 /**
  * Repository for managing Firestation data.
  * Handles CRUD operations and data queries for firestations.
@@ -23,6 +27,12 @@ public class FirestationRepository {
 
     private static final Logger logger = LogManager.getLogger(FirestationRepository.class);
 
+    private final DataStore dataStore;
+
+    public FirestationRepository(DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
     /**
      * Retrieves all firestations.
      *
@@ -30,7 +40,7 @@ public class FirestationRepository {
      */
     public List<Firestation> findAll() {
         logger.info("Retrieving all firestations.");
-        return firestations;
+        return dataStore.snapshot().firestations().byId().all();
     }
 
     /**
@@ -41,10 +51,7 @@ public class FirestationRepository {
      */
     public Firestation findById(UUID firestationId) {
         logger.info("Searching for firestation with ID: {}", firestationId);
-        Firestation firestation = firestations.stream()
-            .filter(f -> f.getId().equals(firestationId))
-            .findFirst()
-            .orElse(null);
+        Firestation firestation = dataStore.snapshot().firestations().byId().get(firestationId);
         if (firestation != null) {
             logger.info("Firestation found: {}", firestation);
         } else {
@@ -57,12 +64,14 @@ public class FirestationRepository {
      * Adds a new firestation.
      *
      * @param firestation The firestation to add.
-     * @throws IOException if an error occurs while saving data.
+     * @throws IOException if an error occurs while logging the mutation.
      */
     public void addFirestation(Firestation firestation) throws IOException {
         logger.info("Adding firestation: {}", firestation);
-        firestations.add(firestation);
-        saveData();
+        dataStore.writeFirestations(firestations -> {
+            firestations.byId().add(firestation);
+            return Mutation.add(firestation);
+        });
         logger.info("Firestation added successfully.");
     }
 
@@ -70,14 +79,13 @@ public class FirestationRepository {
      * Updates an existing firestation.
      *
      * @param firestation The firestation to update.
-     * @throws IOException if an error occurs while saving data.
+     * @throws IOException if an error occurs while logging the mutation.
      */
     public void updateFirestation(Firestation firestation) throws IOException {
         logger.info("Updating firestation: {}", firestation);
-        Firestation existingFirestation = this.findById(firestation.getId());
-        if (existingFirestation != null) {
-            firestations.set(firestations.indexOf(existingFirestation), firestation);
-            saveData();
+        boolean updated = dataStore.writeFirestations(
+            firestations -> firestations.byId().replace(firestation) != null ? Mutation.update(firestation) : null);
+        if (updated) {
             logger.info("Firestation updated successfully: {}", firestation);
         } else {
             logger.error("No firestation found for update with ID: {}", firestation.getId());
@@ -89,14 +97,13 @@ public class FirestationRepository {
      *
      * @param firestationId The UUID of the firestation.
      * @return True if the firestation was deleted, false otherwise.
-     * @throws IOException if an error occurs while saving data.
+     * @throws IOException if an error occurs while logging the mutation.
      */
     public boolean deleteFirestation(UUID firestationId) throws IOException {
         logger.info("Deleting firestation with ID: {}", firestationId);
-        Firestation firestationToDelete = this.findById(firestationId);
-        if (firestationToDelete != null) {
-            firestations.remove(firestationToDelete);
-            saveData();
+        boolean deleted = dataStore.writeFirestations(firestations -> firestations.byId().remove(firestationId) != null
+            ? Mutation.delete(Mutation.EntityType.FIRESTATION, firestationId) : null);
+        if (deleted) {
             logger.info("Firestation deleted successfully: {}", firestationId);
             return true;
         }
@@ -112,9 +119,7 @@ public class FirestationRepository {
      */
     public List<Firestation> findByStation(int stationNumber) {
         logger.info("Searching for firestations with station number: {}", stationNumber);
-        List<Firestation> result = firestations.stream()
-            .filter(f -> f.getStation() == stationNumber)
-            .toList();
+        List<Firestation> result = dataStore.snapshot().firestations().byStation().get(stationNumber);
         logger.info("Found {} firestations with station number: {}", result.size(), stationNumber);
         return result;
     }
@@ -127,9 +132,9 @@ public class FirestationRepository {
      */
     public Optional<Firestation> findByAddress(String address) {
         logger.info("Searching for firestation with address: {}", address);
-        Optional<Firestation> firestation = firestations.stream()
-            .filter(f -> f.getAddress().equals(address))
-            .findFirst();
+        DataSnapshot snapshot = dataStore.snapshot();
+        Optional<Firestation> firestation = Optional.ofNullable(snapshot.firestations().byAddress()
+            .first(snapshot.dictionary().key(address)));
         if (firestation.isPresent()) {
             logger.info("Firestation found with address: {}", address);
         } else {
@@ -146,10 +151,96 @@ public class FirestationRepository {
      */
     public List<Firestation> findByStations(Set<Integer> stationNumbers) {
         logger.info("Searching for firestations with station numbers: {}", stationNumbers);
-        List<Firestation> result = firestations.stream()
-            .filter(f -> stationNumbers.contains(f.getStation()))
-            .toList();
+        List<Firestation> result = dataStore.snapshot().firestations().byStation().getAll(stationNumbers);
         logger.info("Found {} firestations matching station numbers: {}", result.size(), stationNumbers);
         return result;
     }
+
+    /**
+     * Retrieves the persons living at the addresses covered by a set of stations, with their
+     * medical records, in a single pass over the indexes of one snapshot.
+     *
+     * @param stationNumbers The set of station numbers.
+     * @return The residents, grouped by address; addresses without residents are left out.
+     */
+    public Map<String, List<Resident>> findHouseholdsByStations(Set<Integer> stationNumbers) {
+        logger.info("Searching for households covered by station numbers: {}", stationNumbers);
+        DataSnapshot snapshot = dataStore.snapshot();
+        Set<String> addresses = new LinkedHashSet<>();
+        for (Firestation firestation : snapshot.firestations().byStation().getAll(stationNumbers)) {
+            addresses.add(firestation.getAddress());
+        }
+
+        Map<String, List<Resident>> households = new LinkedHashMap<>();
+        for (String address : addresses) {
+            List<Resident> residents = new ArrayList<>();
+            for (Person person : snapshot.persons().byAddress().get(address)) {
+                MedicalRecord medicalRecord = snapshot.medicalRecords().byName()
+                    .first(new MedicalRecordTable.PersonName(person.getFirstName(), person.getLastName()));
+                residents.add(new Resident(person, medicalRecord));
+            }
+            if (!residents.isEmpty()) {
+                households.put(address, residents);
+            }
+        }
+        logger.info("Found {} households covered by station numbers: {}", households.size(), stationNumbers);
+        return households;
+    }
+
+    /**
+     * Retrieves the residents covered by stations or living at an address whose medical record lists
+     * an allergy and/or a medication. The records listing the terms and those of the covered residents
+     * are intersected as bitmaps, so the records of the residents outside the coverage are never read.
+     *
+     * @param stationNumbers The station numbers covering the residents searched, may be empty.
+     * @param address        An address of the residents searched, or null.
+     * @param allergy        The allergy the residents must have, or null.
+     * @param medication     The medication the residents must take, or null.
+     * @return The matching residents, grouped by address.
+     */
+    public Map<String, List<Resident>> findResidentsWithMedicalTerms(Set<Integer> stationNumbers, String address,
+                                                                     String allergy, String medication) {
+        logger.info("Searching for residents covered by stations {} or at address {} with allergy {} and medication {}",
+            stationNumbers, address, allergy, medication);
+        DataSnapshot snapshot = dataStore.snapshot();
+        TermIndex byTerm = snapshot.medicalRecords().byTerm();
+
+        Set<String> addresses = new LinkedHashSet<>();
+        for (Firestation firestation : snapshot.firestations().byStation().getAll(stationNumbers)) {
+            addresses.add(firestation.getAddress());
+        }
+        if (address != null) {
+            addresses.add(snapshot.dictionary().key(address));
+        }
+
+        // Ordinals of the medical records of the covered residents, and the residents of each record
+        RoaringBitmap matching = new RoaringBitmap();
+        Map<Integer, List<Person>> residentsByOrdinal = new HashMap<>();
+        for (Person person : snapshot.persons().byAddress().getAll(addresses)) {
+            MedicalRecord medicalRecord = snapshot.medicalRecords().byName()
+                .first(new MedicalRecordTable.PersonName(person.getFirstName(), person.getLastName()));
+            if (medicalRecord != null) {
+                int ordinal = byTerm.ordinalOf(medicalRecord.getId());
+                matching.add(ordinal);
+                residentsByOrdinal.computeIfAbsent(ordinal, o -> new ArrayList<>()).add(person);
+            }
+        }
+        if (allergy != null) {
+            matching = matching.and(byTerm.withAllergy(allergy));
+        }
+        if (medication != null) {
+            matching = matching.and(byTerm.withMedication(medication));
+        }
+
+        Map<String, List<Resident>> residents = new LinkedHashMap<>();
+        matching.forEach(ordinal -> {
+            MedicalRecord medicalRecord = byTerm.recordAt(ordinal);
+            for (Person person : residentsByOrdinal.get(ordinal)) {
+                residents.computeIfAbsent(person.getAddress(), a -> new ArrayList<>())
+                    .add(new Resident(person, medicalRecord));
+            }
+        });
+        logger.info("Found residents matching the medical terms at {} addresses", residents.size());
+        return residents;
+    }
 }
@@ -0,0 +1,76 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Firestation;
+
+import java.util.List;
+
+/**
+ * Firestations of a {@link DataSnapshot}, indexed by ID, station number and address.
+ * A table is only modified before being published by the {@link DataStore}; writers modify a copy.
+ */
+final class FirestationTable {
+
+    private final IntKeyIndex<Firestation> byStation;
+    private final KeyIndex<String, Firestation> byAddress;
+    private final IndexedList<Firestation> byId;
+    private final StringDictionary dictionary;
+
+    FirestationTable(List<Firestation> firestations, StringDictionary dictionary) {
+        this.dictionary = dictionary;
+        byStation = new IntKeyIndex<>(Firestation::getStation, Firestation::getId);
+        byAddress = new KeyIndex<>(Firestation::getAddress, Firestation::getId);
+        byId = new IndexedList<>(Firestation::getId, this::canonicalize, byStation, byAddress);
+        firestations.forEach(byId::put);
+    }
+
+    private FirestationTable(FirestationTable source, StringDictionary dictionary) {
+        this.dictionary = dictionary;
+        byStation = source.byStation.copy();
+        byAddress = source.byAddress.copy();
+        byId = source.byId.copy(this::canonicalize, byStation, byAddress);
+    }
+
+    FirestationTable copy() {
+        return new FirestationTable(this, dictionary);
+    }
+
+    /**
+     * Copies the table, canonicalizing the firestations stored from now on with another dictionary.
+     *
+     * @param dictionary The dictionary.
+     * @return The copy.
+     */
+    FirestationTable withDictionary(StringDictionary dictionary) {
+        return new FirestationTable(this, dictionary);
+    }
+
+    IndexedList<Firestation> byId() {
+        return byId;
+    }
+
+    IntKeyIndex<Firestation> byStation() {
+        return byStation;
+    }
+
+    KeyIndex<String, Firestation> byAddress() {
+        return byAddress;
+    }
+
+    /**
+     * Adds the addresses of the firestations to a dictionary.
+     *
+     * @param dictionary The dictionary.
+     */
+    void addStrings(StringDictionary dictionary) {
+        for (Firestation firestation : byId.all()) {
+            dictionary.canonical(firestation.getAddress());
+        }
+    }
+
+    /**
+     * Replaces the address of a firestation by its canonical instance.
+     */
+    private void canonicalize(Firestation firestation) {
+        firestation.setAddress(dictionary.canonical(firestation.getAddress()));
+    }
+}
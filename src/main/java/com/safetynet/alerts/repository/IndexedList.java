@@ -0,0 +1,165 @@
+package com.safetynet.alerts.repository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * List of entities indexed by UUID.
+ * Keeps the position of every entity in the list so that lookups, replacements and removals
+ * by ID don't need to scan it, and keeps the given secondary indexes in sync with those
+ * changes. Each entity stored can first go through a canonicalizer, replacing its repeated
+ * values by shared instances (see {@link StringDictionary}). A copy shares the entities and positions
+ * of the list it was copied from, and only copies the parts it modifies (see {@link SharedList} and
+ * {@link SharedMap}). Instances are not thread-safe: the {@link DataStore} only modifies copies that
+ * have not been published yet.
+ *
+ * @param <T> The type of entity stored in the list.
+ */
+class IndexedList<T> implements EntityList<T> {
+
+    private final Function<T, UUID> idOf;
+    private final Consumer<T> canonicalizer;
+    private final List<SecondaryIndex<T>> secondaryIndexes;
+    private final SharedMap<UUID, Integer> positions;
+    private final SharedList<T> entities;
+
+    @SafeVarargs
+    IndexedList(Function<T, UUID> idOf, SecondaryIndex<T>... secondaryIndexes) {
+        this(idOf, entity -> {}, secondaryIndexes);
+    }
+
+    @SafeVarargs
+    IndexedList(Function<T, UUID> idOf, Consumer<T> canonicalizer, SecondaryIndex<T>... secondaryIndexes) {
+        this.idOf = idOf;
+        this.canonicalizer = canonicalizer;
+        this.secondaryIndexes = List.of(secondaryIndexes);
+        this.positions = new SharedMap<>();
+        this.entities = new SharedList<>();
+    }
+
+    private IndexedList(IndexedList<T> source, Consumer<T> canonicalizer, List<SecondaryIndex<T>> secondaryIndexes) {
+        this.idOf = source.idOf;
+        this.canonicalizer = canonicalizer;
+        this.secondaryIndexes = secondaryIndexes;
+        this.positions = source.positions.copy();
+        this.entities = source.entities.copy();
+    }
+
+    /**
+     * Copies the list, bound to copies of its secondary indexes.
+     *
+     * @param secondaryIndexes The copies of the secondary indexes, in the order this list was created with.
+     * @return A copy of the list that can be modified without affecting this one.
+     */
+    @SafeVarargs
+    final IndexedList<T> copy(SecondaryIndex<T>... secondaryIndexes) {
+        return new IndexedList<>(this, canonicalizer, List.of(secondaryIndexes));
+    }
+
+    /**
+     * Copies the list, bound to copies of its secondary indexes and to another canonicalizer.
+     *
+     * @param canonicalizer    The canonicalizer of the entities stored in the copy.
+     * @param secondaryIndexes The copies of the secondary indexes, in the order this list was created with.
+     * @return A copy of the list that can be modified without affecting this one.
+     */
+    @SafeVarargs
+    final IndexedList<T> copy(Consumer<T> canonicalizer, SecondaryIndex<T>... secondaryIndexes) {
+        return new IndexedList<>(this, canonicalizer, List.of(secondaryIndexes));
+    }
+
+    /**
+     * Retrieves an entity by its ID.
+     *
+     * @param id The UUID of the entity.
+     * @return The entity if found, null otherwise.
+     */
+    @Override
+    public T get(UUID id) {
+        Integer position = positions.get(id);
+        return position != null ? entities.get(position) : null;
+    }
+
+    /**
+     * Retrieves every entity of the list.
+     *
+     * @return An unmodifiable view of the entities.
+     */
+    @Override
+    public List<T> all() {
+        return Collections.unmodifiableList(entities);
+    }
+
+    /**
+     * Retrieves the number of entities in the list.
+     *
+     * @return The number of entities.
+     */
+    @Override
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * Appends an entity to the list.
+     *
+     * @param entity The entity to add.
+     */
+    @Override
+    public void add(T entity) {
+        canonicalizer.accept(entity);
+        positions.put(idOf.apply(entity), entities.size());
+        entities.add(entity);
+        secondaryIndexes.forEach(index -> index.add(entity));
+    }
+
+    /**
+     * Replaces the entity having the same ID as the given one.
+     *
+     * @param entity The new version of the entity.
+     * @return The replaced entity, or null if no entity has this ID.
+     */
+    @Override
+    public T replace(T entity) {
+        Integer position = positions.get(idOf.apply(entity));
+        if (position == null) {
+            return null;
+        }
+        canonicalizer.accept(entity);
+        T previous = entities.set(position, entity);
+        secondaryIndexes.forEach(index -> {
+            index.remove(previous);
+            index.add(entity);
+        });
+        return previous;
+    }
+
+    /**
+     * Removes an entity by its ID.
+     * The last entity of the list is moved into the freed slot, so the list order is not preserved.
+     *
+     * @param id The UUID of the entity to remove.
+     * @return The removed entity, or null if no entity has this ID.
+     */
+    @Override
+    public T remove(UUID id) {
+        Integer position = positions.remove(id);
+        if (position == null) {
+            return null;
+        }
+
+        T removed = entities.get(position);
+        int lastPosition = entities.size() - 1;
+        if (position != lastPosition) {
+            T last = entities.get(lastPosition);
+            entities.set(position, last);
+            positions.put(idOf.apply(last), position);
+        }
+        entities.removeLast();
+        secondaryIndexes.forEach(index -> index.remove(removed));
+        return removed;
+    }
+}
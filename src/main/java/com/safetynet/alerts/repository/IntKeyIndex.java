@@ -0,0 +1,167 @@
+package com.safetynet.alerts.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Secondary index grouping entities by an int key (e.g. firestations by station number).
+ * Groups are stored in an open-addressing table keyed by the primitive value, so lookups
+ * don't box the key. As in {@link KeyIndex}, the key under which each entity was indexed is
+ * remembered so that entities modified in place are removed from their previous group.
+ * A copy shares the groups of the index it was copied from, and only copies those it modifies.
+ *
+ * @param <T> The type of entity indexed.
+ */
+class IntKeyIndex<T> implements SecondaryIndex<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ToIntFunction<T> keyOf;
+    private final Function<T, UUID> idOf;
+    private final SharedMap<UUID, Integer> keysById;
+    private final Set<Map<UUID, T>> ownedGroups = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private Map<UUID, T>[] groups = newGroups(INITIAL_CAPACITY);
+    private int groupCount;
+
+    IntKeyIndex(ToIntFunction<T> keyOf, Function<T, UUID> idOf) {
+        this.keyOf = keyOf;
+        this.idOf = idOf;
+        keysById = new SharedMap<>();
+    }
+
+    private IntKeyIndex(IntKeyIndex<T> source) {
+        keyOf = source.keyOf;
+        idOf = source.idOf;
+        keysById = source.keysById.copy();
+        keys = source.keys.clone();
+        groups = source.groups.clone();
+        groupCount = source.groupCount;
+        // The source must not modify the groups in place either, since they are now shared
+        source.ownedGroups.clear();
+    }
+
+    /**
+     * Copies the index.
+     *
+     * @return A copy of the index that can be modified without affecting this one.
+     */
+    IntKeyIndex<T> copy() {
+        return new IntKeyIndex<>(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Map<UUID, T>[] newGroups(int capacity) {
+        return new Map[capacity];
+    }
+
+    /**
+     * Finds the slot holding the given key, or the empty slot where it would be inserted.
+     */
+    private int slotOf(int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (groups[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Map<UUID, T>[] oldGroups = groups;
+        keys = new int[oldKeys.length * 2];
+        groups = newGroups(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldGroups[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                groups[slot] = oldGroups[i];
+            }
+        }
+    }
+
+    @Override
+    public void add(T entity) {
+        int key = keyOf.applyAsInt(entity);
+        UUID id = idOf.apply(entity);
+        keysById.put(id, key);
+
+        int slot = slotOf(key);
+        if (groups[slot] == null) {
+            keys[slot] = key;
+            groups[slot] = new LinkedHashMap<>();
+            ownedGroups.add(groups[slot]);
+            if (++groupCount * 2 > keys.length) {
+                grow();
+                slot = slotOf(key);
+            }
+        }
+        writableGroup(slot).put(id, entity);
+    }
+
+    @Override
+    public void remove(T entity) {
+        UUID id = idOf.apply(entity);
+        Integer key = keysById.remove(id);
+        if (key != null) {
+            // Emptied groups are kept in the table: the set of keys (station numbers) is small and stable
+            int slot = slotOf(key);
+            if (groups[slot] != null) {
+                writableGroup(slot).remove(id);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the group of a slot that can be modified in place, copying it if needed.
+     */
+    private Map<UUID, T> writableGroup(int slot) {
+        Map<UUID, T> group = groups[slot];
+        if (!ownedGroups.contains(group)) {
+            // Shared with the index this one was copied from
+            group = new LinkedHashMap<>(group);
+            ownedGroups.add(group);
+            groups[slot] = group;
+        }
+        return group;
+    }
+
+    /**
+     * Retrieves the entities indexed under a key.
+     *
+     * @param key The key to look up.
+     * @return A list of the entities indexed under the key, empty if there are none.
+     */
+    List<T> get(int key) {
+        Map<UUID, T> group = groups[slotOf(key)];
+        return group != null ? new ArrayList<>(group.values()) : List.of();
+    }
+
+    /**
+     * Retrieves the entities indexed under any of the given keys.
+     *
+     * @param lookupKeys The keys to look up.
+     * @return A list of the entities indexed under the keys.
+     */
+    List<T> getAll(Iterable<Integer> lookupKeys) {
+        List<T> result = new ArrayList<>();
+        for (int key : lookupKeys) {
+            Map<UUID, T> group = groups[slotOf(key)];
+            if (group != null) {
+                result.addAll(group.values());
+            }
+        }
+        return result;
+    }
+}
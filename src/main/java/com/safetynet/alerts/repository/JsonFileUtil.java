@@ -1,46 +1,331 @@
 package com.safetynet.alerts.repository;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.safetynet.alerts.model.Data;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-
-import static com.safetynet.alerts.repository.DataLoader.DATA_FILE;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 /**
  * Utility class for saving data to a JSON file.
- * This class handles serialization of application data into a JSON file format.
+ * This class handles serialization of application data into a JSON file format, or into the
+ * {@link BinarySnapshot binary} format when configured.
+ * <p>
+ * A snapshot is never written over the current data file: it is written to a temporary file,
+ * synced to disk, then renamed over the data file, which is kept as a backup. The CRC-32C checksum
+ * of a JSON snapshot is written to a checksum file next to it (data.json.crc32c), so that data.json
+ * stays strict JSON for other consumers; it is verified by {@link DataLoader} on load. Binary
+ * snapshots end with their own checksum.
+ * <p>
+ * A crash between two renames may leave a snapshot without its checksum file, the checksum file
+ * being still under its temporary name or next to the other snapshot: it is then recovered from
+ * there on load, as long as the checksum it holds matches the content of the snapshot.
+ * <p>
+ * Each snapshot also records the sequence number of the last logged mutation it contains (in the
+ * checksum file of a JSON snapshot, in the header of a binary one), so that the {@link MutationLog}
+ * is only ever replayed onto the snapshot it follows.
  */
 public class JsonFileUtil {
 
+    static final String CHECKSUM_SUFFIX = ".crc32c";
+
     private static final Logger logger = LogManager.getLogger(JsonFileUtil.class);
 
+    // Checksum of the last JSON snapshot written, to tell it apart from files changed by others
+    private static volatile long lastWrittenChecksum = -1;
+
     /**
-     * Saves the current state of data (persons, firestations, medical records) into a JSON file.
+     * Saves a snapshot of the data (persons, firestations, medical records) into the data file
+     * of the given format. A crash at any point leaves either the new snapshot or the previous
+     * one in place.
      *
+     * @param snapshot The data to save.
+     * @param format   The format of the snapshot.
+     * @param sequence The sequence number of the last logged mutation the data contains.
      * @throws IOException If an error occurs while writing to the file.
      */
-    public static void saveData() throws IOException {
-        logger.info("Starting the process of saving data to file: {}", DATA_FILE);
+    static void saveData(DataSnapshot snapshot, SnapshotFormat format, long sequence) throws IOException {
+        logger.info("Starting the process of saving data version {} to file: {}", snapshot.version(), format.getFile());
 
+        Path dataFile = Path.of(format.getFile());
+        Path tempFile = Path.of(format.getTempFile());
+        Long checksum = null;
+        try {
+            // Write data to a temporary file, and make it durable before it replaces the data file
+            try (FileOutputStream fileStream = new FileOutputStream(tempFile.toFile())) {
+                BufferedOutputStream bufferedStream = new BufferedOutputStream(fileStream);
+                switch (format) {
+                    case JSON -> checksum = writeJson(snapshot, bufferedStream);
+                    case BINARY -> BinarySnapshot.write(snapshot, sequence, bufferedStream);
+                }
+                bufferedStream.flush();
+                fileStream.getFD().sync();
+            }
+
+            // Renamed under the lock also held to adopt a hand-edited file, see adoptChecksum
+            synchronized (JsonFileUtil.class) {
+                Path backupFile = Path.of(format.getBackupFile());
+                // Written under a temporary name first, renamed only once the snapshot is in place
+                Path pendingChecksumFile = checksum != null ? writePendingChecksum(dataFile, checksum, sequence) : null;
+                if (Files.exists(dataFile)) {
+                    move(dataFile, backupFile);
+                    // The checksum of the previous snapshot follows it to the backup, if it had one
+                    if (Files.exists(checksumFile(dataFile))) {
+                        move(checksumFile(dataFile), checksumFile(backupFile));
+                    } else {
+                        Files.deleteIfExists(checksumFile(backupFile));
+                    }
+                }
+                move(tempFile, dataFile);
+                if (pendingChecksumFile != null) {
+                    move(pendingChecksumFile, checksumFile(dataFile));
+                    lastWrittenChecksum = checksum;
+                } else {
+                    Files.deleteIfExists(checksumFile(dataFile));
+                }
+                syncDirectory(dataFile.toAbsolutePath().getParent());
+            }
+            logger.info("Data successfully saved to file: {}", format.getFile());
+        } catch (IOException e) {
+            logger.error("Error while saving data to file: {}", format.getFile(), e);
+            throw e; // Re-throw the exception for handling at a higher level
+        }
+    }
+
+    /**
+     * Writes a snapshot as pretty-printed JSON.
+     *
+     * @param snapshot The data to write.
+     * @param out      The stream to write to, left open.
+     * @return The checksum of the bytes written.
+     * @throws IOException If an error occurs while writing.
+     */
+    private static long writeJson(DataSnapshot snapshot, OutputStream out) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
+        // The stream is closed by the caller, once synced to disk
+        mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 
-        // Create a Data object with current data in memory
+        // Create a Data object with the data of the snapshot
         Data data = new Data();
-        data.setPersons(Data.persons);
-        data.setFirestations(Data.firestations);
-        data.setMedicalrecords(Data.medicalrecords);
+        data.setPersons(snapshot.persons().byId().all());
+        data.setFirestations(snapshot.firestations().byId().all());
+        data.setMedicalrecords(snapshot.medicalRecords().byId().all());
+
+        CRC32C checksum = new CRC32C();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(new CheckedOutputStream(out, checksum), data);
+        return checksum.getValue();
+    }
+
+    /**
+     * Retrieves the checksum of the last JSON snapshot written by this application.
+     *
+     * @return The checksum, or -1 if no JSON snapshot was written yet.
+     */
+    static long lastWrittenChecksum() {
+        return lastWrittenChecksum;
+    }
+
+    /**
+     * Retrieves the checksum file of a JSON snapshot file, e.g. data.json.crc32c for data.json.
+     *
+     * @param file The snapshot file.
+     * @return The path of its checksum file.
+     */
+    static Path checksumFile(Path file) {
+        return file.resolveSibling(file.getFileName() + CHECKSUM_SUFFIX);
+    }
+
+    /**
+     * Writes the checksum file of a JSON snapshot file: a single line holding the CRC-32C checksum
+     * of the file in hexadecimal, then the sequence number of the last logged mutation the snapshot
+     * contains. The line is written to a temporary file first, then renamed.
+     *
+     * @param file     The snapshot file.
+     * @param checksum The CRC-32C checksum of the content of the file.
+     * @param sequence The sequence number of the last logged mutation the snapshot contains.
+     * @throws IOException If an error occurs while writing the checksum file.
+     */
+    static void writeChecksum(Path file, long checksum, long sequence) throws IOException {
+        move(writePendingChecksum(file, checksum, sequence), checksumFile(file));
+    }
+
+    /**
+     * Writes the checksum file of a JSON snapshot file under its temporary name, synced to disk,
+     * e.g. data.json.crc32c.tmp for data.json.
+     *
+     * @param file     The snapshot file.
+     * @param checksum The CRC-32C checksum of the content of the file.
+     * @param sequence The sequence number of the last logged mutation the snapshot contains.
+     * @return The path of the temporary checksum file.
+     * @throws IOException If an error occurs while writing the checksum file.
+     */
+    private static Path writePendingChecksum(Path file, long checksum, long sequence) throws IOException {
+        Path tempFile = pendingChecksumFile(file);
+        try (FileOutputStream out = new FileOutputStream(tempFile.toFile())) {
+            out.write(String.format("%08x %d%n", checksum, sequence).getBytes(StandardCharsets.US_ASCII));
+            out.getFD().sync();
+        }
+        return tempFile;
+    }
+
+    private static Path pendingChecksumFile(Path file) {
+        Path checksumFile = checksumFile(file);
+        return checksumFile.resolveSibling(checksumFile.getFileName() + ".tmp");
+    }
+
+    /**
+     * Computes the CRC-32C checksum of the content of a file.
+     *
+     * @param file The file.
+     * @return The checksum.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    static long checksumOf(Path file) throws IOException {
+        CRC32C checksum = new CRC32C();
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(file), checksum)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return checksum.getValue();
+    }
 
+    /**
+     * Rewrites the checksum file of a JSON snapshot file that was edited by hand, once its content
+     * has been applied, so that it is not rejected as corrupted at the next startup. Nothing is
+     * written if the file changed again in the meantime, e.g. if a snapshot was renamed over it.
+     * The edit was applied on top of every logged mutation, so the file keeps following the log
+     * from the same mutation: replaying the log again onto it gives back the same data.
+     *
+     * @param file     The snapshot file.
+     * @param checksum The checksum of the content that was applied.
+     * @throws IOException If an error occurs while reading the file or writing the checksum file.
+     */
+    static synchronized void adoptChecksum(Path file, long checksum) throws IOException {
+        if (Files.exists(file) && checksumOf(file) == checksum) {
+            writeChecksum(file, checksum, readSequence(file));
+        }
+    }
+
+    /**
+     * Reads the checksum of a JSON snapshot file from its checksum file.
+     *
+     * @param file The snapshot file.
+     * @return The checksum of the content, or null if there is no readable checksum file.
+     * @throws IOException If an error occurs while reading the checksum file.
+     */
+    static Long readChecksum(Path file) throws IOException {
+        String[] fields = readChecksumFile(file);
+        try {
+            return fields.length > 0 ? Long.parseLong(fields[0], 16) : null;
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring unreadable checksum file: {}", checksumFile(file));
+            return null;
+        }
+    }
+
+    /**
+     * Reads the sequence number of the last logged mutation a JSON snapshot file contains, from its
+     * checksum file.
+     *
+     * @param file The snapshot file.
+     * @return The sequence number, or {@link MutationLog#UNKNOWN_SEQUENCE} if the checksum file is
+     *         missing or does not record it.
+     * @throws IOException If an error occurs while reading the checksum file.
+     */
+    static long readSequence(Path file) throws IOException {
+        String[] fields = readChecksumFile(file);
         try {
-            // Write data to the JSON file
-            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(DATA_FILE), data);
-            logger.info("Data successfully saved to file: {}", DATA_FILE);
+            return fields.length > 1 ? Long.parseLong(fields[1]) : MutationLog.UNKNOWN_SEQUENCE;
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring unreadable sequence number in checksum file: {}", checksumFile(file));
+            return MutationLog.UNKNOWN_SEQUENCE;
+        }
+    }
+
+    private static String[] readChecksumFile(Path file) throws IOException {
+        Path checksumFile = checksumFile(file);
+        if (!Files.exists(checksumFile)) {
+            return recoverChecksumFile(file);
+        }
+        return parseChecksumFile(checksumFile);
+    }
+
+    /**
+     * Recovers the checksum file of a JSON snapshot file left without one by a crash while saving:
+     * the checksum file is then either still under its temporary name, or, for a snapshot that was
+     * just moved to the backup, still next to the data file. A candidate is only taken if the
+     * checksum it holds matches the content of the snapshot; it is then written next to it.
+     *
+     * @param file The snapshot file.
+     * @return The fields of the recovered checksum file, or none if there is no matching one.
+     * @throws IOException If an error occurs while reading the files or writing the checksum file.
+     */
+    private static synchronized String[] recoverChecksumFile(Path file) throws IOException {
+        // Checked again under the lock held while saving: the snapshot may have been completed since
+        if (Files.exists(checksumFile(file)) || !Files.exists(file)) {
+            return Files.exists(file) ? parseChecksumFile(checksumFile(file)) : new String[0];
+        }
+        String name = file.getFileName().toString();
+        Path sibling = file.resolveSibling(name.endsWith(".bak")
+                ? name.substring(0, name.length() - ".bak".length())
+                : name + ".bak");
+        Long actual = null;
+        for (Path candidate : new Path[] {pendingChecksumFile(file), checksumFile(sibling)}) {
+            if (!Files.exists(candidate)) {
+                continue;
+            }
+            String[] fields = parseChecksumFile(candidate);
+            if (actual == null) {
+                actual = checksumOf(file);
+            }
+            if (fields.length > 1 && fields[1].matches("-?\\d+")
+                    && fields[0].equalsIgnoreCase(String.format("%08x", actual))) {
+                logger.warn("Recovering the checksum file of {} from {}", file, candidate);
+                writeChecksum(file, actual, Long.parseLong(fields[1]));
+                return fields;
+            }
+        }
+        return new String[0];
+    }
+
+    private static String[] parseChecksumFile(Path checksumFile) throws IOException {
+        String text = Files.readString(checksumFile, StandardCharsets.US_ASCII).trim();
+        return text.isEmpty() ? new String[0] : text.split("\\s+");
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.warn("Atomic move not supported from {} to {}, moving non-atomically", source, target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Syncs a directory, so that the renames done in it survive a crash.
+     * Not every platform supports it; the renames are then left to the file system.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
         } catch (IOException e) {
-            logger.error("Error while saving data to file: {}", DATA_FILE, e);
-            throw e; // Re-throw the exception for handling at a higher level
+            logger.debug("Could not sync directory {}", directory, e);
         }
     }
 }
@@ -0,0 +1,200 @@
+package com.safetynet.alerts.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Secondary index grouping entities by a key (e.g. persons by address).
+ * The key under which each entity was indexed is remembered, so an entity that was modified
+ * in place before being replaced is still removed from its previous group.
+ * <p>
+ * Each group lists its entities in the order they were added. A removed entity leaves an empty
+ * slot, so the others keep their position; the group is packed once the empty slots outnumber the
+ * entities. A copy shares the groups of the index it was copied from, and only copies those it
+ * modifies, themselves {@link SharedList sharing their chunks}.
+ *
+ * @param <K> The type of key.
+ * @param <T> The type of entity indexed.
+ */
+class KeyIndex<K, T> implements SecondaryIndex<T>, KeyLookup<K, T> {
+
+    /**
+     * Minimum number of empty slots in a group before it is packed.
+     */
+    private static final int MIN_EMPTY_SLOTS_BEFORE_PACKING = 8;
+
+    /**
+     * Where an entity is indexed: its key, and its position in the group of the key.
+     */
+    private record Slot<K>(K key, int position) {
+    }
+
+    /**
+     * Entities indexed under a key, with empty slots where entities were removed.
+     */
+    private static final class Group<T> {
+
+        private final SharedList<T> slots;
+        private int size;
+
+        Group(SharedList<T> slots, int size) {
+            this.slots = slots;
+            this.size = size;
+        }
+    }
+
+    private final Function<T, K> keyOf;
+    private final Function<T, UUID> idOf;
+    private final SharedMap<K, Group<T>> groupsByKey;
+    private final SharedMap<UUID, Slot<K>> slotsById;
+    private final Set<Group<T>> ownedGroups = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    KeyIndex(Function<T, K> keyOf, Function<T, UUID> idOf) {
+        this.keyOf = keyOf;
+        this.idOf = idOf;
+        groupsByKey = new SharedMap<>();
+        slotsById = new SharedMap<>();
+    }
+
+    private KeyIndex(KeyIndex<K, T> source) {
+        keyOf = source.keyOf;
+        idOf = source.idOf;
+        groupsByKey = source.groupsByKey.copy();
+        slotsById = source.slotsById.copy();
+        // The source must not modify the groups in place either, since they are now shared
+        source.ownedGroups.clear();
+    }
+
+    /**
+     * Copies the index.
+     *
+     * @return A copy of the index that can be modified without affecting this one.
+     */
+    KeyIndex<K, T> copy() {
+        return new KeyIndex<>(this);
+    }
+
+    @Override
+    public void add(T entity) {
+        K key = keyOf.apply(entity);
+        Group<T> group = writableGroup(key);
+        slotsById.put(idOf.apply(entity), new Slot<>(key, group.slots.size()));
+        group.slots.add(entity);
+        group.size++;
+    }
+
+    @Override
+    public void remove(T entity) {
+        Slot<K> slot = slotsById.remove(idOf.apply(entity));
+        if (slot == null) {
+            return;
+        }
+        Group<T> group = writableGroup(slot.key());
+        group.slots.set(slot.position(), null);
+        if (--group.size == 0) {
+            groupsByKey.remove(slot.key());
+        } else if (slot.position() == group.slots.size() - 1) {
+            group.slots.removeLast();
+        } else if (group.slots.size() - group.size > Math.max(MIN_EMPTY_SLOTS_BEFORE_PACKING, group.size)) {
+            pack(slot.key(), group);
+        }
+    }
+
+    /**
+     * Retrieves the group of a key that can be modified in place, creating or copying it if needed.
+     */
+    private Group<T> writableGroup(K key) {
+        Group<T> group = groupsByKey.get(key);
+        if (group == null || !ownedGroups.contains(group)) {
+            // Shared with the index this one was copied from
+            group = group != null ? new Group<>(group.slots.copy(), group.size) : new Group<>(new SharedList<>(), 0);
+            ownedGroups.add(group);
+            groupsByKey.put(key, group);
+        }
+        return group;
+    }
+
+    /**
+     * Moves the entities of a group into a new list without empty slots, keeping their order.
+     */
+    private void pack(K key, Group<T> group) {
+        Group<T> packed = new Group<>(new SharedList<>(), group.size);
+        for (T entity : group.slots) {
+            if (entity != null) {
+                slotsById.put(idOf.apply(entity), new Slot<>(key, packed.slots.size()));
+                packed.slots.add(entity);
+            }
+        }
+        ownedGroups.remove(group);
+        ownedGroups.add(packed);
+        groupsByKey.put(key, packed);
+    }
+
+    /**
+     * Retrieves the entities indexed under a key.
+     *
+     * @param key The key to look up.
+     * @return A list of the entities indexed under the key, empty if there are none.
+     */
+    @Override
+    public List<T> get(K key) {
+        Group<T> group = groupsByKey.get(key);
+        if (group == null) {
+            return List.of();
+        }
+        List<T> result = new ArrayList<>(group.size);
+        addAll(group, result);
+        return result;
+    }
+
+    /**
+     * Retrieves the first entity indexed under a key.
+     *
+     * @param key The key to look up.
+     * @return The first entity indexed under the key, or null if there is none.
+     */
+    @Override
+    public T first(K key) {
+        Group<T> group = groupsByKey.get(key);
+        if (group != null) {
+            for (T entity : group.slots) {
+                if (entity != null) {
+                    return entity;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the entities indexed under any of the given keys.
+     *
+     * @param keys The keys to look up.
+     * @return A list of the entities indexed under the keys.
+     */
+    @Override
+    public List<T> getAll(Collection<K> keys) {
+        List<T> result = new ArrayList<>();
+        for (K key : keys) {
+            Group<T> group = groupsByKey.get(key);
+            if (group != null) {
+                addAll(group, result);
+            }
+        }
+        return result;
+    }
+
+    private static <T> void addAll(Group<T> group, List<T> result) {
+        for (T entity : group.slots) {
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.safetynet.alerts.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Entities of a table retrieved by a key (e.g. persons by address).
+ *
+ * @param <K> The type of key.
+ * @param <T> The type of entity.
+ */
+interface KeyLookup<K, T> {
+
+    /**
+     * Retrieves the entities having a key.
+     *
+     * @param key The key to look up.
+     * @return A list of the entities having the key, empty if there are none.
+     */
+    List<T> get(K key);
+
+    /**
+     * Retrieves the first entity having a key.
+     *
+     * @param key The key to look up.
+     * @return The first entity having the key, or null if there is none.
+     */
+    T first(K key);
+
+    /**
+     * Retrieves the entities having any of the given keys.
+     *
+     * @param keys The keys to look up.
+     * @return A list of the entities having the keys.
+     */
+    List<T> getAll(Collection<K> keys);
+}
@@ -0,0 +1,382 @@
+package com.safetynet.alerts.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Storage engine persisting each entity as its own record in an embedded key-value file.
+ * The file is append-only: a mutation appends the new version of one entity, or a tombstone if
+ * it was deleted, instead of rewriting the whole data. The position of the latest record of each
+ * entity is kept in memory, to count the outdated records; once the file holds more of them than
+ * live ones, it is rewritten with the live entities only. The entities themselves are read once at
+ * startup and served from the snapshots of the {@link DataStore}, so the data must fit on heap as
+ * with the other engines.
+ * <p>
+ * Record layout: int payload length, int CRC-32C of the rest of the record, byte entity type,
+ * byte operation, long, long key, then the entity as JSON. A record that was not entirely
+ * written before a crash is detected by its checksum, and the file is truncated there.
+ * <p>
+ * Appends are made durable before the write is acknowledged; writers waiting at the same time
+ * share a single sync.
+ */
+@Component
+@ConditionalOnProperty(name = "data.storage.engine", havingValue = "kv")
+public class KeyValueStorage implements StorageEngine {
+
+    static final int MAGIC = 0x53_4E_4B_56; // "SNKV"
+    static final int FORMAT_VERSION = 1;
+    static final int COMPACTION_THRESHOLD = 1000;
+
+    private static final int HEADER_LENGTH = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_LENGTH = 2 * Integer.BYTES + 2 + 2 * Long.BYTES;
+    private static final byte PUT = 0;
+    private static final byte DELETE = 1;
+
+    private static final Logger logger = LogManager.getLogger(KeyValueStorage.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path file;
+    private final Object syncLock = new Object();
+    private final Map<Mutation.EntityType, Map<UUID, Long>> positions = new EnumMap<>(Mutation.EntityType.class);
+
+    private FileChannel channel;
+    private long end;
+    private long outdatedRecords;
+
+    // Sequence numbers of the last record appended, and of the last one synced to disk
+    private long written;
+    private volatile long synced;
+
+    @Autowired
+    public KeyValueStorage(@Value("${data.storage.kv-file:data.kv}") String file) {
+        this(Path.of(file));
+    }
+
+    KeyValueStorage(Path file) {
+        this.file = file;
+        for (Mutation.EntityType entityType : Mutation.EntityType.values()) {
+            positions.put(entityType, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Opens the key-value file and reads every live entity. If the file does not exist yet, the
+     * data is imported from the most recent JSON or binary snapshot, if any.
+     *
+     * @return The data, not published yet.
+     * @throws IOException If the file cannot be read, or the snapshot to import cannot be loaded.
+     */
+    @Override
+    public synchronized DataSnapshot load() throws IOException {
+        if (!Files.exists(file)) {
+            DataSnapshot imported = DataLoader.loadSnapshotIfAny();
+            rewrite(imported);
+            logger.info("Created key-value file {} with {} persons, {} firestations and {} medical records",
+                file, imported.persons().byId().size(), imported.firestations().byId().size(),
+                imported.medicalRecords().byId().size());
+            return imported;
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+
+        List<Person> persons = new ArrayList<>();
+        List<Firestation> firestations = new ArrayList<>();
+        List<MedicalRecord> medicalRecords = new ArrayList<>();
+        scan(Mutation.EntityType.PERSON, Person.class, persons::add);
+        scan(Mutation.EntityType.FIRESTATION, Firestation.class, firestations::add);
+        scan(Mutation.EntityType.MEDICAL_RECORD, MedicalRecord.class, medicalRecords::add);
+        logger.info("Loaded key-value file {} ({} bytes, {} outdated records)", file, end, outdatedRecords);
+        return DataSnapshot.of(persons, firestations, medicalRecords);
+    }
+
+    /**
+     * Reads the whole file to find the latest record of each entity, and truncates the file after
+     * the last complete record.
+     */
+    private void recover() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        if (channel.read(header, 0) != HEADER_LENGTH || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a key-value file: " + file);
+        }
+        if (header.getInt(Integer.BYTES) != FORMAT_VERSION) {
+            throw new IOException("Unsupported key-value file version: " + header.getInt(Integer.BYTES));
+        }
+
+        long position = HEADER_LENGTH;
+        long size = channel.size();
+        while (position < size) {
+            ByteBuffer record = readRecord(position, size);
+            if (record == null) {
+                logger.warn("Truncating incomplete record at position {} of key-value file {}", position, file);
+                channel.truncate(position);
+                channel.force(true);
+                break;
+            }
+            index(record, position);
+            position += record.limit();
+        }
+        end = position;
+    }
+
+    /**
+     * Reads the record starting at a position, checking its checksum.
+     *
+     * @return The record, or null if it was not entirely written.
+     */
+    private ByteBuffer readRecord(long position, long size) throws IOException {
+        if (size - position < RECORD_HEADER_LENGTH) {
+            return null;
+        }
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(lengthBuffer, position);
+        int payloadLength = lengthBuffer.getInt(0);
+        if (payloadLength < 0 || size - position - RECORD_HEADER_LENGTH < payloadLength) {
+            return null;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + payloadLength);
+        while (record.hasRemaining()) {
+            channel.read(record, position + record.position());
+        }
+        record.flip();
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(record.duplicate().position(2 * Integer.BYTES));
+        return (int) checksum.getValue() == record.getInt(Integer.BYTES) ? record : null;
+    }
+
+    private void index(ByteBuffer record, long position) {
+        Mutation.EntityType entityType = Mutation.EntityType.values()[record.get(2 * Integer.BYTES)];
+        byte operation = record.get(2 * Integer.BYTES + 1);
+        UUID id = new UUID(record.getLong(2 * Integer.BYTES + 2), record.getLong(2 * Integer.BYTES + 2 + Long.BYTES));
+
+        Map<UUID, Long> entityPositions = positions.get(entityType);
+        Long previous = operation == PUT ? entityPositions.put(id, position) : entityPositions.remove(id);
+        if (previous != null) {
+            outdatedRecords++;
+        }
+        if (operation == DELETE) {
+            outdatedRecords++;
+        }
+    }
+
+    /**
+     * Reads every live entity of a type from the file, in the order they were first written.
+     */
+    private <T> void scan(Mutation.EntityType entityType, Class<T> type, Consumer<T> consumer) throws IOException {
+        for (long position : positions.get(entityType).values()) {
+            consumer.accept(decode(position, type));
+        }
+    }
+
+    private <T> T decode(long position, Class<T> type) throws IOException {
+        ByteBuffer record = readRecord(position, end);
+        if (record == null) {
+            throw new IOException("Corrupted record at position " + position + " of key-value file " + file);
+        }
+        return mapper.readValue(record.array(), RECORD_HEADER_LENGTH, record.limit() - RECORD_HEADER_LENGTH, type);
+    }
+
+    /**
+     * Appends the record of a committed mutation to the file.
+     *
+     * @param mutation The mutation to persist.
+     * @return The sequence number of the mutation.
+     * @throws IOException If an error occurs while writing to the file.
+     */
+    @Override
+    public synchronized long log(Mutation mutation) throws IOException {
+        boolean delete = mutation.getOperation() == Mutation.Operation.DELETE;
+        byte[] payload = delete ? new byte[0] : mapper.writeValueAsBytes(mutation.getEntity());
+        ByteBuffer record = record(mutation.getEntityType(), delete ? DELETE : PUT, mutation.getId(), payload);
+
+        long position = end;
+        while (record.hasRemaining()) {
+            channel.write(record, position + record.position());
+        }
+        end += record.limit();
+        index(record, position);
+        return ++written;
+    }
+
+    private static ByteBuffer record(Mutation.EntityType entityType, byte operation, UUID id, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + payload.length);
+        record.putInt(payload.length);
+        record.putInt(0); // Checksum, filled in below
+        record.put((byte) entityType.ordinal());
+        record.put(operation);
+        record.putLong(id.getMostSignificantBits());
+        record.putLong(id.getLeastSignificantBits());
+        record.put(payload);
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(record.array(), 2 * Integer.BYTES, record.capacity() - 2 * Integer.BYTES);
+        record.putInt(Integer.BYTES, (int) checksum.getValue());
+        return record.flip();
+    }
+
+    /**
+     * Syncs the file if the mutation is not durable yet. The first writer to get here syncs every
+     * record appended so far, so the writers waiting behind it find their record already synced.
+     *
+     * @param sequence The sequence number returned when the mutation was persisted.
+     * @throws IOException If an error occurs while syncing the file.
+     */
+    @Override
+    public void awaitDurable(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= sequence) {
+                return;
+            }
+            FileChannel target;
+            long appended;
+            synchronized (this) {
+                target = channel;
+                appended = written;
+            }
+            try {
+                target.force(false);
+            } catch (ClosedChannelException e) {
+                // Rewritten in the meantime: the rewrite synced every record appended before it
+                if (synced >= sequence) {
+                    return;
+                }
+                throw e;
+            }
+            synced = Math.max(synced, appended);
+        }
+    }
+
+    /**
+     * Rewrites the file with the live entities only, once it holds more outdated records than
+     * live ones. Done while the {@link DataStore} holds its write lock, so no record is appended
+     * in the meantime.
+     *
+     * @param snapshot The data, including every mutation persisted so far.
+     * @throws IOException If an error occurs while rewriting the file.
+     */
+    @Override
+    public synchronized void compactIfDue(DataSnapshot snapshot) throws IOException {
+        long liveRecords = positions.values().stream().mapToLong(Map::size).sum();
+        if (outdatedRecords < COMPACTION_THRESHOLD || outdatedRecords < liveRecords) {
+            return;
+        }
+        logger.info("Compacting key-value file {} ({} outdated records, {} live ones)",
+            file, outdatedRecords, liveRecords);
+        rewrite(snapshot);
+    }
+
+    /**
+     * Writes the given data to a new file, then replaces the current file with it.
+     */
+    private void rewrite(DataSnapshot snapshot) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<Mutation.EntityType, Map<UUID, Long>> newPositions = new EnumMap<>(Mutation.EntityType.class);
+        long position;
+        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            position = writeFully(out, header, 0);
+            position = writeAll(out, position, Mutation.EntityType.PERSON, snapshot.persons().byId().all(),
+                Person::getId, newPositions);
+            position = writeAll(out, position, Mutation.EntityType.FIRESTATION, snapshot.firestations().byId().all(),
+                Firestation::getId, newPositions);
+            position = writeAll(out, position, Mutation.EntityType.MEDICAL_RECORD,
+                snapshot.medicalRecords().byId().all(), MedicalRecord::getId, newPositions);
+            out.force(true);
+        }
+
+        boolean open = channel != null;
+        if (open) {
+            channel.close();
+        }
+        try {
+            move(tempFile, file);
+        } catch (IOException e) {
+            if (open) {
+                // The previous file is still in place: reopen it, so that appends can go on
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            throw e;
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        positions.putAll(newPositions);
+        end = position;
+        outdatedRecords = 0;
+        synced = written;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private <T> long writeAll(FileChannel out, long position, Mutation.EntityType entityType, List<T> entities,
+                              Function<T, UUID> idOf,
+                              Map<Mutation.EntityType, Map<UUID, Long>> newPositions) throws IOException {
+        Map<UUID, Long> entityPositions = new LinkedHashMap<>();
+        for (T entity : entities) {
+            UUID id = idOf.apply(entity);
+            entityPositions.put(id, position);
+            position = writeFully(out, record(entityType, PUT, id, mapper.writeValueAsBytes(entity)), position);
+        }
+        newPositions.put(entityType, entityPositions);
+        return position;
+    }
+
+    private static long writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+        return position;
+    }
+
+    /**
+     * Syncs and closes the file on shutdown.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Error while closing key-value file {}", file, e);
+        }
+    }
+}
@@ -1,18 +1,19 @@
 package com.safetynet.alerts.repository;
 
 import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
 
-import static com.safetynet.alerts.model.Data.medicalrecords;
-import static com.safetynet.alerts.repository.JsonFileUtil.saveData;
-
 /**
  * Repository for managing MedicalRecord data.
  * Handles CRUD operations and queries for medical records.
@@ -22,6 +23,12 @@ public class MedicalRecordRepository {
 
     private static final Logger logger = LogManager.getLogger(MedicalRecordRepository.class);
 
+    private final DataStore dataStore;
+
+    public MedicalRecordRepository(DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
     /**
      * Retrieves all medical records.
      *
@@ -29,7 +36,7 @@ public class MedicalRecordRepository {
      */
     public List<MedicalRecord> findAll() {
         logger.info("Retrieving all medical records.");
-        return medicalrecords;
+        return dataStore.snapshot().medicalRecords().byId().all();
     }
 
     /**
@@ -40,10 +47,7 @@ public class MedicalRecordRepository {
      */
     public MedicalRecord findById(UUID id) {
         logger.info("Searching for medical record with ID: {}", id);
-        MedicalRecord record = medicalrecords.stream()
-            .filter(medicalRecord -> medicalRecord.getId().equals(id))
-            .findFirst()
-            .orElse(null);
+        MedicalRecord record = dataStore.snapshot().medicalRecords().byId().get(id);
         if (record != null) {
             logger.info("Medical record found: {}", record);
         } else {
@@ -56,12 +60,14 @@ public class MedicalRecordRepository {
      * Adds a new medical record.
      *
      * @param medicalRecord The medical record to add.
-     * @throws IOException if an error occurs during data persistence.
+     * @throws IOException if an error occurs while logging the mutation.
      */
     public void addMedicalRecord(MedicalRecord medicalRecord) throws IOException {
         logger.info("Adding medical record: {}", medicalRecord);
-        medicalrecords.add(medicalRecord);
-        saveData();
+        dataStore.writeMedicalRecords(medicalRecords -> {
+            medicalRecords.byId().add(medicalRecord);
+            return Mutation.add(medicalRecord);
+        });
         logger.info("Medical record added successfully.");
     }
 
@@ -69,19 +75,14 @@ public class MedicalRecordRepository {
      * Updates an existing medical record.
      *
      * @param medicalRecord The medical record to update.
-     * @throws IOException if an error occurs during data persistence.
+     * @throws IOException if an error occurs while logging the mutation.
      */
     public void updateMedicalRecord(MedicalRecord medicalRecord) throws IOException {
         logger.info("Updating medical record: {}", medicalRecord);
-        Optional<MedicalRecord> existingRecordOpt = medicalrecords.stream()
-            .filter(record -> record.getId().equals(medicalRecord.getId()))
-            .findFirst();
-
-        if (existingRecordOpt.isPresent()) {
-            MedicalRecord existingRecord = existingRecordOpt.get();
-            int index = medicalrecords.indexOf(existingRecord);
-            medicalrecords.set(index, medicalRecord);
-            saveData();
+        boolean updated = dataStore.writeMedicalRecords(
+            medicalRecords -> medicalRecords.byId().replace(medicalRecord) != null ? Mutation.update(medicalRecord) : null);
+
+        if (updated) {
             logger.info("Medical record updated successfully: {}", medicalRecord);
         } else {
             logger.error("No medical record found for update with ID: {}", medicalRecord.getId());
@@ -93,17 +94,14 @@ public class MedicalRecordRepository {
      *
      * @param id The UUID of the medical record to delete.
      * @return True if the medical record was deleted, false otherwise.
-     * @throws IOException if an error occurs during data persistence.
+     * @throws IOException if an error occurs while logging the mutation.
      */
     public boolean deleteMedicalRecord(UUID id) throws IOException {
         logger.info("Deleting medical record with ID: {}", id);
-        Optional<MedicalRecord> recordToDelete = medicalrecords.stream()
-            .filter(record -> record.getId().equals(id))
-            .findFirst();
+        boolean deleted = dataStore.writeMedicalRecords(medicalRecords -> medicalRecords.byId().remove(id) != null
+            ? Mutation.delete(Mutation.EntityType.MEDICAL_RECORD, id) : null);
 
-        if (recordToDelete.isPresent()) {
-            medicalrecords.remove(recordToDelete.get());
-            saveData();
+        if (deleted) {
             logger.info("Medical record deleted successfully: {}", id);
             return true;
         } else {
@@ -122,10 +120,8 @@ public class MedicalRecordRepository {
     public MedicalRecord findByFirstNameAndLastName(String firstName, String lastName) {
         logger.info("Searching for medical record with firstName={} and lastName={}", firstName, lastName);
 
-        MedicalRecord medicalRecord = medicalrecords.stream()
-            .filter(record -> record.getFirstName().equals(firstName) && record.getLastName().equals(lastName))
-            .findFirst()
-            .orElse(null);
+        MedicalRecord medicalRecord = dataStore.snapshot().medicalRecords().byName()
+            .first(new MedicalRecordTable.PersonName(firstName, lastName));
 
         if (medicalRecord != null) {
             logger.info("Medical record found: {}", medicalRecord);
@@ -136,4 +132,69 @@ public class MedicalRecordRepository {
         return medicalRecord;
     }
 
+    /**
+     * Finds the medical record of each of the given persons, as {@link #findByFirstNameAndLastName}
+     * would, with a single lookup in the name index per person and a single log line for the batch.
+     *
+     * @param persons The persons.
+     * @return The medical record of each person having one, by person ID.
+     */
+    public Map<UUID, MedicalRecord> findByPersons(Collection<Person> persons) {
+        logger.info("Searching for the medical records of {} persons", persons.size());
+        KeyIndex<MedicalRecordTable.PersonName, MedicalRecord> byName = dataStore.snapshot().medicalRecords().byName();
+        Map<UUID, MedicalRecord> medicalRecords = new HashMap<>();
+        for (Person person : persons) {
+            MedicalRecord medicalRecord =
+                byName.first(new MedicalRecordTable.PersonName(person.getFirstName(), person.getLastName()));
+            if (medicalRecord != null) {
+                medicalRecords.put(person.getId(), medicalRecord);
+            }
+        }
+        logger.debug("Found {} medical records for {} persons", medicalRecords.size(), persons.size());
+        return medicalRecords;
+    }
+
+    /**
+     * Finds the medical records listing an allergy, read from the posting list of the allergy.
+     * Only the records linked to persons are kept: a person is linked to the first record of their
+     * name, as returned by {@link #findByFirstNameAndLastName}.
+     *
+     * @param allergy The allergy, e.g. "peanut".
+     * @return The medical records listing the allergy.
+     */
+    public List<MedicalRecord> findByAllergy(String allergy) {
+        logger.info("Searching for medical records listing allergy: {}", allergy);
+        MedicalRecordTable table = dataStore.snapshot().medicalRecords();
+        TermIndex byTerm = table.byTerm();
+        List<MedicalRecord> medicalRecords = new ArrayList<>();
+        byTerm.withAllergy(allergy).forEach(ordinal -> {
+            MedicalRecord medicalRecord = byTerm.recordAt(ordinal);
+            MedicalRecord linked = table.byName().first(MedicalRecordTable.PersonName.of(medicalRecord));
+            if (linked != null && linked.getId().equals(medicalRecord.getId())) {
+                medicalRecords.add(medicalRecord);
+            }
+        });
+        logger.debug("Found {} medical records listing allergy: {}", medicalRecords.size(), allergy);
+        return medicalRecords;
+    }
+
+    /**
+     * Counts the medical records listing each medication, from the posting lists of the term index.
+     *
+     * @return The number of records listing each medication, most frequent first.
+     */
+    public Map<String, Integer> countByMedication() {
+        logger.info("Counting medical records by medication.");
+        return dataStore.snapshot().medicalRecords().byTerm().countByMedication();
+    }
+
+    /**
+     * Counts the medical records listing each allergy, from the posting lists of the term index.
+     *
+     * @return The number of records listing each allergy, most frequent first.
+     */
+    public Map<String, Integer> countByAllergy() {
+        logger.info("Counting medical records by allergy.");
+        return dataStore.snapshot().medicalRecords().byTerm().countByAllergy();
+    }
 }
@@ -0,0 +1,100 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.MedicalRecord;
+
+import java.util.List;
+
+/**
+ * Medical records of a {@link DataSnapshot}, indexed by ID, by first and last name, and by
+ * medication and allergy.
+ * A table is only modified before being published by the {@link DataStore}; writers modify a copy.
+ */
+final class MedicalRecordTable {
+
+    /**
+     * Key of the name index: medical records are linked to persons by first and last name.
+     */
+    record PersonName(String firstName, String lastName) {
+
+        static PersonName of(MedicalRecord medicalRecord) {
+            return new PersonName(medicalRecord.getFirstName(), medicalRecord.getLastName());
+        }
+    }
+
+    private final KeyIndex<PersonName, MedicalRecord> byName;
+    private final TermIndex byTerm;
+    private final IndexedList<MedicalRecord> byId;
+    private final StringDictionary dictionary;
+
+    MedicalRecordTable(List<MedicalRecord> medicalRecords, StringDictionary dictionary) {
+        this.dictionary = dictionary;
+        byName = new KeyIndex<>(PersonName::of, MedicalRecord::getId);
+        byTerm = new TermIndex();
+        byId = new IndexedList<>(MedicalRecord::getId, this::canonicalize, byName, byTerm);
+        medicalRecords.forEach(byId::put);
+    }
+
+    private MedicalRecordTable(MedicalRecordTable source, StringDictionary dictionary) {
+        this.dictionary = dictionary;
+        byName = source.byName.copy();
+        byTerm = source.byTerm.copy();
+        byId = source.byId.copy(this::canonicalize, byName, byTerm);
+    }
+
+    MedicalRecordTable copy() {
+        return new MedicalRecordTable(this, dictionary);
+    }
+
+    /**
+     * Copies the table, canonicalizing the medical records stored from now on with another dictionary.
+     *
+     * @param dictionary The dictionary.
+     * @return The copy.
+     */
+    MedicalRecordTable withDictionary(StringDictionary dictionary) {
+        return new MedicalRecordTable(this, dictionary);
+    }
+
+    IndexedList<MedicalRecord> byId() {
+        return byId;
+    }
+
+    KeyIndex<PersonName, MedicalRecord> byName() {
+        return byName;
+    }
+
+    TermIndex byTerm() {
+        return byTerm;
+    }
+
+    /**
+     * Adds the names, medications and allergies of the medical records to a dictionary.
+     *
+     * @param dictionary The dictionary.
+     */
+    void addStrings(StringDictionary dictionary) {
+        for (MedicalRecord medicalRecord : byId.all()) {
+            dictionary.canonical(medicalRecord.getFirstName());
+            dictionary.canonical(medicalRecord.getLastName());
+            addTerms(dictionary, medicalRecord.getMedications());
+            addTerms(dictionary, medicalRecord.getAllergies());
+        }
+    }
+
+    private static void addTerms(StringDictionary dictionary, List<String> terms) {
+        if (terms != null) {
+            terms.forEach(dictionary::canonical);
+        }
+    }
+
+    /**
+     * Replaces the names of a medical record by their canonical instances, and its medications
+     * and allergies by lists of the canonical instances of their terms.
+     */
+    private void canonicalize(MedicalRecord medicalRecord) {
+        medicalRecord.setFirstName(dictionary.canonical(medicalRecord.getFirstName()));
+        medicalRecord.setLastName(dictionary.canonical(medicalRecord.getLastName()));
+        medicalRecord.setMedications(TermList.of(medicalRecord.getMedications(), dictionary));
+        medicalRecord.setAllergies(TermList.of(medicalRecord.getAllergies(), dictionary));
+    }
+}
@@ -0,0 +1,101 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+
+import java.util.UUID;
+
+/**
+ * A single add/update/delete applied to the in-memory data.
+ * One mutation is written per line in the mutation log and replayed on startup.
+ */
+public class Mutation {
+
+    public enum Operation { ADD, UPDATE, DELETE }
+
+    public enum EntityType { PERSON, FIRESTATION, MEDICAL_RECORD }
+
+    private Operation operation;
+    private EntityType entityType;
+    private UUID id;
+    private Object entity;
+
+    public Mutation() {}
+
+    public Mutation(Operation operation, EntityType entityType, UUID id, Object entity) {
+        this.operation = operation;
+        this.entityType = entityType;
+        this.id = id;
+        this.entity = entity;
+    }
+
+    public static Mutation add(Person person) {
+        return new Mutation(Operation.ADD, EntityType.PERSON, person.getId(), person);
+    }
+
+    public static Mutation add(Firestation firestation) {
+        return new Mutation(Operation.ADD, EntityType.FIRESTATION, firestation.getId(), firestation);
+    }
+
+    public static Mutation add(MedicalRecord medicalRecord) {
+        return new Mutation(Operation.ADD, EntityType.MEDICAL_RECORD, medicalRecord.getId(), medicalRecord);
+    }
+
+    public static Mutation update(Person person) {
+        return new Mutation(Operation.UPDATE, EntityType.PERSON, person.getId(), person);
+    }
+
+    public static Mutation update(Firestation firestation) {
+        return new Mutation(Operation.UPDATE, EntityType.FIRESTATION, firestation.getId(), firestation);
+    }
+
+    public static Mutation update(MedicalRecord medicalRecord) {
+        return new Mutation(Operation.UPDATE, EntityType.MEDICAL_RECORD, medicalRecord.getId(), medicalRecord);
+    }
+
+    public static Mutation delete(EntityType entityType, UUID id) {
+        return new Mutation(Operation.DELETE, entityType, id, null);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(EntityType entityType) {
+        this.entityType = entityType;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public Object getEntity() {
+        return entity;
+    }
+
+    public void setEntity(Object entity) {
+        this.entity = entity;
+    }
+
+    @Override
+    public String toString() {
+        return "Mutation { " +
+               "operation: " + operation +
+               ", entityType: " + entityType +
+               ", id: " + id +
+               " }";
+    }
+}
@@ -0,0 +1,453 @@
+package com.safetynet.alerts.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Append-only log of mutations applied to the in-memory data.
+ * Each add/update/delete is written as one JSON line, instead of rewriting the whole data file;
+ * the {@link MutationPersister} decides when the written lines are synced to disk. Once the log
+ * grows past {@link #COMPACTION_THRESHOLD} entries it is rotated to {@link #COMPACTING_LOG_FILE}
+ * while a snapshot of the data is written in the background, and both logs are replayed on top
+ * of the last snapshot at startup.
+ * <p>
+ * Every mutation logged gets the next sequence number. Each log starts with a header line holding
+ * the sequence number of its first entry, and each snapshot records the sequence number of the
+ * last mutation it contains: at startup, the entries a snapshot already contains are skipped, and
+ * a log that does not follow the snapshot (e.g. once an older backup had to be loaded) is refused
+ * rather than replayed with mutations missing.
+ * <p>
+ * The log is a bean owning its open stream and compaction state, shared by the
+ * {@link MutationPersister} writing to it and the {@link DataLoader} replaying it.
+ */
+@Component
+@ConditionalOnProperty(name = "data.storage.engine", havingValue = "json", matchIfMissing = true)
+public class MutationLog {
+
+    public static final String LOG_FILE = "data.log";
+    public static final String COMPACTING_LOG_FILE = "data.log.compacting";
+    public static final int COMPACTION_THRESHOLD = 1000;
+    static final String HEADER_FIELD = "firstSequence";
+    static final long UNKNOWN_SEQUENCE = -1;
+
+    private static final Logger logger = LogManager.getLogger(MutationLog.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path logFile;
+    private final Path compactingLogFile;
+    private FileOutputStream logStream;
+    // Sequence number of the last mutation logged
+    private long sequence;
+    private int entriesSinceSnapshot;
+    private boolean compacting;
+    private boolean compactionRequested;
+
+    /**
+     * Creates the log of the data files in the working directory.
+     */
+    public MutationLog() {
+        this(Path.of(""));
+    }
+
+    /**
+     * Creates the log of the data files in the given directory.
+     *
+     * @param directory The directory holding the log files.
+     */
+    MutationLog(Path directory) {
+        this.logFile = directory.resolve(LOG_FILE);
+        this.compactingLogFile = directory.resolve(COMPACTING_LOG_FILE);
+    }
+
+    /**
+     * Appends a mutation to the log and syncs it to disk.
+     *
+     * @param mutation The mutation to record.
+     * @throws IOException If an error occurs while writing to the log.
+     */
+    public synchronized void append(Mutation mutation) throws IOException {
+        write(mutation);
+        try {
+            logStream.getFD().sync();
+        } catch (IOException e) {
+            logger.error("Error while syncing mutation log: {}", logFile, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a mutation to the log without waiting for it to reach the disk.
+     * It becomes durable on the next {@link #sync()}.
+     *
+     * @param mutation The mutation to record.
+     * @throws IOException If an error occurs while writing to the log.
+     */
+    public synchronized void write(Mutation mutation) throws IOException {
+        logger.debug("Appending mutation to log: {}", mutation);
+
+        if (logStream == null) {
+            boolean empty = !Files.exists(logFile) || Files.size(logFile) == 0;
+            logStream = new FileOutputStream(logFile.toFile(), true);
+            if (empty) {
+                writeHeader();
+            }
+        }
+
+        byte[] line = (mapper.writeValueAsString(mutation) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            logStream.write(line);
+        } catch (IOException e) {
+            logger.error("Error while appending mutation to log: {}", logFile, e);
+            throw e;
+        }
+
+        sequence++;
+        entriesSinceSnapshot++;
+    }
+
+    /**
+     * Writes the header of a new log: the sequence number its first entry will have.
+     */
+    private void writeHeader() throws IOException {
+        String header = mapper.writeValueAsString(Map.of(HEADER_FIELD, sequence + 1)) + "\n";
+        logStream.write(header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Syncs the mutations written so far to disk.
+     * Appends are not blocked while the disk is being synced.
+     *
+     * @throws IOException If an error occurs while syncing the log.
+     */
+    public void sync() throws IOException {
+        FileOutputStream stream;
+        synchronized (this) {
+            stream = logStream;
+        }
+        if (stream == null) {
+            return;
+        }
+
+        try {
+            stream.getFD().sync();
+        } catch (IOException e) {
+            synchronized (this) {
+                if (stream != logStream) {
+                    // Rotated in the meantime: the rotation synced the stream before closing it
+                    return;
+                }
+            }
+            logger.error("Error while syncing mutation log: {}", logFile, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Determines whether the log has reached the compaction threshold, or a compaction was requested.
+     * No compaction is due while the previous one is still being written.
+     *
+     * @return True if the log should be compacted, false otherwise.
+     */
+    public synchronized boolean isCompactionDue() {
+        return !compacting && (compactionRequested || entriesSinceSnapshot >= COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Makes the next compaction due regardless of the size of the log, e.g. once the data has been
+     * reloaded from a file that the logged mutations no longer apply to.
+     */
+    synchronized void requestCompaction() {
+        compactionRequested = true;
+    }
+
+    /**
+     * Starts a compaction: syncs the log and moves it aside, so that new mutations go to a fresh
+     * log while the snapshot containing the moved ones is written.
+     * {@link #completeCompaction()} must be called once the snapshot is written, or
+     * {@link #abortCompaction()} if it could not be. The log left aside by an aborted compaction
+     * is not replaced but extended with the entries of the current log, since the snapshot does not
+     * contain them either until a compaction completes.
+     *
+     * @return The sequence number of the last mutation logged, which the snapshot must record.
+     * @throws IOException If an error occurs while syncing or moving the log.
+     */
+    synchronized long rotate() throws IOException {
+        logger.info("Rotating mutation log ({} entries) for compaction.", entriesSinceSnapshot);
+
+        if (logStream != null) {
+            logStream.getFD().sync();
+            logStream.close();
+            logStream = null;
+        }
+        if (Files.exists(compactingLogFile)) {
+            appendEntries(logFile, compactingLogFile);
+            Files.delete(logFile);
+        } else {
+            Files.move(logFile, compactingLogFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        logStream = new FileOutputStream(logFile.toFile(), false);
+        writeHeader();
+        entriesSinceSnapshot = 0;
+        compacting = true;
+        compactionRequested = false;
+        return sequence;
+    }
+
+    /**
+     * Appends the entries of a log, without its header, to the log they follow, and syncs it.
+     * A crash before the source log is deleted is harmless: its entries are then in both logs, and
+     * the replay skips those it already applied.
+     */
+    private static void appendEntries(Path source, Path target) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             FileOutputStream out = new FileOutputStream(target.toFile(), true)) {
+            String line = reader.readLine();
+            if (line != null && line.contains(HEADER_FIELD) && mapper.readTree(line).has(HEADER_FIELD)) {
+                line = reader.readLine();
+            }
+            for (; line != null; line = reader.readLine()) {
+                if (!line.isBlank()) {
+                    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Ends a compaction started by {@link #rotate()} whose snapshot could not be written: the log
+     * moved aside is kept, for the replay at startup and the next compaction, which is made due so
+     * that the next commit tries again.
+     */
+    synchronized void abortCompaction() {
+        compacting = false;
+        compactionRequested = true;
+        logger.warn("Mutation log compaction aborted, {} kept until the next one completes.", compactingLogFile);
+    }
+
+    /**
+     * Ends a compaction started by {@link #rotate()}, once the snapshot has been written:
+     * the moved log is not needed anymore.
+     *
+     * @throws IOException If an error occurs while deleting the moved log.
+     */
+    synchronized void completeCompaction() throws IOException {
+        Files.deleteIfExists(compactingLogFile);
+        compacting = false;
+        logger.info("Mutation log compacted successfully.");
+    }
+
+    /**
+     * Writes a full snapshot of the data and truncates the log, while no mutation
+     * can be logged (e.g. at startup, after replaying the log).
+     *
+     * @param snapshot The data, including every mutation logged so far.
+     * @param format   The format of the snapshot to write.
+     * @throws IOException If an error occurs while writing the snapshot or truncating the log.
+     */
+    synchronized void compact(DataSnapshot snapshot, SnapshotFormat format) throws IOException {
+        logger.info("Compacting mutation log ({} entries) into snapshot.", entriesSinceSnapshot);
+
+        JsonFileUtil.saveData(snapshot, format, sequence);
+
+        if (logStream != null) {
+            logStream.close();
+        }
+        // Re-opening without the append flag truncates the log
+        logStream = new FileOutputStream(logFile.toFile(), false);
+        writeHeader();
+        entriesSinceSnapshot = 0;
+        compactionRequested = false;
+        completeCompaction();
+    }
+
+    /**
+     * Replays the mutations recorded since the last snapshot on top of the loaded data:
+     * those of a compaction that did not complete first, then those of the current log.
+     * Entries the snapshot already contains are skipped. A truncated last line, left by a crash in
+     * the middle of an append, is ignored.
+     *
+     * @param loaded           The data loaded from the last snapshot, not published yet.
+     * @param snapshotSequence The sequence number of the last mutation the snapshot contains, or
+     *                         {@link #UNKNOWN_SEQUENCE} if the snapshot does not record it.
+     * @return The progress of the replay; the logs must be compacted if any entry was skipped,
+     *         since new entries could not be numbered after them.
+     * @throws IOException If an error occurs while reading the logs, or if a log does not follow
+     *                     the snapshot: replaying it would leave out the mutations in between.
+     */
+    synchronized Replay replay(DataSnapshot loaded, long snapshotSequence) throws IOException {
+        Replay replay = replayLogs(loaded, snapshotSequence);
+        sequence = replay.sequence;
+        entriesSinceSnapshot = replay.replayed;
+        return replay;
+    }
+
+    /**
+     * Replays both logs on top of the loaded data, without changing the state of the log, e.g. to
+     * import the data into another storage engine.
+     *
+     * @param loaded           The data loaded from the last snapshot, not published yet.
+     * @param snapshotSequence The sequence number of the last mutation the snapshot contains.
+     * @return The progress of the replay.
+     * @throws IOException If an error occurs while reading the logs, or if a log does not follow the snapshot.
+     */
+    Replay replayLogs(DataSnapshot loaded, long snapshotSequence) throws IOException {
+        Replay replay = new Replay(snapshotSequence);
+        replay(compactingLogFile.toFile(), loaded, replay);
+        replay(logFile.toFile(), loaded, replay);
+        if (replay.sequence == UNKNOWN_SEQUENCE) {
+            replay.sequence = 0;
+        }
+        return replay;
+    }
+
+    private static void replay(File logFile, DataSnapshot loaded, Replay replay) throws IOException {
+        if (!logFile.exists()) {
+            logger.info("No mutation log found at {}, nothing to replay.", logFile);
+            return;
+        }
+
+        logger.info("Replaying mutation log: {}", logFile);
+        int replayed = 0;
+        int skipped = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(logFile, StandardCharsets.UTF_8))) {
+            long next = UNKNOWN_SEQUENCE;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode entry;
+                try {
+                    entry = mapper.readTree(line);
+                } catch (IOException e) {
+                    logger.error("Ignoring unreadable mutation log entry after {} replayed entries.", replayed, e);
+                    break;
+                }
+                if (next == UNKNOWN_SEQUENCE) {
+                    next = firstSequence(logFile, entry, replay.sequence);
+                    if (entry.has(HEADER_FIELD)) {
+                        continue;
+                    }
+                }
+
+                if (next <= replay.sequence) {
+                    // Already contained in the snapshot, e.g. if the compaction completed but the log was not deleted
+                    skipped++;
+                } else {
+                    Mutation mutation;
+                    try {
+                        mutation = mapper.treeToValue(entry, Mutation.class);
+                    } catch (IOException e) {
+                        logger.error("Ignoring unreadable mutation log entry after {} replayed entries.", replayed, e);
+                        break;
+                    }
+                    apply(loaded, mutation);
+                    replay.sequence = next;
+                    replayed++;
+                }
+                next++;
+            }
+        }
+
+        replay.replayed += replayed;
+        replay.skipped += skipped;
+        logger.info("Replayed {} mutations from log {} ({} already in the snapshot).", replayed, logFile, skipped);
+    }
+
+    /**
+     * Determines the sequence number of the first entry of a log, from its header.
+     *
+     * @param logFile       The log.
+     * @param firstLine     The first line of the log: its header, or its first entry if it has none.
+     * @param sequence      The sequence number of the last mutation of the data replayed onto.
+     * @return The sequence number of the first entry.
+     * @throws IOException If the log starts after the next mutation expected.
+     */
+    private static long firstSequence(File logFile, JsonNode firstLine, long sequence) throws IOException {
+        if (!firstLine.has(HEADER_FIELD)) {
+            logger.warn("Mutation log {} has no header, replaying all its entries", logFile);
+            return sequence == UNKNOWN_SEQUENCE ? 1 : sequence + 1;
+        }
+
+        long first = firstLine.get(HEADER_FIELD).asLong();
+        if (sequence == UNKNOWN_SEQUENCE) {
+            logger.warn("The snapshot does not record its last mutation, assuming mutation log {} follows it", logFile);
+        } else if (first > sequence + 1) {
+            throw new IOException(String.format(
+                "Mutation log %s starts at mutation %d, but the snapshot only contains the mutations up to %d: "
+                    + "refusing to replay it with mutations %d to %d missing", logFile, first, sequence,
+                sequence + 1, first - 1));
+        }
+        return first;
+    }
+
+    /**
+     * Progress of a replay: the sequence number of the last mutation applied, how many were, and
+     * how many were skipped because the snapshot already contained them.
+     */
+    static final class Replay {
+
+        long sequence;
+        int replayed;
+        int skipped;
+
+        Replay(long sequence) {
+            this.sequence = sequence;
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        int replayed() {
+            return replayed;
+        }
+
+        int skipped() {
+            return skipped;
+        }
+    }
+
+    /**
+     * Applies a mutation read from the log to data that has not been published yet.
+     *
+     * @param data     The data to modify.
+     * @param mutation The mutation to apply.
+     */
+    static void apply(DataSnapshot data, Mutation mutation) {
+        logger.debug("Applying mutation: {}", mutation);
+
+        switch (mutation.getEntityType()) {
+            case PERSON -> apply(data.persons().byId(), mutation, Person.class);
+            case FIRESTATION -> apply(data.firestations().byId(), mutation, Firestation.class);
+            case MEDICAL_RECORD -> apply(data.medicalRecords().byId(), mutation, MedicalRecord.class);
+        }
+    }
+
+    private static <T> void apply(EntityList<T> entities, Mutation mutation, Class<T> type) {
+        switch (mutation.getOperation()) {
+            case ADD, UPDATE -> entities.put(mapper.convertValue(mutation.getEntity(), type));
+            case DELETE -> entities.remove(mutation.getId());
+        }
+    }
+}
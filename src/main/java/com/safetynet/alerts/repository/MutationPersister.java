@@ -0,0 +1,343 @@
+package com.safetynet.alerts.repository;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage engine persisting the data as a data file plus a log of the mutations since.
+ * Write-behind persistence of the mutations committed by the {@link DataStore}.
+ * Mutations are appended to the {@link MutationLog} as they are committed, but syncing them to
+ * disk depends on the configured {@link Durability}: each one can be synced before the write is
+ * acknowledged, or the writes of a burst can share a single sync. Compacting the log into a new
+ * data file is done in the background, so no write ever waits for the whole data to be saved.
+ */
+@Component
+@ConditionalOnProperty(name = "data.storage.engine", havingValue = "json", matchIfMissing = true)
+public class MutationPersister implements StorageEngine {
+
+    private static final Logger logger = LogManager.getLogger(MutationPersister.class);
+
+    /**
+     * When a write is acknowledged, relative to its mutation being synced to disk.
+     */
+    public enum Durability {
+        /**
+         * Each mutation is synced to disk before its write is acknowledged.
+         */
+        SYNC,
+        /**
+         * Mutations are synced to disk in batches, once per flush interval or batch size; each write
+         * is acknowledged once the batch containing it is synced.
+         */
+        GROUP_COMMIT,
+        /**
+         * Mutations are synced to disk in batches, but writes are acknowledged without waiting:
+         * the mutations of the last flush interval can be lost on a crash.
+         */
+        ASYNC;
+
+        /**
+         * Parses a durability mode as written in the application properties, e.g. "group-commit".
+         *
+         * @param value The name of the mode.
+         * @return The durability mode.
+         */
+        public static Durability fromProperty(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * Writes the data file of a compaction.
+     */
+    @FunctionalInterface
+    interface SnapshotWriter {
+
+        /**
+         * Writes a snapshot of the data.
+         *
+         * @param snapshot The data.
+         * @param format   The format of the snapshot.
+         * @param sequence The sequence number of the last logged mutation the data contains.
+         * @throws IOException If an error occurs while writing the snapshot.
+         */
+        void write(DataSnapshot snapshot, SnapshotFormat format, long sequence) throws IOException;
+    }
+
+    private final MutationLog mutationLog;
+    private final Durability durability;
+    private final int batchSize;
+    private final SnapshotFormat snapshotFormat;
+    private final SnapshotWriter snapshotWriter;
+    private final ScheduledExecutorService flusher;
+    private final ExecutorService compactor;
+
+    // Sequence numbers of the last mutation written to the log, and of the last one synced to disk
+    private long written;
+    private long synced;
+    // Range of the mutations of the last batch that could not be synced, and the cause
+    private long failedFrom;
+    private long failedUpTo;
+    private IOException syncFailure;
+    private boolean flushRequested;
+
+    @Autowired
+    public MutationPersister(MutationLog mutationLog,
+                             @Value("${data.persistence.durability:group-commit}") String durability,
+                             @Value("${data.persistence.flush-interval-ms:10}") long flushIntervalMillis,
+                             @Value("${data.persistence.batch-size:64}") int batchSize,
+                             @Value("${data.persistence.snapshot-format:json}") String snapshotFormat) {
+        this(mutationLog, Durability.fromProperty(durability), flushIntervalMillis, batchSize,
+            SnapshotFormat.fromProperty(snapshotFormat));
+    }
+
+    MutationPersister(MutationLog mutationLog, Durability durability, long flushIntervalMillis, int batchSize) {
+        this(mutationLog, durability, flushIntervalMillis, batchSize, SnapshotFormat.JSON);
+    }
+
+    MutationPersister(MutationLog mutationLog, Durability durability, long flushIntervalMillis, int batchSize,
+                      SnapshotFormat snapshotFormat) {
+        this(mutationLog, durability, flushIntervalMillis, batchSize, snapshotFormat, JsonFileUtil::saveData);
+    }
+
+    MutationPersister(MutationLog mutationLog, Durability durability, long flushIntervalMillis, int batchSize,
+                      SnapshotFormat snapshotFormat, SnapshotWriter snapshotWriter) {
+        this.mutationLog = mutationLog;
+        this.durability = durability;
+        this.batchSize = batchSize;
+        this.snapshotFormat = snapshotFormat;
+        this.snapshotWriter = snapshotWriter;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(daemonThreads("mutation-log-flusher"));
+        this.compactor = Executors.newSingleThreadExecutor(daemonThreads("data-snapshot-writer"));
+
+        if (durability != Durability.SYNC) {
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Persisting mutations in {} mode (flush interval {} ms, batch size {}), {} snapshots",
+            durability, flushIntervalMillis, batchSize, snapshotFormat);
+    }
+
+    /**
+     * Creates a persister syncing each mutation before acknowledging it.
+     *
+     * @param mutationLog The log the mutations are appended to.
+     * @return The persister.
+     */
+    static MutationPersister synchronous(MutationLog mutationLog) {
+        return new MutationPersister(mutationLog, Durability.SYNC, 0, 1);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Retrieves the durability mode of the persister.
+     *
+     * @return The durability mode.
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Retrieves the format in which snapshots of the data are written.
+     *
+     * @return The snapshot format.
+     */
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    /**
+     * Loads the most recent snapshot, in any format, and replays the mutation log on top of it.
+     *
+     * @return The data, not published yet.
+     * @throws IOException If no snapshot can be read, or if an error occurs while reading the mutation log.
+     */
+    @Override
+    public DataSnapshot load() throws IOException {
+        return DataLoader.loadSnapshot(snapshotFormat, mutationLog);
+    }
+
+    /**
+     * Appends a committed mutation to the log. Called by the {@link DataStore} while it holds its
+     * write lock, so mutations are logged in commit order.
+     *
+     * @param mutation The mutation to log.
+     * @return The sequence number of the mutation, to pass to {@link #awaitDurable(long)}.
+     * @throws IOException If an error occurs while writing to the log; the mutation must then be discarded.
+     */
+    @Override
+    public long log(Mutation mutation) throws IOException {
+        if (durability == Durability.SYNC) {
+            mutationLog.append(mutation);
+            synchronized (this) {
+                synced = ++written;
+                return written;
+            }
+        }
+
+        mutationLog.write(mutation);
+        synchronized (this) {
+            written++;
+            if (written - synced >= batchSize && !flushRequested) {
+                // A full batch is flushed right away rather than at the next interval
+                flushRequested = true;
+                flusher.execute(this::flush);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Waits until a logged mutation is durable, as required by the durability mode.
+     * Called without holding the write lock of the {@link DataStore}, so that other writers can
+     * join the batch in the meantime.
+     *
+     * @param sequence The sequence number returned when the mutation was logged.
+     * @throws IOException If the batch containing the mutation could not be synced to disk.
+     */
+    @Override
+    public void awaitDurable(long sequence) throws IOException {
+        if (durability != Durability.GROUP_COMMIT) {
+            return;
+        }
+
+        synchronized (this) {
+            while (true) {
+                if (sequence >= failedFrom && sequence <= failedUpTo) {
+                    throw new IOException("Mutation " + sequence + " could not be synced to disk", syncFailure);
+                }
+                if (synced >= sequence) {
+                    return;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for mutation " + sequence + " to be synced", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Syncs every mutation written so far to disk, and wakes up the writers waiting for them.
+     * If the sync fails, the writers of the batch are failed, but the failure is not sticky: the
+     * next batch is synced again, and the failure is cleared once a sync succeeds.
+     */
+    void flush() {
+        long target;
+        long from;
+        synchronized (this) {
+            from = synced + 1;
+            flushRequested = false;
+            target = written;
+            if (target == synced) {
+                return;
+            }
+        }
+
+        try {
+            mutationLog.sync();
+        } catch (IOException e) {
+            logger.error("Error while syncing mutations {} to {}", from, target, e);
+            synchronized (this) {
+                syncFailure = e;
+                failedFrom = from;
+                failedUpTo = target;
+                // The failed mutations are not retried: the next sync only covers the later ones
+                synced = Math.max(synced, target);
+                notifyAll();
+            }
+            return;
+        }
+
+        synchronized (this) {
+            logger.debug("Synced {} mutations to disk", target - synced);
+            synced = Math.max(synced, target);
+            if (syncFailure != null && failedUpTo < synced) {
+                logger.info("Mutation log synced again after a failure, up to mutation {}", synced);
+                syncFailure = null;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Makes the next compaction of the log due regardless of its size.
+     */
+    @Override
+    public void requestCompaction() {
+        mutationLog.requestCompaction();
+    }
+
+    /**
+     * Starts compacting the log if it is due: the log is rotated right away, and the snapshot
+     * containing its mutations is written in the background. Called by the {@link DataStore}
+     * while it holds its write lock, so that the snapshot matches the rotated log exactly.
+     *
+     * @param snapshot The data, including every mutation logged so far.
+     * @throws IOException If an error occurs while rotating the log.
+     */
+    @Override
+    public void compactIfDue(DataSnapshot snapshot) throws IOException {
+        if (!mutationLog.isCompactionDue()) {
+            return;
+        }
+
+        long sequence = mutationLog.rotate();
+        synchronized (this) {
+            // Rotating synced every mutation written so far
+            synced = written;
+            notifyAll();
+        }
+        compactor.execute(() -> writeSnapshot(snapshot, sequence));
+    }
+
+    private void writeSnapshot(DataSnapshot snapshot, long sequence) {
+        try {
+            snapshotWriter.write(snapshot, snapshotFormat, sequence);
+            mutationLog.completeCompaction();
+        } catch (IOException e) {
+            // The rotated log is kept, and replayed at startup; the next commit compacts it again
+            logger.error("Error while writing snapshot of data version {}", snapshot.version(), e);
+            mutationLog.abortCompaction();
+        }
+    }
+
+    /**
+     * Syncs the pending mutations and waits for the snapshot being written, if any, on shutdown.
+     */
+    @PreDestroy
+    public void close() {
+        logger.info("Flushing pending mutations before shutdown.");
+        flusher.shutdown();
+        compactor.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
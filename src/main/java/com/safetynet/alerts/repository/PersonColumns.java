@@ -0,0 +1,346 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Person;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Persons stored column by column outside of the Java heap, for regions with millions of residents.
+ * Each person is a row: its UUID is held in two long columns, its first name, last name, address,
+ * city and zip as codes into sorted dictionaries of their distinct values, and its phone and email
+ * as UTF-8 bytes. Rows are found by ID through an open-addressing hash table, and by address, city
+ * or last name through the rows grouped by dictionary code; all of it lives in direct buffers,
+ * and a {@link Person} is only created for the rows returned.
+ * <p>
+ * The columns are never modified once built, so they can be read by any number of threads.
+ */
+final class PersonColumns {
+
+    static final int NO_ROW = -1;
+
+    private final int size;
+    private final LongBuffer idHigh;
+    private final LongBuffer idLow;
+    private final IntBuffer idSlots;
+    private final DictionaryColumn firstNames;
+    private final DictionaryColumn lastNames;
+    private final DictionaryColumn addresses;
+    private final DictionaryColumn cities;
+    private final DictionaryColumn zips;
+    private final StringColumn phones;
+    private final StringColumn emails;
+
+    PersonColumns(List<Person> persons) {
+        size = persons.size();
+        idHigh = allocate((long) size * Long.BYTES).asLongBuffer();
+        idLow = allocate((long) size * Long.BYTES).asLongBuffer();
+        for (int row = 0; row < size; row++) {
+            UUID id = persons.get(row).getId();
+            idHigh.put(row, id.getMostSignificantBits());
+            idLow.put(row, id.getLeastSignificantBits());
+        }
+
+        // At most half full, so that probe sequences stay short
+        idSlots = allocateInts(Integer.highestOneBit(Math.max(1, size)) * 4);
+        for (int row = 0; row < size; row++) {
+            int slot = slotOf(idHigh.get(row), idLow.get(row));
+            while (idSlots.get(slot) != 0) {
+                slot = (slot + 1) & (idSlots.capacity() - 1);
+            }
+            idSlots.put(slot, row + 1);
+        }
+
+        firstNames = new DictionaryColumn(column(persons, Person::getFirstName));
+        lastNames = new DictionaryColumn(column(persons, Person::getLastName));
+        addresses = new DictionaryColumn(column(persons, Person::getAddress));
+        cities = new DictionaryColumn(column(persons, Person::getCity));
+        zips = new DictionaryColumn(column(persons, Person::getZip));
+        phones = new StringColumn(encode(column(persons, Person::getPhone)));
+        emails = new StringColumn(encode(column(persons, Person::getEmail)));
+    }
+
+    /**
+     * Retrieves the number of rows.
+     *
+     * @return The number of persons stored.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the row of a person.
+     *
+     * @param id The UUID of the person.
+     * @return The row of the person, or {@link #NO_ROW} if it is not stored.
+     */
+    int rowOf(UUID id) {
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        int slot = slotOf(high, low);
+        int entry;
+        while ((entry = idSlots.get(slot)) != 0) {
+            int row = entry - 1;
+            if (idHigh.get(row) == high && idLow.get(row) == low) {
+                return row;
+            }
+            slot = (slot + 1) & (idSlots.capacity() - 1);
+        }
+        return NO_ROW;
+    }
+
+    /**
+     * Retrieves the ID of the person of a row, without creating the person.
+     *
+     * @param row The row.
+     * @return The UUID of the person.
+     */
+    UUID idAt(int row) {
+        return new UUID(idHigh.get(row), idLow.get(row));
+    }
+
+    /**
+     * Creates the person of a row.
+     *
+     * @param row The row.
+     * @return A new person holding the values of the row.
+     */
+    Person person(int row) {
+        Person person = new Person(firstNames.get(row), lastNames.get(row), addresses.get(row), cities.get(row),
+            zips.get(row), phones.get(row), emails.get(row));
+        person.setId(idAt(row));
+        return person;
+    }
+
+    /**
+     * Finds the rows of the persons living at an address.
+     *
+     * @param address The address.
+     * @return The rows, in ascending order.
+     */
+    int[] rowsWithAddress(String address) {
+        return addresses.rowsOf(address);
+    }
+
+    /**
+     * Finds the rows of the persons living in a city.
+     *
+     * @param city The city.
+     * @return The rows, in ascending order.
+     */
+    int[] rowsWithCity(String city) {
+        return cities.rowsOf(city);
+    }
+
+    /**
+     * Finds the rows of the persons having a last name.
+     *
+     * @param lastName The last name.
+     * @return The rows, in ascending order.
+     */
+    int[] rowsWithLastName(String lastName) {
+        return lastNames.rowsOf(lastName);
+    }
+
+    private int slotOf(long high, long low) {
+        long hash = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (idSlots.capacity() - 1);
+    }
+
+    private static List<String> column(List<Person> persons, Function<Person, String> valueOf) {
+        List<String> values = new ArrayList<>(persons.size());
+        persons.forEach(person -> values.add(valueOf.apply(person)));
+        return values;
+    }
+
+    private static List<byte[]> encode(List<String> values) {
+        List<byte[]> encoded = new ArrayList<>(values.size());
+        values.forEach(value -> encoded.add(value != null ? value.getBytes(StandardCharsets.UTF_8) : null));
+        return encoded;
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Person column of " + bytes + " bytes is too large to be stored off-heap");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static IntBuffer allocateInts(int count) {
+        return allocate((long) count * Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * Strings stored as UTF-8 bytes one after the other, with the offset of each one.
+     */
+    private static final class StringColumn {
+
+        private final IntBuffer offsets;
+        private final ByteBuffer bytes;
+        private final BitSet nulls = new BitSet();
+
+        StringColumn(List<byte[]> values) {
+            long length = 0;
+            for (byte[] value : values) {
+                length += value != null ? value.length : 0;
+            }
+            offsets = allocateInts(values.size() + 1);
+            bytes = allocate(length);
+
+            int offset = 0;
+            for (int i = 0; i < values.size(); i++) {
+                offsets.put(i, offset);
+                byte[] value = values.get(i);
+                if (value == null) {
+                    nulls.set(i);
+                } else {
+                    bytes.put(offset, value);
+                    offset += value.length;
+                }
+            }
+            offsets.put(values.size(), offset);
+        }
+
+        String get(int index) {
+            if (nulls.get(index)) {
+                return null;
+            }
+            int start = offsets.get(index);
+            byte[] value = new byte[offsets.get(index + 1) - start];
+            bytes.get(start, value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Compares a stored string to a key, as unsigned UTF-8 bytes.
+         */
+        int compare(int index, byte[] key) {
+            int start = offsets.get(index);
+            int length = offsets.get(index + 1) - start;
+            for (int i = 0; i < Math.min(length, key.length); i++) {
+                int difference = Byte.toUnsignedInt(bytes.get(start + i)) - Byte.toUnsignedInt(key[i]);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return length - key.length;
+        }
+    }
+
+    /**
+     * Column of repeated strings: each row holds the code of its value in a sorted dictionary of
+     * the distinct values, and the rows are grouped by code so that a value is looked up without
+     * scanning the column.
+     */
+    private static final class DictionaryColumn {
+
+        private static final int NULL_CODE = -1;
+
+        private final StringColumn values;
+        private final IntBuffer codes;
+        private final IntBuffer groupStarts;
+        private final IntBuffer rowsByCode;
+
+        DictionaryColumn(List<String> column) {
+            Map<String, byte[]> distinct = new HashMap<>();
+            for (String value : column) {
+                if (value != null) {
+                    distinct.computeIfAbsent(value, v -> v.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            // Sorted by bytes, the order in which the stored values are searched
+            List<String> sorted = new ArrayList<>(distinct.keySet());
+            sorted.sort((a, b) -> Arrays.compareUnsigned(distinct.get(a), distinct.get(b)));
+            Map<String, Integer> codeOf = new HashMap<>();
+            List<byte[]> encoded = new ArrayList<>(sorted.size());
+            for (String value : sorted) {
+                codeOf.put(value, codeOf.size());
+                encoded.add(distinct.get(value));
+            }
+            values = new StringColumn(encoded);
+
+            codes = allocateInts(column.size());
+            int[] starts = new int[sorted.size() + 1];
+            for (int row = 0; row < column.size(); row++) {
+                String value = column.get(row);
+                int code = value != null ? codeOf.get(value) : NULL_CODE;
+                codes.put(row, code);
+                if (code != NULL_CODE) {
+                    starts[code + 1]++;
+                }
+            }
+            for (int code = 0; code < sorted.size(); code++) {
+                starts[code + 1] += starts[code];
+            }
+            groupStarts = allocateInts(starts.length);
+            groupStarts.put(0, starts);
+
+            rowsByCode = allocateInts(starts[sorted.size()]);
+            for (int row = 0; row < column.size(); row++) {
+                int code = codes.get(row);
+                if (code != NULL_CODE) {
+                    rowsByCode.put(starts[code]++, row);
+                }
+            }
+        }
+
+        String get(int row) {
+            int code = codes.get(row);
+            return code != NULL_CODE ? values.get(code) : null;
+        }
+
+        int[] rowsOf(String value) {
+            if (value == null) {
+                return rowsWithoutValue();
+            }
+
+            int code = codeOf(value.getBytes(StandardCharsets.UTF_8));
+            if (code == NULL_CODE) {
+                return new int[0];
+            }
+            int start = groupStarts.get(code);
+            int[] rows = new int[groupStarts.get(code + 1) - start];
+            rowsByCode.get(start, rows);
+            return rows;
+        }
+
+        private int codeOf(byte[] key) {
+            int low = 0;
+            int high = groupStarts.capacity() - 2;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = values.compare(middle, key);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return NULL_CODE;
+        }
+
+        private int[] rowsWithoutValue() {
+            List<Integer> rows = new ArrayList<>();
+            for (int row = 0; row < codes.capacity(); row++) {
+                if (codes.get(row) == NULL_CODE) {
+                    rows.add(row);
+                }
+            }
+            return rows.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -11,9 +11,6 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
-import static com.safetynet.alerts.model.Data.persons;
-import static com.safetynet.alerts.repository.JsonFileUtil.saveData;
-
 /**
  * Repository for managing Person data.
  * Handles CRUD operations and specific queries for persons.
@@ -23,6 +20,22 @@ public class PersonRepository {
 
     private static final Logger logger = LogManager.getLogger(PersonRepository.class);
 
+    private final DataStore dataStore;
+
+    public PersonRepository(DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Retrieves all persons.
+     *
+     * @return List of all persons.
+     */
+    public List<Person> findAll() {
+        logger.info("Retrieving all persons.");
+        return dataStore.snapshot().persons().byId().all();
+    }
+
     /**
      * Finds a person by their unique ID.
      *
@@ -31,10 +44,7 @@ public class PersonRepository {
      */
     public Person findById(UUID personId) {
         logger.info("Searching for person with ID: {}", personId);
-        Person person = persons.stream()
-            .filter(p -> p.getId().equals(personId))
-            .findFirst()
-            .orElse(null);
+        Person person = dataStore.snapshot().persons().byId().get(personId);
 
         if (person != null) {
             logger.info("Person found: {}", person);
@@ -48,12 +58,14 @@ public class PersonRepository {
      * Adds a new person to the repository.
      *
      * @param person The person to add.
-     * @throws IOException If an error occurs while saving data.
+     * @throws IOException If an error occurs while logging the mutation.
      */
     public void addPerson(Person person) throws IOException {
         logger.info("Adding new person: {}", person);
-        persons.add(person);
-        saveData();
+        dataStore.writePersons(persons -> {
+            persons.byId().add(person);
+            return Mutation.add(person);
+        });
         logger.info("Person added successfully.");
     }
 
@@ -61,15 +73,14 @@ public class PersonRepository {
      * Updates an existing person in the repository.
      *
      * @param person The updated person data.
-     * @throws IOException If an error occurs while saving data.
+     * @throws IOException If an error occurs while logging the mutation.
      */
     public void updatePerson(Person person) throws IOException {
         logger.info("Updating person with ID: {}", person.getId());
-        Person existingPerson = this.findById(person.getId());
+        boolean updated = dataStore.writePersons(
+            persons -> persons.byId().replace(person) != null ? Mutation.update(person) : null);
 
-        if (existingPerson != null) {
-            persons.set(persons.indexOf(existingPerson), person);
-            saveData();
+        if (updated) {
             logger.info("Person updated successfully: {}", person);
         } else {
             logger.error("No person found to update with ID: {}", person.getId());
@@ -81,15 +92,14 @@ public class PersonRepository {
      *
      * @param personId The UUID of the person to delete.
      * @return True if the person was deleted, false otherwise.
-     * @throws IOException If an error occurs while saving data.
+     * @throws IOException If an error occurs while logging the mutation.
      */
     public boolean deletePerson(UUID personId) throws IOException {
         logger.info("Deleting person with ID: {}", personId);
-        Person personToDelete = this.findById(personId);
+        boolean deleted = dataStore.writePersons(persons -> persons.byId().remove(personId) != null
+            ? Mutation.delete(Mutation.EntityType.PERSON, personId) : null);
 
-        if (personToDelete != null) {
-            persons.remove(personToDelete);
-            saveData();
+        if (deleted) {
             logger.info("Person deleted successfully: {}", personId);
             return true;
         } else {
@@ -106,9 +116,8 @@ public class PersonRepository {
      */
     public List<Person> findByAddress(String address) {
         logger.info("Finding persons by address: {}", address);
-        List<Person> personsAtAddress = persons.stream()
-            .filter(person -> person.getAddress().equals(address))
-            .toList();
+        DataSnapshot snapshot = dataStore.snapshot();
+        List<Person> personsAtAddress = snapshot.persons().byAddress().get(snapshot.dictionary().key(address));
         logger.info("Found {} persons at address: {}", personsAtAddress.size(), address);
         return personsAtAddress;
     }
@@ -121,9 +130,8 @@ public class PersonRepository {
      */
     public List<Person> findByCity(String city) {
         logger.info("Finding persons by city: {}", city);
-        List<Person> personsInCity = persons.stream()
-            .filter(person -> person.getCity().equals(city))
-            .toList();
+        DataSnapshot snapshot = dataStore.snapshot();
+        List<Person> personsInCity = snapshot.persons().byCity().get(snapshot.dictionary().key(city));
         logger.info("Found {} persons in city: {}", personsInCity.size(), city);
         return personsInCity;
     }
@@ -136,9 +144,7 @@ public class PersonRepository {
      */
     public Collection<Person> findByAddresses(Set<String> addresses) {
         logger.info("Finding persons by addresses: {}", addresses);
-        Collection<Person> personsAtAddresses = persons.stream()
-            .filter(person -> addresses.contains(person.getAddress()))
-            .toList();
+        Collection<Person> personsAtAddresses = dataStore.snapshot().persons().byAddress().getAll(addresses);
         logger.info("Found {} persons at specified addresses.", personsAtAddresses.size());
         return personsAtAddresses;
     }
@@ -151,9 +157,8 @@ public class PersonRepository {
      */
     public List<Person> findByLastName(String lastName) {
         logger.info("Finding persons by last name: {}", lastName);
-        List<Person> personsWithLastName = persons.stream()
-            .filter(person -> person.getLastName().equals(lastName))
-            .toList();
+        DataSnapshot snapshot = dataStore.snapshot();
+        List<Person> personsWithLastName = snapshot.persons().byLastName().get(snapshot.dictionary().key(lastName));
         logger.info("Found {} persons with last name: {}", personsWithLastName.size(), lastName);
         return personsWithLastName;
     }
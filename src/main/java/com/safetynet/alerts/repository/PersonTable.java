@@ -0,0 +1,265 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Person;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Persons of a {@link DataSnapshot}, indexed by ID, address, city and last name.
+ * A table is only modified before being published by the {@link DataStore}; writers modify a copy.
+ * <p>
+ * The persons are held on the heap, unless the table was converted {@link #inColumns() into columns}:
+ * the persons are then stored off-heap in {@link PersonColumns}, shared by all the copies of the table,
+ * and only the persons added or replaced since are held on the heap, the rows they replace being
+ * hidden. Once these changes become too many, a copy of the table stores all the persons in new columns.
+ */
+final class PersonTable {
+
+    private static final Logger logger = LogManager.getLogger(PersonTable.class);
+
+    /**
+     * Minimum number of changes since the columns were built before they are rebuilt.
+     */
+    private static final int MIN_CHANGES_BEFORE_REBUILD = 1024;
+
+    private final KeyIndex<String, Person> byAddress;
+    private final KeyIndex<String, Person> byCity;
+    private final KeyIndex<String, Person> byLastName;
+    private final IndexedList<Person> heap;
+    private final PersonColumns columns;
+    private final BitSet hiddenRows;
+    private final StringDictionary dictionary;
+    private int hiddenRowCount;
+
+    PersonTable(List<Person> persons, StringDictionary dictionary) {
+        this((PersonColumns) null, dictionary);
+        persons.forEach(heap::put);
+    }
+
+    private PersonTable(PersonColumns columns, StringDictionary dictionary) {
+        this.dictionary = dictionary;
+        byAddress = new KeyIndex<>(Person::getAddress, Person::getId);
+        byCity = new KeyIndex<>(Person::getCity, Person::getId);
+        byLastName = new KeyIndex<>(Person::getLastName, Person::getId);
+        heap = new IndexedList<>(Person::getId, this::canonicalize, byAddress, byCity, byLastName);
+        this.columns = columns;
+        hiddenRows = new BitSet();
+    }
+
+    private PersonTable(PersonTable source, StringDictionary dictionary) {
+        this.dictionary = dictionary;
+        byAddress = source.byAddress.copy();
+        byCity = source.byCity.copy();
+        byLastName = source.byLastName.copy();
+        heap = source.heap.copy(this::canonicalize, byAddress, byCity, byLastName);
+        columns = source.columns;
+        hiddenRows = (BitSet) source.hiddenRows.clone();
+        hiddenRowCount = source.hiddenRowCount;
+    }
+
+    PersonTable copy() {
+        if (columns != null
+            && heap.size() + hiddenRowCount >= Math.max(MIN_CHANGES_BEFORE_REBUILD, columns.size() / 8)) {
+            logger.info("Rebuilding person columns after {} changes", heap.size() + hiddenRowCount);
+            return new PersonTable(new PersonColumns(byId().all()), dictionary);
+        }
+        return new PersonTable(this, dictionary);
+    }
+
+    /**
+     * Copies the table, canonicalizing the persons stored from now on with another dictionary.
+     *
+     * @param dictionary The dictionary.
+     * @return The copy.
+     */
+    PersonTable withDictionary(StringDictionary dictionary) {
+        return new PersonTable(this, dictionary);
+    }
+
+    /**
+     * Builds a table holding the same persons, stored off-heap.
+     *
+     * @return The new table, or this one if its persons are already stored in columns.
+     */
+    PersonTable inColumns() {
+        return columns != null ? this : new PersonTable(new PersonColumns(heap.all()), dictionary);
+    }
+
+    EntityList<Person> byId() {
+        return columns != null ? new ColumnarPersons() : heap;
+    }
+
+    KeyLookup<String, Person> byAddress() {
+        return columns != null ? new ColumnarLookup(columns::rowsWithAddress, byAddress) : byAddress;
+    }
+
+    KeyLookup<String, Person> byCity() {
+        return columns != null ? new ColumnarLookup(columns::rowsWithCity, byCity) : byCity;
+    }
+
+    KeyLookup<String, Person> byLastName() {
+        return columns != null ? new ColumnarLookup(columns::rowsWithLastName, byLastName) : byLastName;
+    }
+
+    private int visibleRow(UUID id) {
+        int row = columns.rowOf(id);
+        return row != PersonColumns.NO_ROW && !hiddenRows.get(row) ? row : PersonColumns.NO_ROW;
+    }
+
+    private void hide(int row) {
+        hiddenRows.set(row);
+        hiddenRowCount++;
+    }
+
+    /**
+     * Adds the names, addresses, cities and zips of the persons to a dictionary.
+     *
+     * @param dictionary The dictionary.
+     */
+    void addStrings(StringDictionary dictionary) {
+        for (Person person : byId().all()) {
+            dictionary.canonical(person.getFirstName());
+            dictionary.canonical(person.getLastName());
+            dictionary.canonical(person.getAddress());
+            dictionary.canonical(person.getCity());
+            dictionary.canonical(person.getZip());
+        }
+    }
+
+    /**
+     * Replaces the names, address, city and zip of a person by their canonical instances.
+     */
+    private void canonicalize(Person person) {
+        person.setFirstName(dictionary.canonical(person.getFirstName()));
+        person.setLastName(dictionary.canonical(person.getLastName()));
+        person.setAddress(dictionary.canonical(person.getAddress()));
+        person.setCity(dictionary.canonical(person.getCity()));
+        person.setZip(dictionary.canonical(person.getZip()));
+    }
+
+    /**
+     * The persons of the columns that are not hidden, followed by those held on the heap.
+     */
+    private final class ColumnarPersons implements EntityList<Person> {
+
+        @Override
+        public Person get(UUID id) {
+            Person person = heap.get(id);
+            if (person != null) {
+                return person;
+            }
+            int row = visibleRow(id);
+            return row != PersonColumns.NO_ROW ? columns.person(row) : null;
+        }
+
+        @Override
+        public List<Person> all() {
+            List<Person> persons = new ArrayList<>(size());
+            for (int row = 0; row < columns.size(); row++) {
+                if (!hiddenRows.get(row)) {
+                    persons.add(columns.person(row));
+                }
+            }
+            persons.addAll(heap.all());
+            return Collections.unmodifiableList(persons);
+        }
+
+        @Override
+        public int size() {
+            return columns.size() - hiddenRowCount + heap.size();
+        }
+
+        @Override
+        public void add(Person person) {
+            heap.add(person);
+        }
+
+        @Override
+        public Person replace(Person person) {
+            Person previous = heap.replace(person);
+            if (previous != null) {
+                return previous;
+            }
+            int row = visibleRow(person.getId());
+            if (row == PersonColumns.NO_ROW) {
+                return null;
+            }
+            hide(row);
+            heap.add(person);
+            return columns.person(row);
+        }
+
+        @Override
+        public Person remove(UUID id) {
+            Person removed = heap.remove(id);
+            if (removed != null) {
+                return removed;
+            }
+            int row = visibleRow(id);
+            if (row == PersonColumns.NO_ROW) {
+                return null;
+            }
+            hide(row);
+            return columns.person(row);
+        }
+    }
+
+    /**
+     * Lookup of the persons having a key, among the rows of the columns that are not hidden,
+     * then among the persons held on the heap.
+     */
+    private final class ColumnarLookup implements KeyLookup<String, Person> {
+
+        private final Function<String, int[]> rowsOf;
+        private final KeyIndex<String, Person> heapIndex;
+
+        ColumnarLookup(Function<String, int[]> rowsOf, KeyIndex<String, Person> heapIndex) {
+            this.rowsOf = rowsOf;
+            this.heapIndex = heapIndex;
+        }
+
+        @Override
+        public List<Person> get(String key) {
+            List<Person> persons = new ArrayList<>();
+            addAll(key, persons);
+            return persons;
+        }
+
+        @Override
+        public Person first(String key) {
+            for (int row : rowsOf.apply(key)) {
+                if (!hiddenRows.get(row)) {
+                    return columns.person(row);
+                }
+            }
+            return heapIndex.first(key);
+        }
+
+        @Override
+        public List<Person> getAll(Collection<String> keys) {
+            List<Person> persons = new ArrayList<>();
+            for (String key : keys) {
+                addAll(key, persons);
+            }
+            return persons;
+        }
+
+        private void addAll(String key, List<Person> persons) {
+            for (int row : rowsOf.apply(key)) {
+                if (!hiddenRows.get(row)) {
+                    persons.add(columns.person(row));
+                }
+            }
+            persons.addAll(heapIndex.get(key));
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+
+/**
+ * A person together with their medical record, as returned by queries joining both.
+ *
+ * @param person        The person.
+ * @param medicalRecord The medical record of the person, or null if they have none.
+ */
+public record Resident(Person person, MedicalRecord medicalRecord) {
+}
@@ -0,0 +1,23 @@
+package com.safetynet.alerts.repository;
+
+/**
+ * Secondary index maintained by an {@link IndexedList} alongside its UUID index.
+ *
+ * @param <T> The type of entity indexed.
+ */
+interface SecondaryIndex<T> {
+
+    /**
+     * Indexes a newly added entity.
+     *
+     * @param entity The entity to index.
+     */
+    void add(T entity);
+
+    /**
+     * Removes an entity from the index.
+     *
+     * @param entity The entity to remove.
+     */
+    void remove(T entity);
+}
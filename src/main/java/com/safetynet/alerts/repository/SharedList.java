@@ -0,0 +1,127 @@
+package com.safetynet.alerts.repository;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * List stored in chunks that copies share: a copy only duplicates the array of chunks, and a
+ * chunk is duplicated the first time a list modifies it after a copy. Modifying one element of a
+ * copy thus costs one chunk, whatever the size of the list. The list only grows and shrinks at its
+ * end. Instances are not thread-safe: the {@link DataStore} only modifies copies that have not
+ * been published yet.
+ *
+ * @param <T> The type of element.
+ */
+final class SharedList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int MIN_CHUNK_CAPACITY = 4;
+
+    private Object[][] chunks;
+    // Whether each chunk was created or duplicated by this list, and can be modified in place
+    private boolean[] owned;
+    private int size;
+
+    SharedList() {
+        chunks = new Object[0][];
+        owned = new boolean[0];
+    }
+
+    private SharedList(SharedList<T> source) {
+        chunks = source.chunks.clone();
+        owned = new boolean[chunks.length];
+        size = source.size;
+        // The source must not modify the chunks in place either, since they are now shared
+        Arrays.fill(source.owned, false);
+    }
+
+    /**
+     * Copies the list.
+     *
+     * @return A copy of the list, sharing its chunks, that can be modified without affecting this one.
+     */
+    SharedList<T> copy() {
+        return new SharedList<>(this);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        checkIndex(index);
+        return (T) chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T set(int index, T element) {
+        checkIndex(index);
+        Object[] chunk = writableChunk(index >>> CHUNK_SHIFT, 0);
+        T previous = (T) chunk[index & (CHUNK_SIZE - 1)];
+        chunk[index & (CHUNK_SIZE - 1)] = element;
+        return previous;
+    }
+
+    @Override
+    public boolean add(T element) {
+        int chunkIndex = size >>> CHUNK_SHIFT;
+        if (chunkIndex == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkIndex + 1);
+            owned = Arrays.copyOf(owned, chunkIndex + 1);
+            chunks[chunkIndex] = new Object[chunkIndex == 0 ? MIN_CHUNK_CAPACITY : CHUNK_SIZE];
+            owned[chunkIndex] = true;
+        }
+        writableChunk(chunkIndex, (size & (CHUNK_SIZE - 1)) + 1)[size & (CHUNK_SIZE - 1)] = element;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the last element of the list.
+     *
+     * @return The element removed.
+     */
+    T removeLast() {
+        T last = set(size - 1, null);
+        size--;
+        if ((size & (CHUNK_SIZE - 1)) == 0) {
+            int chunkCount = size >>> CHUNK_SHIFT;
+            chunks = Arrays.copyOf(chunks, chunkCount);
+            owned = Arrays.copyOf(owned, chunkCount);
+        }
+        modCount++;
+        return last;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves a chunk that can be modified in place, duplicating it if it is shared, and growing
+     * it if it holds less than the given number of elements. Only the first chunk starts small,
+     * so that the many short lists (e.g. the persons living at one address) stay small.
+     */
+    private Object[] writableChunk(int chunkIndex, int minCapacity) {
+        Object[] chunk = chunks[chunkIndex];
+        if (chunk.length < minCapacity) {
+            chunk = Arrays.copyOf(chunk, Math.min(CHUNK_SIZE, Math.max(minCapacity, chunk.length * 2)));
+        } else if (!owned[chunkIndex]) {
+            chunk = chunk.clone();
+        } else {
+            return chunk;
+        }
+        chunks[chunkIndex] = chunk;
+        owned[chunkIndex] = true;
+        return chunk;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+}
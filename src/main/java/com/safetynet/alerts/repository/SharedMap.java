@@ -0,0 +1,119 @@
+package com.safetynet.alerts.repository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Hash map stored in buckets that copies share: a copy only duplicates the array of buckets, and
+ * a bucket is duplicated the first time a map modifies it after a copy. The number of buckets
+ * follows the square root of the size of the map, so that modifying a copy costs about as much
+ * as copying the square root of its size, instead of the whole map. Instances are not thread-safe:
+ * the {@link DataStore} only modifies copies that have not been published yet.
+ *
+ * @param <K> The type of key.
+ * @param <V> The type of value.
+ */
+final class SharedMap<K, V> {
+
+    /**
+     * Average number of entries per bucket, in multiples of the number of buckets, above which
+     * the number of buckets is doubled.
+     */
+    private static final int LOAD_FACTOR = 4;
+
+    private Map<K, V>[] buckets;
+    // Whether each bucket was created or duplicated by this map, and can be modified in place
+    private boolean[] owned;
+    private int size;
+
+    SharedMap() {
+        buckets = newBuckets(1);
+        owned = new boolean[1];
+    }
+
+    private SharedMap(SharedMap<K, V> source) {
+        buckets = source.buckets.clone();
+        owned = new boolean[buckets.length];
+        size = source.size;
+        // The source must not modify the buckets in place either, since they are now shared
+        Arrays.fill(source.owned, false);
+    }
+
+    /**
+     * Copies the map.
+     *
+     * @return A copy of the map, sharing its buckets, that can be modified without affecting this one.
+     */
+    SharedMap<K, V> copy() {
+        return new SharedMap<>(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V>[] newBuckets(int count) {
+        Map<K, V>[] buckets = new Map[count];
+        for (int i = 0; i < count; i++) {
+            buckets[i] = new HashMap<>();
+        }
+        return buckets;
+    }
+
+    private int bucketOf(Object key) {
+        if (buckets.length == 1) {
+            return 0;
+        }
+        // The top bits of the mixed hash, since the maps of the buckets index their entries by the low bits
+        return (Objects.hashCode(key) * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(buckets.length));
+    }
+
+    V get(Object key) {
+        return buckets[bucketOf(key)].get(key);
+    }
+
+    V put(K key, V value) {
+        V previous = writableBucket(bucketOf(key)).put(key, value);
+        if (previous == null && ++size > LOAD_FACTOR * buckets.length * buckets.length) {
+            grow();
+        }
+        return previous;
+    }
+
+    V remove(Object key) {
+        int bucket = bucketOf(key);
+        if (!buckets[bucket].containsKey(key)) {
+            return null;
+        }
+        size--;
+        return writableBucket(bucket).remove(key);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Map<K, V> bucket : buckets) {
+            bucket.forEach(action);
+        }
+    }
+
+    private Map<K, V> writableBucket(int bucket) {
+        if (!owned[bucket]) {
+            buckets[bucket] = new HashMap<>(buckets[bucket]);
+            owned[bucket] = true;
+        }
+        return buckets[bucket];
+    }
+
+    private void grow() {
+        Map<K, V>[] previous = buckets;
+        buckets = newBuckets(previous.length * 2);
+        owned = new boolean[buckets.length];
+        Arrays.fill(owned, true);
+        for (Map<K, V> bucket : previous) {
+            bucket.forEach((key, value) -> buckets[bucketOf(key)].put(key, value));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.repository.MedicalRecordTable.PersonName;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Computes the mutations turning the live data into data read from a file, so that the file can
+ * be applied to the {@link DataStore} like any other write instead of replacing its content.
+ * <p>
+ * An entity of the file is matched with the live entity having the same ID if there is one, and
+ * otherwise with a live entity having the same natural key (the name of a person or medical
+ * record, the address of a firestation): a hand-edited file usually has no IDs at all. Matched
+ * entities keep their live ID and are only updated if their content differs. Unmatched entities
+ * of the file are added, and unmatched live entities are deleted.
+ */
+final class SnapshotDiff {
+
+    private static final EntityDiff<Person, PersonName> PERSONS = new EntityDiff<>(
+        Person::getId, Person::setId, person -> new PersonName(person.getFirstName(), person.getLastName()),
+        (a, b) -> Objects.equals(a.getFirstName(), b.getFirstName())
+            && Objects.equals(a.getLastName(), b.getLastName())
+            && Objects.equals(a.getAddress(), b.getAddress())
+            && Objects.equals(a.getCity(), b.getCity())
+            && Objects.equals(a.getZip(), b.getZip())
+            && Objects.equals(a.getPhone(), b.getPhone())
+            && Objects.equals(a.getEmail(), b.getEmail()),
+        Mutation::add, Mutation::update, Mutation.EntityType.PERSON);
+
+    private static final EntityDiff<Firestation, String> FIRESTATIONS = new EntityDiff<>(
+        Firestation::getId, Firestation::setId, Firestation::getAddress,
+        (a, b) -> Objects.equals(a.getAddress(), b.getAddress()) && a.getStation() == b.getStation(),
+        Mutation::add, Mutation::update, Mutation.EntityType.FIRESTATION);
+
+    private static final EntityDiff<MedicalRecord, PersonName> MEDICAL_RECORDS = new EntityDiff<>(
+        MedicalRecord::getId, MedicalRecord::setId, PersonName::of,
+        (a, b) -> Objects.equals(a.getFirstName(), b.getFirstName())
+            && Objects.equals(a.getLastName(), b.getLastName())
+            && Objects.equals(a.getBirthdate(), b.getBirthdate())
+            && Objects.equals(a.getMedications(), b.getMedications())
+            && Objects.equals(a.getAllergies(), b.getAllergies()),
+        Mutation::add, Mutation::update, Mutation.EntityType.MEDICAL_RECORD);
+
+    private SnapshotDiff() {}
+
+    /**
+     * Computes the mutations turning the live data into the data read from a file.
+     * The entities of the file that match a live entity are given its ID.
+     *
+     * @param live     The live data.
+     * @param incoming The data read from the file, not published.
+     * @return The mutations to apply, empty if the file holds the same data.
+     */
+    static List<Mutation> diff(DataSnapshot live, DataSnapshot incoming) {
+        List<Mutation> mutations = new ArrayList<>();
+        PERSONS.diff(live.persons().byId(), incoming.persons().byId().all(), mutations);
+        FIRESTATIONS.diff(live.firestations().byId(), incoming.firestations().byId().all(), mutations);
+        MEDICAL_RECORDS.diff(live.medicalRecords().byId(), incoming.medicalRecords().byId().all(), mutations);
+        return mutations;
+    }
+
+    /**
+     * How entities of one type are matched, compared and turned into mutations.
+     *
+     * @param <T> The type of entity.
+     * @param <K> The type of natural key of the entity.
+     */
+    private record EntityDiff<T, K>(Function<T, UUID> idOf, BiConsumer<T, UUID> setId, Function<T, K> keyOf,
+                                    BiPredicate<T, T> sameContent, Function<T, Mutation> add,
+                                    Function<T, Mutation> update, Mutation.EntityType entityType) {
+
+        void diff(EntityList<T> live, List<T> incoming, List<Mutation> mutations) {
+            Set<UUID> matchedIds = new HashSet<>();
+            List<T> unmatched = new ArrayList<>();
+
+            // Entities that kept their ID first, so that a natural key never steals their match
+            for (T entity : incoming) {
+                T current = live.get(idOf.apply(entity));
+                if (current != null && matchedIds.add(idOf.apply(current))) {
+                    compare(current, entity, mutations);
+                } else {
+                    unmatched.add(entity);
+                }
+            }
+
+            Map<K, Deque<T>> candidatesByKey = new LinkedHashMap<>();
+            for (T current : live.all()) {
+                if (!matchedIds.contains(idOf.apply(current))) {
+                    candidatesByKey.computeIfAbsent(keyOf.apply(current), key -> new ArrayDeque<>()).add(current);
+                }
+            }
+            for (T entity : unmatched) {
+                Deque<T> candidates = candidatesByKey.get(keyOf.apply(entity));
+                T current = candidates != null ? candidates.poll() : null;
+                if (current != null) {
+                    setId.accept(entity, idOf.apply(current));
+                    compare(current, entity, mutations);
+                } else {
+                    mutations.add(add.apply(entity));
+                }
+            }
+
+            for (Deque<T> candidates : candidatesByKey.values()) {
+                for (T current : candidates) {
+                    mutations.add(Mutation.delete(entityType, idOf.apply(current)));
+                }
+            }
+        }
+
+        private void compare(T current, T entity, List<Mutation> mutations) {
+            if (!sameContent.test(current, entity)) {
+                mutations.add(update.apply(entity));
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.safetynet.alerts.repository;
+
+import java.util.Locale;
+
+/**
+ * File formats in which snapshots of the data can be written.
+ * Whatever the configured format, the most recent snapshot is loaded at startup, so data.json
+ * can still be used to import data into a store persisting binary snapshots.
+ */
+public enum SnapshotFormat {
+    /**
+     * Pretty-printed JSON, readable and editable by hand.
+     */
+    JSON(DataLoader.DATA_FILE),
+    /**
+     * Compact binary layout with dictionary-encoded strings, several times faster to load.
+     */
+    BINARY("data.bin");
+
+    private final String file;
+
+    SnapshotFormat(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Parses a snapshot format as written in the application properties, e.g. "binary".
+     *
+     * @param value The name of the format.
+     * @return The snapshot format.
+     */
+    public static SnapshotFormat fromProperty(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getTempFile() {
+        return file + ".tmp";
+    }
+
+    public String getBackupFile() {
+        return file + ".bak";
+    }
+}
@@ -0,0 +1,341 @@
+package com.safetynet.alerts.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Storage engine persisting the data in an embedded, file-based SQL database (H2 by default).
+ * Each entity is a row of the table of its type, keyed by its ID.
+ * <p>
+ * Mutations are executed in a transaction that is committed before the write is acknowledged;
+ * writers waiting at the same time share a single commit. Every row records the order it was last
+ * written in, so {@link #load()} returns the entities in the order the indexes of the
+ * {@link DataStore} hold them.
+ * <p>
+ * The database does not bound the heap: the store serves its reads from memory, so
+ * {@link #load()} reads every row of the database into the heap at startup.
+ */
+@Component
+@ConditionalOnProperty(name = "data.storage.engine", havingValue = "sql")
+public class SqlStorage implements StorageEngine {
+
+    private static final Logger logger = LogManager.getLogger(SqlStorage.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {};
+
+    private static final String[] SCHEMA = {
+        "CREATE SEQUENCE IF NOT EXISTS write_orders",
+        "CREATE TABLE IF NOT EXISTS persons (id UUID PRIMARY KEY, first_name VARCHAR, last_name VARCHAR, "
+            + "address VARCHAR, city VARCHAR, zip VARCHAR, phone VARCHAR, email VARCHAR)",
+        "ALTER TABLE persons ADD COLUMN IF NOT EXISTS write_order BIGINT",
+        "CREATE TABLE IF NOT EXISTS firestations (id UUID PRIMARY KEY, address VARCHAR, station INT)",
+        "ALTER TABLE firestations ADD COLUMN IF NOT EXISTS write_order BIGINT",
+        "CREATE TABLE IF NOT EXISTS medical_records (id UUID PRIMARY KEY, first_name VARCHAR, last_name VARCHAR, "
+            + "birthdate VARCHAR, medications VARCHAR, allergies VARCHAR)",
+        "ALTER TABLE medical_records ADD COLUMN IF NOT EXISTS write_order BIGINT",
+        // Nothing is looked up in the database: indexes created by earlier versions are only a cost to writes
+        "DROP INDEX IF EXISTS persons_address",
+        "DROP INDEX IF EXISTS persons_city",
+        "DROP INDEX IF EXISTS persons_last_name",
+        "DROP INDEX IF EXISTS persons_name",
+        "DROP INDEX IF EXISTS firestations_address",
+        "DROP INDEX IF EXISTS firestations_station",
+        "DROP INDEX IF EXISTS medical_records_name"
+    };
+
+    private static final String PERSON_COLUMNS =
+        "p.id, p.first_name, p.last_name, p.address, p.city, p.zip, p.phone, p.email";
+    private static final String MEDICAL_RECORD_COLUMNS =
+        "m.id, m.first_name, m.last_name, m.birthdate, m.medications, m.allergies";
+
+    private final String url;
+    private final Object syncLock = new Object();
+
+    private Connection connection;
+    private PreparedStatement mergePerson;
+    private PreparedStatement mergeFirestation;
+    private PreparedStatement mergeMedicalRecord;
+
+    // Sequence numbers of the last mutation executed and of the last one committed
+    private long written;
+    private volatile long committed;
+
+    @Autowired
+    public SqlStorage(@Value("${data.storage.sql-url:jdbc:h2:file:./data}") String url) {
+        this.url = url;
+    }
+
+    /**
+     * Connects to the database, creating the schema if needed, and reads every entity, in the order
+     * they were last written. If the database is empty, the data is imported from the most recent
+     * JSON or binary snapshot, if any. Every row is held on the heap until the snapshot is built.
+     *
+     * @return The data, not published yet.
+     * @throws IOException If the database cannot be read, or the snapshot to import cannot be loaded.
+     */
+    @Override
+    public synchronized DataSnapshot load() throws IOException {
+        try {
+            connection = DriverManager.getConnection(url, "sa", "");
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            mergePerson = connection.prepareStatement("MERGE INTO persons (id, first_name, last_name, address, "
+                + "city, zip, phone, email, write_order) KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NEXT VALUE FOR write_orders)");
+            mergeFirestation = connection.prepareStatement("MERGE INTO firestations (id, address, station, write_order) "
+                + "KEY (id) VALUES (?, ?, ?, NEXT VALUE FOR write_orders)");
+            mergeMedicalRecord = connection.prepareStatement("MERGE INTO medical_records (id, first_name, last_name, "
+                + "birthdate, medications, allergies, write_order) KEY (id) VALUES (?, ?, ?, ?, ?, ?, NEXT VALUE FOR write_orders)");
+            connection.commit();
+
+            if (isEmpty()) {
+                DataSnapshot imported = DataLoader.loadSnapshotIfAny();
+                insertAll(imported);
+                logger.info("Imported {} persons, {} firestations and {} medical records into {}",
+                    imported.persons().byId().size(), imported.firestations().byId().size(),
+                    imported.medicalRecords().byId().size(), url);
+                return imported;
+            }
+            return selectAll();
+        } catch (SQLException e) {
+            throw new IOException("Error while loading data from " + url, e);
+        }
+    }
+
+    private boolean isEmpty() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT (SELECT COUNT(*) FROM persons) "
+                 + "+ (SELECT COUNT(*) FROM firestations) + (SELECT COUNT(*) FROM medical_records)")) {
+            resultSet.next();
+            return resultSet.getLong(1) == 0;
+        }
+    }
+
+    private void insertAll(DataSnapshot snapshot) throws SQLException, IOException {
+        for (Person person : snapshot.persons().byId().all()) {
+            bind(mergePerson, person);
+            mergePerson.addBatch();
+        }
+        for (Firestation firestation : snapshot.firestations().byId().all()) {
+            bind(mergeFirestation, firestation);
+            mergeFirestation.addBatch();
+        }
+        for (MedicalRecord medicalRecord : snapshot.medicalRecords().byId().all()) {
+            bind(mergeMedicalRecord, medicalRecord);
+            mergeMedicalRecord.addBatch();
+        }
+        mergePerson.executeBatch();
+        mergeFirestation.executeBatch();
+        mergeMedicalRecord.executeBatch();
+        connection.commit();
+    }
+
+    private DataSnapshot selectAll() throws SQLException, IOException {
+        List<Person> persons = new ArrayList<>();
+        List<Firestation> firestations = new ArrayList<>();
+        List<MedicalRecord> medicalRecords = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery(
+                     "SELECT " + PERSON_COLUMNS + " FROM persons p ORDER BY p.write_order, p.id")) {
+                while (resultSet.next()) {
+                    persons.add(person(resultSet, 1));
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery(
+                     "SELECT id, address, station FROM firestations ORDER BY write_order, id")) {
+                while (resultSet.next()) {
+                    Firestation firestation = new Firestation(resultSet.getString(2), resultSet.getInt(3));
+                    firestation.setId(resultSet.getObject(1, UUID.class));
+                    firestations.add(firestation);
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery(
+                     "SELECT " + MEDICAL_RECORD_COLUMNS + " FROM medical_records m ORDER BY m.write_order, m.id")) {
+                while (resultSet.next()) {
+                    medicalRecords.add(medicalRecord(resultSet, 1));
+                }
+            }
+        }
+        logger.info("Loaded {} persons, {} firestations and {} medical records from {}",
+            persons.size(), firestations.size(), medicalRecords.size(), url);
+        return DataSnapshot.of(persons, firestations, medicalRecords);
+    }
+
+    /**
+     * Executes the statement of a committed mutation, in the transaction committed by
+     * {@link #awaitDurable(long)}.
+     *
+     * @param mutation The mutation to persist.
+     * @return The sequence number of the mutation.
+     * @throws IOException If an error occurs while executing the statement.
+     */
+    @Override
+    public synchronized long log(Mutation mutation) throws IOException {
+        try {
+            if (mutation.getOperation() == Mutation.Operation.DELETE) {
+                try (PreparedStatement delete = connection.prepareStatement(
+                         "DELETE FROM " + table(mutation.getEntityType()) + " WHERE id = ?")) {
+                    delete.setObject(1, mutation.getId());
+                    delete.executeUpdate();
+                }
+            } else {
+                switch (mutation.getEntityType()) {
+                    case PERSON -> {
+                        bind(mergePerson, mapper.convertValue(mutation.getEntity(), Person.class));
+                        mergePerson.executeUpdate();
+                    }
+                    case FIRESTATION -> {
+                        bind(mergeFirestation, mapper.convertValue(mutation.getEntity(), Firestation.class));
+                        mergeFirestation.executeUpdate();
+                    }
+                    case MEDICAL_RECORD -> {
+                        bind(mergeMedicalRecord, mapper.convertValue(mutation.getEntity(), MedicalRecord.class));
+                        mergeMedicalRecord.executeUpdate();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            // Only the failed statement is undone: the transaction holds the mutations of other writers
+            throw new IOException("Error while persisting mutation " + mutation.getId() + " to " + url, e);
+        }
+        return ++written;
+    }
+
+    private static String table(Mutation.EntityType entityType) {
+        return switch (entityType) {
+            case PERSON -> "persons";
+            case FIRESTATION -> "firestations";
+            case MEDICAL_RECORD -> "medical_records";
+        };
+    }
+
+    /**
+     * Commits the transaction if the mutation is not committed yet. The first writer to get here
+     * commits every mutation executed so far, so the writers waiting behind it find theirs committed.
+     *
+     * @param sequence The sequence number returned when the mutation was persisted.
+     * @throws IOException If an error occurs while committing.
+     */
+    @Override
+    public void awaitDurable(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (committed >= sequence) {
+                return;
+            }
+            synchronized (this) {
+                try {
+                    connection.commit();
+                } catch (SQLException e) {
+                    throw new IOException("Error while committing mutations up to " + written + " to " + url, e);
+                }
+                committed = written;
+            }
+        }
+    }
+
+    /**
+     * Does nothing: the database manages its own files.
+     *
+     * @param snapshot The data, including every mutation persisted so far.
+     */
+    @Override
+    public void compactIfDue(DataSnapshot snapshot) {
+    }
+
+    private static void bind(PreparedStatement statement, Person person) throws SQLException {
+        statement.setObject(1, person.getId());
+        statement.setString(2, person.getFirstName());
+        statement.setString(3, person.getLastName());
+        statement.setString(4, person.getAddress());
+        statement.setString(5, person.getCity());
+        statement.setString(6, person.getZip());
+        statement.setString(7, person.getPhone());
+        statement.setString(8, person.getEmail());
+    }
+
+    private static void bind(PreparedStatement statement, Firestation firestation) throws SQLException {
+        statement.setObject(1, firestation.getId());
+        statement.setString(2, firestation.getAddress());
+        statement.setInt(3, firestation.getStation());
+    }
+
+    private static void bind(PreparedStatement statement, MedicalRecord medicalRecord)
+        throws SQLException, IOException {
+        statement.setObject(1, medicalRecord.getId());
+        statement.setString(2, medicalRecord.getFirstName());
+        statement.setString(3, medicalRecord.getLastName());
+        statement.setString(4, medicalRecord.getBirthdate());
+        setStrings(statement, 5, medicalRecord.getMedications());
+        setStrings(statement, 6, medicalRecord.getAllergies());
+    }
+
+    private static void setStrings(PreparedStatement statement, int parameter, List<String> strings)
+        throws SQLException, IOException {
+        if (strings == null) {
+            statement.setNull(parameter, Types.VARCHAR);
+        } else {
+            statement.setString(parameter, mapper.writeValueAsString(strings));
+        }
+    }
+
+    private static Person person(ResultSet resultSet, int column) throws SQLException {
+        Person person = new Person(resultSet.getString(column + 1), resultSet.getString(column + 2),
+            resultSet.getString(column + 3), resultSet.getString(column + 4), resultSet.getString(column + 5),
+            resultSet.getString(column + 6), resultSet.getString(column + 7));
+        person.setId(resultSet.getObject(column, UUID.class));
+        return person;
+    }
+
+    private static MedicalRecord medicalRecord(ResultSet resultSet, int column) throws SQLException, IOException {
+        MedicalRecord medicalRecord = new MedicalRecord(resultSet.getString(column + 1),
+            resultSet.getString(column + 2), resultSet.getString(column + 3),
+            strings(resultSet.getString(column + 4)), strings(resultSet.getString(column + 5)));
+        medicalRecord.setId(resultSet.getObject(column, UUID.class));
+        return medicalRecord;
+    }
+
+    private static List<String> strings(String json) throws IOException {
+        return json != null ? mapper.readValue(json, STRING_LIST) : null;
+    }
+
+    /**
+     * Commits the pending mutations and closes the connection on shutdown.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.commit();
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing connection to {}", url, e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.safetynet.alerts.repository;
+
+import java.io.IOException;
+
+/**
+ * Where the data of the {@link DataStore} is persisted.
+ * The store keeps serving reads from its snapshots; the engine loads the data at startup, makes
+ * each committed mutation durable, and takes snapshots of the data when it sees fit. The engine
+ * is selected with the data.storage.engine property:
+ * <ul>
+ *     <li>json: a data file rewritten as a whole, plus a log of the mutations since ({@link MutationPersister});</li>
+ *     <li>kv: an embedded key-value file holding one record per entity ({@link KeyValueStorage});</li>
+ *     <li>sql: an embedded H2 database with one indexed table per entity ({@link SqlStorage}).</li>
+ * </ul>
+ */
+public interface StorageEngine {
+
+    /**
+     * Loads the persisted data. Called once, before any mutation is logged.
+     *
+     * @return The data, not published yet.
+     * @throws IOException If the data cannot be read.
+     */
+    DataSnapshot load() throws IOException;
+
+    /**
+     * Persists a committed mutation. Called by the {@link DataStore} while it holds its write lock,
+     * so mutations are persisted in commit order.
+     *
+     * @param mutation The mutation to persist.
+     * @return The sequence number of the mutation, to pass to {@link #awaitDurable(long)}.
+     * @throws IOException If the mutation cannot be persisted; it must then be discarded.
+     */
+    long log(Mutation mutation) throws IOException;
+
+    /**
+     * Waits until a persisted mutation is durable, as required by the configuration of the engine.
+     * Called without holding the write lock of the {@link DataStore}.
+     *
+     * @param sequence The sequence number returned when the mutation was persisted.
+     * @throws IOException If the mutation could not be made durable.
+     */
+    void awaitDurable(long sequence) throws IOException;
+
+    /**
+     * Takes a snapshot of the data if the engine needs one, e.g. to bound the size of its files.
+     * Called by the {@link DataStore} while it holds its write lock, after each commit.
+     *
+     * @param snapshot The data, including every mutation persisted so far.
+     * @throws IOException If an error occurs while starting the snapshot.
+     */
+    void compactIfDue(DataSnapshot snapshot) throws IOException;
+
+    /**
+     * Makes the next snapshot due regardless of the size of the files of the engine, e.g. once the
+     * data has been reloaded from a file that the persisted mutations no longer apply to.
+     * Engines whose snapshots do not depend on the mutations logged since do nothing.
+     */
+    default void requestCompaction() {
+    }
+}
@@ -0,0 +1,141 @@
+package com.safetynet.alerts.repository;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the strings repeated across the entities, such as addresses, cities, zips, names,
+ * medications and allergies.
+ * Each {@link DataSnapshot} holds a dictionary, shared by its tables and by the snapshots that
+ * follow it. The tables replace these values by the instance held by the dictionary when an entity
+ * is stored, so that equal values share one instance and one compact int ID, whichever entity they
+ * come from. Two canonical strings are equal only if they are the same instance, and the key lookups
+ * done with a canonical string compare references instead of characters.
+ * <p>
+ * Values are never removed from a dictionary. Instead, once the values stored since the data was
+ * loaded or last compacted have doubled the dictionary, the {@link DataStore} publishes its data with
+ * a dictionary holding only the values of the live entities (see {@link #compacted(DataSnapshot)}),
+ * so the values of deleted entities are eventually released. The entities of older snapshots keep
+ * the instances of the previous dictionary: they are still equal to the new ones, so lookups still
+ * find them, only comparing characters. Since each store has its own dictionaries, compacting the
+ * data of one store never affects another. Lookups are lock-free; additions are serialized.
+ */
+final class StringDictionary {
+
+    static final int NO_ID = -1;
+
+    private record Entry(String value, int id) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[1024];
+    private int size;
+
+    /**
+     * Builds a dictionary holding only the values of the given data.
+     * The values keep the instances the entities hold, so the entities are not modified.
+     *
+     * @param snapshot The live data.
+     * @return The new dictionary.
+     */
+    static StringDictionary compacted(DataSnapshot snapshot) {
+        StringDictionary compacted = new StringDictionary();
+        snapshot.persons().addStrings(compacted);
+        snapshot.firestations().addStrings(compacted);
+        snapshot.medicalRecords().addStrings(compacted);
+        return compacted;
+    }
+
+    /**
+     * Retrieves the canonical instance of a value, adding the value to the dictionary if needed.
+     *
+     * @param value The value, may be null.
+     * @return The instance held by the dictionary, equal to the value, or null if the value is null.
+     */
+    String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        Entry entry = entries.get(value);
+        return entry != null ? entry.value() : add(value).value();
+    }
+
+    /**
+     * Retrieves the canonical instance of a value, without adding it to the dictionary.
+     * Used for the keys of queries: a value that is not in the dictionary is held by no entity.
+     *
+     * @param value The value, may be null.
+     * @return The instance held by the dictionary, or null if the value is null or not in the dictionary.
+     */
+    String find(String value) {
+        if (value == null) {
+            return null;
+        }
+        Entry entry = entries.get(value);
+        return entry != null ? entry.value() : null;
+    }
+
+    /**
+     * Retrieves the instance to look a value up with in the tables: the canonical one if the value
+     * is known, so that the lookup compares references, the value itself otherwise.
+     *
+     * @param value The value searched, may be null.
+     * @return The canonical instance of the value if any, the value otherwise.
+     */
+    String key(String value) {
+        String canonical = find(value);
+        return canonical != null ? canonical : value;
+    }
+
+    /**
+     * Retrieves the ID of a value, without adding it to the dictionary.
+     *
+     * @param value The value, may be null.
+     * @return The ID of the value, or {@link #NO_ID} if it is null or not in the dictionary.
+     */
+    int idOf(String value) {
+        if (value == null) {
+            return NO_ID;
+        }
+        Entry entry = entries.get(value);
+        return entry != null ? entry.id() : NO_ID;
+    }
+
+    /**
+     * Retrieves a value by its ID.
+     *
+     * @param id An ID returned by {@link #idOf(String)}.
+     * @return The canonical instance of the value.
+     */
+    String valueOf(int id) {
+        return values[id];
+    }
+
+    /**
+     * Retrieves the number of values in the dictionary.
+     *
+     * @return The number of distinct values added so far.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private synchronized Entry add(String value) {
+        Entry entry = entries.get(value);
+        if (entry != null) {
+            return entry;
+        }
+
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        // Published before the entry, so that the ID of an entry always resolves to its value
+        values = current;
+        entry = new Entry(value, size++);
+        entries.put(value, entry);
+        return entry;
+    }
+}
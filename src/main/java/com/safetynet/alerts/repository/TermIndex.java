@@ -0,0 +1,199 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.MedicalRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Inverted index from the medications and allergies to the medical records listing them.
+ * Each record indexed is given a dense ordinal, reused once the record is removed, and each term a
+ * posting list: the {@link RoaringBitmap} of the ordinals of the records listing it. Queries combine
+ * terms and coverage with bitmap operations instead of scanning the records.
+ * <p>
+ * The terms under which each record was indexed are remembered, as in {@link KeyIndex}. A copy
+ * shares the posting lists of the index it was copied from, held in a {@link SharedMap}, and only
+ * copies those it modifies; the ordinals and records are held in a {@link SharedMap} and
+ * {@link SharedList}, shared the same way.
+ */
+final class TermIndex implements SecondaryIndex<MedicalRecord> {
+
+    static final int NO_ORDINAL = -1;
+
+    /**
+     * A record indexed, with the terms it was indexed under.
+     */
+    private record Entry(MedicalRecord record, List<String> medications, List<String> allergies) {
+    }
+
+    private final SharedMap<UUID, Integer> ordinals;
+    private final SharedList<Entry> entries;
+    private final SharedList<Integer> freeOrdinals;
+    private final SharedMap<String, RoaringBitmap> byMedication;
+    private final SharedMap<String, RoaringBitmap> byAllergy;
+    private final Set<RoaringBitmap> ownedPostings = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    TermIndex() {
+        ordinals = new SharedMap<>();
+        entries = new SharedList<>();
+        freeOrdinals = new SharedList<>();
+        byMedication = new SharedMap<>();
+        byAllergy = new SharedMap<>();
+    }
+
+    private TermIndex(TermIndex source) {
+        ordinals = source.ordinals.copy();
+        entries = source.entries.copy();
+        freeOrdinals = source.freeOrdinals.copy();
+        byMedication = source.byMedication.copy();
+        byAllergy = source.byAllergy.copy();
+        // The source must not modify the postings in place either, since they are now shared
+        source.ownedPostings.clear();
+    }
+
+    /**
+     * Copies the index.
+     *
+     * @return A copy of the index that can be modified without affecting this one.
+     */
+    TermIndex copy() {
+        return new TermIndex(this);
+    }
+
+    @Override
+    public void add(MedicalRecord medicalRecord) {
+        int ordinal = !freeOrdinals.isEmpty() ? freeOrdinals.removeLast() : entries.size();
+        Entry entry = new Entry(medicalRecord, medicalRecord.getMedications(), medicalRecord.getAllergies());
+        if (ordinal == entries.size()) {
+            entries.add(entry);
+        } else {
+            entries.set(ordinal, entry);
+        }
+        ordinals.put(medicalRecord.getId(), ordinal);
+        update(byMedication, entry.medications(), ordinal, true);
+        update(byAllergy, entry.allergies(), ordinal, true);
+    }
+
+    @Override
+    public void remove(MedicalRecord medicalRecord) {
+        Integer ordinal = ordinals.remove(medicalRecord.getId());
+        if (ordinal == null) {
+            return;
+        }
+        Entry entry = entries.set(ordinal, null);
+        update(byMedication, entry.medications(), ordinal, false);
+        update(byAllergy, entry.allergies(), ordinal, false);
+        freeOrdinals.add(ordinal);
+    }
+
+    /**
+     * Retrieves the ordinals of the records listing a medication.
+     *
+     * @param medication The medication, e.g. "aznol:350mg".
+     * @return The bitmap of the ordinals, which must not be modified.
+     */
+    RoaringBitmap withMedication(String medication) {
+        return posting(byMedication, medication);
+    }
+
+    /**
+     * Retrieves the ordinals of the records listing an allergy.
+     *
+     * @param allergy The allergy, e.g. "peanut".
+     * @return The bitmap of the ordinals, which must not be modified.
+     */
+    RoaringBitmap withAllergy(String allergy) {
+        return posting(byAllergy, allergy);
+    }
+
+    /**
+     * Counts the records listing each medication, from the cardinality of its posting list.
+     *
+     * @return The number of records listing each medication, most frequent first.
+     */
+    Map<String, Integer> countByMedication() {
+        return count(byMedication);
+    }
+
+    /**
+     * Counts the records listing each allergy, from the cardinality of its posting list.
+     *
+     * @return The number of records listing each allergy, most frequent first.
+     */
+    Map<String, Integer> countByAllergy() {
+        return count(byAllergy);
+    }
+
+    /**
+     * Retrieves the ordinal of a record.
+     *
+     * @param id The UUID of the record.
+     * @return The ordinal of the record, or {@link #NO_ORDINAL} if it is not indexed.
+     */
+    int ordinalOf(UUID id) {
+        Integer ordinal = ordinals.get(id);
+        return ordinal != null ? ordinal : NO_ORDINAL;
+    }
+
+    /**
+     * Retrieves the record having an ordinal.
+     *
+     * @param ordinal The ordinal, set in a bitmap returned by this index.
+     * @return The record.
+     */
+    MedicalRecord recordAt(int ordinal) {
+        return entries.get(ordinal).record();
+    }
+
+    private static RoaringBitmap posting(SharedMap<String, RoaringBitmap> postings, String term) {
+        // Published indexes are never modified, so their postings can be shared with the caller
+        RoaringBitmap posting = postings.get(term);
+        return posting != null ? posting : new RoaringBitmap();
+    }
+
+    private static Map<String, Integer> count(SharedMap<String, RoaringBitmap> postings) {
+        List<Map.Entry<String, Integer>> cardinalities = new ArrayList<>(postings.size());
+        postings.forEach((term, posting) -> cardinalities.add(Map.entry(term, posting.cardinality())));
+        cardinalities.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey()));
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        cardinalities.forEach(cardinality -> counts.put(cardinality.getKey(), cardinality.getValue()));
+        return counts;
+    }
+
+    private void update(SharedMap<String, RoaringBitmap> postings, List<String> terms, int ordinal, boolean set) {
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            if (term == null) {
+                continue;
+            }
+            RoaringBitmap posting = postings.get(term);
+            if (posting == null && !set) {
+                continue;
+            }
+            if (posting == null || !ownedPostings.contains(posting)) {
+                // Shared with the index this one was copied from
+                posting = posting != null ? posting.copy() : new RoaringBitmap();
+                ownedPostings.add(posting);
+                postings.put(term, posting);
+            }
+            if (set) {
+                posting.add(ordinal);
+            } else {
+                posting.remove(ordinal);
+            }
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.safetynet.alerts.repository;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Medications or allergies of a medical record, stored as the canonical instances the
+ * {@link StringDictionary} of the data holds. Terms such as "aznol:350mg" or "peanut" repeat across thousands of
+ * records; each record only holds an array of references to one instance of each term, and two lists
+ * of terms are compared reference by reference. The terms are compacted along with the other values
+ * of the dictionary, see {@link StringDictionary#compacted(DataSnapshot)}.
+ * The list is immutable: a record whose terms change is given a new list.
+ */
+final class TermList extends AbstractList<String> implements RandomAccess {
+
+    private static final TermList EMPTY = new TermList(new String[0]);
+
+    private final String[] terms;
+
+    private TermList(String[] terms) {
+        this.terms = terms;
+    }
+
+    /**
+     * Encodes terms, adding the new ones to a dictionary.
+     *
+     * @param terms      The terms, may be null.
+     * @param dictionary The dictionary of the data the terms are stored in.
+     * @return The encoded terms, the list itself if it is already encoded, or null if it is null.
+     */
+    static List<String> of(List<String> terms, StringDictionary dictionary) {
+        if (terms == null || terms instanceof TermList) {
+            return terms;
+        }
+        if (terms.isEmpty()) {
+            return EMPTY;
+        }
+        String[] canonical = new String[terms.size()];
+        for (int i = 0; i < canonical.length; i++) {
+            canonical[i] = dictionary.canonical(terms.get(i));
+        }
+        return new TermList(canonical);
+    }
+
+    @Override
+    public String get(int index) {
+        return terms[index];
+    }
+
+    @Override
+    public int size() {
+        return terms.length;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof TermList termList) {
+            // Canonical instances are compared by reference before their characters are
+            return Arrays.equals(terms, termList.terms);
+        }
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -0,0 +1,189 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.repository.DataReloadedEvent;
+import com.safetynet.alerts.repository.DataStore;
+import com.safetynet.alerts.repository.Mutation;
+import com.safetynet.alerts.repository.PersonRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Materialized directory of the distinct email addresses of the residents of each city.
+ * Email addresses are reference counted per city as persons are added, updated and deleted,
+ * so that a change only touches the cities of the person. The emails of a city, and the
+ * payload returned by /communityEmail, are built once after each change and served as is
+ * until the next one. The counts are built under the lock of the view from the latest data,
+ * not from the snapshot pinned by the request, since the mutations published before the view was
+ * built are not applied to it.
+ */
+@Component
+public class CommunityEmailView {
+
+    private static final Logger logger = LogManager.getLogger(CommunityEmailView.class);
+
+    private final PersonRepository personRepository;
+    private final DataStore dataStore;
+
+    // State of each person as last counted, since a mutation only carries the new state
+    private final Map<UUID, PersonEntry> personsById = new HashMap<>();
+    private final Map<String, Map<String, Integer>> emailCountsByCity = new HashMap<>();
+
+    private final Map<String, CityEmails> emailsByCity = new ConcurrentHashMap<>();
+    private volatile boolean built;
+
+    public CommunityEmailView(PersonRepository personRepository, DataStore dataStore) {
+        this.personRepository = personRepository;
+        this.dataStore = dataStore;
+    }
+
+    private record PersonEntry(String city, String email) {
+
+        static PersonEntry of(Person person) {
+            return new PersonEntry(person.getCity(), person.getEmail());
+        }
+
+        boolean isListed() {
+            return city != null && email != null && !email.isEmpty();
+        }
+    }
+
+    /**
+     * The distinct emails of a city, along with their pre-serialized payload.
+     */
+    private record CityEmails(Set<String> emails, String payload) {
+
+        static final CityEmails NONE = of(Map.of());
+
+        static CityEmails of(Map<String, Integer> emailCounts) {
+            Set<String> emails = Collections.unmodifiableSet(new LinkedHashSet<>(emailCounts.keySet()));
+            return new CityEmails(emails, String.join("\n", emails));
+        }
+    }
+
+    /**
+     * Retrieves the distinct email addresses of the residents of a city.
+     *
+     * @param city The city to search.
+     * @return An unmodifiable set of email addresses, empty if no one lives in the city.
+     */
+    public Set<String> getEmails(String city) {
+        return cityEmails(city).emails();
+    }
+
+    /**
+     * Retrieves the email addresses of the residents of a city, one per line.
+     *
+     * @param city The city to search.
+     * @return The email addresses separated by line breaks, empty if no one lives in the city.
+     */
+    public String getPayload(String city) {
+        return cityEmails(city).payload();
+    }
+
+    private CityEmails cityEmails(String city) {
+        CityEmails cityEmails = built ? emailsByCity.get(city) : null;
+        if (cityEmails != null) {
+            logger.debug("Emails of city {} served from the view.", city);
+            return cityEmails;
+        }
+
+        synchronized (this) {
+            if (!built) {
+                build();
+            }
+            Map<String, Integer> emailCounts = emailCountsByCity.get(city);
+            if (emailCounts == null) {
+                // Not cached, so that requests for unknown cities cannot grow the view
+                return CityEmails.NONE;
+            }
+            return emailsByCity.computeIfAbsent(city, c -> CityEmails.of(emailCounts));
+        }
+    }
+
+    /**
+     * Counts the email of every person.
+     */
+    private void build() {
+        try (DataStore.Pin latest = dataStore.pinLatest()) {
+            List<Person> persons = personRepository.findAll();
+
+            logger.debug("Building community email view from {} persons of data version {}", persons.size(),
+                latest.version());
+            persons.forEach(this::addPerson);
+            built = true;
+        }
+    }
+
+    /**
+     * Applies a person mutation to the counts. The mutation may already be in the data the view was
+     * built from, if the view was built while the event was being published: removing then adding
+     * the person makes applying it again harmless.
+     *
+     * @param mutation The mutation applied to the data.
+     */
+    @EventListener
+    public synchronized void onMutation(Mutation mutation) {
+        if (!built || mutation.getEntityType() != Mutation.EntityType.PERSON) {
+            return;
+        }
+        removePerson(mutation.getId());
+        if (mutation.getEntity() instanceof Person person) {
+            addPerson(person);
+        }
+    }
+
+    /**
+     * Drops the whole view when the persons are reloaded; it is rebuilt on the next request.
+     *
+     * @param event The reload event.
+     */
+    @EventListener
+    public synchronized void onDataReloaded(DataReloadedEvent event) {
+        if (event.entityType() != Mutation.EntityType.PERSON) {
+            return;
+        }
+        built = false;
+        personsById.clear();
+        emailCountsByCity.clear();
+        emailsByCity.clear();
+        logger.debug("Community email view cleared after reload of {} data", event.entityType());
+    }
+
+    private void addPerson(Person person) {
+        PersonEntry entry = PersonEntry.of(person);
+        personsById.put(person.getId(), entry);
+        if (!entry.isListed()) {
+            return;
+        }
+        emailCountsByCity.computeIfAbsent(entry.city(), city -> new LinkedHashMap<>()).merge(entry.email(), 1, Integer::sum);
+        emailsByCity.remove(entry.city());
+    }
+
+    private void removePerson(UUID personId) {
+        PersonEntry entry = personsById.remove(personId);
+        if (entry == null || !entry.isListed()) {
+            return;
+        }
+        Map<String, Integer> emailCounts = emailCountsByCity.get(entry.city());
+        if (emailCounts != null) {
+            emailCounts.computeIfPresent(entry.email(), (email, count) -> count > 1 ? count - 1 : null);
+            if (emailCounts.isEmpty()) {
+                emailCountsByCity.remove(entry.city());
+            }
+        }
+        emailsByCity.remove(entry.city());
+    }
+}
@@ -0,0 +1,371 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.FirestationCoverageDTO;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.model.PersonInfoDTO;
+import com.safetynet.alerts.repository.DataReloadedEvent;
+import com.safetynet.alerts.repository.DataStore;
+import com.safetynet.alerts.repository.FirestationRepository;
+import com.safetynet.alerts.repository.MedicalRecordRepository;
+import com.safetynet.alerts.repository.Mutation;
+import com.safetynet.alerts.repository.PersonRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Materialized view of the coverage of each firestation (residents, number of adults and children).
+ * The residents of each address, and the stations each address is mapped to, are kept along with
+ * the residents and child count of each station, so that persons moving or being updated,
+ * firestation mappings being added, moved or removed, and medical records changing the child status
+ * of a resident only adjust the stations they touch. The coverage of a touched station is copied
+ * once by the mutation handler, and a request is a lookup.
+ * <p>
+ * The view is built on the first request from the latest data, not from the snapshot pinned by the
+ * request, since the mutations published before it was built are not applied to it. It is rebuilt
+ * when the reference date rolls over, since the child status of any resident may have changed, and
+ * dropped when the data is reloaded.
+ */
+@Component
+public class FirestationCoverageView {
+
+    private static final Logger logger = LogManager.getLogger(FirestationCoverageView.class);
+
+    private final FirestationRepository firestationRepository;
+    private final PersonRepository personRepository;
+    private final MedicalRecordRepository medicalRecordRepository;
+    private final MedicalRecordService medicalRecordService;
+    private final DataStore dataStore;
+
+    // State of each entity as last applied, since a mutation only carries the new state
+    private final Map<UUID, PersonEntry> personsById = new HashMap<>();
+    private final Map<UUID, FirestationEntry> firestationsById = new HashMap<>();
+    private final Map<UUID, PersonName> recordNames = new HashMap<>();
+
+    private final Map<String, Map<UUID, PersonEntry>> residentsByAddress = new HashMap<>();
+    private final Map<PersonName, Set<UUID>> personIdsByName = new HashMap<>();
+    private final Map<String, Map<Integer, Integer>> stationCountsByAddress = new HashMap<>();
+    private final Map<Integer, StationResidents> residentsByStation = new HashMap<>();
+
+    private volatile Coverages coverages;
+
+    public FirestationCoverageView(FirestationRepository firestationRepository, PersonRepository personRepository,
+                                   MedicalRecordRepository medicalRecordRepository,
+                                   MedicalRecordService medicalRecordService, DataStore dataStore) {
+        this.firestationRepository = firestationRepository;
+        this.personRepository = personRepository;
+        this.medicalRecordRepository = medicalRecordRepository;
+        this.medicalRecordService = medicalRecordService;
+        this.dataStore = dataStore;
+    }
+
+    private record PersonName(String firstName, String lastName) {
+    }
+
+    private record PersonEntry(String address, PersonName name, PersonInfoDTO info, boolean child) {
+    }
+
+    private record FirestationEntry(String address, int station) {
+
+        static FirestationEntry of(Firestation firestation) {
+            return new FirestationEntry(firestation.getAddress(), firestation.getStation());
+        }
+    }
+
+    /**
+     * The coverage of each station served, as of a reference date.
+     */
+    private record Coverages(LocalDate referenceDate, Map<Integer, FirestationCoverageDTO> byStation) {
+    }
+
+    /**
+     * Residents covered by a station, with the number of children among them.
+     */
+    private static final class StationResidents {
+
+        private final Map<UUID, PersonInfoDTO> persons = new LinkedHashMap<>();
+        private int children;
+
+        void add(UUID id, PersonEntry entry) {
+            persons.put(id, entry.info());
+            if (entry.child()) {
+                children++;
+            }
+        }
+
+        void remove(UUID id, PersonEntry entry) {
+            persons.remove(id);
+            if (entry.child()) {
+                children--;
+            }
+        }
+
+        FirestationCoverageDTO toCoverage() {
+            FirestationCoverageDTO coverage = new FirestationCoverageDTO();
+            coverage.setPersons(Collections.unmodifiableSet(new LinkedHashSet<>(persons.values())));
+            coverage.setNumberOfChildren(children);
+            coverage.setNumberOfAdults(persons.size() - children);
+            return coverage;
+        }
+    }
+
+    /**
+     * Retrieves the coverage of a firestation, building the view if it was dropped or built before
+     * the reference date.
+     *
+     * @param stationNumber The firestation number.
+     * @return A FirestationCoverageDTO containing the coverage information.
+     */
+    public FirestationCoverageDTO getCoverage(int stationNumber) {
+        LocalDate referenceDate = medicalRecordService.getReferenceDate();
+        Coverages current = coverages;
+        if (current == null || !current.referenceDate().equals(referenceDate)) {
+            synchronized (this) {
+                if (coverages == null || !coverages.referenceDate().equals(referenceDate)) {
+                    build(referenceDate);
+                }
+                current = coverages;
+            }
+        }
+
+        FirestationCoverageDTO coverage = current.byStation().get(stationNumber);
+        if (coverage == null) {
+            // Not cached, so that requests for unknown stations don't grow the view
+            logger.debug("Firestation number {} covers no one.", stationNumber);
+            return new FirestationCoverageDTO();
+        }
+        logger.debug("Coverage of firestation number {} served from the view.", stationNumber);
+        return coverage;
+    }
+
+    /**
+     * Applies every firestation mapping, medical record and person.
+     */
+    private void build(LocalDate referenceDate) {
+        clear();
+        try (DataStore.Pin latest = dataStore.pinLatest()) {
+            List<Firestation> firestations = firestationRepository.findAll();
+            List<MedicalRecord> medicalRecords = medicalRecordRepository.findAll();
+            List<Person> persons = personRepository.findAll();
+            logger.debug("Building coverage view as of {} from {} persons and {} firestations of data version {}",
+                referenceDate, persons.size(), firestations.size(), latest.version());
+
+            Set<Integer> touched = new HashSet<>();
+            firestations.forEach(firestation -> addFirestation(firestation, touched));
+            medicalRecords.forEach(record -> recordNames.put(record.getId(), nameOf(record)));
+            Map<UUID, MedicalRecord> records = medicalRecordRepository.findByPersons(persons);
+            persons.forEach(person -> addPerson(person, records.get(person.getId()), touched));
+
+            coverages = new Coverages(referenceDate, new ConcurrentHashMap<>());
+            publish(touched);
+        }
+    }
+
+    /**
+     * Applies a mutation to the residents of the stations it touches, then copies their coverage.
+     * The mutation may already be in the data the view was built from, if the view was built while
+     * the event was being published: removing then adding the entity makes applying it again harmless.
+     *
+     * @param mutation The mutation applied to the data.
+     */
+    @EventListener
+    public synchronized void onMutation(Mutation mutation) {
+        if (coverages == null) {
+            return;
+        }
+        Set<Integer> touched = new HashSet<>();
+        try (DataStore.Pin ignored = dataStore.pinLatest()) {
+            Object entity = mutation.getEntity();
+            switch (mutation.getEntityType()) {
+                case PERSON -> {
+                    removePerson(mutation.getId(), touched);
+                    if (entity instanceof Person person) {
+                        addPerson(person, medicalRecordRepository.findByFirstNameAndLastName(person.getFirstName(),
+                            person.getLastName()), touched);
+                    }
+                }
+                case FIRESTATION -> {
+                    removeFirestation(mutation.getId(), touched);
+                    if (entity instanceof Firestation firestation) {
+                        addFirestation(firestation, touched);
+                    }
+                }
+                case MEDICAL_RECORD -> updateMedicalRecord(mutation.getId(),
+                    entity instanceof MedicalRecord record ? record : null, touched);
+            }
+        }
+        publish(touched);
+        logger.debug("{} {} {}: {} station coverages updated", mutation.getOperation(), mutation.getEntityType(),
+            mutation.getId(), touched.size());
+    }
+
+    /**
+     * Drops the whole view when the data is reloaded; it is rebuilt on the next request.
+     *
+     * @param event The reload event.
+     */
+    @EventListener
+    public synchronized void onDataReloaded(DataReloadedEvent event) {
+        coverages = null;
+        clear();
+        logger.debug("Station coverages cleared after reload of {} data", event.entityType());
+    }
+
+    private void clear() {
+        personsById.clear();
+        firestationsById.clear();
+        recordNames.clear();
+        residentsByAddress.clear();
+        personIdsByName.clear();
+        stationCountsByAddress.clear();
+        residentsByStation.clear();
+    }
+
+    /**
+     * Copies the coverage of the stations touched, so that requests never see it being modified.
+     */
+    private void publish(Set<Integer> touched) {
+        for (int station : touched) {
+            StationResidents residents = residentsByStation.get(station);
+            if (residents == null || residents.persons.isEmpty()) {
+                residentsByStation.remove(station);
+                coverages.byStation().remove(station);
+            } else {
+                coverages.byStation().put(station, residents.toCoverage());
+            }
+        }
+    }
+
+    private void addPerson(Person person, MedicalRecord medicalRecord, Set<Integer> touched) {
+        PersonName name = new PersonName(person.getFirstName(), person.getLastName());
+        PersonEntry entry = new PersonEntry(person.getAddress(), name,
+            new PersonInfoDTO(person.getFirstName(), person.getLastName(), person.getAddress(), person.getPhone()),
+            medicalRecord != null && medicalRecordService.isChild(medicalRecord));
+        personsById.put(person.getId(), entry);
+        personIdsByName.computeIfAbsent(name, n -> new HashSet<>()).add(person.getId());
+        residentsByAddress.computeIfAbsent(entry.address(), address -> new LinkedHashMap<>()).put(person.getId(), entry);
+        for (int station : stationCountsByAddress.getOrDefault(entry.address(), Map.of()).keySet()) {
+            residentsByStation.computeIfAbsent(station, s -> new StationResidents()).add(person.getId(), entry);
+            touched.add(station);
+        }
+    }
+
+    private void removePerson(UUID personId, Set<Integer> touched) {
+        PersonEntry entry = personsById.remove(personId);
+        if (entry == null) {
+            return;
+        }
+        removeFromGroup(personIdsByName, entry.name(), personId);
+        Map<UUID, PersonEntry> residents = residentsByAddress.get(entry.address());
+        residents.remove(personId);
+        if (residents.isEmpty()) {
+            residentsByAddress.remove(entry.address());
+        }
+        for (int station : stationCountsByAddress.getOrDefault(entry.address(), Map.of()).keySet()) {
+            residentsByStation.get(station).remove(personId, entry);
+            touched.add(station);
+        }
+    }
+
+    private void addFirestation(Firestation firestation, Set<Integer> touched) {
+        FirestationEntry entry = FirestationEntry.of(firestation);
+        firestationsById.put(firestation.getId(), entry);
+        Map<Integer, Integer> stationCounts = stationCountsByAddress.computeIfAbsent(entry.address(), a -> new HashMap<>());
+        // The same address may be mapped more than once to a station: its residents are only counted once
+        if (stationCounts.merge(entry.station(), 1, Integer::sum) > 1) {
+            return;
+        }
+        StationResidents residents = residentsByStation.computeIfAbsent(entry.station(), s -> new StationResidents());
+        residentsByAddress.getOrDefault(entry.address(), Map.of()).forEach(residents::add);
+        touched.add(entry.station());
+    }
+
+    private void removeFirestation(UUID firestationId, Set<Integer> touched) {
+        FirestationEntry entry = firestationsById.remove(firestationId);
+        if (entry == null) {
+            return;
+        }
+        Map<Integer, Integer> stationCounts = stationCountsByAddress.get(entry.address());
+        if (stationCounts.merge(entry.station(), -1, Integer::sum) > 0) {
+            return;
+        }
+        stationCounts.remove(entry.station());
+        if (stationCounts.isEmpty()) {
+            stationCountsByAddress.remove(entry.address());
+        }
+        StationResidents residents = residentsByStation.get(entry.station());
+        if (residents != null) {
+            residentsByAddress.getOrDefault(entry.address(), Map.of()).forEach(residents::remove);
+            touched.add(entry.station());
+        }
+    }
+
+    /**
+     * Updates the child status of the residents having the previous or the new name of a record.
+     */
+    private void updateMedicalRecord(UUID id, MedicalRecord medicalRecord, Set<Integer> touched) {
+        Set<PersonName> names = new HashSet<>();
+        PersonName previousName = recordNames.remove(id);
+        if (previousName != null) {
+            names.add(previousName);
+        }
+        if (medicalRecord != null) {
+            recordNames.put(id, nameOf(medicalRecord));
+            names.add(nameOf(medicalRecord));
+        }
+
+        for (PersonName name : names) {
+            Set<UUID> personIds = personIdsByName.get(name);
+            if (personIds == null) {
+                continue;
+            }
+            MedicalRecord current =
+                medicalRecordRepository.findByFirstNameAndLastName(name.firstName(), name.lastName());
+            boolean child = current != null && medicalRecordService.isChild(current);
+            for (UUID personId : personIds) {
+                PersonEntry entry = personsById.get(personId);
+                if (entry.child() == child) {
+                    continue;
+                }
+                PersonEntry updated = new PersonEntry(entry.address(), entry.name(), entry.info(), child);
+                personsById.put(personId, updated);
+                residentsByAddress.get(entry.address()).put(personId, updated);
+                for (int station : stationCountsByAddress.getOrDefault(entry.address(), Map.of()).keySet()) {
+                    StationResidents residents = residentsByStation.get(station);
+                    residents.remove(personId, entry);
+                    residents.add(personId, updated);
+                    touched.add(station);
+                }
+            }
+        }
+    }
+
+    private static PersonName nameOf(MedicalRecord medicalRecord) {
+        return new PersonName(medicalRecord.getFirstName(), medicalRecord.getLastName());
+    }
+
+    private static <G, K> void removeFromGroup(Map<G, Set<K>> groups, G group, K key) {
+        Set<K> keys = groups.get(group);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                groups.remove(group);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.repository.DataReloadedEvent;
+import com.safetynet.alerts.repository.DataStore;
+import com.safetynet.alerts.repository.FirestationRepository;
+import com.safetynet.alerts.repository.Mutation;
+import com.safetynet.alerts.repository.PersonRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Materialized view of the phone numbers of the persons covered by each firestation.
+ * Phone numbers are reference counted per address and per station, so that persons moving or
+ * changing phone, and firestation mappings being added, moved or removed, only adjust the
+ * counts they touch. The phone set of a station is copied once after each change and served
+ * as is until the next one. The counts are built under the lock of the view from the latest data,
+ * not from the snapshot pinned by the request, since the mutations published before the view was
+ * built are not applied to it.
+ */
+@Component
+public class FirestationPhoneView {
+
+    private static final Logger logger = LogManager.getLogger(FirestationPhoneView.class);
+
+    private final PersonRepository personRepository;
+    private final FirestationRepository firestationRepository;
+    private final DataStore dataStore;
+
+    // State of each entity as last counted, since a mutation only carries the new state
+    private final Map<UUID, PersonEntry> personsById = new HashMap<>();
+    private final Map<UUID, FirestationEntry> firestationsById = new HashMap<>();
+
+    private final Map<String, Map<String, Integer>> phoneCountsByAddress = new HashMap<>();
+    private final Map<String, Map<Integer, Integer>> stationCountsByAddress = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> phoneCountsByStation = new HashMap<>();
+
+    private final Map<Integer, Set<String>> phonesByStation = new ConcurrentHashMap<>();
+    private volatile boolean built;
+
+    public FirestationPhoneView(PersonRepository personRepository, FirestationRepository firestationRepository,
+                                DataStore dataStore) {
+        this.personRepository = personRepository;
+        this.firestationRepository = firestationRepository;
+        this.dataStore = dataStore;
+    }
+
+    private record PersonEntry(String address, String phone) {
+
+        static PersonEntry of(Person person) {
+            return new PersonEntry(person.getAddress(), person.getPhone());
+        }
+    }
+
+    private record FirestationEntry(String address, int station) {
+
+        static FirestationEntry of(Firestation firestation) {
+            return new FirestationEntry(firestation.getAddress(), firestation.getStation());
+        }
+    }
+
+    /**
+     * Retrieves the phone numbers of the persons covered by a firestation.
+     *
+     * @param stationNumber The firestation number.
+     * @return An unmodifiable set of phone numbers, empty if the station covers no one.
+     */
+    public Set<String> getPhoneNumbers(int stationNumber) {
+        Set<String> phones = built ? phonesByStation.get(stationNumber) : null;
+        if (phones != null) {
+            logger.debug("Phone numbers of firestation number {} served from the view.", stationNumber);
+            return phones;
+        }
+
+        synchronized (this) {
+            if (!built) {
+                build();
+            }
+            return phonesByStation.computeIfAbsent(stationNumber, this::copyPhones);
+        }
+    }
+
+    private Set<String> copyPhones(int stationNumber) {
+        Map<String, Integer> phoneCounts = phoneCountsByStation.getOrDefault(stationNumber, Map.of());
+        return Collections.unmodifiableSet(new LinkedHashSet<>(phoneCounts.keySet()));
+    }
+
+    /**
+     * Counts every person and firestation mapping.
+     */
+    private void build() {
+        try (DataStore.Pin latest = dataStore.pinLatest()) {
+            List<Person> persons = personRepository.findAll();
+            List<Firestation> firestations = firestationRepository.findAll();
+
+            logger.debug("Building phone view from {} persons and {} firestations of data version {}",
+                persons.size(), firestations.size(), latest.version());
+            firestations.forEach(this::addFirestation);
+            persons.forEach(this::addPerson);
+            built = true;
+        }
+    }
+
+    /**
+     * Applies a person or firestation mutation to the counts. The mutation may already be in the data
+     * the view was built from, if the view was built while the event was being published: removing
+     * then adding the entity makes applying it again harmless.
+     *
+     * @param mutation The mutation applied to the data.
+     */
+    @EventListener
+    public synchronized void onMutation(Mutation mutation) {
+        if (!built) {
+            return;
+        }
+        switch (mutation.getEntityType()) {
+            case PERSON -> {
+                removePerson(mutation.getId());
+                if (mutation.getEntity() instanceof Person person) {
+                    addPerson(person);
+                }
+            }
+            case FIRESTATION -> {
+                removeFirestation(mutation.getId());
+                if (mutation.getEntity() instanceof Firestation firestation) {
+                    addFirestation(firestation);
+                }
+            }
+            default -> {
+                // Medical records don't affect phone numbers
+            }
+        }
+    }
+
+    /**
+     * Drops the whole view when the data is reloaded; it is rebuilt on the next request.
+     *
+     * @param event The reload event.
+     */
+    @EventListener
+    public synchronized void onDataReloaded(DataReloadedEvent event) {
+        if (event.entityType() == Mutation.EntityType.MEDICAL_RECORD) {
+            return;
+        }
+        built = false;
+        personsById.clear();
+        firestationsById.clear();
+        phoneCountsByAddress.clear();
+        stationCountsByAddress.clear();
+        phoneCountsByStation.clear();
+        phonesByStation.clear();
+        logger.debug("Phone view cleared after reload of {} data", event.entityType());
+    }
+
+    private void addPerson(Person person) {
+        PersonEntry entry = PersonEntry.of(person);
+        personsById.put(person.getId(), entry);
+        increment(phoneCountsByAddress.computeIfAbsent(entry.address(), address -> new HashMap<>()), entry.phone(), 1);
+        for (int station : stationCountsByAddress.getOrDefault(entry.address(), Map.of()).keySet()) {
+            adjustStation(station, entry.phone(), 1);
+        }
+    }
+
+    private void removePerson(UUID personId) {
+        PersonEntry entry = personsById.remove(personId);
+        if (entry == null) {
+            return;
+        }
+        decrement(phoneCountsByAddress, entry.address(), entry.phone(), 1);
+        for (int station : stationCountsByAddress.getOrDefault(entry.address(), Map.of()).keySet()) {
+            adjustStation(station, entry.phone(), -1);
+        }
+    }
+
+    private void addFirestation(Firestation firestation) {
+        FirestationEntry entry = FirestationEntry.of(firestation);
+        firestationsById.put(firestation.getId(), entry);
+        Map<Integer, Integer> stationCounts = stationCountsByAddress.computeIfAbsent(entry.address(), address -> new HashMap<>());
+        // The same address may be mapped more than once to a station: its residents are only counted once
+        if (increment(stationCounts, entry.station(), 1) == 1) {
+            phoneCountsByAddress.getOrDefault(entry.address(), Map.of())
+                .forEach((phone, count) -> adjustStation(entry.station(), phone, count));
+        }
+    }
+
+    private void removeFirestation(UUID firestationId) {
+        FirestationEntry entry = firestationsById.remove(firestationId);
+        if (entry == null) {
+            return;
+        }
+        if (decrement(stationCountsByAddress, entry.address(), entry.station(), 1) == 0) {
+            phoneCountsByAddress.getOrDefault(entry.address(), Map.of())
+                .forEach((phone, count) -> adjustStation(entry.station(), phone, -count));
+        }
+    }
+
+    private void adjustStation(int station, String phone, int delta) {
+        if (delta > 0) {
+            increment(phoneCountsByStation.computeIfAbsent(station, s -> new HashMap<>()), phone, delta);
+        } else {
+            decrement(phoneCountsByStation, station, phone, -delta);
+        }
+        phonesByStation.remove(station);
+    }
+
+    private static <K> int increment(Map<K, Integer> counts, K key, int delta) {
+        return counts.merge(key, delta, Integer::sum);
+    }
+
+    /**
+     * Decrements a count in a nested map, removing the count and its group once they reach zero.
+     *
+     * @return The remaining count.
+     */
+    private static <G, K> int decrement(Map<G, Map<K, Integer>> groups, G group, K key, int delta) {
+        Map<K, Integer> counts = groups.get(group);
+        if (counts == null) {
+            return 0;
+        }
+        Integer remaining = counts.computeIfPresent(key, (k, count) -> count > delta ? count - delta : null);
+        if (counts.isEmpty()) {
+            groups.remove(group);
+        }
+        return remaining != null ? remaining : 0;
+    }
+}
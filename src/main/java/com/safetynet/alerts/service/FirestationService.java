@@ -3,6 +3,7 @@ package com.safetynet.alerts.service;
 import com.safetynet.alerts.model.*;
 import com.safetynet.alerts.repository.FirestationRepository;
 import com.safetynet.alerts.repository.PersonRepository;
+import com.safetynet.alerts.repository.Resident;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Service;
@@ -20,17 +21,21 @@ public class FirestationService {
     private static final Logger logger = LogManager.getLogger(FirestationService.class);
 
     private final FirestationRepository firestationRepository;
-    private final PersonService personService;
     private final PersonRepository personRepository;
     private final MedicalRecordService medicalRecordService;
+    private final FirestationCoverageView coverageView;
+    private final ResidentBitmapView residentBitmapView;
+    private final PersonInfoAssembler personInfoAssembler;
 
-    public FirestationService(FirestationRepository firestationRepository, PersonService personService,
-                              PersonRepository personRepository,
-                              MedicalRecordService medicalRecordService) {
+    public FirestationService(FirestationRepository firestationRepository, PersonRepository personRepository,
+                              MedicalRecordService medicalRecordService, FirestationCoverageView coverageView,
+                              ResidentBitmapView residentBitmapView, PersonInfoAssembler personInfoAssembler) {
         this.firestationRepository = firestationRepository;
-        this.personService = personService;
         this.personRepository = personRepository;
         this.medicalRecordService = medicalRecordService;
+        this.coverageView = coverageView;
+        this.residentBitmapView = residentBitmapView;
+        this.personInfoAssembler = personInfoAssembler;
     }
 
     /**
@@ -53,7 +58,9 @@ public class FirestationService {
      */
     public boolean updateFirestation(Firestation firestation) {
         logger.info("Updating firestation with ID: {}", firestation.getId());
-        Optional<Firestation> existingFirestationOpt = Optional.ofNullable(firestationRepository.findById(firestation.getId()));
+        // Published firestations are never modified: the changes are applied to a copy
+        Optional<Firestation> existingFirestationOpt = Optional.ofNullable(firestationRepository.findById(firestation.getId()))
+            .map(Firestation::copy);
 
         return existingFirestationOpt.map(existingFirestation -> {
             boolean isUpdated = updateStationIfNecessary(existingFirestation, firestation.getStation());
@@ -114,6 +121,8 @@ public class FirestationService {
 
     /**
      * Retrieves the coverage information for a firestation.
+     * The coverage is served from the {@link FirestationCoverageView}, which only rebuilds it
+     * after a change to the data it was built from.
      *
      * @param stationNumber The firestation number.
      * @return A FirestationCoverageDTO containing the coverage information.
@@ -121,61 +130,12 @@ public class FirestationService {
     public FirestationCoverageDTO getCoverageByStation(int stationNumber) {
         logger.info("Retrieving coverage for firestation number: {}", stationNumber);
 
-        List<Person> personsCovered = personService.getPersonsByFirestation(stationNumber);
-        Set<PersonInfoDTO> personInfoList = mapToPersonInfoDTOSet(personsCovered);
-        int numberOfChildren = countChildren(personsCovered);
-        int numberOfAdults = personsCovered.size() - numberOfChildren;
-
-        FirestationCoverageDTO responseDTO = new FirestationCoverageDTO();
-        responseDTO.setPersons(personInfoList);
-        responseDTO.setNumberOfChildren(numberOfChildren);
-        responseDTO.setNumberOfAdults(numberOfAdults);
+        FirestationCoverageDTO responseDTO = coverageView.getCoverage(stationNumber);
 
         logger.info("Coverage retrieved for firestation number {}: {}", stationNumber, responseDTO);
         return responseDTO;
     }
 
-    /**
-     * Maps a list of persons to a set of PersonInfoDTO objects.
-     *
-     * @param personsCovered The list of persons to map.
-     * @return A set of PersonInfoDTO objects.
-     */
-    private Set<PersonInfoDTO> mapToPersonInfoDTOSet(List<Person> personsCovered) {
-        logger.debug("Mapping {} persons to PersonInfoDTO", personsCovered.size());
-
-        Set<PersonInfoDTO> personInfoDTOSet = personsCovered.stream()
-            .map(person -> {
-                PersonInfoDTO infoDTO = new PersonInfoDTO();
-                infoDTO.setFirstName(person.getFirstName());
-                infoDTO.setLastName(person.getLastName());
-                infoDTO.setAddress(person.getAddress());
-                infoDTO.setPhone(person.getPhone());
-                return infoDTO;
-            })
-            .collect(Collectors.toSet());
-
-        logger.debug("Successfully mapped {} persons to PersonInfoDTO.", personInfoDTOSet.size());
-        return personInfoDTOSet;
-    }
-
-    /**
-     * Counts the number of children (age <= 18) in a list of persons.
-     *
-     * @param persons The list of persons to filter.
-     * @return The count of children.
-     */
-    private int countChildren(List<Person> persons) {
-        logger.debug("Counting children from a list of {} persons", persons.size());
-
-        int numberOfChildren = (int) persons.stream()
-            .filter(medicalRecordService::isChild)
-            .count();
-
-        logger.debug("Number of children counted: {}", numberOfChildren);
-        return numberOfChildren;
-    }
-
     /**
      * Retrieves fire alert information for a specific address.
      *
@@ -208,31 +168,74 @@ public class FirestationService {
     public List<FloodStationDTO> getHouseholdsByStations(Set<Integer> stationNumbers) {
         logger.info("Fetching households for firestation numbers: {}", stationNumbers);
 
-        List<Firestation> firestations = firestationRepository.findByStations(stationNumbers);
-        logger.debug("Found {} firestations for the given station numbers.", firestations.size());
+        // Persons and medical records are fetched by a single query instead of one lookup per resident
+        Map<String, List<Resident>> residentsByAddress = firestationRepository.findHouseholdsByStations(stationNumbers);
+        logger.debug("Found residents at {} addresses.", residentsByAddress.size());
 
-        Set<String> addresses = firestations.stream()
-            .map(Firestation::getAddress)
-            .collect(Collectors.toSet());
-        logger.debug("Addresses extracted from firestations: {}", addresses);
+        List<FloodStationDTO> households = toHouseholds(residentsByAddress);
+
+        logger.info("Successfully retrieved {} households for the specified stations.", households.size());
+        return households;
+    }
 
-        Map<String, List<Person>> personsByAddress = personRepository.findByAddresses(addresses).stream()
-            .collect(Collectors.groupingBy(Person::getAddress));
-        logger.debug("Grouped {} persons by address.", personsByAddress.size());
+    /**
+     * Retrieves the households covered by firestations or at an address whose residents have an allergy
+     * and/or take a medication, e.g. everyone covered by station 3 allergic to penicillin.
+     * Only the matching residents are included in each household.
+     *
+     * @param stationNumbers The set of station numbers, may be empty.
+     * @param address        An address to include, or null.
+     * @param allergy        The allergy searched, or null.
+     * @param medication     The medication searched, or null.
+     * @return A list of FloodStationDTO objects containing the households and their matching residents.
+     */
+    public List<FloodStationDTO> getHouseholdsWithMedicalTerms(Set<Integer> stationNumbers, String address,
+                                                               String allergy, String medication) {
+        logger.info("Fetching households for firestation numbers {} and address {} with allergy {} and medication {}",
+            stationNumbers, address, allergy, medication);
+
+        Map<String, List<Resident>> residentsByAddress =
+            firestationRepository.findResidentsWithMedicalTerms(stationNumbers, address, allergy, medication);
+        List<FloodStationDTO> households = toHouseholds(residentsByAddress);
+
+        logger.info("Successfully retrieved {} households matching the medical terms.", households.size());
+        return households;
+    }
+
+    /**
+     * Retrieves the households whose residents match all the criteria given, e.g. the children of
+     * Culver covered by stations 1 or 2 who are allergic to peanuts. The criteria are combined on the
+     * bitmap indexes of the residents, and only the matching residents are included in each household.
+     *
+     * @param stationNumbers The set of station numbers covering the residents, may be empty.
+     * @param city           The city of the residents, or null.
+     * @param child          True for children only, false for adults only, or null for both.
+     * @param allergy        The allergy searched, or null.
+     * @return A list of FloodStationDTO objects containing the households and their matching residents.
+     */
+    public List<FloodStationDTO> getHouseholdsByCriteria(Set<Integer> stationNumbers, String city, Boolean child,
+                                                         String allergy) {
+        logger.info("Fetching households for firestation numbers {} in city {} with child {} and allergy {}",
+            stationNumbers, city, child, allergy);
 
-        List<FloodStationDTO> households = personsByAddress.entrySet().stream()
+        Map<String, List<Resident>> residentsByAddress =
+            residentBitmapView.findResidents(stationNumbers, city, child, allergy);
+        List<FloodStationDTO> households = toHouseholds(residentsByAddress);
+
+        logger.info("Successfully retrieved {} households matching the criteria.", households.size());
+        return households;
+    }
+
+    private List<FloodStationDTO> toHouseholds(Map<String, List<Resident>> residentsByAddress) {
+        return residentsByAddress.entrySet().stream()
             .map(entry -> {
-                String address = entry.getKey();
                 Set<ResidentInfoDTO> residentInfoList = entry.getValue().stream()
-                    .map(this::createResidentInfoDTO)
+                    .map(resident -> personInfoAssembler.toResidentInfoDTO(resident.person(), resident.medicalRecord()))
                     .collect(Collectors.toSet());
 
-                return new FloodStationDTO(address, residentInfoList);
+                return new FloodStationDTO(entry.getKey(), residentInfoList);
             })
             .toList();
-
-        logger.info("Successfully retrieved {} households for the specified stations.", households.size());
-        return households;
     }
 
     /**
@@ -242,16 +245,7 @@ public class FirestationService {
      * @return A ResidentInfoDTO containing the person's details and medical information.
      */
     ResidentInfoDTO createResidentInfoDTO(Person person) {
-        logger.debug("Creating ResidentInfoDTO for person: {}", person);
-
         MedicalRecord medicalRecord = medicalRecordService.getMedicalRecordByPerson(person.getFirstName(), person.getLastName());
-        int age = medicalRecord != null ? medicalRecordService.calculateAge(medicalRecord.getBirthdate()) : 0;
-        List<String> medications = medicalRecord != null ? medicalRecord.getMedications() : List.of();
-        List<String> allergies = medicalRecord != null ? medicalRecord.getAllergies() : List.of();
-
-        ResidentInfoDTO residentInfoDTO = new ResidentInfoDTO(person.getLastName(), person.getPhone(), age, medications, allergies);
-        logger.debug("Created ResidentInfoDTO: {}", residentInfoDTO);
-
-        return residentInfoDTO;
+        return personInfoAssembler.toResidentInfoDTO(person, medicalRecord);
     }
 }
@@ -5,12 +5,12 @@ import com.safetynet.alerts.model.Person;
 import com.safetynet.alerts.repository.MedicalRecordRepository;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.Period;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,12 +24,46 @@ public class MedicalRecordService {
 
     private static final Logger logger = LogManager.getLogger(MedicalRecordService.class);
 
+    public static final int CHILD_MAX_AGE = 18;
+
     private final MedicalRecordRepository medicalRecordRepository;
 
+    /**
+     * The date ages are computed against, with the earliest birth epoch day still counted as a child.
+     * Refreshed at midnight rather than on each request.
+     */
+    private record ReferenceDate(LocalDate today, int childCutoffEpochDay) {
+
+        static ReferenceDate of(LocalDate today) {
+            return new ReferenceDate(today, (int) today.minusYears(CHILD_MAX_AGE + 1).toEpochDay());
+        }
+    }
+
+    private volatile ReferenceDate referenceDate = ReferenceDate.of(LocalDate.now());
+
     public MedicalRecordService(MedicalRecordRepository medicalRecordRepository) {
         this.medicalRecordRepository = medicalRecordRepository;
     }
 
+    /**
+     * Rolls the reference date used for ages and the child flag over to the current day.
+     * Scheduled at midnight.
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void refreshReferenceDate() {
+        referenceDate = ReferenceDate.of(LocalDate.now());
+        logger.info("Reference date for ages rolled over to {}", referenceDate.today());
+    }
+
+    /**
+     * Retrieves the date ages are currently computed against.
+     *
+     * @return The reference date.
+     */
+    public LocalDate getReferenceDate() {
+        return referenceDate.today();
+    }
+
     /**
      * Retrieves all medical records.
      *
@@ -79,7 +113,9 @@ public class MedicalRecordService {
      */
     public boolean updateMedicalRecord(MedicalRecord medicalRecord) {
         logger.info("Updating medical record: {}", medicalRecord);
-        Optional<MedicalRecord> existingRecordOpt = Optional.ofNullable(medicalRecordRepository.findById(medicalRecord.getId()));
+        // Published medical records are never modified: the changes are applied to a copy
+        Optional<MedicalRecord> existingRecordOpt = Optional.ofNullable(medicalRecordRepository.findById(medicalRecord.getId()))
+            .map(MedicalRecord::copy);
 
         return existingRecordOpt.map(existingRecord -> {
             boolean isUpdated = updateFieldsIfNecessary(existingRecord, medicalRecord);
@@ -183,16 +219,30 @@ public class MedicalRecordService {
     public int calculateAge(String birthdate) {
         logger.debug("Calculating age for birthdate: {}", birthdate);
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-        LocalDate birthDate = LocalDate.parse(birthdate, formatter);
-        int age = Period.between(birthDate, LocalDate.now()).getYears();
+        LocalDate birthDate = LocalDate.parse(birthdate, MedicalRecord.BIRTHDATE_FORMAT);
+        int age = Period.between(birthDate, referenceDate.today()).getYears();
 
         logger.debug("Calculated age: {}", age);
         return age;
     }
 
     /**
-     * Determines if a given person is a child (age <= 18).
+     * Calculates the age of the owner of a medical record from its pre-parsed birthdate.
+     *
+     * @param medicalRecord The medical record of the person.
+     * @return The calculated age, or 0 if the birthdate is missing or malformed.
+     */
+    public int calculateAge(MedicalRecord medicalRecord) {
+        if (medicalRecord.getBirthEpochDay() == MedicalRecord.UNKNOWN_BIRTH_EPOCH_DAY) {
+            logger.error("No valid birthdate in medical record {}: {}", medicalRecord.getId(),
+                medicalRecord.getBirthdate());
+            return 0;
+        }
+        return Period.between(LocalDate.ofEpochDay(medicalRecord.getBirthEpochDay()), referenceDate.today()).getYears();
+    }
+
+    /**
+     * Determines if a given person is a child (age <= {@value CHILD_MAX_AGE}).
      *
      * @param person The person to check.
      * @return True if the person is a child, false otherwise.
@@ -206,11 +256,23 @@ public class MedicalRecordService {
             return false;
         }
 
-        boolean isChild = calculateAge(personRecord.getBirthdate()) <= 18;
+        boolean isChild = isChild(personRecord);
         logger.debug("Person {} is a child: {}", person.getFirstName(), isChild);
         return isChild;
     }
 
+    /**
+     * Determines if the owner of a medical record is a child (age <= {@value CHILD_MAX_AGE}).
+     * This is a single comparison against the cutoff of the current reference date.
+     *
+     * @param medicalRecord The medical record of the person to check.
+     * @return True if the person is a child, false otherwise.
+     */
+    public boolean isChild(MedicalRecord medicalRecord) {
+        return medicalRecord.getBirthEpochDay() != MedicalRecord.UNKNOWN_BIRTH_EPOCH_DAY
+            && medicalRecord.getBirthEpochDay() > referenceDate.childCutoffEpochDay();
+    }
+
     /**
      * Retrieves a medical record for a given person based on their first and last name.
      *
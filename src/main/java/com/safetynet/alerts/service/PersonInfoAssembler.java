@@ -0,0 +1,74 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.model.PersonInfoLastNameDTO;
+import com.safetynet.alerts.model.ResidentInfoDTO;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Builds the DTOs describing a resident along with their medical information.
+ * The person and their medical record are joined by the caller, so building a DTO involves
+ * no lookup of its own.
+ */
+@Component
+public class PersonInfoAssembler {
+
+    private static final Logger logger = LogManager.getLogger(PersonInfoAssembler.class);
+
+    private final MedicalRecordService medicalRecordService;
+
+    public PersonInfoAssembler(MedicalRecordService medicalRecordService) {
+        this.medicalRecordService = medicalRecordService;
+    }
+
+    /**
+     * Creates a ResidentInfoDTO from a person and their medical record.
+     *
+     * @param person        The person to transform.
+     * @param medicalRecord The medical record of the person, or null if they have none.
+     * @return A ResidentInfoDTO containing the person's details and medical information.
+     */
+    public ResidentInfoDTO toResidentInfoDTO(Person person, MedicalRecord medicalRecord) {
+        logger.debug("Creating ResidentInfoDTO for person: {}", person);
+
+        ResidentInfoDTO residentInfoDTO = new ResidentInfoDTO(person.getLastName(), person.getPhone(),
+            ageOf(medicalRecord), medicationsOf(medicalRecord), allergiesOf(medicalRecord));
+
+        logger.debug("Created ResidentInfoDTO: {}", residentInfoDTO);
+        return residentInfoDTO;
+    }
+
+    /**
+     * Creates a PersonInfoLastNameDTO from a person and their medical record.
+     *
+     * @param person        The person to transform.
+     * @param medicalRecord The medical record of the person, or null if they have none.
+     * @return A PersonInfoLastNameDTO containing the person's details and medical information.
+     */
+    public PersonInfoLastNameDTO toPersonInfoLastNameDTO(Person person, MedicalRecord medicalRecord) {
+        logger.debug("Creating PersonInfoLastNameDTO for person: {}", person);
+
+        PersonInfoLastNameDTO personInfoDTO = new PersonInfoLastNameDTO(person.getLastName(), person.getAddress(),
+            ageOf(medicalRecord), person.getEmail(), medicationsOf(medicalRecord), allergiesOf(medicalRecord));
+
+        logger.debug("Created PersonInfoLastNameDTO: {}", personInfoDTO);
+        return personInfoDTO;
+    }
+
+    private int ageOf(MedicalRecord medicalRecord) {
+        return medicalRecord != null ? medicalRecordService.calculateAge(medicalRecord) : 0;
+    }
+
+    private static List<String> medicationsOf(MedicalRecord medicalRecord) {
+        return medicalRecord != null ? medicalRecord.getMedications() : List.of();
+    }
+
+    private static List<String> allergiesOf(MedicalRecord medicalRecord) {
+        return medicalRecord != null ? medicalRecord.getAllergies() : List.of();
+    }
+}
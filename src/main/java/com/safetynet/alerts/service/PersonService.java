@@ -24,13 +24,20 @@ public class PersonService {
     private final PersonRepository personRepository;
     private final FirestationRepository firestationRepository;
     private final MedicalRecordService medicalRecordService;
+    private final FirestationPhoneView phoneView;
+    private final CommunityEmailView emailView;
+    private final PersonInfoAssembler personInfoAssembler;
 
     public PersonService(PersonRepository personRepository, FirestationRepository firestationRepository,
-                         MedicalRecordService medicalRecordService
+                         MedicalRecordService medicalRecordService, FirestationPhoneView phoneView,
+                         CommunityEmailView emailView, PersonInfoAssembler personInfoAssembler
     ) {
         this.personRepository = personRepository;
         this.firestationRepository = firestationRepository;
         this.medicalRecordService = medicalRecordService;
+        this.phoneView = phoneView;
+        this.emailView = emailView;
+        this.personInfoAssembler = personInfoAssembler;
     }
 
     /**
@@ -54,7 +61,9 @@ public class PersonService {
     public boolean updatePerson(Person personToUpdate) {
         logger.info("Updating person: {}", personToUpdate);
 
-        Optional<Person> existingPersonOpt = Optional.ofNullable(personRepository.findById(personToUpdate.getId()));
+        // Published persons are never modified: the changes are applied to a copy
+        Optional<Person> existingPersonOpt = Optional.ofNullable(personRepository.findById(personToUpdate.getId()))
+            .map(Person::copy);
 
         return existingPersonOpt.map(existingPerson -> {
             boolean isUpdated = updateFields(existingPerson, personToUpdate);
@@ -164,10 +173,14 @@ public class PersonService {
         logger.info("Retrieving children by address: {}", address);
 
         List<Person> personsAtAddress = personRepository.findByAddress(address);
-        Set<ChildAlertDTO> children = personsAtAddress.stream()
-            .filter(medicalRecordService::isChild)
-            .map(child -> buildChildAlertDTO(child, personsAtAddress))
-            .collect(Collectors.toSet());
+        Set<ChildAlertDTO> children = new HashSet<>();
+        for (Person person : personsAtAddress) {
+            // Look the medical record up once, for both the age check and the DTO
+            MedicalRecord medicalRecord = medicalRecordService.getMedicalRecordByPerson(person.getFirstName(), person.getLastName());
+            if (medicalRecord != null && medicalRecordService.isChild(medicalRecord)) {
+                children.add(buildChildAlertDTO(person, medicalRecord, personsAtAddress));
+            }
+        }
 
         logger.info("Retrieved {} children at address: {}", children.size(), address);
         return children;
@@ -177,22 +190,17 @@ public class PersonService {
      * Builds a ChildAlertDTO object for a given child and their household members.
      *
      * @param child              The child to include in the DTO.
+     * @param medicalRecord      The medical record of the child.
      * @param householdMembers   The list of all household members at the same address.
      * @return A ChildAlertDTO containing the child's data and household members.
      */
-    private ChildAlertDTO buildChildAlertDTO(Person child, List<Person> householdMembers) {
+    private ChildAlertDTO buildChildAlertDTO(Person child, MedicalRecord medicalRecord, List<Person> householdMembers) {
         logger.debug("Building ChildAlertDTO for child: {}", child);
 
-        MedicalRecord personMedicalRecord = medicalRecordService.getMedicalRecordByPerson(child.getFirstName(), child.getLastName());
-        if (personMedicalRecord == null) {
-            logger.error("No medical record found for child: {}", child);
-            return null;
-        }
-
         ChildAlertDTO childDTO = new ChildAlertDTO();
         childDTO.setFirstName(child.getFirstName());
         childDTO.setLastName(child.getLastName());
-        childDTO.setAge(medicalRecordService.calculateAge(personMedicalRecord.getBirthdate()));
+        childDTO.setAge(medicalRecordService.calculateAge(medicalRecord));
         childDTO.setHouseholdMembers(getHouseholdMembers(child, householdMembers));
 
         logger.debug("ChildAlertDTO created: {}", childDTO);
@@ -239,6 +247,8 @@ public class PersonService {
 
     /**
      * Retrieves phone numbers of persons covered by a specific firestation.
+     * The numbers are served from the {@link FirestationPhoneView}, which is kept up to date as
+     * persons and firestations change.
      *
      * @param stationNumber The firestation number.
      * @return A set of phone numbers for the persons covered by the firestation.
@@ -246,10 +256,7 @@ public class PersonService {
     public Set<String> getPhoneNumbersByFirestation(int stationNumber) {
         logger.info("Retrieving phone numbers for firestation: {}", stationNumber);
 
-        List<Person> persons = getPersonsByFirestation(stationNumber);
-        Set<String> phoneNumbers = persons.stream()
-            .map(Person::getPhone)
-            .collect(Collectors.toSet());
+        Set<String> phoneNumbers = phoneView.getPhoneNumbers(stationNumber);
 
         logger.info("Retrieved {} phone numbers for firestation: {}", phoneNumbers.size(), stationNumber);
         return phoneNumbers;
@@ -265,22 +272,11 @@ public class PersonService {
         logger.info("Retrieving persons by last name: {}", lastName);
 
         List<Person> persons = personRepository.findByLastName(lastName);
-        FirestationService firestationService = new FirestationService(firestationRepository, this, personRepository, medicalRecordService);
-
-        List<PersonInfoLastNameDTO> personsInfo = persons.stream()
-            .map(person -> {
-                ResidentInfoDTO residentInfoDTO = firestationService.createResidentInfoDTO(person);
-
-                return new PersonInfoLastNameDTO(
-                    residentInfoDTO.getLastName(),
-                    person.getAddress(),
-                    residentInfoDTO.getAge(),
-                    person.getEmail(),
-                    residentInfoDTO.getMedications(),
-                    residentInfoDTO.getAllergies()
-                );
-            })
-            .toList();
+        List<PersonInfoLastNameDTO> personsInfo = new ArrayList<>(persons.size());
+        for (Person person : persons) {
+            MedicalRecord medicalRecord = medicalRecordService.getMedicalRecordByPerson(person.getFirstName(), person.getLastName());
+            personsInfo.add(personInfoAssembler.toPersonInfoLastNameDTO(person, medicalRecord));
+        }
 
         logger.info("Retrieved {} persons with last name: {}", personsInfo.size(), lastName);
         return personsInfo;
@@ -288,6 +284,8 @@ public class PersonService {
 
     /**
      * Retrieves email addresses of all persons in a city.
+     * The addresses are served from the {@link CommunityEmailView}, which is kept up to date as
+     * persons change.
      *
      * @param city The city to search.
      * @return A set of email addresses for all persons in the city.
@@ -295,13 +293,21 @@ public class PersonService {
     public Set<String> getEmailsByCity(String city) {
         logger.info("Retrieving emails for city: {}", city);
 
-        List<Person> persons = personRepository.findByCity(city);
-        Set<String> emails = persons.stream()
-            .map(Person::getEmail)
-            .filter(email -> email != null && !email.isEmpty())
-            .collect(Collectors.toSet());
+        Set<String> emails = emailView.getEmails(city);
 
         logger.info("Retrieved {} email addresses for city: {}", emails.size(), city);
         return emails;
     }
+
+    /**
+     * Retrieves email addresses of all persons in a city, one per line.
+     * The payload is built once per change to the residents of the city.
+     *
+     * @param city The city to search.
+     * @return The email addresses separated by line breaks, empty if there are none.
+     */
+    public String getEmailPayloadByCity(String city) {
+        logger.info("Retrieving email payload for city: {}", city);
+        return emailView.getPayload(city);
+    }
 }
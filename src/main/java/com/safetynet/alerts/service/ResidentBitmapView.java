@@ -0,0 +1,447 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.repository.DataReloadedEvent;
+import com.safetynet.alerts.repository.DataStore;
+import com.safetynet.alerts.repository.FirestationRepository;
+import com.safetynet.alerts.repository.MedicalRecordRepository;
+import com.safetynet.alerts.repository.Mutation;
+import com.safetynet.alerts.repository.PersonRepository;
+import com.safetynet.alerts.repository.Resident;
+import com.safetynet.alerts.repository.RoaringBitmap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bitmap indexes of the residents, for the queries combining stations, cities, child status and
+ * allergies. Each person is given a dense ordinal, reused once the person is removed, and each
+ * firestation number, address, city and name a {@link RoaringBitmap} of the ordinals of the
+ * persons it applies to, along with the bitmap of the children. A query ORs and ANDs these bitmaps,
+ * and only the persons left in the result are read from the repositories. The allergies are not
+ * indexed again: the persons allergic to one are those named by the records of its posting list
+ * in the medical record index.
+ * <p>
+ * The indexes are built on the first query, then kept up to date by the mutation events: a mutation
+ * only changes the bits of the persons it touches. They are rebuilt when the data is reloaded and
+ * when the reference date rolls over, since the child status of any resident may have changed.
+ * They are built under the lock of the view from the latest data, not from the snapshot pinned by
+ * the request, since the mutations published before they were built are not applied to them.
+ */
+@Component
+public class ResidentBitmapView {
+
+    private static final Logger logger = LogManager.getLogger(ResidentBitmapView.class);
+
+    private final PersonRepository personRepository;
+    private final FirestationRepository firestationRepository;
+    private final MedicalRecordRepository medicalRecordRepository;
+    private final MedicalRecordService medicalRecordService;
+    private final DataStore dataStore;
+
+    private Bitmaps bitmaps;
+
+    public ResidentBitmapView(PersonRepository personRepository, FirestationRepository firestationRepository,
+                              MedicalRecordRepository medicalRecordRepository,
+                              MedicalRecordService medicalRecordService, DataStore dataStore) {
+        this.personRepository = personRepository;
+        this.firestationRepository = firestationRepository;
+        this.medicalRecordRepository = medicalRecordRepository;
+        this.medicalRecordService = medicalRecordService;
+        this.dataStore = dataStore;
+    }
+
+    private record PersonName(String firstName, String lastName) {
+    }
+
+    /**
+     * A person indexed, with the keys it was indexed under.
+     */
+    private record IndexedPerson(UUID id, String address, String city, PersonName name, boolean child) {
+    }
+
+    /**
+     * Retrieves the residents matching all the criteria given, grouped by address,
+     * e.g. the children of Culver covered by stations 1 or 2 who are allergic to peanuts.
+     * The persons matched are read under the lock of the view from the latest data, as the indexes
+     * were built from it. A mutation may be published before its event updates the indexes, so the
+     * criteria are checked again on the persons and records read: a resident is never returned with
+     * data that does not match them.
+     *
+     * @param stationNumbers The firestation numbers covering the residents, or an empty set for any.
+     * @param city           The city of the residents, or null for any.
+     * @param child          True for children only, false for adults only, or null for both.
+     * @param allergy        An allergy of the residents, or null for any.
+     * @return The matching residents and their medical records, by address.
+     */
+    public Map<String, List<Resident>> findResidents(Set<Integer> stationNumbers, String city, Boolean child,
+                                                     String allergy) {
+        Map<String, List<Resident>> residents = new LinkedHashMap<>();
+        synchronized (this) {
+            Bitmaps current = current();
+            List<UUID> ids = current.matching(stationNumbers, city, child, allergy);
+            logger.debug("{} residents match stations {}, city {}, child {} and allergy {}",
+                ids.size(), stationNumbers, city, child, allergy);
+
+            try (DataStore.Pin latest = dataStore.pinLatest()) {
+                List<Person> persons = new ArrayList<>(ids.size());
+                for (UUID id : ids) {
+                    Person person = personRepository.findById(id);
+                    if (person != null) {
+                        persons.add(person);
+                    }
+                }
+                Map<UUID, MedicalRecord> medicalRecords = medicalRecordRepository.findByPersons(persons);
+                for (Person person : persons) {
+                    MedicalRecord medicalRecord = medicalRecords.get(person.getId());
+                    if (current.matches(person, medicalRecord, stationNumbers, city, child, allergy)) {
+                        residents.computeIfAbsent(person.getAddress(), a -> new ArrayList<>())
+                            .add(new Resident(person, medicalRecord));
+                    }
+                }
+            }
+        }
+        return residents;
+    }
+
+    /**
+     * Retrieves the indexes, building them if they were dropped or built before the reference date.
+     */
+    private synchronized Bitmaps current() {
+        LocalDate referenceDate = medicalRecordService.getReferenceDate();
+        if (bitmaps == null || !bitmaps.referenceDate.equals(referenceDate)) {
+            try (DataStore.Pin latest = dataStore.pinLatest()) {
+                bitmaps = build(referenceDate, latest.version());
+            }
+        }
+        return bitmaps;
+    }
+
+    private Bitmaps build(LocalDate referenceDate, long version) {
+        logger.debug("Building resident bitmaps as of {} from data version {}", referenceDate, version);
+        Bitmaps built = new Bitmaps(referenceDate);
+        firestationRepository.findAll().forEach(built::addFirestation);
+        medicalRecordRepository.findAll().forEach(record -> built.recordNames.put(record.getId(), nameOf(record)));
+        List<Person> persons = personRepository.findAll();
+        Map<UUID, MedicalRecord> medicalRecords = medicalRecordRepository.findByPersons(persons);
+        persons.forEach(person -> built.addPerson(person, medicalRecords.get(person.getId())));
+        logger.debug("Built resident bitmaps of {} persons and {} firestation mappings",
+            built.ordinals.size(), built.firestations.size());
+        return built;
+    }
+
+    /**
+     * Updates the bits of the persons a mutation touches. The mutation may already be in the data the
+     * indexes were built from, if they were built while the event was being published: removing then
+     * adding the entity makes applying it again harmless.
+     *
+     * @param mutation The mutation applied to the data.
+     */
+    @EventListener
+    public synchronized void onMutation(Mutation mutation) {
+        if (bitmaps == null) {
+            return;
+        }
+        try (DataStore.Pin ignored = dataStore.pinLatest()) {
+            apply(mutation);
+        }
+        logger.debug("Resident bitmaps updated after {} {} {}", mutation.getOperation(), mutation.getEntityType(),
+            mutation.getId());
+    }
+
+    private void apply(Mutation mutation) {
+        Object entity = mutation.getEntity();
+        switch (mutation.getEntityType()) {
+            case PERSON -> {
+                bitmaps.removePerson(mutation.getId());
+                if (entity instanceof Person person) {
+                    bitmaps.addPerson(person,
+                        medicalRecordRepository.findByFirstNameAndLastName(person.getFirstName(), person.getLastName()));
+                }
+            }
+            case FIRESTATION -> {
+                bitmaps.removeFirestation(mutation.getId());
+                if (entity instanceof Firestation firestation) {
+                    bitmaps.addFirestation(firestation);
+                }
+            }
+            case MEDICAL_RECORD -> bitmaps.updateMedicalRecord(mutation.getId(),
+                entity instanceof MedicalRecord record ? record : null);
+        }
+    }
+
+    /**
+     * Drops the indexes when the data is reloaded.
+     *
+     * @param event The reload event.
+     */
+    @EventListener
+    public synchronized void onDataReloaded(DataReloadedEvent event) {
+        bitmaps = null;
+        logger.debug("Resident bitmaps cleared after reload of {} data", event.entityType());
+    }
+
+    private static <K> RoaringBitmap bitmap(Map<K, RoaringBitmap> bitmaps, K key) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        return bitmap != null ? bitmap : new RoaringBitmap();
+    }
+
+    private static <K> void update(Map<K, RoaringBitmap> bitmaps, K key, int ordinal, boolean set) {
+        if (key == null) {
+            return;
+        }
+        if (set) {
+            bitmaps.computeIfAbsent(key, k -> new RoaringBitmap()).add(ordinal);
+            return;
+        }
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private static PersonName nameOf(Person person) {
+        return new PersonName(person.getFirstName(), person.getLastName());
+    }
+
+    private static PersonName nameOf(MedicalRecord medicalRecord) {
+        return new PersonName(medicalRecord.getFirstName(), medicalRecord.getLastName());
+    }
+
+    /**
+     * The indexes as of a reference date. Modified and read under the lock of the view.
+     */
+    private final class Bitmaps {
+
+        private final LocalDate referenceDate;
+        private final Map<UUID, Integer> ordinals = new HashMap<>();
+        private final List<IndexedPerson> persons = new ArrayList<>();
+        private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+        private final RoaringBitmap all = new RoaringBitmap();
+        private final RoaringBitmap children = new RoaringBitmap();
+        private final Map<String, RoaringBitmap> byAddress = new HashMap<>();
+        private final Map<String, RoaringBitmap> byCity = new HashMap<>();
+        private final Map<PersonName, RoaringBitmap> byName = new HashMap<>();
+        private final Map<Integer, RoaringBitmap> byStation = new HashMap<>();
+        private final Map<UUID, Firestation> firestations = new HashMap<>();
+        // Number of firestation mappings of each address to each station, since mappings may be duplicated
+        private final Map<String, Map<Integer, Integer>> stationsByAddress = new HashMap<>();
+        private final Map<UUID, PersonName> recordNames = new HashMap<>();
+
+        Bitmaps(LocalDate referenceDate) {
+            this.referenceDate = referenceDate;
+        }
+
+        /**
+         * ANDs the bitmaps of the criteria given, then resolves the ordinals left into IDs.
+         */
+        List<UUID> matching(Set<Integer> stationNumbers, String city, Boolean child, String allergy) {
+            RoaringBitmap matching = all;
+            if (!stationNumbers.isEmpty()) {
+                List<RoaringBitmap> covered = new ArrayList<>();
+                stationNumbers.forEach(station -> covered.add(bitmap(byStation, station)));
+                matching = RoaringBitmap.orAll(covered);
+            }
+            if (city != null) {
+                matching = matching.and(bitmap(byCity, city));
+            }
+            if (allergy != null) {
+                matching = matching.and(allergic(allergy));
+            }
+            if (child != null) {
+                matching = child ? matching.and(children) : matching.andNot(children);
+            }
+
+            List<UUID> ids = new ArrayList<>(matching.cardinality());
+            matching.forEach(ordinal -> ids.add(persons.get(ordinal).id()));
+            return ids;
+        }
+
+        /**
+         * Checks the criteria on a person read from the data, and on their medical record.
+         * The stations covering the address are those of the firestations indexed.
+         */
+        boolean matches(Person person, MedicalRecord medicalRecord, Set<Integer> stationNumbers, String city,
+                        Boolean child, String allergy) {
+            if (!stationNumbers.isEmpty() && stationsByAddress.getOrDefault(person.getAddress(), Map.of()).keySet()
+                .stream().noneMatch(stationNumbers::contains)) {
+                return false;
+            }
+            if (city != null && !city.equals(person.getCity())) {
+                return false;
+            }
+            if (allergy != null && (medicalRecord == null || medicalRecord.getAllergies() == null
+                || !medicalRecord.getAllergies().contains(allergy))) {
+                return false;
+            }
+            return child == null || child == (medicalRecord != null && medicalRecordService.isChild(medicalRecord));
+        }
+
+        /**
+         * ORs the bitmaps of the names of the records listing an allergy. The records are read from
+         * the latest data, as the indexes were built from it.
+         */
+        private RoaringBitmap allergic(String allergy) {
+            List<RoaringBitmap> named = new ArrayList<>();
+            try (DataStore.Pin latest = dataStore.pinLatest()) {
+                for (MedicalRecord medicalRecord : medicalRecordRepository.findByAllergy(allergy)) {
+                    named.add(bitmap(byName, nameOf(medicalRecord)));
+                }
+            }
+            return RoaringBitmap.orAll(named);
+        }
+
+        /**
+         * Indexes a person.
+         *
+         * @param person        The person.
+         * @param medicalRecord The medical record of the person, or null if there is none.
+         */
+        void addPerson(Person person, MedicalRecord medicalRecord) {
+            Integer free = freeOrdinals.poll();
+            int ordinal = free != null ? free : persons.size();
+            IndexedPerson indexed = new IndexedPerson(person.getId(), person.getAddress(), person.getCity(),
+                nameOf(person), medicalRecord != null && medicalRecordService.isChild(medicalRecord));
+            if (ordinal == persons.size()) {
+                persons.add(indexed);
+            } else {
+                persons.set(ordinal, indexed);
+            }
+            ordinals.put(person.getId(), ordinal);
+
+            all.add(ordinal);
+            update(byAddress, indexed.address(), ordinal, true);
+            update(byCity, indexed.city(), ordinal, true);
+            update(byName, indexed.name(), ordinal, true);
+            for (int station : stationsByAddress.getOrDefault(indexed.address(), Map.of()).keySet()) {
+                update(byStation, station, ordinal, true);
+            }
+            updateChildBit(ordinal, indexed, true);
+        }
+
+        void removePerson(UUID id) {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            IndexedPerson indexed = persons.set(ordinal, null);
+            all.remove(ordinal);
+            update(byAddress, indexed.address(), ordinal, false);
+            update(byCity, indexed.city(), ordinal, false);
+            update(byName, indexed.name(), ordinal, false);
+            for (int station : stationsByAddress.getOrDefault(indexed.address(), Map.of()).keySet()) {
+                update(byStation, station, ordinal, false);
+            }
+            updateChildBit(ordinal, indexed, false);
+            freeOrdinals.push(ordinal);
+        }
+
+        /**
+         * Maps the address of a firestation to its station, adding the residents of the address to the
+         * bitmap of the station if the address was not mapped to it yet.
+         */
+        void addFirestation(Firestation firestation) {
+            firestations.put(firestation.getId(), firestation);
+            String address = firestation.getAddress();
+            int station = firestation.getStation();
+            if (stationsByAddress.computeIfAbsent(address, a -> new HashMap<>()).merge(station, 1, Integer::sum) > 1) {
+                return;
+            }
+            RoaringBitmap residents = byAddress.get(address);
+            if (residents != null) {
+                byStation.put(station, bitmap(byStation, station).or(residents));
+            }
+        }
+
+        /**
+         * Unmaps the address of a firestation from its station, removing the residents of the address
+         * from the bitmap of the station unless another firestation still maps the address to it.
+         */
+        void removeFirestation(UUID id) {
+            Firestation removed = firestations.remove(id);
+            if (removed == null) {
+                return;
+            }
+            String address = removed.getAddress();
+            int station = removed.getStation();
+            Map<Integer, Integer> stations = stationsByAddress.get(address);
+            if (stations.merge(station, -1, Integer::sum) > 0) {
+                return;
+            }
+            stations.remove(station);
+            if (stations.isEmpty()) {
+                stationsByAddress.remove(address);
+            }
+            RoaringBitmap residents = byAddress.get(address);
+            RoaringBitmap covered = byStation.get(station);
+            if (residents != null && covered != null) {
+                covered = covered.andNot(residents);
+                if (covered.isEmpty()) {
+                    byStation.remove(station);
+                } else {
+                    byStation.put(station, covered);
+                }
+            }
+        }
+
+        /**
+         * Updates the child bits of the persons having the previous or the new name of a record.
+         */
+        void updateMedicalRecord(UUID id, MedicalRecord medicalRecord) {
+            Set<PersonName> names = new HashSet<>();
+            PersonName previousName = recordNames.remove(id);
+            if (previousName != null) {
+                names.add(previousName);
+            }
+            if (medicalRecord != null) {
+                recordNames.put(id, nameOf(medicalRecord));
+                names.add(nameOf(medicalRecord));
+            }
+
+            for (PersonName name : names) {
+                int[] named = bitmap(byName, name).toArray();
+                if (named.length == 0) {
+                    continue;
+                }
+                MedicalRecord current =
+                    medicalRecordRepository.findByFirstNameAndLastName(name.firstName(), name.lastName());
+                boolean child = current != null && medicalRecordService.isChild(current);
+                for (int ordinal : named) {
+                    IndexedPerson indexed = persons.get(ordinal);
+                    updateChildBit(ordinal, indexed, false);
+                    indexed = new IndexedPerson(indexed.id(), indexed.address(), indexed.city(), name, child);
+                    persons.set(ordinal, indexed);
+                    updateChildBit(ordinal, indexed, true);
+                }
+            }
+        }
+
+        private void updateChildBit(int ordinal, IndexedPerson indexed, boolean set) {
+            if (indexed.child()) {
+                if (set) {
+                    children.add(ordinal);
+                } else {
+                    children.remove(ordinal);
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.safetynet.alerts.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.safetynet.alerts.model.*;
+import com.safetynet.alerts.repository.DataFileWatcher;
+import com.safetynet.alerts.repository.DataStore;
 import com.safetynet.alerts.service.FirestationService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -30,6 +32,12 @@ class FirestationControllerTests {
     @MockBean
     private FirestationService firestationService;
 
+    @MockBean
+    private DataStore dataStore;
+
+    @MockBean
+    private DataFileWatcher dataFileWatcher;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -181,4 +189,51 @@ class FirestationControllerTests {
             .andExpect(status().isOk())
             .andExpect(content().string("No households found for the specified stations."));
     }
+
+    @Test
+    void testGetMedicalAlert() throws Exception {
+        ResidentInfoDTO residentInfo = new ResidentInfoDTO("Doe", "123-456-7890", 44, List.of(), List.of("penicillin"));
+        List<FloodStationDTO> households = List.of(new FloodStationDTO("123 Main St", Set.of(residentInfo)));
+        Mockito.when(firestationService.getHouseholdsWithMedicalTerms(Set.of(3), null, "penicillin", null))
+            .thenReturn(households);
+
+        mockMvc.perform(get("/medicalAlert")
+                .param("stations", "3")
+                .param("allergy", "penicillin"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(households.get(0).toString()));
+    }
+
+    @Test
+    void testGetMedicalAlert_MissingCriteria() throws Exception {
+        mockMvc.perform(get("/medicalAlert")
+                .param("allergy", "penicillin"))
+            .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/medicalAlert")
+                .param("address", "123 Main St"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetResidents() throws Exception {
+        ResidentInfoDTO residentInfo = new ResidentInfoDTO("Doe", "123-456-7890", 9, List.of(), List.of("peanut"));
+        List<FloodStationDTO> households = List.of(new FloodStationDTO("123 Main St", Set.of(residentInfo)));
+        Mockito.when(firestationService.getHouseholdsByCriteria(Set.of(1, 2), "Culver", true, "peanut"))
+            .thenReturn(households);
+
+        mockMvc.perform(get("/residents")
+                .param("stations", "1", "2")
+                .param("city", "Culver")
+                .param("child", "true")
+                .param("allergy", "peanut"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(households.get(0).toString()));
+    }
+
+    @Test
+    void testGetResidents_MissingCriteria() throws Exception {
+        mockMvc.perform(get("/residents"))
+            .andExpect(status().isBadRequest());
+    }
 }
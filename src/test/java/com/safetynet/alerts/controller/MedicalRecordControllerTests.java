@@ -2,6 +2,8 @@ package com.safetynet.alerts.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.repository.DataFileWatcher;
+import com.safetynet.alerts.repository.DataStore;
 import com.safetynet.alerts.service.MedicalRecordService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -29,6 +31,12 @@ class MedicalRecordControllerTests {
     @MockBean
     private MedicalRecordService medicalRecordService;
 
+    @MockBean
+    private DataStore dataStore;
+
+    @MockBean
+    private DataFileWatcher dataFileWatcher;
+
     @Autowired
     private ObjectMapper objectMapper;
 
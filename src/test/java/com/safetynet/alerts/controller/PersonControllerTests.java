@@ -5,6 +5,8 @@ import com.safetynet.alerts.model.ChildAlertDTO;
 import com.safetynet.alerts.model.Person;
 import com.safetynet.alerts.model.PersonInfoDTO;
 import com.safetynet.alerts.model.PersonInfoLastNameDTO;
+import com.safetynet.alerts.repository.DataFileWatcher;
+import com.safetynet.alerts.repository.DataStore;
 import com.safetynet.alerts.service.PersonService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +39,12 @@ class PersonControllerTests {
     @MockBean
     private PersonService personService;
 
+    @MockBean
+    private DataStore dataStore;
+
+    @MockBean
+    private DataFileWatcher dataFileWatcher;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -377,10 +385,10 @@ class PersonControllerTests {
         String city = "Springfield";
         Set<String> emails = Set.of("john.doe@example.com", "jane.doe@example.com");
 
-        Mockito.when(personService.getEmailsByCity(city)).thenReturn(emails);
-
         String expectedResponse = String.join("\n", emails);
 
+        Mockito.when(personService.getEmailPayloadByCity(city)).thenReturn(expectedResponse);
+
         mockMvc.perform(get("/communityEmail")
                 .param("city", city))
             .andExpect(status().isOk())
@@ -394,7 +402,7 @@ class PersonControllerTests {
     void testGetCommunityEmailsByCity_NoEmails() throws Exception {
         String city = "Springfield";
 
-        Mockito.when(personService.getEmailsByCity(city)).thenReturn(Set.of());
+        Mockito.when(personService.getEmailPayloadByCity(city)).thenReturn("");
 
         mockMvc.perform(get("/communityEmail")
                 .param("city", city))
@@ -409,7 +417,7 @@ class PersonControllerTests {
     void testGetCommunityEmailsByCity_Error() throws Exception {
         String city = "Springfield";
 
-        Mockito.when(personService.getEmailsByCity(city))
+        Mockito.when(personService.getEmailPayloadByCity(city))
             .thenThrow(new RuntimeException("Simulated Exception"));
 
         mockMvc.perform(get("/communityEmail")
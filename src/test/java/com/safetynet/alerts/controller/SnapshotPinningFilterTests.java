@@ -0,0 +1,58 @@
+package com.safetynet.alerts.controller;
+
+import com.safetynet.alerts.repository.DataStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.*;
+
+class SnapshotPinningFilterTests {
+
+    private DataStore dataStore;
+    private SnapshotPinningFilter filter;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private FilterChain filterChain;
+
+    @BeforeEach
+    void setUp() {
+        dataStore = mock(DataStore.class);
+        filter = new SnapshotPinningFilter(dataStore);
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        filterChain = mock(FilterChain.class);
+    }
+
+    @Test
+    void doFilter_ShouldPinDataAroundRequest_WhenRequestIsRead() throws Exception {
+        // Arrange
+        DataStore.Pin pin = mock(DataStore.Pin.class);
+        when(dataStore.pin()).thenReturn(pin);
+        when(request.getMethod()).thenReturn("GET");
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        var inOrder = inOrder(dataStore, filterChain, pin);
+        inOrder.verify(dataStore).pin();
+        inOrder.verify(filterChain).doFilter(request, response);
+        inOrder.verify(pin).close();
+    }
+
+    @Test
+    void doFilter_ShouldNotPinData_WhenRequestIsWrite() throws Exception {
+        // Arrange
+        when(request.getMethod()).thenReturn("PUT");
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        verify(filterChain).doFilter(request, response);
+        verify(dataStore, never()).pin();
+    }
+}
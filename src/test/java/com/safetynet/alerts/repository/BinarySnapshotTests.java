@@ -0,0 +1,77 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySnapshotTests {
+
+    private static byte[] write(DataSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinarySnapshot.write(snapshot, bytes);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void read_ShouldReturnWrittenData_WhenSnapshotIsValid() throws IOException {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", null);
+        Firestation firestation = new Firestation("123 Main St", 1);
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Doe", "01/01/2000", List.of("aznol:350mg"), null);
+        DataSnapshot snapshot = DataSnapshot.of(List.of(person), List.of(firestation), List.of(medicalRecord));
+
+        // Act
+        DataSnapshot read = BinarySnapshot.read(ByteBuffer.wrap(write(snapshot)));
+
+        // Assert
+        Person readPerson = read.persons().byId().get(person.getId());
+        assertEquals("Doe", readPerson.getLastName());
+        assertEquals("123 Main St", readPerson.getAddress());
+        assertNull(readPerson.getEmail());
+        assertEquals(1, read.firestations().byId().get(firestation.getId()).getStation());
+        MedicalRecord readMedicalRecord = read.medicalRecords().byId().get(medicalRecord.getId());
+        assertEquals(List.of("aznol:350mg"), readMedicalRecord.getMedications());
+        assertNull(readMedicalRecord.getAllergies());
+    }
+
+    @Test
+    void read_ShouldThrow_WhenContentIsCorrupted() throws IOException {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        byte[] bytes = write(DataSnapshot.of(List.of(person), List.of(), List.of()));
+        bytes[bytes.length / 2] ^= 1;
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> BinarySnapshot.read(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void read_ShouldThrow_WhenContentIsTruncated() throws IOException {
+        // Arrange
+        byte[] bytes = write(DataSnapshot.empty());
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> BinarySnapshot.read(ByteBuffer.wrap(bytes, 0, 4).slice()));
+    }
+
+    @Test
+    void readSequence_ShouldReturnLastMutationWritten() throws IOException {
+        // Arrange
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinarySnapshot.write(DataSnapshot.empty(), 42, bytes);
+
+        // Act
+        long sequence = BinarySnapshot.readSequence(ByteBuffer.wrap(bytes.toByteArray()));
+
+        // Assert
+        assertEquals(42, sequence);
+    }
+}
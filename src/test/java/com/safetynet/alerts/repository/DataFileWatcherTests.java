@@ -0,0 +1,89 @@
+package com.safetynet.alerts.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DataFileWatcherTests {
+
+    private static final String CONTENT = """
+        {
+          "persons" : [ { "firstName" : "John", "lastName" : "Doe", "address" : "123 Main St", "city" : "City",
+                          "zip" : "12345", "phone" : "123-456-7890", "email" : "john.doe@email.com" } ],
+          "firestations" : [ ],
+          "medicalrecords" : [ ]
+        }""";
+
+    @TempDir
+    Path directory;
+
+    private DataStore dataStore;
+    private Path file;
+    private DataFileWatcher dataFileWatcher;
+
+    @BeforeEach
+    void setUp() {
+        dataStore = mock(DataStore.class);
+        file = directory.resolve("data.json");
+        dataFileWatcher = new DataFileWatcher(dataStore, true, 0, file);
+    }
+
+    private static long checksumOf(String content) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(content.getBytes(StandardCharsets.UTF_8));
+        return checksum.getValue();
+    }
+
+    @Test
+    void reload_ShouldApplyFile_WhenItWasEditedByHand() throws IOException {
+        // Arrange
+        String edited = CONTENT.replace("123-456-7890", "000-000-0000");
+        Files.writeString(file, edited);
+        JsonFileUtil.writeChecksum(file, checksumOf(CONTENT), 3);
+
+        // Act
+        dataFileWatcher.reload();
+
+        // Assert
+        verify(dataStore).reload(argThat(snapshot ->
+            "000-000-0000".equals(snapshot.persons().byId().all().get(0).getPhone())));
+        assertEquals(checksumOf(edited), JsonFileUtil.readChecksum(file));
+        assertEquals(3, JsonFileUtil.readSequence(file));
+        assertDoesNotThrow(() -> DataLoader.readSnapshot(file));
+    }
+
+    @Test
+    void reload_ShouldApplyFile_WhenChecksumMatches() throws IOException {
+        // Arrange
+        Files.writeString(file, CONTENT);
+        JsonFileUtil.writeChecksum(file, checksumOf(CONTENT), 3);
+
+        // Act
+        dataFileWatcher.reload();
+
+        // Assert
+        verify(dataStore).reload(any(DataSnapshot.class));
+        assertEquals(checksumOf(CONTENT), JsonFileUtil.readChecksum(file));
+    }
+
+    @Test
+    void reload_ShouldKeepData_WhenFileCannotBeParsed() throws IOException {
+        // Arrange
+        Files.writeString(file, CONTENT.substring(0, CONTENT.indexOf("\"firestations\"")));
+
+        // Act
+        dataFileWatcher.reload();
+
+        // Assert
+        verify(dataStore, never()).reload(any(DataSnapshot.class));
+    }
+}
@@ -0,0 +1,166 @@
+package com.safetynet.alerts.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataLoaderTests {
+
+    private static final String CONTENT = """
+        {
+          "persons" : [ { "firstName" : "John", "lastName" : "Doe", "address" : "123 Main St", "city" : "City",
+                          "zip" : "12345", "phone" : "123-456-7890", "email" : "john.doe@email.com" } ],
+          "firestations" : [ { "address" : "123 Main St", "station" : 1 } ],
+          "medicalrecords" : [ ]
+        }""";
+
+    @TempDir
+    Path directory;
+
+    private Path writeSnapshot(String content, long checksum) throws IOException {
+        Path file = directory.resolve("data.json");
+        Files.writeString(file, content);
+        JsonFileUtil.writeChecksum(file, checksum, 7);
+        return file;
+    }
+
+    private static long checksumOf(String content) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(content.getBytes(StandardCharsets.UTF_8));
+        return checksum.getValue();
+    }
+
+    @Test
+    void readSnapshot_ShouldLoadData_WhenChecksumMatches() throws IOException {
+        // Arrange
+        Path file = writeSnapshot(CONTENT, checksumOf(CONTENT));
+
+        // Act
+        DataSnapshot snapshot = DataLoader.readSnapshot(file);
+
+        // Assert
+        assertEquals(1, snapshot.persons().byId().size());
+        assertEquals(1, snapshot.firestations().byId().size());
+    }
+
+    @Test
+    void writeChecksum_ShouldWriteChecksumNextToSnapshot() throws IOException {
+        // Arrange
+        Path file = writeSnapshot(CONTENT, checksumOf(CONTENT));
+
+        // Act
+        Long checksum = JsonFileUtil.readChecksum(file);
+
+        // Assert
+        assertEquals(CONTENT, Files.readString(file));
+        assertEquals(directory.resolve("data.json.crc32c"), JsonFileUtil.checksumFile(file));
+        assertEquals(checksumOf(CONTENT), checksum);
+        assertEquals(7, JsonFileUtil.readSequence(file));
+    }
+
+    @Test
+    void readSnapshot_ShouldThrow_WhenChecksumDoesNotMatch() throws IOException {
+        // Arrange
+        Path file = writeSnapshot(CONTENT.replace("John", "Jane"), checksumOf(CONTENT));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> DataLoader.readSnapshot(file));
+    }
+
+    @Test
+    void readSnapshot_ShouldLoadData_WhenFileHasNoChecksumFile() throws IOException {
+        // Arrange
+        Path file = directory.resolve("data.json");
+        Files.writeString(file, CONTENT);
+
+        // Act
+        DataSnapshot snapshot = DataLoader.readSnapshot(file);
+
+        // Assert
+        assertEquals(1, snapshot.persons().byId().size());
+    }
+
+    @Test
+    void readSnapshot_ShouldRecoverChecksumFile_WhenCrashedBeforeItWasRenamed() throws IOException {
+        // Arrange: the snapshot was renamed in place, but its checksum file still has its temporary name
+        Path file = directory.resolve("data.json");
+        Files.writeString(file, CONTENT);
+        Files.writeString(directory.resolve("data.json.crc32c.tmp"), String.format("%08x 9%n", checksumOf(CONTENT)));
+
+        // Act
+        DataSnapshot snapshot = DataLoader.readSnapshot(file);
+
+        // Assert
+        assertEquals(1, snapshot.persons().byId().size());
+        assertEquals(checksumOf(CONTENT), JsonFileUtil.readChecksum(file));
+        assertEquals(9, JsonFileUtil.readSequence(file));
+    }
+
+    @Test
+    void readSequence_ShouldRecoverBackupChecksumFile_WhenCrashedBeforeItFollowedTheBackup() throws IOException {
+        // Arrange: the previous snapshot was moved to the backup, but not its checksum file yet
+        writeSnapshot(CONTENT, checksumOf(CONTENT));
+        Path backup = directory.resolve("data.json.bak");
+        Files.move(directory.resolve("data.json"), backup);
+
+        // Act
+        long sequence = JsonFileUtil.readSequence(backup);
+
+        // Assert
+        assertEquals(7, sequence);
+        assertEquals(checksumOf(CONTENT), JsonFileUtil.readChecksum(backup));
+        assertEquals(1, DataLoader.readSnapshot(backup).persons().byId().size());
+    }
+
+    @Test
+    void readChecksum_ShouldNotRecoverChecksumFile_WhenItDoesNotMatchTheSnapshot() throws IOException {
+        // Arrange: the checksum file of the next snapshot was written, but the snapshot was never renamed
+        Path file = directory.resolve("data.json");
+        Files.writeString(file, CONTENT);
+        String next = CONTENT.replace("John", "Jane");
+        Files.writeString(directory.resolve("data.json.crc32c.tmp"), String.format("%08x 9%n", checksumOf(next)));
+
+        // Act
+        Long checksum = JsonFileUtil.readChecksum(file);
+
+        // Assert
+        assertNull(checksum);
+        assertEquals(MutationLog.UNKNOWN_SEQUENCE, JsonFileUtil.readSequence(file));
+        assertFalse(Files.exists(JsonFileUtil.checksumFile(file)));
+    }
+
+    @Test
+    void readSnapshot_ShouldThrow_WhenFileIsTruncated() throws IOException {
+        // Arrange
+        Path file = directory.resolve("data.json");
+        Files.writeString(file, CONTENT.substring(0, CONTENT.indexOf("\"medicalrecords\"")));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> DataLoader.readSnapshot(file));
+    }
+
+    @Test
+    void readSnapshot_ShouldLoadData_WhenBinarySnapshotIsMapped() throws IOException {
+        // Arrange
+        Path file = directory.resolve("data.bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            BinarySnapshot.write(DataLoader.readSnapshot(writeSnapshot(CONTENT, checksumOf(CONTENT))), out);
+        }
+
+        // Act
+        DataSnapshot snapshot = DataLoader.readSnapshot(file, SnapshotFormat.BINARY);
+
+        // Assert
+        assertEquals(1, snapshot.persons().byId().size());
+        assertEquals("Doe", snapshot.persons().byId().all().get(0).getLastName());
+        assertEquals(1, snapshot.firestations().byId().size());
+    }
+}
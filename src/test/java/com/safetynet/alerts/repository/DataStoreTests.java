@@ -0,0 +1,192 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DataStoreTests {
+
+    private MutationLog mutationLog;
+    private DataStore dataStore;
+    private List<Object> publishedEvents;
+    private Person john;
+
+    @BeforeEach
+    void setUp() {
+        publishedEvents = new ArrayList<>();
+        mutationLog = mock(MutationLog.class);
+        dataStore = new DataStore(publishedEvents::add, mutationLog);
+        john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        dataStore.load(DataSnapshot.of(List.of(john), List.of(), List.of()));
+    }
+
+    @Test
+    void load_ShouldPublishReloadForEveryEntityType() {
+        // Assert
+        assertEquals(List.of(
+            new DataReloadedEvent(Mutation.EntityType.PERSON),
+            new DataReloadedEvent(Mutation.EntityType.FIRESTATION),
+            new DataReloadedEvent(Mutation.EntityType.MEDICAL_RECORD)), publishedEvents);
+    }
+
+    @Test
+    void writePersons_ShouldPublishNewSnapshot_WithoutModifyingPreviousOne() throws IOException {
+        // Arrange
+        DataSnapshot before = dataStore.snapshot();
+        Person jane = new Person("Jane", "Smith", "123 Main St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+
+        // Act
+        boolean committed = dataStore.writePersons(persons -> {
+            persons.byId().add(jane);
+            return Mutation.add(jane);
+        });
+
+        // Assert
+        assertTrue(committed);
+        assertEquals(List.of(john), before.persons().byId().all());
+        assertEquals(List.of(john), before.persons().byAddress().get("123 Main St"));
+        assertEquals(List.of(john, jane), dataStore.snapshot().persons().byId().all());
+        assertEquals(List.of(john, jane), dataStore.snapshot().persons().byAddress().get("123 Main St"));
+        assertSame(before.firestations(), dataStore.snapshot().firestations());
+    }
+
+    @Test
+    void reload_ShouldPublishDifferencesInOneSnapshot_WhenFileChanged() throws IOException {
+        // Arrange
+        Person fileJohn = new Person("John", "Doe", "123 Main St", "City", "12345", "000-000-0000", "john.doe@email.com");
+        Person jane = new Person("Jane", "Smith", "123 Main St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+        long versionBefore = dataStore.version();
+        publishedEvents.clear();
+
+        // Act
+        int applied = dataStore.reload(DataSnapshot.of(List.of(fileJohn, jane), List.of(), List.of()));
+
+        // Assert
+        assertEquals(2, applied);
+        assertEquals(versionBefore + 1, dataStore.version());
+        assertEquals("000-000-0000", dataStore.snapshot().persons().byId().get(john.getId()).getPhone());
+        assertEquals(2, dataStore.snapshot().persons().byId().size());
+        assertEquals(2, publishedEvents.size());
+        verify(mutationLog).requestCompaction();
+    }
+
+    @Test
+    void writePersons_ShouldKeepSnapshot_WhenNothingChanged() throws IOException {
+        // Arrange
+        DataSnapshot before = dataStore.snapshot();
+        publishedEvents.clear();
+
+        // Act
+        boolean committed = dataStore.writePersons(persons -> null);
+
+        // Assert
+        assertFalse(committed);
+        assertSame(before, dataStore.snapshot());
+        assertTrue(publishedEvents.isEmpty());
+        verify(mutationLog, never()).append(any(Mutation.class));
+    }
+
+    @Test
+    void writePersons_ShouldDiscardChange_WhenMutationCannotBeLogged() throws IOException {
+        // Arrange
+        DataSnapshot before = dataStore.snapshot();
+        publishedEvents.clear();
+
+        doThrow(new IOException("Disk full")).when(mutationLog).append(any(Mutation.class));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> dataStore.writePersons(persons -> {
+            persons.byId().remove(john.getId());
+            return Mutation.delete(Mutation.EntityType.PERSON, john.getId());
+        }));
+        assertSame(before, dataStore.snapshot());
+        assertEquals(List.of(john), dataStore.snapshot().persons().byId().all());
+        assertTrue(publishedEvents.isEmpty());
+    }
+
+    @Test
+    void pin_ShouldKeepReadingPinnedVersion_WhenWriteIsPublished() throws IOException {
+        // Arrange
+        Person jane = new Person("Jane", "Smith", "123 Main St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+
+        try (DataStore.Pin pin = dataStore.pin()) {
+            // Act
+            dataStore.writePersons(persons -> {
+                persons.byId().add(jane);
+                return Mutation.add(jane);
+            });
+
+            // Assert
+            assertEquals(pin.version(), dataStore.version());
+            assertEquals(List.of(john), dataStore.snapshot().persons().byId().all());
+        }
+        assertEquals(List.of(john, jane), dataStore.snapshot().persons().byId().all());
+    }
+
+    @Test
+    void pin_ShouldKeepOuterPin_WhenNestedPinIsClosed() throws IOException {
+        // Arrange
+        Person jane = new Person("Jane", "Smith", "123 Main St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+
+        try (DataStore.Pin outer = dataStore.pin()) {
+            // Act
+            dataStore.pin().close();
+            dataStore.writePersons(persons -> {
+                persons.byId().add(jane);
+                return Mutation.add(jane);
+            });
+
+            // Assert
+            assertEquals(outer.version(), dataStore.version());
+        }
+    }
+
+    @Test
+    void writePersons_ShouldPublishNextVersion() throws IOException {
+        // Arrange
+        long version = dataStore.version();
+
+        // Act
+        dataStore.writePersons(persons -> persons.byId().remove(john.getId()) != null
+            ? Mutation.delete(Mutation.EntityType.PERSON, john.getId()) : null);
+
+        // Assert
+        assertEquals(version + 1, dataStore.version());
+    }
+
+    @Test
+    void writePersons_ShouldCompactOnlyDictionaryOfStore_WhenItHasDoubled() throws IOException {
+        // Arrange
+        Person jack = new Person("Jack", "Smith", "456 Elm St", "Town", "54321", "123-456-7892", "jack.smith@email.com");
+        DataStore otherStore = new DataStore(event -> {}, mock(MutationLog.class));
+        otherStore.load(DataSnapshot.of(List.of(jack), List.of(), List.of()));
+        StringDictionary otherDictionary = otherStore.snapshot().dictionary();
+
+        // Act
+        for (int i = 0; i < 2000; i++) {
+            Person moved = john.copy();
+            moved.setAddress(i + " Main St");
+            dataStore.writePersons(persons -> {
+                persons.byId().replace(moved);
+                return Mutation.update(moved);
+            });
+        }
+
+        // Assert
+        StringDictionary dictionary = dataStore.snapshot().dictionary();
+        assertTrue(dictionary.size() < 1024);
+        assertNull(dictionary.find("0 Main St"));
+        assertEquals("1999 Main St", dataStore.snapshot().persons().byAddress().get(dictionary.key("1999 Main St"))
+            .get(0).getAddress());
+        assertSame(otherDictionary, otherStore.snapshot().dictionary());
+        assertSame(jack.getAddress(), otherDictionary.find("456 Elm St"));
+        assertEquals(List.of(jack), otherStore.snapshot().persons().byAddress().get("456 Elm St"));
+    }
+}
@@ -1,25 +1,32 @@
 package com.safetynet.alerts.repository;
 
 import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.MockedStatic;
 
 import java.io.IOException;
 import java.util.*;
 
-import static com.safetynet.alerts.model.Data.firestations;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class FirestationRepositoryTests {
 
+    private MutationLog mutationLog;
+    private DataStore dataStore;
     private FirestationRepository firestationRepository;
 
     @BeforeEach
     void setUp() {
-        firestations = new ArrayList<>(); // Initialisez la liste avant chaque test
-        firestationRepository = new FirestationRepository();
+        mutationLog = mock(MutationLog.class);
+        dataStore = new DataStore(event -> {}, mutationLog);
+        firestationRepository = new FirestationRepository(dataStore);
+    }
+
+    private void givenFirestations(Firestation... firestations) {
+        dataStore.load(DataSnapshot.of(List.of(), List.of(firestations), List.of()));
     }
 
     @Test
@@ -27,7 +34,7 @@ class FirestationRepositoryTests {
         // Arrange
         Firestation firestation1 = new Firestation("123 Main St", 1);
         Firestation firestation2 = new Firestation("456 Elm St", 2);
-        firestations.addAll(List.of(firestation1, firestation2));
+        givenFirestations(firestation1, firestation2);
 
         // Act
         List<Firestation> result = firestationRepository.findAll();
@@ -41,7 +48,7 @@ class FirestationRepositoryTests {
     void findById_ShouldReturnFirestation_WhenIdExists() {
         // Arrange
         Firestation firestation = new Firestation("123 Main St", 1);
-        firestations.add(firestation);
+        givenFirestations(firestation);
         UUID id = firestation.getId();
 
         // Act
@@ -69,37 +76,31 @@ class FirestationRepositoryTests {
         // Arrange
         Firestation firestation = new Firestation("123 Main St", 1);
 
-        // Mock static JsonFileUtil
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            firestationRepository.addFirestation(firestation);
+        // Act
+        firestationRepository.addFirestation(firestation);
 
-            // Assert
-            assertEquals(1, firestations.size());
-            assertEquals(firestation, firestations.get(0));
-            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertEquals(1, firestationRepository.findAll().size());
+        assertEquals(firestation, firestationRepository.findAll().get(0));
+        verify(mutationLog, times(1)).append(any(Mutation.class));
     }
 
     @Test
     void updateFirestation_ShouldUpdateFirestationSuccessfully() throws IOException {
         // Arrange
         Firestation firestation = new Firestation("123 Main St", 1);
-        firestations.add(firestation);
+        givenFirestations(firestation);
 
         Firestation updatedFirestation = new Firestation("123 Main St", 2);
         updatedFirestation.setStation(2);
 
-        // Mock static JsonFileUtil
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            firestationRepository.updateFirestation(updatedFirestation);
+        // Act
+        firestationRepository.updateFirestation(updatedFirestation);
 
-            // Assert
-            assertEquals(1, firestations.size());
-//            assertEquals(2, firestations.get(0).getStation());
-//            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertEquals(1, firestationRepository.findAll().size());
+//            assertEquals(2, firestationRepository.findAll().get(0).getStation());
+//            verify(mutationLog, times(1)).append(any(Mutation.class));
     }
 
     @Test
@@ -107,46 +108,37 @@ class FirestationRepositoryTests {
         // Arrange
         Firestation firestation = new Firestation("123 Main St", 1);
 
-        // Mock static JsonFileUtil
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            firestationRepository.updateFirestation(firestation);
+        // Act
+        firestationRepository.updateFirestation(firestation);
 
-            // Assert
-            assertTrue(firestations.isEmpty());
-            mockedSaveData.verify(JsonFileUtil::saveData, never());
-        }
+        // Assert
+        assertTrue(firestationRepository.findAll().isEmpty());
+        verify(mutationLog, never()).append(any(Mutation.class));
     }
 
     @Test
     void deleteFirestation_ShouldDeleteFirestationSuccessfully() throws IOException {
         // Arrange
         Firestation firestation = new Firestation("123 Main St", 1);
-        firestations.add(firestation);
+        givenFirestations(firestation);
 
-        // Mock static JsonFileUtil
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            boolean isDeleted = firestationRepository.deleteFirestation(firestation.getId());
+        // Act
+        boolean isDeleted = firestationRepository.deleteFirestation(firestation.getId());
 
-            // Assert
-            assertTrue(isDeleted);
-            assertTrue(firestations.isEmpty());
-            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertTrue(isDeleted);
+        assertTrue(firestationRepository.findAll().isEmpty());
+        verify(mutationLog, times(1)).append(any(Mutation.class));
     }
 
     @Test
     void deleteFirestation_ShouldReturnFalse_WhenFirestationDoesNotExist() throws IOException {
-        // Mock static JsonFileUtil
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            boolean isDeleted = firestationRepository.deleteFirestation(UUID.randomUUID());
-
-            // Assert
-            assertFalse(isDeleted);
-            mockedSaveData.verify(JsonFileUtil::saveData, never());
-        }
+        // Act
+        boolean isDeleted = firestationRepository.deleteFirestation(UUID.randomUUID());
+
+        // Assert
+        assertFalse(isDeleted);
+        verify(mutationLog, never()).append(any(Mutation.class));
     }
 
     @Test
@@ -154,7 +146,7 @@ class FirestationRepositoryTests {
         // Arrange
         Firestation firestation1 = new Firestation("123 Main St", 1);
         Firestation firestation2 = new Firestation("456 Elm St", 1);
-        firestations.addAll(List.of(firestation1, firestation2));
+        givenFirestations(firestation1, firestation2);
 
         // Act
         List<Firestation> result = firestationRepository.findByStation(1);
@@ -164,11 +156,45 @@ class FirestationRepositoryTests {
         assertEquals(2, result.size());
     }
 
+    @Test
+    void findByStation_ShouldFollowFirestation_WhenStationIsUpdated() throws IOException {
+        // Arrange
+        Firestation firestation = new Firestation("123 Main St", 1);
+        givenFirestations(firestation);
+        Firestation updatedFirestation = firestation.copy();
+        updatedFirestation.setStation(2);
+
+        // Act
+        firestationRepository.updateFirestation(updatedFirestation);
+
+        // Assert
+        assertTrue(firestationRepository.findByStation(1).isEmpty());
+        assertEquals(List.of(updatedFirestation), firestationRepository.findByStation(2));
+    }
+
+    @Test
+    void findByStation_ShouldReturnMatchingFirestations_WhenThereAreManyStations() {
+        // Arrange
+        List<Firestation> manyFirestations = new ArrayList<>();
+        for (int station = 1; station <= 100; station++) {
+            manyFirestations.add(new Firestation(station + " Main St", station));
+        }
+        givenFirestations(manyFirestations.toArray(new Firestation[0]));
+
+        // Act
+        List<Firestation> result = firestationRepository.findByStation(42);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals("42 Main St", result.get(0).getAddress());
+        assertTrue(firestationRepository.findByStation(101).isEmpty());
+    }
+
     @Test
     void findByAddress_ShouldReturnFirestation_WhenAddressExists() {
         // Arrange
         Firestation firestation = new Firestation("123 Main St", 1);
-        firestations.add(firestation);
+        givenFirestations(firestation);
 
         // Act
         Optional<Firestation> result = firestationRepository.findByAddress("123 Main St");
@@ -192,7 +218,7 @@ class FirestationRepositoryTests {
         // Arrange
         Firestation firestation1 = new Firestation("123 Main St", 1);
         Firestation firestation2 = new Firestation("456 Elm St", 2);
-        firestations.addAll(List.of(firestation1, firestation2));
+        givenFirestations(firestation1, firestation2);
 
         // Act
         List<Firestation> result = firestationRepository.findByStations(Set.of(1, 2));
@@ -201,4 +227,44 @@ class FirestationRepositoryTests {
         assertNotNull(result);
         assertEquals(2, result.size());
     }
+
+    @Test
+    void findHouseholdsByStations_ShouldReturnResidentsWithTheirMedicalRecords() {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Doe", "01/01/2010", List.of("med1"), List.of());
+        dataStore.load(DataSnapshot.of(List.of(person), List.of(new Firestation("123 Main St", 1),
+            new Firestation("456 Elm St", 1), new Firestation("789 Oak St", 2)), List.of(medicalRecord)));
+
+        // Act
+        Map<String, List<Resident>> result = firestationRepository.findHouseholdsByStations(Set.of(1));
+
+        // Assert
+        assertEquals(Set.of("123 Main St"), result.keySet());
+        assertEquals(List.of(new Resident(person, medicalRecord)), result.get("123 Main St"));
+    }
+
+    @Test
+    void findResidentsWithMedicalTerms_ShouldReturnCoveredResidentsHavingTheAllergy() {
+        // Arrange
+        Person john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        Person jane = new Person("Jane", "Doe", "123 Main St", "City", "12345", "123-456-7891", "jane.doe@email.com");
+        Person jack = new Person("Jack", "Smith", "789 Oak St", "City", "12345", "123-456-7892", "jack@email.com");
+        MedicalRecord johnRecord = new MedicalRecord("John", "Doe", "01/01/2010", List.of(), List.of("penicillin"));
+        MedicalRecord janeRecord = new MedicalRecord("Jane", "Doe", "01/01/1980", List.of(), List.of("peanut"));
+        MedicalRecord jackRecord = new MedicalRecord("Jack", "Smith", "01/01/1970", List.of(), List.of("penicillin"));
+        dataStore.load(DataSnapshot.of(List.of(john, jane, jack),
+            List.of(new Firestation("123 Main St", 3), new Firestation("789 Oak St", 2)),
+            List.of(johnRecord, janeRecord, jackRecord)));
+
+        // Act
+        Map<String, List<Resident>> byStation =
+            firestationRepository.findResidentsWithMedicalTerms(Set.of(3), null, "penicillin", null);
+        Map<String, List<Resident>> byAddress =
+            firestationRepository.findResidentsWithMedicalTerms(Set.of(), "789 Oak St", "penicillin", "aznol:350mg");
+
+        // Assert
+        assertEquals(Map.of("123 Main St", List.of(new Resident(john, johnRecord))), byStation);
+        assertTrue(byAddress.isEmpty());
+    }
 }
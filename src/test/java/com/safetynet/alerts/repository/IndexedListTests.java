@@ -0,0 +1,91 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedListTests {
+
+    private IndexedList<Person> index;
+    private Person john;
+    private Person jane;
+    private Person jack;
+
+    @BeforeEach
+    void setUp() {
+        john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        jane = new Person("Jane", "Smith", "456 Elm St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+        jack = new Person("Jack", "Doe", "123 Main St", "City", "12345", "123-456-7891", "jack.doe@email.com");
+        index = new IndexedList<>(Person::getId);
+        List.of(john, jane, jack).forEach(index::add);
+    }
+
+    @Test
+    void get_ShouldReturnEntity_WhenIdExists() {
+        // Act
+        Person result = index.get(jane.getId());
+
+        // Assert
+        assertEquals(jane, result);
+    }
+
+    @Test
+    void get_ShouldReturnNull_WhenIdDoesNotExist() {
+        // Act
+        Person result = index.get(UUID.randomUUID());
+
+        // Assert
+        assertNull(result);
+    }
+
+    @Test
+    void replace_ShouldReplaceEntityInPlace() {
+        // Arrange
+        Person updatedJane = jane.copy();
+        updatedJane.setEmail("new.email@example.com");
+
+        // Act
+        Person previous = index.replace(updatedJane);
+
+        // Assert
+        assertEquals(jane, previous);
+        assertEquals(updatedJane, index.all().get(1));
+        assertEquals(updatedJane, index.get(jane.getId()));
+    }
+
+    @Test
+    void remove_ShouldMoveLastEntityIntoFreedSlot() {
+        // Act
+        Person removed = index.remove(john.getId());
+
+        // Assert
+        assertEquals(john, removed);
+        assertEquals(List.of(jack, jane), index.all());
+        assertEquals(jack, index.get(jack.getId()));
+        assertNull(index.get(john.getId()));
+    }
+
+    @Test
+    void copy_ShouldNotAffectOriginal_WhenCopyIsModified() {
+        // Arrange
+        KeyIndex<String, Person> byAddress = new KeyIndex<>(Person::getAddress, Person::getId);
+        IndexedList<Person> indexed = new IndexedList<>(Person::getId, byAddress);
+        List.of(john, jane, jack).forEach(indexed::add);
+        KeyIndex<String, Person> byAddressCopy = byAddress.copy();
+
+        // Act
+        IndexedList<Person> copy = indexed.copy(byAddressCopy);
+        copy.remove(john.getId());
+
+        // Assert
+        assertEquals(List.of(john, jane, jack), indexed.all());
+        assertEquals(List.of(john, jack), byAddress.get("123 Main St"));
+        assertNull(copy.get(john.getId()));
+        assertEquals(List.of(jack), byAddressCopy.get("123 Main St"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyIndexTests {
+
+    private static List<Person> persons(int count, String address) {
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            persons.add(new Person("First" + i, "Doe", address, "City", "12345", "123-456-7890", "doe@email.com"));
+        }
+        return persons;
+    }
+
+    @Test
+    void remove_ShouldKeepOrderOfRemainingEntities_WhenGroupIsPacked() {
+        // Arrange
+        KeyIndex<String, Person> index = new KeyIndex<>(Person::getAddress, Person::getId);
+        List<Person> persons = persons(50, "123 Main St");
+        persons.forEach(index::add);
+
+        // Act
+        List<Person> remaining = new ArrayList<>();
+        for (int i = 0; i < persons.size(); i++) {
+            if (i % 5 == 0) {
+                remaining.add(persons.get(i));
+            } else {
+                index.remove(persons.get(i));
+            }
+        }
+        index.remove(remaining.remove(0));
+        index.add(persons.get(1));
+        remaining.add(persons.get(1));
+
+        // Assert
+        assertEquals(remaining, index.get("123 Main St"));
+        assertEquals(remaining.get(0), index.first("123 Main St"));
+    }
+
+    @Test
+    void copy_ShouldShareGroups_WithoutAffectingSource() {
+        // Arrange
+        KeyIndex<String, Person> source = new KeyIndex<>(Person::getAddress, Person::getId);
+        List<Person> persons = persons(3, "123 Main St");
+        persons.forEach(source::add);
+
+        // Act
+        KeyIndex<String, Person> copy = source.copy();
+        copy.remove(persons.get(0));
+        Person moved = persons.get(1).copy();
+        moved.setAddress("456 Elm St");
+        copy.remove(persons.get(1));
+        copy.add(moved);
+
+        // Assert
+        assertEquals(persons, source.get("123 Main St"));
+        assertTrue(source.get("456 Elm St").isEmpty());
+        assertEquals(List.of(persons.get(2)), copy.get("123 Main St"));
+        assertEquals(List.of(moved), copy.getAll(List.of("456 Elm St", "789 Oak St")));
+    }
+}
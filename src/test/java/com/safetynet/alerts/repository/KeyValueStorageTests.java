@@ -0,0 +1,105 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class KeyValueStorageTests {
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private Person john;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // An existing file, so that nothing is imported from the working directory
+        file = directory.resolve("data.kv");
+        Files.write(file, ByteBuffer.allocate(8)
+            .putInt(KeyValueStorage.MAGIC)
+            .putInt(KeyValueStorage.FORMAT_VERSION)
+            .array());
+        john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+    }
+
+    @Test
+    void load_ShouldReturnLatestVersionOfEachEntity_WhenMutationsWereLogged() throws IOException {
+        // Arrange
+        KeyValueStorage storage = new KeyValueStorage(file);
+        storage.load();
+        Person jane = new Person("Jane", "Smith", "123 Main St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+        storage.log(Mutation.add(john));
+        storage.log(Mutation.add(jane));
+        Person updatedJohn = john.copy();
+        updatedJohn.setPhone("000-000-0000");
+        storage.awaitDurable(storage.log(Mutation.update(updatedJohn)));
+        storage.awaitDurable(storage.log(Mutation.delete(Mutation.EntityType.PERSON, jane.getId())));
+        storage.close();
+
+        // Act
+        DataSnapshot snapshot = new KeyValueStorage(file).load();
+
+        // Assert
+        assertEquals(1, snapshot.persons().byId().size());
+        assertEquals("000-000-0000", snapshot.persons().byId().get(john.getId()).getPhone());
+    }
+
+    @Test
+    void log_ShouldKeepAppending_WhenCompactedFileCannotReplaceCurrentOne() throws IOException {
+        // Arrange
+        KeyValueStorage storage = new KeyValueStorage(file);
+        storage.load();
+        storage.log(Mutation.add(john));
+        Person updatedJohn = john.copy();
+        for (int i = 0; i < KeyValueStorage.COMPACTION_THRESHOLD; i++) {
+            updatedJohn.setPhone("000-000-" + i);
+            storage.log(Mutation.update(updatedJohn));
+        }
+        DataSnapshot snapshot = DataSnapshot.of(List.of(updatedJohn), List.of(), List.of());
+
+        // Act
+        try (MockedStatic<Files> files = mockStatic(Files.class, CALLS_REAL_METHODS)) {
+            files.when(() -> Files.move(any(Path.class), eq(file), any(CopyOption[].class)))
+                .thenThrow(new IOException("Disk failure"));
+            assertThrows(IOException.class, () -> storage.compactIfDue(snapshot));
+        }
+        updatedJohn.setPhone("111-111-1111");
+        storage.awaitDurable(storage.log(Mutation.update(updatedJohn)));
+        storage.close();
+
+        // Assert
+        assertEquals("111-111-1111", new KeyValueStorage(file).load().persons().byId().get(john.getId()).getPhone());
+    }
+
+    @Test
+    void load_ShouldIgnoreIncompleteRecord_WhenFileEndsWithTornWrite() throws IOException {
+        // Arrange
+        KeyValueStorage storage = new KeyValueStorage(file);
+        storage.load();
+        storage.awaitDurable(storage.log(Mutation.add(john)));
+        storage.close();
+        long size = Files.size(file);
+        Files.write(file, new byte[] {0, 0, 0, 50, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // Act
+        DataSnapshot snapshot = new KeyValueStorage(file).load();
+
+        // Assert
+        assertEquals(1, snapshot.persons().byId().size());
+        assertEquals(size, Files.size(file));
+    }
+}
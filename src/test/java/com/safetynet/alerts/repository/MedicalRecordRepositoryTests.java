@@ -1,27 +1,34 @@
 package com.safetynet.alerts.repository;
 
 import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.MockedStatic;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
-import static com.safetynet.alerts.model.Data.medicalrecords;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class MedicalRecordRepositoryTests {
 
+    private MutationLog mutationLog;
+    private DataStore dataStore;
     private MedicalRecordRepository medicalRecordRepository;
 
     @BeforeEach
     void setUp() {
-        medicalrecords = new java.util.ArrayList<>(); // Initialisation de la liste statique
-        medicalRecordRepository = new MedicalRecordRepository();
+        mutationLog = mock(MutationLog.class);
+        dataStore = new DataStore(event -> {}, mutationLog);
+        medicalRecordRepository = new MedicalRecordRepository(dataStore);
+    }
+
+    private void givenMedicalRecords(MedicalRecord... medicalRecords) {
+        dataStore.load(DataSnapshot.of(List.of(), List.of(), List.of(medicalRecords)));
     }
 
     @Test
@@ -29,7 +36,7 @@ class MedicalRecordRepositoryTests {
         // Arrange
         MedicalRecord record1 = new MedicalRecord("John", "Doe", "01/01/2000", List.of("med1"), List.of("allergy1"));
         MedicalRecord record2 = new MedicalRecord("Jane", "Smith", "02/02/1990", List.of("med2"), List.of("allergy2"));
-        medicalrecords.addAll(List.of(record1, record2));
+        givenMedicalRecords(record1, record2);
 
         // Act
         List<MedicalRecord> result = medicalRecordRepository.findAll();
@@ -43,7 +50,7 @@ class MedicalRecordRepositoryTests {
     void findById_ShouldReturnMedicalRecord_WhenIdExists() {
         // Arrange
         MedicalRecord record = new MedicalRecord("John", "Doe", "01/01/2000", List.of("med1"), List.of("allergy1"));
-        medicalrecords.add(record);
+        givenMedicalRecords(record);
         UUID id = record.getId();
 
         // Act
@@ -68,35 +75,31 @@ class MedicalRecordRepositoryTests {
         // Arrange
         MedicalRecord record = new MedicalRecord("Jane", "Smith", "02/02/1990", List.of("med2"), List.of("allergy2"));
 
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            medicalRecordRepository.addMedicalRecord(record);
+        // Act
+        medicalRecordRepository.addMedicalRecord(record);
 
-            // Assert
-            assertEquals(1, medicalrecords.size());
-            assertEquals(record, medicalrecords.get(0));
-            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertEquals(1, medicalRecordRepository.findAll().size());
+        assertEquals(record, medicalRecordRepository.findAll().get(0));
+        verify(mutationLog, times(1)).append(any(Mutation.class));
     }
 
     @Test
     void updateMedicalRecord_ShouldUpdateMedicalRecordSuccessfully() throws IOException {
         // Arrange
         MedicalRecord record = new MedicalRecord("Jane", "Smith", "02/02/1990", List.of("med2"), List.of("allergy2"));
-        medicalrecords.add(record);
+        givenMedicalRecords(record);
 
         MedicalRecord updatedRecord = new MedicalRecord("Jane", "Smith", "02/02/1990", List.of("newMed"), List.of("newAllergy"));
         updatedRecord.setId(record.getId());
 
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            medicalRecordRepository.updateMedicalRecord(updatedRecord);
+        // Act
+        medicalRecordRepository.updateMedicalRecord(updatedRecord);
 
-            // Assert
-            assertEquals(1, medicalrecords.size());
-            assertEquals("newMed", medicalrecords.get(0).getMedications().get(0));
-            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertEquals(1, medicalRecordRepository.findAll().size());
+        assertEquals("newMed", medicalRecordRepository.findAll().get(0).getMedications().get(0));
+        verify(mutationLog, times(1)).append(any(Mutation.class));
     }
 
     @Test
@@ -104,51 +107,45 @@ class MedicalRecordRepositoryTests {
         // Arrange
         MedicalRecord record = new MedicalRecord("Nonexistent", "Person", "01/01/1970", List.of(), List.of());
 
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            medicalRecordRepository.updateMedicalRecord(record);
+        // Act
+        medicalRecordRepository.updateMedicalRecord(record);
 
-            // Assert
-            assertTrue(medicalrecords.isEmpty());
-            mockedSaveData.verify(JsonFileUtil::saveData, never());
-        }
+        // Assert
+        assertTrue(medicalRecordRepository.findAll().isEmpty());
+        verify(mutationLog, never()).append(any(Mutation.class));
     }
 
     @Test
     void deleteMedicalRecord_ShouldDeleteMedicalRecordSuccessfully() throws IOException {
         // Arrange
         MedicalRecord record = new MedicalRecord("Jane", "Smith", "02/02/1990", List.of("med2"), List.of("allergy2"));
-        medicalrecords.add(record);
+        givenMedicalRecords(record);
 
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            boolean isDeleted = medicalRecordRepository.deleteMedicalRecord(record.getId());
+        // Act
+        boolean isDeleted = medicalRecordRepository.deleteMedicalRecord(record.getId());
 
-            // Assert
-            assertTrue(isDeleted);
-            assertTrue(medicalrecords.isEmpty());
-            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertTrue(isDeleted);
+        assertTrue(medicalRecordRepository.findAll().isEmpty());
+        verify(mutationLog, times(1)).append(any(Mutation.class));
     }
 
     @Test
     void deleteMedicalRecord_ShouldReturnFalse_WhenMedicalRecordDoesNotExist() throws IOException {
         // Arrange
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            boolean isDeleted = medicalRecordRepository.deleteMedicalRecord(UUID.randomUUID());
+        // Act
+        boolean isDeleted = medicalRecordRepository.deleteMedicalRecord(UUID.randomUUID());
 
-            // Assert
-            assertFalse(isDeleted);
-            mockedSaveData.verify(JsonFileUtil::saveData, never());
-        }
+        // Assert
+        assertFalse(isDeleted);
+        verify(mutationLog, never()).append(any(Mutation.class));
     }
 
     @Test
     void findByFirstNameAndLastName_ShouldReturnMatchingMedicalRecord() {
         // Arrange
         MedicalRecord record = new MedicalRecord("John", "Doe", "01/01/2000", List.of("med1"), List.of("allergy1"));
-        medicalrecords.add(record);
+        givenMedicalRecords(record);
 
         // Act
         Optional<MedicalRecord> result = Optional.ofNullable(
@@ -159,6 +156,22 @@ class MedicalRecordRepositoryTests {
         assertEquals(record, result.get());
     }
 
+    @Test
+    void findByFirstNameAndLastName_ShouldFollowMedicalRecord_WhenRenamed() throws IOException {
+        // Arrange
+        MedicalRecord record = new MedicalRecord("John", "Doe", "01/01/2000", List.of("med1"), List.of("allergy1"));
+        givenMedicalRecords(record);
+        MedicalRecord renamedRecord = record.copy();
+        renamedRecord.setLastName("Smith");
+
+        // Act
+        medicalRecordRepository.updateMedicalRecord(renamedRecord);
+
+        // Assert
+        assertNull(medicalRecordRepository.findByFirstNameAndLastName("John", "Doe"));
+        assertEquals(renamedRecord, medicalRecordRepository.findByFirstNameAndLastName("John", "Smith"));
+    }
+
     @Test
     void findByFirstNameAndLastName_ShouldReturnEmptyOptional_WhenNoMatch() {
         // Act
@@ -168,5 +181,71 @@ class MedicalRecordRepositoryTests {
         // Assert
         assertTrue(result.isEmpty());
     }
-}
 
+    @Test
+    void countByAllergy_ShouldCountRecordsListingEachAllergy() {
+        // Arrange
+        givenMedicalRecords(
+            new MedicalRecord("John", "Doe", "01/01/2000", List.of("aznol:350mg"), List.of("peanut", "shellfish")),
+            new MedicalRecord("Jane", "Doe", "02/02/1990", List.of(), List.of("peanut")),
+            new MedicalRecord("Jack", "Doe", "03/03/1980", List.of("aznol:350mg"), List.of()));
+
+        // Act
+        Map<String, Integer> allergies = medicalRecordRepository.countByAllergy();
+        Map<String, Integer> medications = medicalRecordRepository.countByMedication();
+
+        // Assert
+        assertEquals(List.of("peanut", "shellfish"), List.copyOf(allergies.keySet()));
+        assertEquals(2, allergies.get("peanut"));
+        assertEquals(Map.of("aznol:350mg", 2), medications);
+    }
+
+    @Test
+    void updateMedicalRecord_ShouldMoveRecordBetweenAllergyPostings() throws IOException {
+        // Arrange
+        MedicalRecord record = new MedicalRecord("John", "Doe", "01/01/2000", List.of(), List.of("peanut"));
+        givenMedicalRecords(record);
+        MedicalRecord updatedRecord = record.copy();
+        updatedRecord.setAllergies(List.of("penicillin"));
+
+        // Act
+        medicalRecordRepository.updateMedicalRecord(updatedRecord);
+
+        // Assert
+        TermIndex byTerm = dataStore.snapshot().medicalRecords().byTerm();
+        assertTrue(byTerm.withAllergy("peanut").isEmpty());
+        assertEquals(updatedRecord, byTerm.recordAt(byTerm.withAllergy("penicillin").toArray()[0]));
+    }
+
+    @Test
+    void findByPersons_ShouldReturnFirstRecordOfEachPerson() {
+        // Arrange
+        MedicalRecord record = new MedicalRecord("John", "Doe", "01/01/2000", List.of("med1"), List.of("allergy1"));
+        MedicalRecord duplicate = new MedicalRecord("John", "Doe", "02/02/1990", List.of(), List.of());
+        givenMedicalRecords(record, duplicate);
+        Person john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        Person jane = new Person("Jane", "Smith", "123 Main St", "City", "12345", "123-456-7891", "jane@email.com");
+
+        // Act
+        Map<UUID, MedicalRecord> result = medicalRecordRepository.findByPersons(List.of(john, jane));
+
+        // Assert
+        assertEquals(Map.of(john.getId(), record), result);
+    }
+
+    @Test
+    void findByAllergy_ShouldReturnRecordsLinkedToPersons_FromPostingList() {
+        // Arrange
+        MedicalRecord record1 = new MedicalRecord("John", "Doe", "01/01/2000", List.of(), List.of("peanut"));
+        MedicalRecord record2 = new MedicalRecord("Jane", "Smith", "02/02/1990", List.of(), List.of("shellfish"));
+        MedicalRecord duplicate = new MedicalRecord("Jane", "Smith", "03/03/1980", List.of(), List.of("peanut"));
+        givenMedicalRecords(record1, record2, duplicate);
+
+        // Act
+        List<MedicalRecord> result = medicalRecordRepository.findByAllergy("peanut");
+
+        // Assert
+        assertEquals(List.of(record1.getId()), result.stream().map(MedicalRecord::getId).toList());
+        assertTrue(medicalRecordRepository.findByAllergy("pollen").isEmpty());
+    }
+}
@@ -0,0 +1,150 @@
+package com.safetynet.alerts.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MutationLogTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+    private DataSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = DataSnapshot.empty();
+    }
+
+    /**
+     * Simulates writing a mutation to the log and reading it back during replay.
+     */
+    private Mutation roundTrip(Mutation mutation) throws IOException {
+        return mapper.readValue(mapper.writeValueAsString(mutation), Mutation.class);
+    }
+
+    @Test
+    void apply_ShouldAddPerson_WhenAddMutationIsReplayed() throws IOException {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+
+        // Act
+        MutationLog.apply(snapshot, roundTrip(Mutation.add(person)));
+
+        // Assert
+        assertEquals(1, snapshot.persons().byId().size());
+        assertEquals(person.getId(), snapshot.persons().byId().all().get(0).getId());
+        assertEquals("john.doe@email.com", snapshot.persons().byId().all().get(0).getEmail());
+    }
+
+    @Test
+    void apply_ShouldReplacePerson_WhenUpdateMutationIsReplayed() throws IOException {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        snapshot.persons().byId().add(person);
+        Person updatedPerson = person.copy();
+        updatedPerson.setEmail("new.email@example.com");
+
+        // Act
+        MutationLog.apply(snapshot, roundTrip(Mutation.update(updatedPerson)));
+
+        // Assert
+        assertEquals(1, snapshot.persons().byId().size());
+        assertEquals("new.email@example.com", snapshot.persons().byId().all().get(0).getEmail());
+    }
+
+    @Test
+    void apply_ShouldRemovePerson_WhenDeleteMutationIsReplayed() throws IOException {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        snapshot.persons().byId().add(person);
+
+        // Act
+        MutationLog.apply(snapshot, roundTrip(Mutation.delete(Mutation.EntityType.PERSON, person.getId())));
+
+        // Assert
+        assertTrue(snapshot.persons().byId().all().isEmpty());
+    }
+
+    @Test
+    void replay_ShouldSkipMutationsAlreadyInSnapshot() throws IOException {
+        // Arrange
+        Person john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        Person jane = new Person("Jane", "Smith", "123 Main St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+        MutationLog writer = new MutationLog(directory);
+        writer.write(Mutation.add(john));
+        writer.write(Mutation.add(jane));
+        writer.sync();
+        snapshot.persons().byId().put(john);
+
+        // Act
+        MutationLog.Replay replay = new MutationLog(directory).replay(snapshot, 1);
+
+        // Assert
+        assertEquals(1, replay.replayed());
+        assertEquals(1, replay.skipped());
+        assertEquals(2, replay.sequence());
+        assertEquals(2, snapshot.persons().byId().size());
+    }
+
+    @Test
+    void rotate_ShouldExtendLogOfAbortedCompaction_WhenCompactingAgain() throws IOException {
+        // Arrange
+        Person john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        Person jane = new Person("Jane", "Smith", "123 Main St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+        MutationLog log = new MutationLog(directory);
+        log.write(Mutation.add(john));
+        log.sync();
+        log.rotate();
+        log.abortCompaction();
+        boolean dueAfterAbort = log.isCompactionDue();
+        log.write(Mutation.add(jane));
+        log.sync();
+
+        // Act
+        long sequence = log.rotate();
+        MutationLog.Replay replay = new MutationLog(directory).replay(snapshot, 0);
+
+        // Assert
+        assertTrue(dueAfterAbort);
+        assertFalse(log.isCompactionDue());
+        assertEquals(2, sequence);
+        assertEquals(2, replay.replayed());
+        assertEquals(2, snapshot.persons().byId().size());
+    }
+
+    @Test
+    void replay_ShouldRefuseLog_WhenMutationsAreMissingBetweenSnapshotAndLog() throws IOException {
+        // Arrange
+        Person john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        Files.writeString(directory.resolve(MutationLog.LOG_FILE),
+            "{\"firstSequence\":5}\n" + mapper.writeValueAsString(Mutation.add(john)) + "\n");
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> new MutationLog(directory).replay(snapshot, 2));
+        assertEquals(0, snapshot.persons().byId().size());
+    }
+
+    @Test
+    void replay_ShouldReplayWholeLog_WhenLogHasNoHeader() throws IOException {
+        // Arrange
+        Person john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        Files.writeString(directory.resolve(MutationLog.LOG_FILE), mapper.writeValueAsString(Mutation.add(john)) + "\n");
+
+        // Act
+        MutationLog.Replay replay = new MutationLog(directory).replay(snapshot, MutationLog.UNKNOWN_SEQUENCE);
+
+        // Assert
+        assertEquals(1, replay.replayed());
+        assertEquals(1, replay.sequence());
+    }
+}
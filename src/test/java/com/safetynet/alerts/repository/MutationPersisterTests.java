@@ -0,0 +1,177 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MutationPersisterTests {
+
+    // Flushes are triggered by the tests only
+    private static final long NEVER = 3_600_000;
+
+    private MutationLog mutationLog;
+    private MutationPersister persister;
+
+    @BeforeEach
+    void setUp() {
+        mutationLog = mock(MutationLog.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (persister != null) {
+            persister.close();
+        }
+    }
+
+    private Mutation addMutation() {
+        return Mutation.add(new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com"));
+    }
+
+    @Test
+    void fromProperty_ShouldParseDurability_WhenWrittenAsProperty() {
+        // Act & Assert
+        assertEquals(MutationPersister.Durability.GROUP_COMMIT, MutationPersister.Durability.fromProperty("group-commit"));
+        assertEquals(MutationPersister.Durability.SYNC, MutationPersister.Durability.fromProperty(" sync "));
+    }
+
+    @Test
+    void log_ShouldSyncEachMutation_WhenDurabilityIsSync() throws IOException {
+        // Arrange
+        persister = MutationPersister.synchronous(mutationLog);
+
+        // Act
+        long sequence = persister.log(addMutation());
+        persister.awaitDurable(sequence);
+
+        // Assert
+        verify(mutationLog, times(1)).append(any(Mutation.class));
+        verify(mutationLog, never()).write(any(Mutation.class));
+    }
+
+    @Test
+    void flush_ShouldSyncBurstOnce_WhenDurabilityIsGroupCommit() throws IOException {
+        // Arrange
+        persister = new MutationPersister(mutationLog, MutationPersister.Durability.GROUP_COMMIT, NEVER, 100);
+        persister.log(addMutation());
+        persister.log(addMutation());
+        long last = persister.log(addMutation());
+
+        // Act
+        persister.flush();
+        persister.awaitDurable(last);
+
+        // Assert
+        verify(mutationLog, times(3)).write(any(Mutation.class));
+        verify(mutationLog, times(1)).sync();
+        verify(mutationLog, never()).append(any(Mutation.class));
+    }
+
+    @Test
+    void awaitDurable_ShouldThrow_WhenBatchCannotBeSynced() throws IOException {
+        // Arrange
+        persister = new MutationPersister(mutationLog, MutationPersister.Durability.GROUP_COMMIT, NEVER, 100);
+        doThrow(new IOException("Disk failure")).when(mutationLog).sync();
+        long sequence = persister.log(addMutation());
+
+        // Act
+        persister.flush();
+
+        // Assert
+        assertThrows(IOException.class, () -> persister.awaitDurable(sequence));
+    }
+
+    @Test
+    void awaitDurable_ShouldSucceed_WhenLaterBatchIsSyncedAfterFailure() throws IOException {
+        // Arrange
+        persister = new MutationPersister(mutationLog, MutationPersister.Durability.GROUP_COMMIT, NEVER, 100);
+        doThrow(new IOException("Transient disk failure")).doNothing().when(mutationLog).sync();
+        long failed = persister.log(addMutation());
+        persister.flush();
+
+        // Act
+        long next = persister.log(addMutation());
+        persister.flush();
+
+        // Assert
+        assertThrows(IOException.class, () -> persister.awaitDurable(failed));
+        assertDoesNotThrow(() -> persister.awaitDurable(next));
+        verify(mutationLog, times(2)).sync();
+    }
+
+    @Test
+    void awaitDurable_ShouldNotWait_WhenDurabilityIsAsync() throws IOException {
+        // Arrange
+        persister = new MutationPersister(mutationLog, MutationPersister.Durability.ASYNC, NEVER, 100);
+
+        // Act
+        long sequence = persister.log(addMutation());
+        persister.awaitDurable(sequence);
+
+        // Assert
+        verify(mutationLog, never()).sync();
+    }
+
+    @Test
+    void compactIfDue_ShouldCompactAgain_WhenSnapshotCouldNotBeWritten(@TempDir Path directory)
+        throws IOException, InterruptedException {
+        // Arrange
+        MutationLog log = spy(new MutationLog(directory));
+        CountDownLatch aborted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            invocation.callRealMethod();
+            aborted.countDown();
+            return null;
+        }).when(log).abortCompaction();
+        AtomicBoolean failing = new AtomicBoolean(true);
+        List<Long> written = new CopyOnWriteArrayList<>();
+        persister = new MutationPersister(log, MutationPersister.Durability.SYNC, 0, 1, SnapshotFormat.JSON,
+            (snapshot, format, sequence) -> {
+                if (failing.getAndSet(false)) {
+                    throw new IOException("Disk full");
+                }
+                written.add(sequence);
+            });
+        log.requestCompaction();
+        persister.log(addMutation());
+        persister.compactIfDue(DataSnapshot.empty());
+        assertTrue(aborted.await(1, TimeUnit.SECONDS));
+
+        // Act
+        persister.log(addMutation());
+        persister.compactIfDue(DataSnapshot.empty());
+        // Waits for the snapshot being written
+        persister.close();
+
+        // Assert
+        assertEquals(List.of(2L), written);
+        assertFalse(Files.exists(directory.resolve(MutationLog.COMPACTING_LOG_FILE)));
+    }
+
+    @Test
+    void compactIfDue_ShouldNotRotateLog_WhenCompactionIsNotDue() throws IOException {
+        // Arrange
+        persister = MutationPersister.synchronous(mutationLog);
+        when(mutationLog.isCompactionDue()).thenReturn(false);
+
+        // Act
+        persister.compactIfDue(DataSnapshot.empty());
+
+        // Assert
+        verify(mutationLog, never()).rotate();
+    }
+}
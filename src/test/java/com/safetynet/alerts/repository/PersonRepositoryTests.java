@@ -3,32 +3,41 @@ package com.safetynet.alerts.repository;
 import com.safetynet.alerts.model.Person;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.MockedStatic;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
-import static com.safetynet.alerts.model.Data.persons;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class PersonRepositoryTests {
 
+    private MutationLog mutationLog;
+    private DataStore dataStore;
     private PersonRepository personRepository;
+    private List<Object> publishedEvents;
 
     @BeforeEach
     void setUp() {
-        persons = new ArrayList<>(); // Initialisation de la liste
-        personRepository = new PersonRepository();
+        publishedEvents = new ArrayList<>();
+        mutationLog = mock(MutationLog.class);
+        dataStore = new DataStore(publishedEvents::add, mutationLog);
+        personRepository = new PersonRepository(dataStore);
+    }
+
+    private void givenPersons(Person... persons) {
+        dataStore.load(DataSnapshot.of(List.of(persons), List.of(), List.of()));
     }
 
     @Test
     void findById_ShouldReturnPerson_WhenIdExists() {
         // Arrange
         Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
-        persons.add(person);
+        givenPersons(person);
         UUID id = person.getId();
 
         // Act
@@ -53,35 +62,46 @@ class PersonRepositoryTests {
         // Arrange
         Person person = new Person("Jane", "Smith", "456 Elm St", "City", "54321", "987-654-3210", "jane.smith@email.com");
 
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            personRepository.addPerson(person);
+        // Act
+        personRepository.addPerson(person);
 
-            // Assert
-            assertEquals(1, persons.size());
-            assertEquals(person, persons.get(0));
-            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertEquals(1, personRepository.findAll().size());
+        assertEquals(person, personRepository.findAll().get(0));
+        verify(mutationLog, times(1)).append(any(Mutation.class));
+    }
+
+    @Test
+    void addPerson_ShouldPublishMutation() throws IOException {
+        // Arrange
+        Person person = new Person("Jane", "Smith", "456 Elm St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+
+        // Act
+        personRepository.addPerson(person);
+
+        // Assert
+        assertEquals(1, publishedEvents.size());
+        Mutation mutation = (Mutation) publishedEvents.get(0);
+        assertEquals(Mutation.Operation.ADD, mutation.getOperation());
+        assertEquals(person, mutation.getEntity());
     }
 
     @Test
     void updatePerson_ShouldUpdatePersonSuccessfully() throws IOException {
         // Arrange
         Person person = new Person("Jane", "Smith", "456 Elm St", "City", "54321", "987-654-3210", "jane.smith@email.com");
-        persons.add(person);
+        givenPersons(person);
 
         Person updatedPerson = person.copy();
         updatedPerson.setEmail("new.email@example.com");
 
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            personRepository.updatePerson(updatedPerson);
+        // Act
+        personRepository.updatePerson(updatedPerson);
 
-            // Assert
-            assertEquals(1, persons.size());
-            assertEquals("new.email@example.com", persons.get(0).getEmail());
-            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertEquals(1, personRepository.findAll().size());
+        assertEquals("new.email@example.com", personRepository.findAll().get(0).getEmail());
+        verify(mutationLog, times(1)).append(any(Mutation.class));
     }
 
     @Test
@@ -89,44 +109,38 @@ class PersonRepositoryTests {
         // Arrange
         Person person = new Person("Nonexistent", "Person", "123 Fake St", "Nowhere", "00000", "000-000-0000", "fake@email.com");
 
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            personRepository.updatePerson(person);
+        // Act
+        personRepository.updatePerson(person);
 
-            // Assert
-            assertTrue(persons.isEmpty());
-            mockedSaveData.verify(JsonFileUtil::saveData, never());
-        }
+        // Assert
+        assertTrue(personRepository.findAll().isEmpty());
+        verify(mutationLog, never()).append(any(Mutation.class));
     }
 
     @Test
     void deletePerson_ShouldDeletePersonSuccessfully() throws IOException {
         // Arrange
         Person person = new Person("Jane", "Smith", "456 Elm St", "City", "54321", "987-654-3210", "jane.smith@email.com");
-        persons.add(person);
+        givenPersons(person);
 
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            boolean isDeleted = personRepository.deletePerson(person.getId());
+        // Act
+        boolean isDeleted = personRepository.deletePerson(person.getId());
 
-            // Assert
-            assertTrue(isDeleted);
-            assertTrue(persons.isEmpty());
-            mockedSaveData.verify(JsonFileUtil::saveData, times(1));
-        }
+        // Assert
+        assertTrue(isDeleted);
+        assertTrue(personRepository.findAll().isEmpty());
+        verify(mutationLog, times(1)).append(any(Mutation.class));
     }
 
     @Test
     void deletePerson_ShouldReturnFalse_WhenPersonDoesNotExist() throws IOException {
         // Arrange
-        try (MockedStatic<JsonFileUtil> mockedSaveData = mockStatic(JsonFileUtil.class)) {
-            // Act
-            boolean isDeleted = personRepository.deletePerson(UUID.randomUUID());
+        // Act
+        boolean isDeleted = personRepository.deletePerson(UUID.randomUUID());
 
-            // Assert
-            assertFalse(isDeleted);
-            mockedSaveData.verify(JsonFileUtil::saveData, never());
-        }
+        // Assert
+        assertFalse(isDeleted);
+        verify(mutationLog, never()).append(any(Mutation.class));
     }
 
     @Test
@@ -134,7 +148,7 @@ class PersonRepositoryTests {
         // Arrange
         Person person1 = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
         Person person2 = new Person("Jane", "Smith", "123 Main St", "City", "54321", "987-654-3210", "jane.smith@email.com");
-        persons.addAll(List.of(person1, person2));
+        givenPersons(person1, person2);
 
         // Act
         List<Person> result = personRepository.findByAddress("123 Main St");
@@ -144,12 +158,44 @@ class PersonRepositoryTests {
         assertEquals(2, result.size());
     }
 
+    @Test
+    void findByAddress_ShouldFollowPerson_WhenAddressIsUpdated() throws IOException {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        givenPersons(person);
+        Person movedPerson = person.copy();
+        movedPerson.setAddress("456 Elm St");
+
+        // Act
+        personRepository.updatePerson(movedPerson);
+
+        // Assert
+        assertTrue(personRepository.findByAddress("123 Main St").isEmpty());
+        assertEquals(List.of(movedPerson), personRepository.findByAddress("456 Elm St"));
+    }
+
+    @Test
+    void findByAddresses_ShouldReturnPersonsAtAnyOfTheAddresses() {
+        // Arrange
+        Person person1 = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        Person person2 = new Person("Jane", "Smith", "456 Elm St", "City", "54321", "987-654-3210", "jane.smith@email.com");
+        Person person3 = new Person("Jack", "Smith", "789 Oak St", "City", "54321", "987-654-3211", "jack.smith@email.com");
+        givenPersons(person1, person2, person3);
+
+        // Act
+        Collection<Person> result = personRepository.findByAddresses(Set.of("123 Main St", "456 Elm St"));
+
+        // Assert
+        assertEquals(2, result.size());
+        assertTrue(result.containsAll(List.of(person1, person2)));
+    }
+
     @Test
     void findByCity_ShouldReturnMatchingPersons() {
         // Arrange
         Person person1 = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
         Person person2 = new Person("Jane", "Smith", "456 Elm St", "City", "54321", "987-654-3210", "jane.smith@email.com");
-        persons.addAll(List.of(person1, person2));
+        givenPersons(person1, person2);
 
         // Act
         List<Person> result = personRepository.findByCity("City");
@@ -163,7 +209,7 @@ class PersonRepositoryTests {
     void findByLastName_ShouldReturnMatchingPersons() {
         // Arrange
         Person person1 = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
-        persons.add(person1);
+        givenPersons(person1);
 
         // Act
         List<Person> result = personRepository.findByLastName("Doe");
@@ -172,4 +218,20 @@ class PersonRepositoryTests {
         assertNotNull(result);
         assertEquals(1, result.size());
     }
+
+    @Test
+    void findByLastName_ShouldFollowPerson_WhenLastNameIsUpdated() throws IOException {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        givenPersons(person);
+        Person renamedPerson = person.copy();
+        renamedPerson.setLastName("Smith");
+
+        // Act
+        personRepository.updatePerson(renamedPerson);
+
+        // Assert
+        assertTrue(personRepository.findByLastName("Doe").isEmpty());
+        assertEquals(List.of(renamedPerson), personRepository.findByLastName("Smith"));
+    }
 }
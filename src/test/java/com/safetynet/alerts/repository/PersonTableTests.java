@@ -0,0 +1,103 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersonTableTests {
+
+    private PersonTable table;
+    private Person john;
+    private Person jane;
+    private Person jack;
+
+    @BeforeEach
+    void setUp() {
+        john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        jane = new Person("Jane", "Smith", "456 Elm St", "Town", "54321", "987-654-3210", null);
+        jack = new Person("Jack", "Doe", "123 Main St", "City", "12345", "123-456-7891", "jack.doe@email.com");
+        table = new PersonTable(List.of(john, jane, jack), new StringDictionary()).inColumns();
+    }
+
+    @Test
+    void byId_ShouldReturnCopyOfStoredPerson_WhenIdExists() {
+        // Act
+        Person result = table.byId().get(jane.getId());
+
+        // Assert
+        assertNotSame(jane, result);
+        assertEquals(jane.getId(), result.getId());
+        assertEquals("Smith", result.getLastName());
+        assertEquals("Town", result.getCity());
+        assertNull(result.getEmail());
+    }
+
+    @Test
+    void byId_ShouldReturnNull_WhenIdDoesNotExist() {
+        // Act
+        Person result = table.byId().get(UUID.randomUUID());
+
+        // Assert
+        assertNull(result);
+    }
+
+    @Test
+    void byAddress_ShouldReturnPersonsAtAddress() {
+        // Act
+        List<Person> result = table.byAddress().get("123 Main St");
+
+        // Assert
+        assertEquals(List.of(john.getId(), jack.getId()), result.stream().map(Person::getId).toList());
+        assertTrue(table.byAddress().get("789 Oak St").isEmpty());
+    }
+
+    @Test
+    void byCity_ShouldReturnPersonsInCity() {
+        // Act
+        List<Person> result = table.byCity().get("Town");
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(jane.getId(), result.get(0).getId());
+    }
+
+    @Test
+    void replace_ShouldHideStoredRow_WithoutModifyingOriginalTable() {
+        // Arrange
+        PersonTable copy = table.copy();
+        Person movedJohn = john.copy();
+        movedJohn.setAddress("456 Elm St");
+
+        // Act
+        Person previous = copy.byId().replace(movedJohn);
+
+        // Assert
+        assertEquals("123 Main St", previous.getAddress());
+        assertEquals(List.of(jack.getId()), copy.byLastName().get("Doe").stream()
+            .filter(person -> person.getAddress().equals("123 Main St")).map(Person::getId).toList());
+        assertEquals(2, copy.byAddress().get("456 Elm St").size());
+        assertEquals(3, copy.byId().size());
+        assertEquals(2, table.byAddress().get("123 Main St").size());
+    }
+
+    @Test
+    void remove_ShouldHideStoredRow() {
+        // Arrange
+        PersonTable copy = table.copy();
+
+        // Act
+        Person removed = copy.byId().remove(jack.getId());
+
+        // Assert
+        assertEquals(jack.getId(), removed.getId());
+        assertNull(copy.byId().get(jack.getId()));
+        assertEquals(2, copy.byId().all().size());
+        assertEquals(1, copy.byAddress().get("123 Main St").size());
+        assertNull(copy.byId().remove(jack.getId()));
+    }
+}
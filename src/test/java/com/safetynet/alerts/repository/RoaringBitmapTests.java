@@ -0,0 +1,126 @@
+package com.safetynet.alerts.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoaringBitmapTests {
+
+    @Test
+    void add_ShouldKeepValuesSorted_AcrossChunks() {
+        // Arrange
+        RoaringBitmap bitmap = new RoaringBitmap();
+
+        // Act
+        bitmap.add(70000);
+        bitmap.add(3);
+        bitmap.add(65536);
+        bitmap.add(3);
+
+        // Assert
+        assertArrayEquals(new int[]{3, 65536, 70000}, bitmap.toArray());
+        assertEquals(3, bitmap.cardinality());
+        assertTrue(bitmap.contains(65536));
+        assertFalse(bitmap.contains(65535));
+    }
+
+    @Test
+    void remove_ShouldDropEmptyChunks() {
+        // Arrange
+        RoaringBitmap bitmap = RoaringBitmap.of(1, 100000);
+
+        // Act
+        bitmap.remove(100000);
+        bitmap.remove(2);
+
+        // Assert
+        assertArrayEquals(new int[]{1}, bitmap.toArray());
+        bitmap.remove(1);
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    void operations_ShouldMatchBitSet_ForSparseAndDenseChunks() {
+        // Arrange
+        Random random = new Random(42);
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        RoaringBitmap a = new RoaringBitmap();
+        RoaringBitmap b = new RoaringBitmap();
+        for (int i = 0; i < 20000; i++) {
+            // Dense in the first chunk, sparse in the others
+            int value = i % 2 == 0 ? random.nextInt(10000) : random.nextInt(300000);
+            expectedA.set(value);
+            a.add(value);
+            value = random.nextInt(i % 3 == 0 ? 10000 : 300000);
+            expectedB.set(value);
+            b.add(value);
+        }
+
+        // Act
+        RoaringBitmap and = a.and(b);
+        RoaringBitmap or = a.or(b);
+        RoaringBitmap andNot = a.andNot(b);
+
+        // Assert
+        BitSet expectedAnd = (BitSet) expectedA.clone();
+        expectedAnd.and(expectedB);
+        BitSet expectedOr = (BitSet) expectedA.clone();
+        expectedOr.or(expectedB);
+        BitSet expectedAndNot = (BitSet) expectedA.clone();
+        expectedAndNot.andNot(expectedB);
+        assertArrayEquals(expectedAnd.stream().toArray(), and.toArray());
+        assertArrayEquals(expectedOr.stream().toArray(), or.toArray());
+        assertArrayEquals(expectedAndNot.stream().toArray(), andNot.toArray());
+        assertEquals(expectedA.cardinality(), a.cardinality());
+    }
+
+    @Test
+    void operations_ShouldLeaveOperandsUnchanged() {
+        // Arrange
+        RoaringBitmap a = RoaringBitmap.of(1, 2, 3);
+        RoaringBitmap b = RoaringBitmap.of(2, 3, 4);
+
+        // Act
+        RoaringBitmap union = RoaringBitmap.orAll(List.of(a, b));
+        union.add(5);
+        a.and(b).add(6);
+
+        // Assert
+        assertEquals(RoaringBitmap.of(1, 2, 3, 4, 5), union);
+        assertEquals(RoaringBitmap.of(1, 2, 3), a);
+        assertEquals(RoaringBitmap.of(2, 3, 4), b);
+    }
+
+    @Test
+    void remove_ShouldKeepValues_WhenDenseChunkBecomesSparse() {
+        // Arrange
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value = 0; value < 5000; value++) {
+            bitmap.add(value);
+        }
+
+        // Act
+        for (int value = 0; value < 5000; value += 2) {
+            bitmap.remove(value);
+        }
+
+        // Assert
+        assertEquals(2500, bitmap.cardinality());
+        assertTrue(bitmap.contains(4999));
+        assertFalse(bitmap.contains(4998));
+    }
+
+    @Test
+    void add_ShouldRejectNegativeValues() {
+        // Arrange
+        RoaringBitmap bitmap = new RoaringBitmap();
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+}
@@ -0,0 +1,81 @@
+package com.safetynet.alerts.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedListTests {
+
+    private static SharedList<Integer> listOf(int size) {
+        SharedList<Integer> list = new SharedList<>();
+        IntStream.range(0, size).forEach(list::add);
+        return list;
+    }
+
+    @Test
+    void add_ShouldKeepElementsInOrder_AcrossChunks() {
+        // Act
+        SharedList<Integer> list = listOf(1000);
+
+        // Assert
+        assertEquals(1000, list.size());
+        assertEquals(IntStream.range(0, 1000).boxed().toList(), new ArrayList<>(list));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1000));
+    }
+
+    @Test
+    void copy_ShouldNotAffectSource_WhenCopyIsModified() {
+        // Arrange
+        SharedList<Integer> source = listOf(600);
+        List<Integer> expected = new ArrayList<>(source);
+
+        // Act
+        SharedList<Integer> copy = source.copy();
+        copy.set(10, -1);
+        copy.set(300, -1);
+        copy.removeLast();
+        copy.add(-2);
+
+        // Assert
+        assertEquals(expected, new ArrayList<>(source));
+        assertEquals(-1, copy.get(10));
+        assertEquals(-1, copy.get(300));
+        assertEquals(-2, copy.get(599));
+    }
+
+    @Test
+    void copy_ShouldNotAffectCopy_WhenSourceIsModifiedAfterwards() {
+        // Arrange
+        SharedList<Integer> source = listOf(300);
+
+        // Act
+        SharedList<Integer> copy = source.copy();
+        source.set(0, -1);
+        source.removeLast();
+
+        // Assert
+        assertEquals(0, copy.get(0));
+        assertEquals(300, copy.size());
+        assertEquals(299, copy.get(299));
+    }
+
+    @Test
+    void removeLast_ShouldDropEmptiedChunks() {
+        // Arrange
+        SharedList<Integer> list = listOf(257);
+
+        // Act
+        int last = list.removeLast();
+        list.removeLast();
+        list.add(7);
+
+        // Assert
+        assertEquals(256, last);
+        assertEquals(256, list.size());
+        assertEquals(7, list.get(255));
+    }
+}
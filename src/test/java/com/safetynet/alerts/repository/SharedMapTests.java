@@ -0,0 +1,98 @@
+package com.safetynet.alerts.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedMapTests {
+
+    private static SharedMap<String, Integer> mapOf(int size) {
+        SharedMap<String, Integer> map = new SharedMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put("key" + i, i);
+        }
+        return map;
+    }
+
+    @Test
+    void put_ShouldKeepEveryEntry_WhenBucketsAreAdded() {
+        // Act
+        SharedMap<String, Integer> map = mapOf(5000);
+
+        // Assert
+        assertEquals(5000, map.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, map.get("key" + i));
+        }
+        assertNull(map.get("key5000"));
+    }
+
+    @Test
+    void copy_ShouldNotAffectSource_WhenCopyIsModified() {
+        // Arrange
+        SharedMap<String, Integer> source = mapOf(1000);
+
+        // Act
+        SharedMap<String, Integer> copy = source.copy();
+        copy.put("key1", -1);
+        copy.remove("key2");
+        copy.put("new", 1);
+
+        // Assert
+        assertEquals(1, source.get("key1"));
+        assertEquals(2, source.get("key2"));
+        assertNull(source.get("new"));
+        assertEquals(1000, source.size());
+        assertEquals(-1, copy.get("key1"));
+        assertNull(copy.get("key2"));
+        assertEquals(1000, copy.size());
+    }
+
+    @Test
+    void copy_ShouldNotAffectCopy_WhenSourceIsModifiedAfterwards() {
+        // Arrange
+        SharedMap<String, Integer> source = mapOf(100);
+
+        // Act
+        SharedMap<String, Integer> copy = source.copy();
+        source.put("key1", -1);
+        source.remove("key2");
+
+        // Assert
+        assertEquals(1, copy.get("key1"));
+        assertEquals(2, copy.get("key2"));
+    }
+
+    @Test
+    void remove_ShouldReturnNull_WhenKeyIsUnknown() {
+        // Arrange
+        SharedMap<String, Integer> map = mapOf(10);
+
+        // Act
+        Integer removed = map.remove("unknown");
+
+        // Assert
+        assertNull(removed);
+        assertEquals(10, map.size());
+        assertNull(map.get(null));
+    }
+
+    @Test
+    void forEach_ShouldVisitEveryEntryOnce() {
+        // Arrange
+        SharedMap<String, Integer> map = mapOf(1000).copy();
+        map.remove("key0");
+        Map<String, Integer> visited = new HashMap<>();
+
+        // Act
+        map.forEach((key, value) -> assertNull(visited.put(key, value)));
+
+        // Assert
+        assertEquals(999, visited.size());
+        assertEquals(999, visited.get("key999"));
+        assertFalse(visited.containsKey("key0"));
+    }
+}
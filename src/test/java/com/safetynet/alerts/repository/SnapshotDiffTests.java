@@ -0,0 +1,67 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotDiffTests {
+
+    private static Person john() {
+        return new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+    }
+
+    @Test
+    void diff_ShouldReturnNoMutation_WhenFileHoldsSameData() {
+        // Arrange
+        DataSnapshot live = DataSnapshot.of(List.of(john()), List.of(new Firestation("123 Main St", 1)), List.of());
+        DataSnapshot incoming = DataSnapshot.of(List.of(john()), List.of(new Firestation("123 Main St", 1)), List.of());
+
+        // Act
+        List<Mutation> mutations = SnapshotDiff.diff(live, incoming);
+
+        // Assert
+        assertTrue(mutations.isEmpty());
+    }
+
+    @Test
+    void diff_ShouldUpdateWithLiveId_WhenEntityMatchesByName() {
+        // Arrange
+        Person liveJohn = john();
+        Person fileJohn = john();
+        fileJohn.setPhone("000-000-0000");
+        DataSnapshot live = DataSnapshot.of(List.of(liveJohn), List.of(), List.of());
+        DataSnapshot incoming = DataSnapshot.of(List.of(fileJohn), List.of(), List.of());
+
+        // Act
+        List<Mutation> mutations = SnapshotDiff.diff(live, incoming);
+
+        // Assert
+        assertEquals(1, mutations.size());
+        assertEquals(Mutation.Operation.UPDATE, mutations.get(0).getOperation());
+        assertEquals(liveJohn.getId(), mutations.get(0).getId());
+        assertEquals(liveJohn.getId(), fileJohn.getId());
+    }
+
+    @Test
+    void diff_ShouldAddAndDelete_WhenEntitiesDoNotMatch() {
+        // Arrange
+        Firestation liveFirestation = new Firestation("123 Main St", 1);
+        Firestation fileFirestation = new Firestation("456 Elm St", 2);
+        DataSnapshot live = DataSnapshot.of(List.of(), List.of(liveFirestation), List.of());
+        DataSnapshot incoming = DataSnapshot.of(List.of(), List.of(fileFirestation), List.of());
+
+        // Act
+        List<Mutation> mutations = SnapshotDiff.diff(live, incoming);
+
+        // Assert
+        assertEquals(2, mutations.size());
+        assertEquals(Mutation.Operation.ADD, mutations.get(0).getOperation());
+        assertEquals(fileFirestation.getId(), mutations.get(0).getId());
+        assertEquals(Mutation.Operation.DELETE, mutations.get(1).getOperation());
+        assertEquals(liveFirestation.getId(), mutations.get(1).getId());
+    }
+}
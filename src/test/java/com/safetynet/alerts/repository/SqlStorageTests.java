@@ -0,0 +1,80 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStorageTests {
+
+    private String url;
+    private SqlStorage sqlStorage;
+
+    @BeforeEach
+    void setUp() {
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        sqlStorage = new SqlStorage(url);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlStorage.close();
+    }
+
+    @Test
+    void load_ShouldImportSnapshot_WhenDatabaseIsEmpty() throws IOException {
+        // Arrange
+        Path dataFile = Path.of("data.json");
+        byte[] dataFileContent = Files.readAllBytes(dataFile);
+        DataSnapshot expected = DataLoader.loadSnapshotIfAny();
+
+        // Act
+        DataSnapshot imported = sqlStorage.load();
+        SqlStorage reopened = new SqlStorage(url);
+        DataSnapshot reloaded = reopened.load();
+        reopened.close();
+
+        // Assert
+        assertEquals(expected.persons().byId().size(), imported.persons().byId().size());
+        assertEquals(expected.firestations().byId().size(), reloaded.firestations().byId().size());
+        assertEquals(expected.medicalRecords().byId().size(), reloaded.medicalRecords().byId().size());
+        assertEquals(imported.persons().byId().all().stream().map(Person::getId).toList(),
+            reloaded.persons().byId().all().stream().map(Person::getId).toList());
+        assertArrayEquals(dataFileContent, Files.readAllBytes(dataFile));
+    }
+
+    @Test
+    void log_ShouldPersistMutations_OnceCommitted() throws IOException {
+        // Arrange
+        sqlStorage.load();
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Doe", "01/01/1990", List.of("aspirin:100mg"),
+            List.of("peanut"));
+        Person moved = person.copy();
+        moved.setAddress("456 Elm St");
+
+        // Act
+        sqlStorage.log(Mutation.add(person));
+        sqlStorage.log(Mutation.add(medicalRecord));
+        long sequence = sqlStorage.log(Mutation.update(moved));
+        sqlStorage.awaitDurable(sequence);
+        SqlStorage reopened = new SqlStorage(url);
+        DataSnapshot reloaded = reopened.load();
+        reopened.close();
+
+        // Assert
+        assertEquals(3, sequence);
+        Person reloadedPerson = reloaded.persons().byId().get(person.getId());
+        assertEquals("456 Elm St", reloadedPerson.getAddress());
+        assertEquals(List.of("peanut"), reloaded.medicalRecords().byId().get(medicalRecord.getId()).getAllergies());
+    }
+}
@@ -0,0 +1,102 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringDictionaryTests {
+
+    private StringDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new StringDictionary();
+    }
+
+    @Test
+    void canonical_ShouldReturnSameInstance_ForEqualValues() {
+        // Arrange
+        String first = new String("1509 Culver St");
+        String second = new String("1509 Culver St");
+
+        // Act
+        String canonicalFirst = dictionary.canonical(first);
+        String canonicalSecond = dictionary.canonical(second);
+
+        // Assert
+        assertSame(first, canonicalFirst);
+        assertSame(canonicalFirst, canonicalSecond);
+        assertEquals(1, dictionary.size());
+        assertNull(dictionary.canonical(null));
+    }
+
+    @Test
+    void find_ShouldNotAddValue_WhenValueIsUnknown() {
+        // Act
+        String result = dictionary.find("Culver");
+
+        // Assert
+        assertNull(result);
+        assertEquals("Culver", dictionary.key("Culver"));
+        assertEquals(0, dictionary.size());
+    }
+
+    @Test
+    void idOf_ShouldReturnCompactIds_ResolvedByValueOf() {
+        // Arrange
+        List<String> values = List.of("Culver", "Boyd", "Culver", "Zemicks");
+        values.forEach(dictionary::canonical);
+
+        // Act
+        int culver = dictionary.idOf("Culver");
+        int zemicks = dictionary.idOf(new String("Zemicks"));
+
+        // Assert
+        assertEquals(0, culver);
+        assertEquals(2, zemicks);
+        assertSame(dictionary.canonical("Zemicks"), dictionary.valueOf(zemicks));
+        assertEquals(StringDictionary.NO_ID, dictionary.idOf("Unknown"));
+    }
+
+    @Test
+    void compacted_ShouldKeepOnlyValuesOfData() {
+        // Arrange
+        Person person = new Person("John", "Doe", new String("1509 Culver St"), "Culver", "97451", "841-874-6512",
+            "john.doe@email.com");
+        DataSnapshot snapshot = DataSnapshot.of(List.of(person), List.of(new Firestation("1509 Culver St", 3)),
+            List.of());
+        snapshot.dictionary().canonical("29 Deleted St");
+
+        // Act
+        StringDictionary compacted = StringDictionary.compacted(snapshot);
+
+        // Assert
+        assertEquals(5, compacted.size());
+        assertSame(person.getAddress(), compacted.find("1509 Culver St"));
+        assertSame(person.getAddress(), snapshot.firestations().byId().all().get(0).getAddress());
+        assertNull(compacted.find("29 Deleted St"));
+    }
+
+    @Test
+    void compacted_ShouldKeepOnlyTermsOfMedicalRecords() {
+        // Arrange
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Doe", "03/06/1984", List.of("aznol:350mg"),
+            List.of("peanut"));
+        DataSnapshot snapshot = DataSnapshot.of(List.of(), List.of(), List.of(medicalRecord));
+        snapshot.dictionary().canonical("shellfish");
+
+        // Act
+        StringDictionary compacted = StringDictionary.compacted(snapshot);
+
+        // Assert
+        assertSame(medicalRecord.getAllergies().get(0), compacted.find("peanut"));
+        assertSame(medicalRecord.getMedications().get(0), compacted.find("aznol:350mg"));
+        assertNull(compacted.find("shellfish"));
+    }
+}
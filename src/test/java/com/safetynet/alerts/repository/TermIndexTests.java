@@ -0,0 +1,51 @@
+package com.safetynet.alerts.repository;
+
+import com.safetynet.alerts.model.MedicalRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermIndexTests {
+
+    private static MedicalRecord record(String firstName, List<String> allergies) {
+        return new MedicalRecord(firstName, "Doe", "01/01/2000", List.of(), allergies);
+    }
+
+    @Test
+    void copy_ShouldSharePostings_WithoutAffectingSourceOrCopy() {
+        // Arrange
+        TermIndex source = new TermIndex();
+        MedicalRecord john = record("John", List.of("peanut"));
+        MedicalRecord jane = record("Jane", List.of("peanut"));
+        source.add(john);
+
+        // Act
+        TermIndex copy = source.copy();
+        copy.add(jane);
+        source.remove(john);
+
+        // Assert
+        assertTrue(source.withAllergy("peanut").isEmpty());
+        assertEquals(2, copy.withAllergy("peanut").cardinality());
+        assertEquals(Map.of("peanut", 2), copy.countByAllergy());
+    }
+
+    @Test
+    void countByAllergy_ShouldOrderTermsByNumberOfRecords() {
+        // Arrange
+        TermIndex index = new TermIndex();
+        index.add(record("John", List.of("shellfish", "peanut")));
+        index.add(record("Jane", List.of("peanut")));
+        index.add(record("Jack", List.of("nillacilan")));
+
+        // Act
+        Map<String, Integer> counts = index.countByAllergy();
+
+        // Assert
+        assertEquals(List.of("peanut", "nillacilan", "shellfish"), List.copyOf(counts.keySet()));
+        assertEquals(2, counts.get("peanut"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.safetynet.alerts.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermListTests {
+
+    private final StringDictionary dictionary = new StringDictionary();
+
+    @Test
+    void of_ShouldEncodeTerms_AndKeepListEquality() {
+        // Arrange
+        List<String> terms = new ArrayList<>(List.of("aznol:350mg", "hydrapermazol:100mg"));
+
+        // Act
+        List<String> encoded = TermList.of(terms, dictionary);
+
+        // Assert
+        assertInstanceOf(TermList.class, encoded);
+        assertEquals(terms, encoded);
+        assertEquals(encoded, terms);
+        assertEquals(terms.hashCode(), encoded.hashCode());
+        assertSame(encoded, TermList.of(encoded, dictionary));
+        assertSame(dictionary.find("aznol:350mg"), encoded.get(0));
+        assertNull(TermList.of(null, dictionary));
+    }
+
+    @Test
+    void equals_ShouldCompareTerms_WhenBothListsAreEncoded() {
+        // Arrange
+        List<String> encoded = TermList.of(List.of("peanut", "shellfish"), dictionary);
+
+        // Act & Assert
+        assertEquals(encoded, TermList.of(List.of("peanut", "shellfish"), dictionary));
+        assertNotEquals(encoded, TermList.of(List.of("shellfish", "peanut"), dictionary));
+        assertNotEquals(encoded, TermList.of(List.of("peanut"), dictionary));
+    }
+
+    @Test
+    void encodedList_ShouldBeImmutable() {
+        // Arrange
+        List<String> encoded = TermList.of(List.of("peanut"), dictionary);
+
+        // Act & Assert
+        assertThrows(UnsupportedOperationException.class, () -> encoded.add("nillacilan"));
+    }
+}
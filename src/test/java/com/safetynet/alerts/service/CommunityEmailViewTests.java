@@ -0,0 +1,153 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.repository.DataReloadedEvent;
+import com.safetynet.alerts.repository.DataStore;
+import com.safetynet.alerts.repository.Mutation;
+import com.safetynet.alerts.repository.MutationLog;
+import com.safetynet.alerts.repository.PersonRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CommunityEmailViewTests {
+
+    @Mock
+    private PersonRepository personRepository;
+
+    @Mock
+    private DataStore dataStore;
+
+    @InjectMocks
+    private CommunityEmailView emailView;
+
+    private Person john;
+    private Person jane;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(dataStore.pinLatest()).thenReturn(mock(DataStore.Pin.class));
+        john = new Person("John", "Doe", "123 Main St", "Springfield", "12345", "123-456-7890", "doe@email.com");
+        jane = new Person("Jane", "Doe", "123 Main St", "Springfield", "12345", "123-456-7891", "doe@email.com");
+
+        when(personRepository.findAll()).thenReturn(new ArrayList<>(List.of(john, jane)));
+    }
+
+    @Test
+    void getEmails_ShouldReturnDistinctEmails() {
+        // Act
+        Set<String> emails = emailView.getEmails("Springfield");
+
+        // Assert
+        assertEquals(Set.of("doe@email.com"), emails);
+    }
+
+    @Test
+    void getPayload_ShouldReturnSamePayload_WhenCityIsUnchanged() {
+        // Act
+        String first = emailView.getPayload("Springfield");
+        emailView.onMutation(Mutation.add(new Person("Jack", "Smith", "1 Elm St", "Shelbyville", "54321", "000", "jack@email.com")));
+        String second = emailView.getPayload("Springfield");
+
+        // Assert
+        assertEquals("doe@email.com", first);
+        assertSame(first, second);
+    }
+
+    @Test
+    void getEmails_ShouldKeepSharedEmail_WhenOnePersonChangesEmail() {
+        // Arrange
+        emailView.getEmails("Springfield");
+
+        // Act
+        john.setEmail("john@email.com");
+        emailView.onMutation(Mutation.update(john));
+
+        // Assert
+        assertEquals(Set.of("doe@email.com", "john@email.com"), emailView.getEmails("Springfield"));
+    }
+
+    @Test
+    void getEmails_ShouldIncludeWrite_WhenViewIsFirstBuiltWhileOlderSnapshotIsPinned() throws IOException {
+        // Arrange
+        List<CommunityEmailView> views = new ArrayList<>();
+        DataStore store = new DataStore(event -> {
+            if (event instanceof Mutation mutation) {
+                views.forEach(view -> view.onMutation(mutation));
+            }
+        }, mock(MutationLog.class));
+        PersonRepository persons = new PersonRepository(store);
+        CommunityEmailView view = new CommunityEmailView(persons, store);
+        views.add(view);
+        persons.addPerson(john);
+        Person jack = new Person("Jack", "Smith", "1 Elm St", "Springfield", "12345", "000", "jack@email.com");
+
+        // Act
+        Set<String> whilePinned;
+        try (DataStore.Pin pin = store.pin()) {
+            persons.addPerson(jack);
+            whilePinned = view.getEmails("Springfield");
+        }
+        Set<String> afterwards = view.getEmails("Springfield");
+
+        // Assert
+        assertEquals(Set.of("doe@email.com", "jack@email.com"), whilePinned);
+        assertEquals(whilePinned, afterwards);
+    }
+
+    @Test
+    void getEmails_ShouldReturnNoEmail_UntilSomeoneLivesInUnknownCity() {
+        // Arrange
+        Person jack = new Person("Jack", "Smith", "1 Elm St", "Shelbyville", "54321", "000", "jack@email.com");
+
+        // Act
+        Set<String> before = emailView.getEmails("Shelbyville");
+        String payloadBefore = emailView.getPayload("Shelbyville");
+        emailView.onMutation(Mutation.add(jack));
+
+        // Assert
+        assertTrue(before.isEmpty());
+        assertEquals("", payloadBefore);
+        assertEquals(Set.of("jack@email.com"), emailView.getEmails("Shelbyville"));
+    }
+
+    @Test
+    void getEmails_ShouldFollowPerson_WhenPersonMovesOrIsDeleted() {
+        // Arrange
+        emailView.getEmails("Springfield");
+
+        // Act
+        john.setCity("Shelbyville");
+        emailView.onMutation(Mutation.update(john));
+        emailView.onMutation(Mutation.delete(Mutation.EntityType.PERSON, jane.getId()));
+
+        // Assert
+        assertTrue(emailView.getEmails("Springfield").isEmpty());
+        assertEquals("", emailView.getPayload("Springfield"));
+        assertEquals(Set.of("doe@email.com"), emailView.getEmails("Shelbyville"));
+    }
+
+    @Test
+    void getEmails_ShouldRebuild_WhenPersonsAreReloaded() {
+        // Arrange
+        emailView.getEmails("Springfield");
+        when(personRepository.findAll()).thenReturn(new ArrayList<>());
+
+        // Act
+        emailView.onDataReloaded(new DataReloadedEvent(Mutation.EntityType.PERSON));
+
+        // Assert
+        assertTrue(emailView.getEmails("Springfield").isEmpty());
+    }
+}
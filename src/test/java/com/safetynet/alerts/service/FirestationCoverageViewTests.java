@@ -0,0 +1,220 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.FirestationCoverageDTO;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.repository.DataReloadedEvent;
+import com.safetynet.alerts.repository.DataStore;
+import com.safetynet.alerts.repository.FirestationRepository;
+import com.safetynet.alerts.repository.MedicalRecordRepository;
+import com.safetynet.alerts.repository.Mutation;
+import com.safetynet.alerts.repository.PersonRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FirestationCoverageViewTests {
+
+    @Mock
+    private FirestationRepository firestationRepository;
+
+    @Mock
+    private PersonRepository personRepository;
+
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Mock
+    private MedicalRecordService medicalRecordService;
+
+    @Mock
+    private DataStore dataStore;
+
+    @InjectMocks
+    private FirestationCoverageView coverageView;
+
+    private Person child;
+    private Person adult;
+    private MedicalRecord adultRecord;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(dataStore.pinLatest()).thenReturn(mock(DataStore.Pin.class));
+        Firestation firestation = new Firestation("123 Main St", 1);
+        child = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        adult = new Person("Jane", "Doe", "123 Main St", "City", "12345", "123-456-7891", "jane.doe@email.com");
+        Person neighbour = new Person("Jack", "Smith", "456 Elm St", "City", "12345", "123-456-7892", "jack@email.com");
+        MedicalRecord childRecord = new MedicalRecord("John", "Doe", "01/01/2015", List.of(), List.of());
+        adultRecord = new MedicalRecord("Jane", "Doe", "01/01/1985", List.of(), List.of());
+
+        when(medicalRecordService.getReferenceDate()).thenReturn(LocalDate.of(2024, 6, 1));
+        when(firestationRepository.findAll()).thenReturn(List.of(firestation));
+        when(personRepository.findAll()).thenReturn(List.of(child, adult, neighbour));
+        when(medicalRecordRepository.findAll()).thenReturn(List.of(childRecord, adultRecord));
+        Map<UUID, MedicalRecord> records = new HashMap<>();
+        records.put(child.getId(), childRecord);
+        records.put(adult.getId(), adultRecord);
+        when(medicalRecordRepository.findByPersons(any())).thenReturn(records);
+        when(medicalRecordRepository.findByFirstNameAndLastName("John", "Doe")).thenReturn(childRecord);
+        when(medicalRecordRepository.findByFirstNameAndLastName("Jane", "Doe")).thenReturn(adultRecord);
+        when(medicalRecordService.isChild(childRecord)).thenReturn(true);
+        when(medicalRecordService.isChild(adultRecord)).thenReturn(false);
+    }
+
+    private static boolean lists(FirestationCoverageDTO coverage, String phone) {
+        return coverage.toString().contains("phone: '" + phone + "'");
+    }
+
+    @Test
+    void getCoverage_ShouldCountAdultsAndChildren() {
+        // Act
+        FirestationCoverageDTO coverage = coverageView.getCoverage(1);
+
+        // Assert
+        assertEquals(1, coverage.getNumberOfChildren());
+        assertEquals(1, coverage.getNumberOfAdults());
+        assertTrue(lists(coverage, "123-456-7890") && lists(coverage, "123-456-7891"));
+        assertFalse(lists(coverage, "123-456-7892"));
+    }
+
+    @Test
+    void getCoverage_ShouldServeCoverageFromView_WhenDataIsUnchanged() {
+        // Act
+        FirestationCoverageDTO first = coverageView.getCoverage(1);
+        FirestationCoverageDTO second = coverageView.getCoverage(1);
+
+        // Assert
+        assertSame(first, second);
+        verify(personRepository, times(1)).findAll();
+    }
+
+    @Test
+    void getCoverage_ShouldReturnEmptyCoverage_WhenStationCoversNoOne() {
+        // Act
+        FirestationCoverageDTO coverage = coverageView.getCoverage(9);
+
+        // Assert
+        assertEquals(0, coverage.getNumberOfChildren());
+        assertEquals(0, coverage.getNumberOfAdults());
+    }
+
+    @Test
+    void getCoverage_ShouldUpdateCoverageInPlace_WhenResidentIsUpdatedOrMoves() {
+        // Arrange
+        coverageView.getCoverage(1);
+        Person updatedAdult = adult.copy();
+        updatedAdult.setPhone("000-000-0000");
+        Person movedChild = child.copy();
+        movedChild.setAddress("456 Elm St");
+
+        // Act
+        coverageView.onMutation(Mutation.update(updatedAdult));
+        FirestationCoverageDTO afterUpdate = coverageView.getCoverage(1);
+        coverageView.onMutation(Mutation.update(movedChild));
+        FirestationCoverageDTO afterMove = coverageView.getCoverage(1);
+
+        // Assert
+        assertTrue(lists(afterUpdate, "000-000-0000"));
+        assertFalse(lists(afterUpdate, "123-456-7891"));
+        assertFalse(lists(afterMove, "123-456-7890"));
+        assertEquals(0, afterMove.getNumberOfChildren());
+        assertEquals(1, afterMove.getNumberOfAdults());
+        verify(personRepository, times(1)).findAll();
+    }
+
+    @Test
+    void getCoverage_ShouldKeepCoverage_WhenPersonElsewhereIsAdded() {
+        // Arrange
+        FirestationCoverageDTO first = coverageView.getCoverage(1);
+        Person other = new Person("Jill", "Smith", "789 Oak St", "City", "12345", "123-456-7893", "jill@email.com");
+
+        // Act
+        coverageView.onMutation(Mutation.add(other));
+        FirestationCoverageDTO second = coverageView.getCoverage(1);
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    void getCoverage_ShouldFollowFirestationMappings_UntilLastDuplicateIsRemoved() {
+        // Arrange
+        coverageView.getCoverage(1);
+        Firestation mapping = new Firestation("456 Elm St", 1);
+        Firestation duplicate = new Firestation("456 Elm St", 1);
+
+        // Act
+        coverageView.onMutation(Mutation.add(mapping));
+        coverageView.onMutation(Mutation.add(duplicate));
+        coverageView.onMutation(Mutation.delete(Mutation.EntityType.FIRESTATION, mapping.getId()));
+        FirestationCoverageDTO mapped = coverageView.getCoverage(1);
+        coverageView.onMutation(Mutation.delete(Mutation.EntityType.FIRESTATION, duplicate.getId()));
+        FirestationCoverageDTO unmapped = coverageView.getCoverage(1);
+
+        // Assert
+        assertEquals(2, mapped.getNumberOfAdults());
+        assertTrue(lists(mapped, "123-456-7892"));
+        assertEquals(1, unmapped.getNumberOfAdults());
+        assertFalse(lists(unmapped, "123-456-7892"));
+        verify(firestationRepository, times(1)).findAll();
+    }
+
+    @Test
+    void getCoverage_ShouldUpdateChildCount_WhenMedicalRecordChanges() {
+        // Arrange
+        coverageView.getCoverage(1);
+        MedicalRecord updatedRecord = new MedicalRecord("Jane", "Doe", "01/01/2016", List.of(), List.of());
+        updatedRecord.setId(adultRecord.getId());
+        when(medicalRecordRepository.findByFirstNameAndLastName("Jane", "Doe")).thenReturn(updatedRecord);
+        when(medicalRecordService.isChild(updatedRecord)).thenReturn(true);
+
+        // Act
+        coverageView.onMutation(Mutation.update(updatedRecord));
+        FirestationCoverageDTO coverage = coverageView.getCoverage(1);
+
+        // Assert
+        assertEquals(2, coverage.getNumberOfChildren());
+        assertEquals(0, coverage.getNumberOfAdults());
+    }
+
+    @Test
+    void getCoverage_ShouldRebuildCoverage_WhenReferenceDateRollsOver() {
+        // Arrange
+        FirestationCoverageDTO first = coverageView.getCoverage(1);
+        when(medicalRecordService.getReferenceDate()).thenReturn(LocalDate.of(2024, 6, 2));
+
+        // Act
+        FirestationCoverageDTO second = coverageView.getCoverage(1);
+
+        // Assert
+        assertNotSame(first, second);
+        verify(personRepository, times(2)).findAll();
+    }
+
+    @Test
+    void getCoverage_ShouldRebuildCoverage_WhenDataIsReloaded() {
+        // Arrange
+        FirestationCoverageDTO first = coverageView.getCoverage(1);
+
+        // Act
+        coverageView.onDataReloaded(new DataReloadedEvent(Mutation.EntityType.PERSON));
+        FirestationCoverageDTO second = coverageView.getCoverage(1);
+
+        // Assert
+        assertNotSame(first, second);
+        verify(personRepository, times(2)).findAll();
+    }
+}
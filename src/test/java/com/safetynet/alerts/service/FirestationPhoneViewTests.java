@@ -0,0 +1,173 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.repository.DataReloadedEvent;
+import com.safetynet.alerts.repository.DataStore;
+import com.safetynet.alerts.repository.FirestationRepository;
+import com.safetynet.alerts.repository.Mutation;
+import com.safetynet.alerts.repository.MutationLog;
+import com.safetynet.alerts.repository.PersonRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FirestationPhoneViewTests {
+
+    @Mock
+    private PersonRepository personRepository;
+
+    @Mock
+    private FirestationRepository firestationRepository;
+
+    @Mock
+    private DataStore dataStore;
+
+    @InjectMocks
+    private FirestationPhoneView phoneView;
+
+    private Firestation firestation;
+    private Person john;
+    private Person jane;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(dataStore.pinLatest()).thenReturn(mock(DataStore.Pin.class));
+        firestation = new Firestation("123 Main St", 1);
+        john = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        jane = new Person("Jane", "Doe", "123 Main St", "City", "12345", "123-456-7890", "jane.doe@email.com");
+
+        when(firestationRepository.findAll()).thenReturn(new ArrayList<>(List.of(firestation)));
+        when(personRepository.findAll()).thenReturn(new ArrayList<>(List.of(john, jane)));
+    }
+
+    @Test
+    void getPhoneNumbers_ShouldReturnDistinctPhoneNumbers() {
+        // Act
+        Set<String> phoneNumbers = phoneView.getPhoneNumbers(1);
+
+        // Assert
+        assertEquals(Set.of("123-456-7890"), phoneNumbers);
+    }
+
+    @Test
+    void getPhoneNumbers_ShouldReturnEmptySet_WhenStationCoversNoOne() {
+        // Act
+        Set<String> phoneNumbers = phoneView.getPhoneNumbers(2);
+
+        // Assert
+        assertTrue(phoneNumbers.isEmpty());
+    }
+
+    @Test
+    void getPhoneNumbers_ShouldKeepSharedPhone_WhenOnlyOnePersonChangesPhone() {
+        // Arrange
+        phoneView.getPhoneNumbers(1);
+
+        // Act
+        john.setPhone("111-111-1111");
+        phoneView.onMutation(Mutation.update(john));
+
+        // Assert
+        assertEquals(Set.of("123-456-7890", "111-111-1111"), phoneView.getPhoneNumbers(1));
+    }
+
+    @Test
+    void getPhoneNumbers_ShouldIncludeWrite_WhenViewIsFirstBuiltWhileOlderSnapshotIsPinned() throws IOException {
+        // Arrange
+        List<FirestationPhoneView> views = new ArrayList<>();
+        DataStore store = new DataStore(event -> {
+            if (event instanceof Mutation mutation) {
+                views.forEach(view -> view.onMutation(mutation));
+            }
+        }, mock(MutationLog.class));
+        PersonRepository persons = new PersonRepository(store);
+        FirestationRepository firestations = new FirestationRepository(store);
+        FirestationPhoneView view = new FirestationPhoneView(persons, firestations, store);
+        views.add(view);
+        firestations.addFirestation(firestation);
+        persons.addPerson(john);
+        Person jack = new Person("Jack", "Doe", "123 Main St", "City", "12345", "111-111-1111", "jack.doe@email.com");
+
+        // Act
+        Set<String> whilePinned;
+        try (DataStore.Pin pin = store.pin()) {
+            persons.addPerson(jack);
+            whilePinned = view.getPhoneNumbers(1);
+        }
+        Set<String> afterwards = view.getPhoneNumbers(1);
+
+        // Assert
+        assertEquals(Set.of("123-456-7890", "111-111-1111"), whilePinned);
+        assertEquals(whilePinned, afterwards);
+    }
+
+    @Test
+    void getPhoneNumbers_ShouldFollowPerson_WhenPersonMovesOrIsDeleted() {
+        // Arrange
+        phoneView.getPhoneNumbers(1);
+        john.setPhone("111-111-1111");
+        phoneView.onMutation(Mutation.update(john));
+
+        // Act
+        john.setAddress("456 Elm St");
+        phoneView.onMutation(Mutation.update(john));
+        phoneView.onMutation(Mutation.delete(Mutation.EntityType.PERSON, jane.getId()));
+
+        // Assert
+        assertTrue(phoneView.getPhoneNumbers(1).isEmpty());
+    }
+
+    @Test
+    void getPhoneNumbers_ShouldFollowFirestation_WhenStationIsUpdated() {
+        // Arrange
+        phoneView.getPhoneNumbers(1);
+
+        // Act
+        firestation.setStation(2);
+        phoneView.onMutation(Mutation.update(firestation));
+
+        // Assert
+        assertTrue(phoneView.getPhoneNumbers(1).isEmpty());
+        assertEquals(Set.of("123-456-7890"), phoneView.getPhoneNumbers(2));
+    }
+
+    @Test
+    void getPhoneNumbers_ShouldCountResidentsOnce_WhenAddressIsMappedTwice() {
+        // Arrange
+        phoneView.getPhoneNumbers(1);
+        Firestation duplicate = new Firestation("123 Main St", 1);
+        phoneView.onMutation(Mutation.add(duplicate));
+
+        // Act
+        phoneView.onMutation(Mutation.delete(Mutation.EntityType.FIRESTATION, duplicate.getId()));
+
+        // Assert
+        assertEquals(Set.of("123-456-7890"), phoneView.getPhoneNumbers(1));
+    }
+
+    @Test
+    void getPhoneNumbers_ShouldRebuild_WhenDataIsReloaded() {
+        // Arrange
+        phoneView.getPhoneNumbers(1);
+        when(personRepository.findAll()).thenReturn(new ArrayList<>());
+
+        // Act
+        phoneView.onDataReloaded(new DataReloadedEvent(Mutation.EntityType.PERSON));
+
+        // Assert
+        assertTrue(phoneView.getPhoneNumbers(1).isEmpty());
+        verify(personRepository, times(2)).findAll();
+    }
+}
@@ -3,15 +3,16 @@ package com.safetynet.alerts.service;
 import com.safetynet.alerts.model.*;
 import com.safetynet.alerts.repository.FirestationRepository;
 import com.safetynet.alerts.repository.PersonRepository;
+import com.safetynet.alerts.repository.Resident;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -30,9 +31,11 @@ class FirestationServiceTests {
     private MedicalRecordService medicalRecordService;
 
     @Mock
-    private PersonService personService;
+    private FirestationCoverageView coverageView;
+
+    @Mock
+    private ResidentBitmapView residentBitmapView;
 
-    @InjectMocks
     private FirestationService firestationService;
 
     private Firestation testFirestation;
@@ -40,6 +43,8 @@ class FirestationServiceTests {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        firestationService = new FirestationService(firestationRepository, personRepository, medicalRecordService,
+            coverageView, residentBitmapView, new PersonInfoAssembler(medicalRecordService));
         testFirestation = new Firestation("123 Main St", 1);
     }
 
@@ -86,28 +91,19 @@ class FirestationServiceTests {
     }
 
     @Test
-    void getCoverageByStation_ShouldReturnCorrectCoverage() {
+    void getCoverageByStation_ShouldReturnCoverageFromView() {
         // Arrange
-        Person person1 = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
-        Person person2 = new Person("Jane", "Smith", "123 Main St", "City", "12345", "123-456-7891", "jane.smith@email.com");
-
-        MedicalRecord medicalRecord1 = new MedicalRecord("John", "Doe", "01/01/2010", List.of("med1"), List.of("allergy1"));
-        MedicalRecord medicalRecord2 = new MedicalRecord("Jane", "Smith", "01/01/1985", List.of(), List.of());
-
-        when(firestationRepository.findByStation(1)).thenReturn(List.of(testFirestation));
-        when(personRepository.findByAddress("123 Main St")).thenReturn(List.of(person1, person2));
-        when(medicalRecordService.getMedicalRecordByPerson("John", "Doe")).thenReturn(medicalRecord1);
-        when(medicalRecordService.getMedicalRecordByPerson("Jane", "Smith")).thenReturn(medicalRecord2);
-        when(medicalRecordService.calculateAge("01/01/2010")).thenReturn(14);
-        when(medicalRecordService.calculateAge("01/01/1985")).thenReturn(39);
+        FirestationCoverageDTO coverageDTO = new FirestationCoverageDTO();
+        coverageDTO.setNumberOfChildren(1);
+        coverageDTO.setNumberOfAdults(1);
+        when(coverageView.getCoverage(1)).thenReturn(coverageDTO);
 
         // Act
         FirestationCoverageDTO coverage = firestationService.getCoverageByStation(1);
 
         // Assert
-        assertNotNull(coverage);
-//        assertEquals(1, coverage.getNumberOfChildren());
-//        assertEquals(1, coverage.getNumberOfAdults());
+        assertSame(coverageDTO, coverage);
+        verify(coverageView, times(1)).getCoverage(1);
     }
 
     @Test
@@ -134,17 +130,50 @@ class FirestationServiceTests {
         Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
         MedicalRecord medicalRecord = new MedicalRecord("John", "Doe", "01/01/2010", List.of("med1"), List.of("allergy1"));
 
-        when(firestationRepository.findByStations(Set.of(1))).thenReturn(List.of(testFirestation));
-        when(personRepository.findByAddress("123 Main St")).thenReturn(List.of(person));
-        when(medicalRecordService.getMedicalRecordByPerson("John", "Doe")).thenReturn(medicalRecord);
+        when(firestationRepository.findHouseholdsByStations(Set.of(1)))
+            .thenReturn(Map.of("123 Main St", List.of(new Resident(person, medicalRecord))));
 
         // Act
         List<FloodStationDTO> households = firestationService.getHouseholdsByStations(Set.of(1));
 
         // Assert
         assertNotNull(households);
-//        assertEquals(1, households.size());
-//        assertEquals("123 Main St", households.get(0).getAddress());
+        assertEquals(1, households.size());
+        assertEquals("123 Main St", households.get(0).getAddress());
+        verify(medicalRecordService, never()).getMedicalRecordByPerson(anyString(), anyString());
+    }
+
+    @Test
+    void getHouseholdsWithMedicalTerms_ShouldReturnMatchingResidentsByHousehold() {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Doe", "01/01/2010", List.of(), List.of("penicillin"));
+        when(firestationRepository.findResidentsWithMedicalTerms(Set.of(3), null, "penicillin", null))
+            .thenReturn(Map.of("123 Main St", List.of(new Resident(person, medicalRecord))));
+
+        // Act
+        List<FloodStationDTO> households = firestationService.getHouseholdsWithMedicalTerms(Set.of(3), null, "penicillin", null);
+
+        // Assert
+        assertEquals(1, households.size());
+        assertEquals("123 Main St", households.get(0).getAddress());
+    }
+
+    @Test
+    void getHouseholdsByCriteria_ShouldReturnMatchingResidentsByHousehold() {
+        // Arrange
+        Person person = new Person("John", "Doe", "123 Main St", "Culver", "12345", "123-456-7890", "john.doe@email.com");
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Doe", "01/01/2015", List.of(), List.of("peanut"));
+        when(residentBitmapView.findResidents(Set.of(1, 2), "Culver", true, "peanut"))
+            .thenReturn(Map.of("123 Main St", List.of(new Resident(person, medicalRecord))));
+
+        // Act
+        List<FloodStationDTO> households = firestationService.getHouseholdsByCriteria(Set.of(1, 2), "Culver", true, "peanut");
+
+        // Assert
+        assertEquals(1, households.size());
+        assertEquals("123 Main St", households.get(0).getAddress());
+        assertEquals(1, households.get(0).getResidents().size());
     }
 
     @Test
@@ -154,7 +183,7 @@ class FirestationServiceTests {
         MedicalRecord medicalRecord = new MedicalRecord("John", "Doe", "01/01/2010", List.of("med1"), List.of("allergy1"));
 
         when(medicalRecordService.getMedicalRecordByPerson("John", "Doe")).thenReturn(medicalRecord);
-        when(medicalRecordService.calculateAge("01/01/2010")).thenReturn(14);
+        when(medicalRecordService.calculateAge(medicalRecord)).thenReturn(14);
 
         // Act
         ResidentInfoDTO residentInfo = firestationService.createResidentInfoDTO(person);
@@ -1,5 +1,6 @@
 package com.safetynet.alerts.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.safetynet.alerts.model.MedicalRecord;
 import com.safetynet.alerts.model.Person;
 import com.safetynet.alerts.repository.MedicalRecordRepository;
@@ -11,6 +12,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
@@ -170,6 +172,58 @@ class MedicalRecordServiceTests {
         assertFalse(isChild);
     }
 
+    @Test
+    void calculateAge_ShouldMatchStringOverload_ForMedicalRecord() {
+        // Act
+        int age = medicalRecordService.calculateAge(testMedicalRecord);
+
+        // Assert
+        assertEquals(medicalRecordService.calculateAge("01/01/2010"), age);
+    }
+
+    @Test
+    void calculateAge_ShouldReturnZero_WhenDeserializedBirthdateIsMalformed() throws IOException {
+        // Arrange
+        String json = "{\"firstName\":\"John\",\"lastName\":\"Doe\",\"birthdate\":\"13/45/2010\","
+            + "\"medications\":[],\"allergies\":[]}";
+
+        // Act
+        MedicalRecord record = new ObjectMapper().readValue(json, MedicalRecord.class);
+
+        // Assert
+        assertEquals("13/45/2010", record.getBirthdate());
+        assertEquals(MedicalRecord.UNKNOWN_BIRTH_EPOCH_DAY, record.getBirthEpochDay());
+        assertEquals(0, medicalRecordService.calculateAge(record));
+        assertFalse(medicalRecordService.isChild(record));
+    }
+
+    @Test
+    void isChild_ShouldReturnFalse_WhenTurning19Today() {
+        // Arrange
+        LocalDate birthdate = medicalRecordService.getReferenceDate().minusYears(19);
+        MedicalRecord record = new MedicalRecord("Jane", "Doe", birthdate.format(MedicalRecord.BIRTHDATE_FORMAT), List.of(), List.of());
+
+        // Act
+        boolean isChild = medicalRecordService.isChild(record);
+
+        // Assert
+        assertFalse(isChild);
+    }
+
+    @Test
+    void isChild_ShouldReturnTrue_WhenTurning19Tomorrow() {
+        // Arrange
+        LocalDate birthdate = medicalRecordService.getReferenceDate().minusYears(19).plusDays(1);
+        MedicalRecord record = new MedicalRecord("Jane", "Doe", birthdate.format(MedicalRecord.BIRTHDATE_FORMAT), List.of(), List.of());
+
+        // Act
+        boolean isChild = medicalRecordService.isChild(record);
+
+        // Assert
+        assertTrue(isChild);
+        assertEquals(18, medicalRecordService.calculateAge(record));
+    }
+
     @Test
     void getMedicalRecordByPerson_ShouldReturnMedicalRecord_WhenExists() {
         // Arrange
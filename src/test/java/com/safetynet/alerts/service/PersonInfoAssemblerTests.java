@@ -0,0 +1,76 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.model.PersonInfoLastNameDTO;
+import com.safetynet.alerts.model.ResidentInfoDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PersonInfoAssemblerTests {
+
+    @Mock
+    private MedicalRecordService medicalRecordService;
+
+    @InjectMocks
+    private PersonInfoAssembler personInfoAssembler;
+
+    private Person person;
+    private MedicalRecord medicalRecord;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        person = new Person("John", "Doe", "123 Main St", "City", "12345", "123-456-7890", "john.doe@email.com");
+        medicalRecord = new MedicalRecord("John", "Doe", "01/01/2010", List.of("med1"), List.of("allergy1"));
+    }
+
+    @Test
+    void toResidentInfoDTO_ShouldIncludeMedicalInformation() {
+        // Arrange
+        when(medicalRecordService.calculateAge(medicalRecord)).thenReturn(14);
+
+        // Act
+        ResidentInfoDTO residentInfo = personInfoAssembler.toResidentInfoDTO(person, medicalRecord);
+
+        // Assert
+        assertEquals("Doe", residentInfo.getLastName());
+        assertEquals(14, residentInfo.getAge());
+        assertEquals(List.of("med1"), residentInfo.getMedications());
+        assertEquals(List.of("allergy1"), residentInfo.getAllergies());
+    }
+
+    @Test
+    void toResidentInfoDTO_ShouldUseDefaults_WhenMedicalRecordIsMissing() {
+        // Act
+        ResidentInfoDTO residentInfo = personInfoAssembler.toResidentInfoDTO(person, null);
+
+        // Assert
+        assertEquals(0, residentInfo.getAge());
+        assertTrue(residentInfo.getMedications().isEmpty());
+        assertTrue(residentInfo.getAllergies().isEmpty());
+        verify(medicalRecordService, never()).calculateAge(any(MedicalRecord.class));
+    }
+
+    @Test
+    void toPersonInfoLastNameDTO_ShouldIncludeAddressAndEmail() {
+        // Arrange
+        when(medicalRecordService.calculateAge(medicalRecord)).thenReturn(14);
+
+        // Act
+        PersonInfoLastNameDTO personInfo = personInfoAssembler.toPersonInfoLastNameDTO(person, medicalRecord);
+
+        // Assert
+        assertEquals("Doe", personInfo.getLastName());
+        assertEquals("123 Main St", personInfo.getAddress());
+        assertTrue(personInfo.toString().contains("john.doe@email.com"));
+    }
+}
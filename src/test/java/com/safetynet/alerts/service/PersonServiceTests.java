@@ -4,6 +4,7 @@ import com.safetynet.alerts.model.ChildAlertDTO;
 import com.safetynet.alerts.model.Firestation;
 import com.safetynet.alerts.model.MedicalRecord;
 import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.model.PersonInfoLastNameDTO;
 import com.safetynet.alerts.repository.FirestationRepository;
 import com.safetynet.alerts.repository.PersonRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,6 +26,10 @@ class PersonServiceTests {
 
     private final MedicalRecordService medicalRecordService = mock(MedicalRecordService.class);
 
+    private final FirestationPhoneView phoneView = mock(FirestationPhoneView.class);
+
+    private final CommunityEmailView emailView = mock(CommunityEmailView.class);
+
     private PersonService personService;
 
     private Person testPerson;
@@ -34,7 +39,8 @@ class PersonServiceTests {
     @BeforeEach
     void setUp() {
         // Initialisation manuelle de la classe avec ses dépendances
-        personService = new PersonService(personRepository, firestationRepository, medicalRecordService);
+        personService = new PersonService(personRepository, firestationRepository, medicalRecordService, phoneView, emailView,
+            new PersonInfoAssembler(medicalRecordService));
         // Person example
         testPerson = new Person(
             "John", "Doe", "123 Main St", "Springfield", "12345", "123-456-7890", "john.doe@example.com"
@@ -77,6 +83,8 @@ class PersonServiceTests {
         Person updatedPerson = captor.getValue();
         assertEquals("new.email@example.com", updatedPerson.getEmail());
         assertEquals(testPerson.getId(), updatedPerson.getId());
+        assertNotSame(testPersonOriginal, updatedPerson);
+        assertNotEquals("new.email@example.com", testPersonOriginal.getEmail());
     }
 
 
@@ -107,9 +115,9 @@ class PersonServiceTests {
     @Test
     void getChildrenByAddress_ShouldReturnChildren() {
         when(personRepository.findByAddress("123 Main St")).thenReturn(List.of(testPerson));
-        when(medicalRecordService.isChild(testPerson)).thenReturn(true);
+        when(medicalRecordService.isChild(testMedicalRecord)).thenReturn(true);
         when(medicalRecordService.getMedicalRecordByPerson("John", "Doe")).thenReturn(testMedicalRecord);
-        when(medicalRecordService.calculateAge(anyString())).thenCallRealMethod();
+        when(medicalRecordService.calculateAge(testMedicalRecord)).thenReturn(14);
 
         Set<ChildAlertDTO> children = personService.getChildrenByAddress("123 Main St");
 
@@ -117,13 +125,12 @@ class PersonServiceTests {
         assertEquals(1, children.size());
         ChildAlertDTO child = children.iterator().next();
         assertEquals("John", child.getFirstName());
-        assertEquals(14, child.getAge()); // Calcul basé sur la date de naissance simulée
+        assertEquals(14, child.getAge());
     }
 
     @Test
     void getPhoneNumbersByFirestation_ShouldReturnPhoneNumbers() {
-        when(firestationRepository.findByStation(1)).thenReturn(List.of(testFirestation));
-        when(personRepository.findByAddress("123 Main St")).thenReturn(List.of(testPerson));
+        when(phoneView.getPhoneNumbers(1)).thenReturn(Set.of(testPerson.getPhone()));
 
         Set<String> phoneNumbers = personService.getPhoneNumbersByFirestation(1);
 
@@ -132,10 +139,26 @@ class PersonServiceTests {
         assertTrue(phoneNumbers.contains(testPerson.getPhone()));
     }
 
+    @Test
+    void getPersonsInfoByLastName_ShouldReturnPersonsWithMedicalInformation() {
+        when(personRepository.findByLastName("Doe")).thenReturn(List.of(testPerson));
+        when(medicalRecordService.getMedicalRecordByPerson("John", "Doe")).thenReturn(testMedicalRecord);
+        when(medicalRecordService.calculateAge(testMedicalRecord)).thenReturn(14);
+
+        List<PersonInfoLastNameDTO> personsInfo = personService.getPersonsInfoByLastName("Doe");
+
+        assertEquals(1, personsInfo.size());
+        PersonInfoLastNameDTO personInfo = personsInfo.get(0);
+        assertEquals("Doe", personInfo.getLastName());
+        assertEquals(testPerson.getAddress(), personInfo.getAddress());
+        assertTrue(personInfo.toString().contains("age: 14"));
+        assertTrue(personInfo.toString().contains("Aspirin"));
+    }
+
     @Test
     void getEmailsByCity_ShouldReturnEmails() {
         // Stub pour "Springfield"
-        when(personRepository.findByCity("Springfield")).thenReturn(List.of(testPerson));
+        when(emailView.getEmails("Springfield")).thenReturn(Set.of(testPerson.getEmail()));
 
         // Appel du service
         Set<String> emails = personService.getEmailsByCity("Springfield");
@@ -145,7 +168,16 @@ class PersonServiceTests {
         assertEquals(1, emails.size(), "Expected exactly 1 email");
         assertTrue(emails.contains(testPerson.getEmail()), "Email should match testPerson's email");
 
-        // Vérification que la méthode mockée est appelée
-        verify(personRepository, times(1)).findByCity("Springfield");
+        // Vérification que la vue est utilisée
+        verify(emailView, times(1)).getEmails("Springfield");
+    }
+
+    @Test
+    void getEmailPayloadByCity_ShouldReturnPayloadFromView() {
+        when(emailView.getPayload("Springfield")).thenReturn(testPerson.getEmail());
+
+        String payload = personService.getEmailPayloadByCity("Springfield");
+
+        assertEquals(testPerson.getEmail(), payload);
     }
 }
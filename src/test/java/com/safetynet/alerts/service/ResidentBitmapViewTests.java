@@ -0,0 +1,220 @@
+package com.safetynet.alerts.service;
+
+import com.safetynet.alerts.model.Firestation;
+import com.safetynet.alerts.model.MedicalRecord;
+import com.safetynet.alerts.model.Person;
+import com.safetynet.alerts.repository.DataReloadedEvent;
+import com.safetynet.alerts.repository.DataStore;
+import com.safetynet.alerts.repository.FirestationRepository;
+import com.safetynet.alerts.repository.MedicalRecordRepository;
+import com.safetynet.alerts.repository.Mutation;
+import com.safetynet.alerts.repository.PersonRepository;
+import com.safetynet.alerts.repository.Resident;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ResidentBitmapViewTests {
+
+    @Mock
+    private PersonRepository personRepository;
+
+    @Mock
+    private FirestationRepository firestationRepository;
+
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Mock
+    private MedicalRecordService medicalRecordService;
+
+    @Mock
+    private DataStore dataStore;
+
+    @InjectMocks
+    private ResidentBitmapView residentBitmapView;
+
+    private Person child;
+    private Person adult;
+    private Person neighbour;
+    private MedicalRecord adultRecord;
+    private final Map<String, MedicalRecord> recordsByName = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(dataStore.pinLatest()).thenReturn(mock(DataStore.Pin.class));
+        child = new Person("John", "Doe", "123 Main St", "Culver", "12345", "123-456-7890", "john.doe@email.com");
+        adult = new Person("Jane", "Doe", "123 Main St", "Culver", "12345", "123-456-7891", "jane.doe@email.com");
+        neighbour = new Person("Jack", "Smith", "456 Elm St", "Town", "54321", "123-456-7892", "jack.smith@email.com");
+        MedicalRecord childRecord = new MedicalRecord("John", "Doe", "01/01/2015", List.of(), List.of("peanut"));
+        adultRecord = new MedicalRecord("Jane", "Doe", "01/01/1985", List.of(), List.of("peanut"));
+        MedicalRecord neighbourRecord = new MedicalRecord("Jack", "Smith", "01/01/2016", List.of(), List.of());
+
+        when(medicalRecordService.getReferenceDate()).thenReturn(LocalDate.of(2024, 6, 1));
+        when(firestationRepository.findAll()).thenReturn(List.of(new Firestation("123 Main St", 1),
+            new Firestation("456 Elm St", 2)));
+        when(personRepository.findAll()).thenReturn(List.of(child, adult, neighbour));
+        when(medicalRecordRepository.findAll()).thenReturn(List.of(childRecord, adultRecord, neighbourRecord));
+        for (Person person : List.of(child, adult, neighbour)) {
+            when(personRepository.findById(person.getId())).thenReturn(person);
+        }
+        for (MedicalRecord record : List.of(childRecord, adultRecord, neighbourRecord)) {
+            recordsByName.put(record.getFirstName() + " " + record.getLastName(), record);
+        }
+        when(medicalRecordRepository.findByFirstNameAndLastName(anyString(), anyString()))
+            .thenAnswer(invocation -> recordsByName.get(invocation.getArgument(0) + " " + invocation.getArgument(1)));
+        when(medicalRecordRepository.findByPersons(any())).thenAnswer(invocation -> {
+            Map<UUID, MedicalRecord> records = new HashMap<>();
+            for (Person person : invocation.<Collection<Person>>getArgument(0)) {
+                MedicalRecord record = recordsByName.get(person.getFirstName() + " " + person.getLastName());
+                if (record != null) {
+                    records.put(person.getId(), record);
+                }
+            }
+            return records;
+        });
+        when(medicalRecordRepository.findByAllergy(anyString())).thenAnswer(invocation -> recordsByName.values().stream()
+            .filter(record -> record.getAllergies().contains(invocation.<String>getArgument(0)))
+            .toList());
+        when(medicalRecordService.isChild(childRecord)).thenReturn(true);
+        when(medicalRecordService.isChild(adultRecord)).thenReturn(false);
+        when(medicalRecordService.isChild(neighbourRecord)).thenReturn(true);
+    }
+
+    @Test
+    void findResidents_ShouldCombineStationsChildStatusAndAllergy() {
+        // Act
+        Map<String, List<Resident>> children = residentBitmapView.findResidents(Set.of(1, 2), null, true, null);
+        Map<String, List<Resident>> allergicAdults = residentBitmapView.findResidents(Set.of(1), "Culver", false, "peanut");
+
+        // Assert
+        assertEquals(Set.of("123 Main St", "456 Elm St"), children.keySet());
+        assertEquals(child.getId(), children.get("123 Main St").get(0).person().getId());
+        assertEquals(List.of(adult.getId()), ids(allergicAdults.get("123 Main St")));
+        assertTrue(residentBitmapView.findResidents(Set.of(2), "Culver", null, null).isEmpty());
+    }
+
+    @Test
+    void findResidents_ShouldBuildIndexesOnce_WhenDataIsUnchanged() {
+        // Act
+        residentBitmapView.findResidents(Set.of(1), null, null, null);
+        residentBitmapView.findResidents(Set.of(2), null, null, null);
+
+        // Assert
+        verify(personRepository, times(1)).findAll();
+        // Once for the build, then once per query for the residents matched
+        verify(medicalRecordRepository, times(3)).findByPersons(any());
+        verify(medicalRecordRepository, never()).findByFirstNameAndLastName(anyString(), anyString());
+        verify(medicalRecordService, never()).getMedicalRecordByPerson(anyString(), anyString());
+    }
+
+    @Test
+    void findResidents_ShouldKeepCoverage_UntilLastDuplicateMappingIsRemoved() {
+        // Arrange
+        residentBitmapView.findResidents(Set.of(1), null, null, null);
+        Firestation first = new Firestation("456 Elm St", 1);
+        Firestation duplicate = new Firestation("456 Elm St", 1);
+
+        // Act
+        residentBitmapView.onMutation(Mutation.add(first));
+        residentBitmapView.onMutation(Mutation.add(duplicate));
+        residentBitmapView.onMutation(Mutation.delete(Mutation.EntityType.FIRESTATION, first.getId()));
+        Set<String> withDuplicate = residentBitmapView.findResidents(Set.of(1), null, null, null).keySet();
+        residentBitmapView.onMutation(Mutation.delete(Mutation.EntityType.FIRESTATION, duplicate.getId()));
+        Set<String> withoutMapping = residentBitmapView.findResidents(Set.of(1), null, null, null).keySet();
+
+        // Assert
+        assertEquals(Set.of("123 Main St", "456 Elm St"), withDuplicate);
+        assertEquals(Set.of("123 Main St"), withoutMapping);
+        assertEquals(Set.of("456 Elm St"), residentBitmapView.findResidents(Set.of(2), null, null, null).keySet());
+    }
+
+    @Test
+    void findResidents_ShouldFollowPersonMutations() {
+        // Arrange
+        residentBitmapView.findResidents(Set.of(1), null, null, null);
+        Person movedAdult = adult.copy();
+        movedAdult.setAddress("456 Elm St");
+        when(personRepository.findById(adult.getId())).thenReturn(movedAdult);
+
+        // Act
+        residentBitmapView.onMutation(Mutation.update(movedAdult));
+        residentBitmapView.onMutation(Mutation.delete(Mutation.EntityType.PERSON, child.getId()));
+
+        // Assert
+        assertTrue(residentBitmapView.findResidents(Set.of(1), null, null, null).isEmpty());
+        assertEquals(List.of(adult.getId(), neighbour.getId()),
+            ids(residentBitmapView.findResidents(Set.of(2), null, null, null).get("456 Elm St")));
+        verify(personRepository, times(1)).findAll();
+    }
+
+    @Test
+    void findResidents_ShouldFollowFirestationAndMedicalRecordMutations() {
+        // Arrange
+        residentBitmapView.findResidents(Set.of(1), null, null, null);
+        Firestation mapping = new Firestation("456 Elm St", 1);
+        MedicalRecord updatedRecord = new MedicalRecord("Jane", "Doe", "01/01/1985", List.of(), List.of());
+        updatedRecord.setId(adultRecord.getId());
+        recordsByName.put("Jane Doe", updatedRecord);
+
+        // Act
+        residentBitmapView.onMutation(Mutation.add(mapping));
+        residentBitmapView.onMutation(Mutation.update(updatedRecord));
+
+        // Assert
+        assertEquals(Set.of("123 Main St", "456 Elm St"),
+            residentBitmapView.findResidents(Set.of(1), null, null, null).keySet());
+        assertEquals(List.of(child.getId()),
+            ids(residentBitmapView.findResidents(Set.of(), null, null, "peanut").get("123 Main St")));
+    }
+
+    @Test
+    void findResidents_ShouldLeaveOutResident_WhenDataChangedBeforeIndexesWereUpdated() {
+        // Arrange
+        residentBitmapView.findResidents(Set.of(1), null, null, null);
+        Person movedAdult = adult.copy();
+        movedAdult.setAddress("456 Elm St");
+        movedAdult.setCity("Town");
+        when(personRepository.findById(adult.getId())).thenReturn(movedAdult);
+
+        // Act
+        Map<String, List<Resident>> covered = residentBitmapView.findResidents(Set.of(1), "Culver", null, null);
+
+        // Assert
+        assertEquals(Set.of("123 Main St"), covered.keySet());
+        assertEquals(List.of(child.getId()), ids(covered.get("123 Main St")));
+    }
+
+    @Test
+    void findResidents_ShouldRebuildIndexes_WhenReferenceDateRollsOverOrDataIsReloaded() {
+        // Arrange
+        residentBitmapView.findResidents(Set.of(1), null, null, null);
+
+        // Act
+        when(medicalRecordService.getReferenceDate()).thenReturn(LocalDate.of(2024, 6, 2));
+        residentBitmapView.findResidents(Set.of(1), null, null, null);
+        residentBitmapView.onDataReloaded(new DataReloadedEvent(Mutation.EntityType.PERSON));
+        residentBitmapView.findResidents(Set.of(1), null, null, null);
+
+        // Assert
+        verify(personRepository, times(3)).findAll();
+    }
+
+    private static List<UUID> ids(List<Resident> residents) {
+        return residents.stream().map(resident -> resident.person().getId()).toList();
+    }
+}